@@ -21,7 +21,6 @@ package net.luminis.quic.cli;
 import net.luminis.quic.cid.ConnectionIdStatus;
 import net.luminis.quic.impl.QuicClientConnectionImpl;
 import net.luminis.quic.impl.TransportParameters;
-import net.luminis.quic.receive.Receiver;
 import net.luminis.quic.util.Bytes;
 
 import java.io.BufferedReader;
@@ -373,9 +372,6 @@ public class InteractiveShell {
             case "payload":
                 builder.maxUdpPayloadSize(toInt(value));
                 params.maxUdpPayloadSize = toInt(value);
-                if (toInt(value) > Receiver.MAX_DATAGRAM_SIZE) {
-                    System.out.println(String.format("Warning: client will read at most %d datagram bytes", Receiver.MAX_DATAGRAM_SIZE));
-                }
                 break;
             default:
                 System.out.println("Parameter must be one of:");
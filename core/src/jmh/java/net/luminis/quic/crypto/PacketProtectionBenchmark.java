@@ -0,0 +1,166 @@
+/*
+ * Copyright © 2024 Peter Doornbosch
+ *
+ * This file is part of Kwik, an implementation of the QUIC protocol in Java.
+ *
+ * Kwik is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * Kwik is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.luminis.quic.crypto;
+
+import net.luminis.quic.impl.DecryptionException;
+import net.luminis.quic.impl.Role;
+import net.luminis.quic.impl.Version;
+import net.luminis.quic.log.NullLogger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares packet protection (AEAD and header protection) using the byte array based methods, the way packets used to
+ * be protected (copying header, payload and sample into new arrays, creating a new nonce for each packet), with
+ * protecting packets in place, using the cached cipher state and scratch buffers of the Aead.
+ * Run with: gradle :kwik:jmh -PjmhArgs="PacketProtectionBenchmark"
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class PacketProtectionBenchmark {
+
+    private static final int HEADER_LENGTH = 13;
+
+    @Param({ "AES_128_GCM", "CHACHA20_POLY1305" })
+    private String cipher;
+
+    @Param({ "100", "1200" })
+    private int payloadLength;
+
+    @Param({ "heap", "direct" })
+    private String bufferType;
+
+    private Aead sender;
+    private Aead receiver;
+    private long packetNumber;
+    private ByteBuffer sendBuffer;
+    // Two received packets, used alternately, because ChaCha20 does not accept the same nonce twice in a row.
+    private byte[][] receivedPackets;
+    private long[] receivedPacketNumbers;
+    private ByteBuffer receiveBuffer;
+    private int received;
+
+    @Setup
+    public void setup() {
+        sender = createAead();
+        receiver = createAead();
+        sendBuffer = bufferType.equals("direct")? ByteBuffer.allocateDirect(1500): ByteBuffer.allocate(1500);
+        receiveBuffer = bufferType.equals("direct")? ByteBuffer.allocateDirect(1500): ByteBuffer.allocate(1500);
+        receivedPacketNumbers = new long[] { 1_000_000, 1_000_001 };
+        receivedPackets = new byte[2][];
+        Aead packetSender = createAead();
+        for (int i = 0; i < 2; i++) {
+            ByteBuffer packet = ByteBuffer.allocate(HEADER_LENGTH + payloadLength + 16);
+            packet.put(new byte[HEADER_LENGTH + payloadLength]);
+            packetSender.aeadEncrypt(packet, 0, HEADER_LENGTH, payloadLength, receivedPacketNumbers[i]);
+            receivedPackets[i] = packet.array();
+        }
+    }
+
+    @Benchmark
+    public byte[] protectCopying() {
+        sendBuffer.clear();
+        sendBuffer.put(new byte[HEADER_LENGTH]);
+        byte[] header = new byte[HEADER_LENGTH];
+        byte[] payload = new byte[payloadLength];
+        byte[] encrypted = sender.aeadEncrypt(header, payload, createNonce(packetNumber++, sender));
+        sendBuffer.put(encrypted);
+        byte[] sample = new byte[16];
+        System.arraycopy(encrypted, 0, sample, 0, 16);
+        return sender.createHeaderProtectionMask(sample);
+    }
+
+    @Benchmark
+    public byte[] protectInPlace() {
+        sendBuffer.clear();
+        sender.aeadEncrypt(sendBuffer, 0, HEADER_LENGTH, payloadLength, packetNumber++);
+        return sender.createHeaderProtectionMask(sendBuffer, HEADER_LENGTH);
+    }
+
+    @Benchmark
+    public byte[] unprotectCopying(Blackhole blackhole) throws DecryptionException {
+        int index = received++ & 1;
+        fillReceiveBuffer(index);
+        byte[] sample = new byte[16];
+        receiveBuffer.position(HEADER_LENGTH);
+        receiveBuffer.get(sample);
+        blackhole.consume(receiver.createHeaderProtectionMask(sample));
+        byte[] header = new byte[HEADER_LENGTH];
+        receiveBuffer.position(0);
+        receiveBuffer.get(header);
+        byte[] payload = new byte[payloadLength + 16];
+        receiveBuffer.get(payload);
+        return receiver.aeadDecrypt(header, payload, createNonce(receivedPacketNumbers[index], receiver));
+    }
+
+    @Benchmark
+    public int unprotectInPlace(Blackhole blackhole) throws DecryptionException {
+        int index = received++ & 1;
+        // As the packet is decrypted in place, the receive buffer must be refilled for each invocation; the copying
+        // variant does the same, to make the results comparable.
+        fillReceiveBuffer(index);
+        blackhole.consume(receiver.createHeaderProtectionMask(receiveBuffer, HEADER_LENGTH));
+        return receiver.aeadDecrypt(receiveBuffer, 0, HEADER_LENGTH, payloadLength + 16, receivedPacketNumbers[index]);
+    }
+
+    private void fillReceiveBuffer(int index) {
+        receiveBuffer.clear();
+        receiveBuffer.put(receivedPackets[index]);
+        receiveBuffer.flip();
+    }
+
+    private Aead createAead() {
+        BaseAeadImpl aead = cipher.equals("AES_128_GCM")?
+                new Aes128Gcm(Version.getDefault(), Role.Client, new NullLogger()):
+                new ChaCha20(Version.getDefault(), Role.Client, new NullLogger());
+        aead.computeKeys(new byte[32]);
+        return aead;
+    }
+
+    // The way nonces were computed before they were cached.
+    private static byte[] createNonce(long packetNumber, Aead aead) {
+        ByteBuffer nonceInput = ByteBuffer.allocate(12);
+        nonceInput.putInt(0);
+        nonceInput.putLong(packetNumber);
+
+        byte[] writeIV = aead.getWriteIV();
+        byte[] nonce = new byte[12];
+        int i = 0;
+        for (byte b : nonceInput.array())
+            nonce[i] = (byte) (b ^ writeIV[i++]);
+        return nonce;
+    }
+}
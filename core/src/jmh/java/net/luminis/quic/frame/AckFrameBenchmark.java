@@ -0,0 +1,109 @@
+/*
+ * Copyright © 2024 Peter Doornbosch
+ *
+ * This file is part of Kwik, an implementation of the QUIC protocol in Java.
+ *
+ * Kwik is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * Kwik is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.luminis.quic.frame;
+
+import net.luminis.quic.log.NullLogger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares processing a (large) received ack frame using the boxed stream of acknowledged packet numbers and the list of
+ * ranges, the way ack frames used to be processed, with iterating the ranges using a (reused) range cursor. Parsing
+ * the frame is included, as that is where the range representation is created.
+ * Run with: gradle :kwik:jmh -PjmhArgs="AckFrameBenchmark"
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class AckFrameBenchmark {
+
+    @Param({ "1", "10", "100" })
+    private int rangeCount;
+
+    @Param({ "4" })
+    private int rangeSize;
+
+    private ByteBuffer serializedFrame;
+    private AckRangeCursor cursor;
+    private NullLogger logger;
+
+    @Setup
+    public void setup() {
+        List<Range> ranges = new ArrayList<>();
+        long largest = 100_000;
+        for (int i = 0; i < rangeCount; i++) {
+            ranges.add(new Range(largest - rangeSize + 1, largest));
+            largest -= rangeSize + 2;
+        }
+        serializedFrame = ByteBuffer.allocate(4 + rangeCount * 8);
+        new AckFrame(ranges).serialize(serializedFrame);
+        serializedFrame.flip();
+        cursor = new AckRangeCursor();
+        logger = new NullLogger();
+    }
+
+    @Benchmark
+    public void ackedPacketNumbersBoxed(Blackhole blackhole) throws Exception {
+        AckFrame ackFrame = parse();
+        ackFrame.getAckedPacketNumbers().forEach(blackhole::consume);
+    }
+
+    @Benchmark
+    public void ackedRangesList(Blackhole blackhole) throws Exception {
+        AckFrame ackFrame = parse();
+        for (Range range: ackFrame.getAcknowledgedRanges()) {
+            for (long pn = range.getLargest(); pn >= range.getSmallest(); pn--) {
+                blackhole.consume(pn);
+            }
+        }
+    }
+
+    @Benchmark
+    public void ackedRangesCursor(Blackhole blackhole) throws Exception {
+        cursor.reset(parse());
+        while (cursor.next()) {
+            for (long pn = cursor.largest(); pn >= cursor.smallest(); pn--) {
+                blackhole.consume(pn);
+            }
+        }
+    }
+
+    private AckFrame parse() throws Exception {
+        serializedFrame.rewind();
+        return new AckFrame().parse(serializedFrame, logger);
+    }
+}
@@ -1,6 +1,7 @@
 module tech.kwik.core {
     requires tech.kwik.agent15;
     requires at.favre.lib.hkdf;
+    requires jdk.net;
 
     exports net.luminis.quic;
     exports net.luminis.quic.concurrent;
@@ -0,0 +1,43 @@
+/*
+ * Copyright © 2024 Peter Doornbosch
+ *
+ * This file is part of Kwik, an implementation of the QUIC protocol in Java.
+ *
+ * Kwik is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * Kwik is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.luminis.quic;
+
+/**
+ * The congestion control algorithm a connection uses to determine how much data it can have in flight.
+ */
+public enum CongestionControlAlgorithm {
+
+    /**
+     * NewReno, the congestion controller defined by RFC 9002. This is the default.
+     */
+    NEW_RENO,
+
+    /**
+     * CUBIC, as defined by RFC 9438. After a loss, the congestion window grows as a cubic function of the time since
+     * the loss instead of linearly, so the window is restored much faster on paths with a large bandwidth-delay product.
+     */
+    CUBIC,
+
+    /**
+     * BBR, a model-based congestion controller that estimates the bottleneck bandwidth and the minimum RTT of the path,
+     * and paces sending based on these estimates; loss is not interpreted as a signal of congestion, unless the loss
+     * rate is high. This makes it suitable for lossy, long-haul paths.
+     */
+    BBR
+}
@@ -0,0 +1,201 @@
+/*
+ * Copyright © 2024 Peter Doornbosch
+ *
+ * This file is part of Kwik, an implementation of the QUIC protocol in Java.
+ *
+ * Kwik is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * Kwik is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.luminis.quic;
+
+import net.luminis.quic.cc.BbrCongestionController;
+import net.luminis.quic.cc.CongestionControlEventListener;
+import net.luminis.quic.cc.CongestionController;
+import net.luminis.quic.cc.CubicCongestionController;
+import net.luminis.quic.cc.NewRenoCongestionController;
+import net.luminis.quic.log.Logger;
+import net.luminis.quic.recovery.RttEstimator;
+
+import java.time.Clock;
+import java.util.Objects;
+
+/**
+ * Creates the congestion controller for a connection, with the configured algorithm and parameters. Parameters that
+ * are not set get the default value of the algorithm.
+ * Example: <code>CongestionControllerFactory.builder().algorithm(CongestionControlAlgorithm.CUBIC).initialWindow(32 * 1200).build()</code>
+ */
+public final class CongestionControllerFactory {
+
+    private static final int MIN_WINDOW = 1200;
+
+    private final CongestionControlAlgorithm algorithm;
+    private final Long initialWindow;
+    private final Long minimumWindow;
+    private final Double lossReductionFactor;
+    private final boolean hyStart;
+
+    private CongestionControllerFactory(Builder builder) {
+        algorithm = builder.algorithm;
+        initialWindow = builder.initialWindow;
+        minimumWindow = builder.minimumWindow;
+        lossReductionFactor = builder.lossReductionFactor;
+        hyStart = builder.hyStart;
+    }
+
+    /**
+     * Returns a factory for the given algorithm with default parameters.
+     * @param algorithm
+     * @return
+     */
+    public static CongestionControllerFactory of(CongestionControlAlgorithm algorithm) {
+        return builder().algorithm(algorithm).build();
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public CongestionController createCongestionController(Clock clock, Logger log, CongestionControlEventListener eventListener,
+                                                           RttEstimator rttEstimator) {
+        switch (algorithm) {
+            case CUBIC: {
+                CubicCongestionController cubic = new CubicCongestionController(clock, log, eventListener, rttEstimator);
+                cubic.setHyStart(hyStart);
+                if (minimumWindow != null) {
+                    cubic.setMinimumWindow(minimumWindow);
+                }
+                if (lossReductionFactor != null) {
+                    cubic.setLossReductionFactor(lossReductionFactor);
+                }
+                if (initialWindow != null) {
+                    cubic.setInitialWindow(initialWindow);
+                }
+                return cubic;
+            }
+            case BBR: {
+                // BBR has a startup phase of its own, so HyStart++ does not apply.
+                BbrCongestionController bbr = new BbrCongestionController(clock, log, eventListener, rttEstimator);
+                if (minimumWindow != null) {
+                    bbr.setMinimumWindow(minimumWindow);
+                }
+                if (lossReductionFactor != null) {
+                    bbr.setLossReductionFactor(lossReductionFactor);
+                }
+                if (initialWindow != null) {
+                    bbr.setInitialWindow(initialWindow);
+                }
+                return bbr;
+            }
+            default: {
+                NewRenoCongestionController newReno = new NewRenoCongestionController(clock, log, eventListener);
+                newReno.setHyStart(hyStart);
+                if (minimumWindow != null) {
+                    newReno.setMinimumWindow(minimumWindow);
+                }
+                if (lossReductionFactor != null) {
+                    newReno.setLossReductionFactor(lossReductionFactor);
+                }
+                if (initialWindow != null) {
+                    newReno.setInitialWindow(initialWindow);
+                }
+                return newReno;
+            }
+        }
+    }
+
+    public CongestionControlAlgorithm getAlgorithm() {
+        return algorithm;
+    }
+
+    public static class Builder {
+
+        private CongestionControlAlgorithm algorithm = CongestionControlAlgorithm.NEW_RENO;
+        private Long initialWindow;
+        private Long minimumWindow;
+        private Double lossReductionFactor;
+        private boolean hyStart = true;
+
+        private Builder() {
+        }
+
+        public CongestionControllerFactory build() {
+            if (initialWindow != null && minimumWindow != null && initialWindow < minimumWindow) {
+                throw new IllegalArgumentException("initial window cannot be smaller than minimum window");
+            }
+            return new CongestionControllerFactory(this);
+        }
+
+        /**
+         * Sets the congestion control algorithm. When not set, NewReno is used.
+         * @param algorithm
+         * @return
+         */
+        public Builder algorithm(CongestionControlAlgorithm algorithm) {
+            this.algorithm = Objects.requireNonNull(algorithm);
+            return this;
+        }
+
+        /**
+         * Sets the initial congestion window in bytes. When not set, 10 packets of 1200 bytes (RFC 9002) are used.
+         * @param bytes
+         * @return
+         */
+        public Builder initialWindow(long bytes) {
+            if (bytes < MIN_WINDOW) {
+                throw new IllegalArgumentException("initial window must be at least " + MIN_WINDOW + " bytes");
+            }
+            initialWindow = bytes;
+            return this;
+        }
+
+        /**
+         * Sets the minimum congestion window in bytes, i.e. the size below which the window is never reduced.
+         * @param bytes
+         * @return
+         */
+        public Builder minimumWindow(long bytes) {
+            if (bytes < MIN_WINDOW) {
+                throw new IllegalArgumentException("minimum window must be at least " + MIN_WINDOW + " bytes");
+            }
+            minimumWindow = bytes;
+            return this;
+        }
+
+        /**
+         * Sets the factor the congestion window is multiplied with when congestion is detected (for BBR: the factor
+         * the maximum amount of data in flight is reduced with when the loss rate is too high). When not set, the
+         * default of the algorithm is used: 0.5 for NewReno and 0.7 for CUBIC and BBR.
+         * @param factor  value between 0 and 1 (exclusive)
+         * @return
+         */
+        public Builder lossReductionFactor(double factor) {
+            if (!(factor > 0 && factor < 1)) {
+                throw new IllegalArgumentException("loss reduction factor must be between 0 and 1");
+            }
+            lossReductionFactor = factor;
+            return this;
+        }
+
+        /**
+         * Enables or disables HyStart++ (RFC 9406) for the slow start phase of NewReno and CUBIC. HyStart++ ends slow
+         * start when an increase of the RTT indicates that a queue is building up, instead of waiting for packet loss.
+         * Enabled by default.
+         * @param enabled
+         * @return
+         */
+        public Builder hyStart(boolean enabled) {
+            hyStart = enabled;
+            return this;
+        }
+    }
+}
@@ -59,4 +59,16 @@ public interface ConnectionConfig {
      * @return  the maximum buffer size on stream level (per stream) for bidirectional streams.
      */
     long maxBidirectionalStreamBufferSize();
+
+    /**
+     * @return  the size to which the receive window on connection level can be auto-tuned at most; when not larger
+     * than the maximum connection buffer size, the connection level receive window is not auto-tuned.
+     */
+    long maxConnectionReceiveWindow();
+
+    /**
+     * @return  the size to which the receive window of a stream can be auto-tuned at most; when not larger than the
+     * stream buffer size, stream receive windows are not auto-tuned.
+     */
+    long maxStreamReceiveWindow();
 }
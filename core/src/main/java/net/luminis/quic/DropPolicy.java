@@ -0,0 +1,45 @@
+/*
+ * Copyright © 2024 Peter Doornbosch
+ *
+ * This file is part of Kwik, an implementation of the QUIC protocol in Java.
+ *
+ * Kwik is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * Kwik is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.luminis.quic;
+
+/**
+ * Determines which datagrams are dropped when a receive queue is full, i.e. when datagrams are received faster than
+ * they can be processed.
+ */
+public enum DropPolicy {
+
+    /**
+     * Datagrams that arrive when the queue is full are dropped.
+     */
+    DROP_NEWEST,
+
+    /**
+     * When the queue is full, the oldest datagrams are dropped in favour of the newer ones. As older datagrams are more
+     * likely to be retransmitted already, this usually favours progress of the connection(s). Dropping is done by the
+     * processing thread, so arriving datagrams are still dropped when processing is stalled completely.
+     */
+    DROP_OLDEST,
+
+    /**
+     * Like {@link #DROP_NEWEST}, but when the queue is getting full, datagrams that do not contain a long header packet
+     * (i.e. Initial, 0-RTT or Handshake packet) are dropped first, so the remaining room is used to let handshakes
+     * complete; for example, to prevent that a burst of 1-RTT data stalls all connections that are being set up.
+     */
+    PREFER_HANDSHAKE
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright © 2024 Peter Doornbosch
+ *
+ * This file is part of Kwik, an implementation of the QUIC protocol in Java.
+ *
+ * Kwik is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * Kwik is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.luminis.quic;
+
+import java.util.Map;
+
+/**
+ * Metrics of the memory used for buffering data (received stream data, stream data waiting to be sent and sent packets
+ * waiting to be acknowledged) by a group of connections that share a memory budget.
+ */
+public interface MemoryMetrics {
+
+    /**
+     * Returns the memory budget in bytes, i.e. the amount of memory connections can use for buffering data; when usage
+     * approaches the budget, flow control credit given to peers is reduced.
+     * @return
+     */
+    long getBudget();
+
+    /**
+     * Returns the number of bytes currently in use by all connections.
+     * @return
+     */
+    long getUsage();
+
+    /**
+     * Returns the maximum number of bytes that has been in use at any time.
+     * @return
+     */
+    long getHighWaterMark();
+
+    /**
+     * Returns the number of bytes currently in use per connection, with connections identified by their original
+     * destination connection id (in hex, as used in the log).
+     * @return
+     */
+    Map<String, Long> getUsagePerConnection();
+}
@@ -33,6 +33,7 @@ import java.security.PrivateKey;
 import java.security.cert.X509Certificate;
 import java.time.Duration;
 import java.util.List;
+import java.util.concurrent.ThreadFactory;
 
 
 public interface QuicClientConnection extends QuicConnection {
@@ -87,6 +88,17 @@ public interface QuicClientConnection extends QuicConnection {
 
         Builder defaultStreamReceiveBufferSize(Long bufferSize);
 
+        /**
+         * Sets the maximum sizes to which the receive (flow control) windows can be auto-tuned. Receive windows start
+         * with the configured buffer size and are doubled whenever the application reads a whole window within two
+         * round trips; they shrink back to the buffer size when no data is read for a while. Passing values that are not
+         * larger than the buffer sizes disables auto-tuning.
+         * @param maxStreamReceiveWindow  maximum receive window per stream
+         * @param maxConnectionReceiveWindow  maximum receive window on connection level
+         * @return
+         */
+        Builder receiveWindowAutoTuning(long maxStreamReceiveWindow, long maxConnectionReceiveWindow);
+
         /**
          * The maximum number of peer initiated bidirectional streams that the peer is allowed to have open at any time.
          * If the value is 0, the peer is not allowed to open any bidirectional stream.
@@ -156,6 +168,50 @@ public interface QuicClientConnection extends QuicConnection {
         Builder clientKey(String keyPassword);
 
         Builder socketFactory(DatagramSocketFactory socketFactory);
+
+        /**
+         * Sets the factory for creating the threads of the connection (for receiving and sending). For example, to use
+         * virtual threads (requires Java 21 or later), use {@link net.luminis.quic.concurrent.VirtualThreads#threadFactory(String)}.
+         * When not set, platform threads are used.
+         * @param threadFactory
+         * @return
+         */
+        Builder threadFactory(ThreadFactory threadFactory);
+
+        /**
+         * Sets the maximum number of packets the connection can send in one burst; further packets are paced, i.e.
+         * spread over the round trip time. When not set, bursts are limited to 10 packets.
+         * @param maxBurstPackets
+         * @return
+         */
+        Builder pacingBurst(int maxBurstPackets);
+
+        /**
+         * Sets the congestion control algorithm the connection uses. When not set, NewReno is used.
+         * @param algorithm
+         * @return
+         */
+        Builder congestionControl(CongestionControlAlgorithm algorithm);
+
+        /**
+         * Sets the factory that creates the congestion controller of the connection, which determines the algorithm and
+         * its parameters (initial window, minimum window, loss reduction factor, HyStart++). Overrides any algorithm set
+         * with {@link #congestionControl(CongestionControlAlgorithm)}.
+         * @param factory
+         * @return
+         */
+        Builder congestionControllerFactory(CongestionControllerFactory factory);
+
+        /**
+         * Sets the acknowledgement frequency to request from the server, if the server supports the ack frequency
+         * extension (https://datatracker.ietf.org/doc/draft-ietf-quic-ack-frequency/). Acknowledging less often saves
+         * processing (and packets) on both sides, which matters for high throughput transfers. When not set, the
+         * default of RFC 9000 (acknowledge at least every second ack-eliciting packet) is used.
+         * @param ackElicitingThreshold  number of ack-eliciting packets the server may receive without acknowledging
+         * @param maxAckDelay  max ack delay in milliseconds
+         * @return
+         */
+        Builder ackFrequency(int ackElicitingThreshold, int maxAckDelay);
     }
 
 }
@@ -42,10 +42,12 @@ public class QuicConstants {
         retry_source_connection_id(0x10),
         // https://www.ietf.org/archive/id/draft-ietf-quic-version-negotiation-05.html#name-quic-transport-parameter
         version_information(0x11),
+        // https://datatracker.ietf.org/doc/draft-ietf-quic-ack-frequency/
+        min_ack_delay(0xff04de1bL),
         ;
-        public final int value;
+        public final long value;
 
-        TransportParameterId(int value) {
+        TransportParameterId(long value) {
             this.value = value;
         }
     }
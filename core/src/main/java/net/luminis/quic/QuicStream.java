@@ -18,8 +18,14 @@
  */
 package net.luminis.quic;
 
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
 
 /**
  * A QUIC stream.
@@ -38,6 +44,26 @@ public interface QuicStream {
      */
     InputStream getInputStream();
 
+    /**
+     * Reads data sent by the peer without copying it, by borrowing read-only views on the received data. The data is
+     * not consumed until it is released with {@link #releaseData(int)}; the views must not be used after that.
+     * Blocks until data is available or the end of the stream is reached. Can be mixed with reading from the input
+     * stream, but not concurrently.
+     *
+     * @param maxBytes  the maximum number of bytes to borrow
+     * @return  views on the data, or an empty array if the end of the stream has been reached
+     * @throws IOException
+     */
+    ByteBuffer[] borrowData(int maxBytes) throws IOException;
+
+    /**
+     * Releases the given number of bytes of the data borrowed with {@link #borrowData(int)}, which allows the peer to
+     * send more data.
+     *
+     * @param bytes  the number of bytes to release
+     */
+    void releaseData(int bytes);
+
     /**
      * Returns the output stream for sending data to the peer.
      *
@@ -45,6 +71,49 @@ public interface QuicStream {
      */
     OutputStream getOutputStream();
 
+    /**
+     * Returns a non-blocking channel for reading data sent by the peer: a read returns immediately, with 0 bytes read
+     * when no data is available. Use {@link #whenReadable()} to find out when data is available.
+     *
+     * @return  the readable channel
+     */
+    ReadableByteChannel getReadableChannel();
+
+    /**
+     * Returns a non-blocking channel for sending data to the peer: a write returns immediately, writing only as many
+     * bytes as fit in the send buffer. Use {@link #whenWritable()} to find out when there is space in the send buffer.
+     *
+     * @return  the writable channel
+     */
+    WritableByteChannel getWritableChannel();
+
+    /**
+     * Returns a future that completes when data can be read without blocking, which is when data is received, the end
+     * of the stream is reached or when reading is no longer possible (e.g. because the stream is reset).
+     * Dependent actions are executed by the thread that processes received data, so they must not block.
+     *
+     * @return  the future
+     */
+    CompletableFuture<Void> whenReadable();
+
+    /**
+     * Returns a future that completes when data can be written without blocking, which is when there is space in the
+     * send buffer (i.e. buffered data is sent, which depends on flow control credit given by the peer) or when writing
+     * is no longer possible. Dependent actions are executed by the sender thread, so they must not block.
+     *
+     * @return  the future
+     */
+    CompletableFuture<Void> whenWritable();
+
+    /**
+     * Returns a publisher for the data sent by the peer. The publisher accepts only one subscriber. Data is only read
+     * when requested by the subscriber, so the subscriber's demand determines how much flow control credit the peer
+     * gets. Cancelling the subscription aborts reading.
+     *
+     * @return  the publisher
+     */
+    Flow.Publisher<ByteBuffer> getPublisher();
+
     /**
      * Returns the stream ID of the stream.
      * <p>
@@ -0,0 +1,77 @@
+/*
+ * Copyright © 2024 Peter Doornbosch
+ *
+ * This file is part of Kwik, an implementation of the QUIC protocol in Java.
+ *
+ * Kwik is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * Kwik is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.luminis.quic;
+
+/**
+ * Metrics of a queue (or a group of queues) holding received datagrams until they are processed.
+ */
+public interface ReceiveQueueMetrics {
+
+    enum DropReason {
+        /**
+         * Datagram arrived when the queue was full.
+         */
+        QUEUE_FULL,
+        /**
+         * Datagram was removed from the queue to make room for newer ones (see {@link DropPolicy#DROP_OLDEST}).
+         */
+        EVICTED,
+        /**
+         * Datagram was dropped to save the remaining room for handshake packets (see {@link DropPolicy#PREFER_HANDSHAKE}).
+         */
+        NOT_HANDSHAKE
+    }
+
+    /**
+     * Returns the maximum number of datagrams the queue holds, i.e. the configured capacity.
+     * @return
+     */
+    int getCapacity();
+
+    /**
+     * Returns the number of datagrams currently waiting in the queue(s).
+     * @return
+     */
+    int getDepth();
+
+    /**
+     * Returns the maximum depth reached by a queue since it was created.
+     * @return
+     */
+    int getHighWaterMark();
+
+    /**
+     * Returns the number of datagrams dropped for the given reason.
+     * @param reason
+     * @return
+     */
+    long getDropCount(DropReason reason);
+
+    /**
+     * Returns the number of datagrams dropped for any reason.
+     * @return
+     */
+    default long getTotalDropCount() {
+        long total = 0;
+        for (DropReason reason : DropReason.values()) {
+            total += getDropCount(reason);
+        }
+        return total;
+    }
+}
@@ -23,9 +23,15 @@ import net.luminis.quic.send.SendStatistics;
 public class Statistics {
 
     private final SendStatistics senderStatistics;
+    private final long memoryUsage;
 
     public Statistics(SendStatistics statistics) {
+        this(statistics, 0);
+    }
+
+    public Statistics(SendStatistics statistics, long memoryUsage) {
         senderStatistics = statistics;
+        this.memoryUsage = memoryUsage;
     }
 
     @SuppressWarnings("NarrowCalculation")
@@ -33,15 +39,62 @@ public class Statistics {
         return senderStatistics.bytesSent() > 0? (float) ((senderStatistics.dataBytesSent() * 1000 / senderStatistics.bytesSent()) / 10.0) : 0;
     }
 
+    /**
+     * @return  the current pacing rate of the sender, in bytes per second
+     */
+    public long pacingRate() {
+        return senderStatistics.pacingRate();
+    }
+
+    /**
+     * @return  the number of times the sender postponed sending because of pacing
+     */
+    public long pacingDelays() {
+        return senderStatistics.pacingDelays();
+    }
+
+    /**
+     * @return  the estimated bandwidth of the bottleneck of the path, in bytes per second; only estimated when BBR
+     *          congestion control is used, 0 otherwise
+     */
+    public long bottleneckBandwidth() {
+        return senderStatistics.bottleneckBandwidth();
+    }
+
+    /**
+     * @return  the (estimated) minimum RTT of the path, in milliseconds; rounded up, so a sub-millisecond RTT is not
+     *          reported as 0
+     */
+    public int minRtt() {
+        return senderStatistics.minRtt();
+    }
+
+    /**
+     * @return  the (estimated) minimum RTT of the path, in microseconds
+     */
+    public long minRttMicros() {
+        return senderStatistics.minRttMicros();
+    }
+
+    /**
+     * @return  the number of bytes the connection currently uses for buffering data (received stream data, stream data
+     *          waiting to be sent and sent packets waiting to be acknowledged)
+     */
+    public long memoryUsage() {
+        return memoryUsage;
+    }
+
     @Override
     public String toString() {
         return String.format(
                 "datagrams sent: %d\npackets send: %d\nbytes sent: %d\ndata sent: %d\nefficieny: %.1f\npackets lost: %d" +
-                "\nsmoothed RTT: %d\nRTT var: %d\nlatest RTT: %d",
+                "\nsmoothed RTT: %d\nRTT var: %d\nlatest RTT: %d\nmin RTT: %d\npacing rate: %d\npacing delays: %d" +
+                "\nbottleneck bandwidth: %d\nmemory usage: %d",
                 senderStatistics.datagramsSent(), senderStatistics.packetsSent(), senderStatistics.bytesSent(),
                 senderStatistics.dataBytesSent(),
                 efficiency(),
                 senderStatistics.lostPackets(),
-                senderStatistics.smoothedRtt(), senderStatistics.rttVar(), senderStatistics.latestRtt());
+                senderStatistics.smoothedRtt(), senderStatistics.rttVar(), senderStatistics.latestRtt(), senderStatistics.minRtt(),
+                senderStatistics.pacingRate(), senderStatistics.pacingDelays(), senderStatistics.bottleneckBandwidth(), memoryUsage);
     }
 }
@@ -19,12 +19,15 @@
 package net.luminis.quic.ack;
 
 import net.luminis.quic.frame.AckFrame;
+import net.luminis.quic.frame.AckFrequencyFrame;
+import net.luminis.quic.frame.AckRangeCursor;
 import net.luminis.quic.frame.QuicFrame;
 import net.luminis.quic.frame.Range;
 import net.luminis.quic.common.PnSpace;
 import net.luminis.quic.impl.Version;
 import net.luminis.quic.packet.QuicPacket;
 import net.luminis.quic.send.Sender;
+import net.luminis.quic.util.MonotonicClock;
 
 import java.time.Clock;
 import java.time.Duration;
@@ -37,6 +40,18 @@ import java.util.*;
  */
 public class AckGenerator {
 
+    /**
+     * The minimum ack delay (in microseconds) this endpoint supports, i.e. the smallest max ack delay a peer can request
+     * with an ACK_FREQUENCY frame. As the sender's timers have millisecond precision, this is one millisecond.
+     */
+    public static final int MIN_ACK_DELAY = 1000;
+
+    // https://www.rfc-editor.org/rfc/rfc9000.html#name-ack-frequency
+    // "A receiver SHOULD send an ACK frame after receiving at least two ack-eliciting packets."
+    private static final int DEFAULT_ACK_ELICITING_THRESHOLD = 1;
+    // Default max ack delay is 25, use 20 to give some slack for timing issues
+    private static final int DEFAULT_ACK_DELAY = 20;
+
     private final Clock clock;
     private final Version quicVersion = Version.getDefault();
     private final PnSpace pnSpace;
@@ -44,11 +59,22 @@ public class AckGenerator {
     private List<Range> rangesToAcknowledge = new ArrayList<>();
     private boolean newPacketsToAcknowledge;
     private Instant newPacketsToAcknowlegdeSince;
-    private Map<Long, AckFrame> ackSentWithPacket = new HashMap<>();
+    private NavigableMap<Long, AckFrame> ackSentWithPacket = new TreeMap<>();
+    private final AckRangeCursor ackRangeCursor = new AckRangeCursor();
     private int acksNotSend = 0;
+    // Acknowledgement behaviour requested by the peer with ACK_FREQUENCY / IMMEDIATE_ACK frames
+    private long ackFrequencySequenceNumber = -1;
+    private long ackElicitingThreshold = DEFAULT_ACK_ELICITING_THRESHOLD;
+    private int ackDelay = DEFAULT_ACK_DELAY;
+    // 0 means out-of-order packets do not trigger an immediate ack (which is the default behaviour of this implementation)
+    private long reorderingThreshold = 0;
+    private long largestReceived = -1;
+    private long largestMissing = -1;
+    private long largestMissingReported = -1;
+    private boolean immediateAckRequested;
 
     public AckGenerator(PnSpace pnSpace, Sender sender) {
-        this(Clock.systemUTC(), pnSpace, sender);
+        this(MonotonicClock.instance(), pnSpace, sender);
     }
 
     public AckGenerator(Clock clock, PnSpace pnSpace, Sender sender) {
@@ -68,6 +94,7 @@ public class AckGenerator {
     public synchronized void packetReceived(QuicPacket packet) {
         if (packet.canBeAcked()) {
             Range.extendRangeList(rangesToAcknowledge, packet.getPacketNumber());
+            boolean reordered = checkReordering(packet.getPacketNumber());
             if (packet.isAckEliciting()) {
                 newPacketsToAcknowledge = true;
                 if (newPacketsToAcknowlegdeSince == null) {
@@ -77,24 +104,67 @@ public class AckGenerator {
                     sender.sendAck(pnSpace, 0);
                 }
                 else {
-                    // https://tools.ietf.org/html/draft-ietf-quic-transport-29#section-13.2.2
-                    // "A receiver SHOULD send an ACK frame after receiving at least two ack-eliciting packets."
-                    int ackFrequency = 2;
-
                     acksNotSend++;
-                    if (acksNotSend >= ackFrequency) {
+                    if (acksNotSend > ackElicitingThreshold || immediateAckRequested || reordered) {
                         sender.sendAck(pnSpace, 0);
                         acksNotSend = 0;
+                        immediateAckRequested = false;
                     }
                     else {
-                        // Default max ack delay is 25, use 20 to give some slack for timing issues
-                        sender.sendAck(pnSpace, 20);
+                        sender.sendAck(pnSpace, ackDelay);
                     }
                 }
             }
         }
     }
 
+    /**
+     * Determines whether the received packet number leads to reordering that must be reported immediately, i.e. whether
+     * there is a missing packet that has not been reported before and that is at least the reordering threshold below
+     * the largest received packet.
+     * @param packetNumber
+     * @return
+     */
+    private boolean checkReordering(long packetNumber) {
+        if (packetNumber > largestReceived + 1 && largestReceived >= 0) {
+            largestMissing = packetNumber - 1;
+        }
+        else if (packetNumber == largestMissing) {
+            largestMissing = -1;
+        }
+        largestReceived = Long.max(largestReceived, packetNumber);
+
+        if (reorderingThreshold > 0 && largestMissing > largestMissingReported && largestReceived - largestMissing >= reorderingThreshold) {
+            largestMissingReported = largestMissing;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Process a received ACK_FREQUENCY frame: adapt the acknowledgement behaviour to the peer's request (if the frame
+     * is not older than the one processed before).
+     * @param frame
+     */
+    public synchronized void process(AckFrequencyFrame frame) {
+        if (frame.getSequenceNumber() > ackFrequencySequenceNumber) {
+            ackFrequencySequenceNumber = frame.getSequenceNumber();
+            ackElicitingThreshold = frame.getAckElicitingThreshold();
+            // Use 80% of the requested delay (just like the default), to give some slack for timing issues.
+            ackDelay = (int) Long.max(1, Long.min(frame.getRequestMaxAckDelay() * 4 / 5 / 1000, Integer.MAX_VALUE));
+            reorderingThreshold = frame.getReorderingThreshold();
+        }
+    }
+
+    /**
+     * Registers that the peer requested an immediate acknowledgement (with an IMMEDIATE_ACK frame). Because the
+     * packet containing the request has not been fully processed yet, the ack will be sent when the packet is
+     * registered as received.
+     */
+    public synchronized void immediateAckRequested() {
+        immediateAckRequested = true;
+    }
+
     /**
      * Process a received AckFrame. If the received ack refers to a (sent) packet that contained acks, it confirms
      * those sent acks are received by the peer so they don't have to be sent ever again.
@@ -102,19 +172,33 @@ public class AckGenerator {
      * @param receivedAck
      */
     public synchronized void process(QuicFrame receivedAck) {
-        // Find max packet number that had an ack sent with it...
-        Optional<Long> largestWithAck = ((AckFrame) receivedAck).getAckedPacketNumbers()
-                .filter(pn -> ackSentWithPacket.containsKey(pn))
-                .findFirst();
+        // Find max packet number that had an ack sent with it; as both the packet numbers with acks and the acked ranges
+        // are visited in descending order, this takes at most one pass over each.
+        Map.Entry<Long, AckFrame> largestWithAck = null;
+        AckRangeCursor range = ackRangeCursor.reset((AckFrame) receivedAck);
+        boolean hasRange = range.next();
+        for (Map.Entry<Long, AckFrame> entry: ackSentWithPacket.descendingMap().entrySet()) {
+            long packetNumber = entry.getKey();
+            while (hasRange && range.smallest() > packetNumber) {
+                hasRange = range.next();
+            }
+            if (!hasRange) {
+                break;
+            }
+            if (packetNumber <= range.largest()) {
+                largestWithAck = entry;
+                break;
+            }
+        }
 
-        if (largestWithAck.isPresent()) {
+        if (largestWithAck != null) {
             // ... and for that max pn, all packets that where acked by it don't need to be acked again.
-            AckFrame latestAcknowledgedAck = ackSentWithPacket.get(largestWithAck.get());
+            AckFrame latestAcknowledgedAck = largestWithAck.getValue();
             removeAcknowlegdedRanges(rangesToAcknowledge, latestAcknowledgedAck);
 
             // And for all earlier sent packets (smaller packet numbers), the sent ack's can be discarded because
             // their ranges are a subset of the ones from the latestAcknowledgedAck and thus are now implicitly acked.
-            ackSentWithPacket.keySet().removeIf(key -> key <= largestWithAck.get());
+            ackSentWithPacket.headMap(largestWithAck.getKey(), true).clear();
         }
     }
 
@@ -175,14 +259,14 @@ public class AckGenerator {
     }
 
     public synchronized Optional<AckFrame> generateAck() {
-        int delay = 0;
+        Duration delay = Duration.ZERO;
         // https://tools.ietf.org/html/draft-ietf-quic-transport-34#section-13.2.1
         // "An endpoint MUST acknowledge all ack-eliciting Initial and Handshake packets immediately"
         if (newPacketsToAcknowlegdeSince != null && pnSpace == PnSpace.App) {
-            delay = (int) Duration.between(newPacketsToAcknowlegdeSince, clock.instant()).toMillis();
-            if (delay < 0) {
+            delay = Duration.between(newPacketsToAcknowlegdeSince, clock.instant());
+            if (delay.isNegative()) {
                 // WTF. This should be impossible, but it sometimes happen in the interop tests. Maybe related to docker?
-                delay = 0;
+                delay = Duration.ZERO;
             }
         }
         if (!rangesToAcknowledge.isEmpty()) {
@@ -32,6 +32,7 @@ public class AbstractCongestionController implements CongestionController {
     protected static final int initialWindowSize = 10 * 1200;
 
     protected final Logger log;
+    protected volatile long initialWindow = initialWindowSize;
     protected volatile long bytesInFlight;
     protected volatile long congestionWindow;
     protected final CongestionControlEventListener eventListener;
@@ -99,6 +100,15 @@ public class AbstractCongestionController implements CongestionController {
         }
     }
 
+    /**
+     * Sets the initial congestion window; should be called before any packet is sent.
+     * @param bytes
+     */
+    public synchronized void setInitialWindow(long bytes) {
+        initialWindow = bytes;
+        congestionWindow = bytes;
+    }
+
     public synchronized boolean canSend(int bytes) {
         return bytesInFlight + bytes < congestionWindow;
     }
@@ -0,0 +1,476 @@
+/*
+ * Copyright © 2024 Peter Doornbosch
+ *
+ * This file is part of Kwik, an implementation of the QUIC protocol in Java.
+ *
+ * Kwik is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * Kwik is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.luminis.quic.cc;
+
+import net.luminis.quic.log.Logger;
+import net.luminis.quic.packet.PacketInfo;
+import net.luminis.quic.packet.QuicPacket;
+import net.luminis.quic.recovery.RateSample;
+import net.luminis.quic.recovery.RttEstimator;
+import net.luminis.quic.util.MonotonicClock;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.OptionalLong;
+import java.util.Random;
+
+/**
+ * BBR congestion controller, based on BBRv3 as described by https://datatracker.ietf.org/doc/draft-ietf-ccwg-bbr/.
+ * Instead of reacting to loss, BBR builds a model of the path, consisting of the bottleneck bandwidth (the maximum
+ * recent delivery rate) and the minimum RTT, and paces sending at (a gain times) the bottleneck bandwidth, with a
+ * congestion window of (a gain times) the bandwidth-delay product. Loss is only used to bound the amount of data
+ * in flight (inflight_hi), when the loss rate exceeds a threshold.
+ * Delivery rate samples are provided by a {@link net.luminis.quic.recovery.DeliveryRateSampler}, which must call
+ * {@link #rateSample(RateSample)} before the acknowledged packets are registered with this congestion controller.
+ * Compared to the draft, this implementation omits the short-term lower bounds (bw_lo and inflight_lo), ack aggregation
+ * estimation and idle restart handling, and grows inflight_hi like slow start when probing for bandwidth.
+ */
+public class BbrCongestionController extends AbstractCongestionController implements CongestionController {
+
+    public enum State {
+        Startup,
+        Drain,
+        ProbeBwDown,
+        ProbeBwCruise,
+        ProbeBwRefill,
+        ProbeBwUp,
+        ProbeRtt
+    }
+
+    // Gains as used by BBRv3; the startup pacing gain is 4 * ln(2), the minimum gain that allows doubling the sending
+    // rate each round.
+    static final double STARTUP_PACING_GAIN = 2.77;
+    static final double STARTUP_CWND_GAIN = 2.0;
+    static final double DRAIN_PACING_GAIN = 0.35;
+    static final double PROBE_BW_DOWN_PACING_GAIN = 0.9;
+    static final double PROBE_BW_UP_PACING_GAIN = 1.25;
+    static final double CWND_GAIN = 2.0;
+    static final double PROBE_BW_UP_CWND_GAIN = 2.25;
+    static final double PROBE_RTT_CWND_GAIN = 0.5;
+    // Maximum tolerated loss rate when probing for bandwidth.
+    static final double LOSS_THRESHOLD = 0.02;
+    // Multiplicative decrease of inflight_hi when the loss rate is too high.
+    static final double BETA = 0.7;
+    // Fraction of inflight_hi left free when not probing, to leave room for other flows.
+    static final double HEADROOM = 0.15;
+    // Pace slightly below the estimated bandwidth, to drain queues.
+    static final double PACING_MARGIN = 0.01;
+    static final double FULL_BW_GROWTH = 1.25;
+    static final int FULL_BW_ROUNDS = 3;
+    // Minimum number of loss events in a round before startup is ended because of loss.
+    static final int STARTUP_FULL_LOSS_COUNT = 6;
+    static final Duration MIN_RTT_FILTER_LENGTH = Duration.ofSeconds(10);
+    static final Duration PROBE_RTT_INTERVAL = Duration.ofSeconds(5);
+    static final Duration PROBE_RTT_DURATION = Duration.ofMillis(200);
+    static final Duration MIN_BW_PROBE_WAIT = Duration.ofSeconds(2);
+
+    protected long kMaxDatagramSize = 1200;
+    protected long kMinimumWindow = 4 * 1200;
+
+    private final Clock clock;
+    private final RttEstimator rttEstimator;
+    private final Random random = new Random();
+    private volatile State state = State.Startup;
+    private double pacingGain = STARTUP_PACING_GAIN;
+    private double cwndGain = STARTUP_CWND_GAIN;
+    private volatile long pacingRate;
+    private RateSample pendingSample;
+    private long delivered;
+    // Max filter for the bandwidth over the current and the previous bandwidth probe cycle.
+    private final long[] maxBwFilter = new long[2];
+    private volatile long maxBw;
+    private volatile Duration minRtt;
+    private Instant minRttStamp;
+    private Duration probeRttMinDelay;
+    private Instant probeRttMinStamp;
+    private long nextRoundDelivered;
+    private long roundCount;
+    private boolean roundStart;
+    private boolean filledPipe;
+    private long fullBw;
+    private int fullBwCount;
+    private long inflightHi = Long.MAX_VALUE;
+    private Instant cycleStart;
+    private Duration bwProbeWait;
+    private Instant phaseStart;
+    private long phaseStartRound;
+    private Instant probeRttDoneStamp;
+    private boolean probeRttRoundDone;
+    private long priorCwnd;
+    private double beta = BETA;
+    private int lossEventsInRound;
+    private long lostInRound;
+    private long deliveredAtRoundStart;
+
+    public BbrCongestionController(Logger logger, CongestionControlEventListener eventListener, RttEstimator rttEstimator) {
+        this(MonotonicClock.instance(), logger, eventListener, rttEstimator);
+    }
+
+    public BbrCongestionController(Clock clock, Logger logger, CongestionControlEventListener eventListener, RttEstimator rttEstimator) {
+        super(logger, eventListener);
+        this.clock = clock;
+        this.rttEstimator = rttEstimator;
+        updatePacingRate();
+    }
+
+    /**
+     * Provides the delivery rate sample for the ack that is about to be registered.
+     * @param sample
+     */
+    public synchronized void rateSample(RateSample sample) {
+        pendingSample = sample;
+    }
+
+    @Override
+    public synchronized void registerInFlight(QuicPacket sentPacket) {
+        super.registerInFlight(sentPacket);
+        log.getQLog().emitCongestionControlMetrics(congestionWindow, bytesInFlight);
+    }
+
+    @Override
+    public synchronized void registerAcked(List<? extends PacketInfo> acknowlegdedPackets) {
+        long bytesInFlightBefore = bytesInFlight;
+        super.registerAcked(acknowlegdedPackets);
+        long ackedBytes = bytesInFlightBefore - bytesInFlight;
+
+        RateSample sample = pendingSample;
+        pendingSample = null;
+        if (sample != null) {
+            updateModel(sample, clock.instant());
+            if (state == State.ProbeBwUp && inflightHi != Long.MAX_VALUE && bytesInFlightBefore + kMaxDatagramSize >= inflightHi) {
+                // Probing for bandwidth while limited by inflight_hi: raise the bound.
+                inflightHi += ackedBytes;
+            }
+        }
+        if (ackedBytes > 0) {
+            updateCongestionWindow(ackedBytes);
+        }
+        updatePacingRate();
+        log.getQLog().emitCongestionControlMetrics(congestionWindow, bytesInFlight);
+    }
+
+    @Override
+    public synchronized void registerLost(List<? extends PacketInfo> lostPackets) {
+        // Loss is taken into account via the rate samples (see updateModel)
+        super.registerLost(lostPackets);
+        // https://www.rfc-editor.org/rfc/rfc9000.html#name-sending-quic-pmtu-probes
+        // "Loss of a QUIC packet that is carried in a PMTU probe is therefore not a reliable indication of congestion
+        //  and SHOULD NOT trigger a congestion control reaction"
+        long lostBytes = lostPackets.stream()
+                .filter(p -> !p.packet().isPmtuProbe())
+                .mapToLong(p -> p.packet().getSize())
+                .sum();
+        if (lostBytes > 0) {
+            lossEventsInRound++;
+            lostInRound += lostBytes;
+        }
+        log.getQLog().emitCongestionControlMetrics(congestionWindow, bytesInFlight);
+    }
+
+    @Override
+    public OptionalLong pacingRate() {
+        long rate = pacingRate;
+        return rate > 0? OptionalLong.of(rate): OptionalLong.empty();
+    }
+
+    private void updateModel(RateSample sample, Instant now) {
+        delivered = sample.totalDelivered();
+        roundStart = false;
+        if (sample.priorDelivered() >= nextRoundDelivered) {
+            nextRoundDelivered = delivered;
+            roundCount++;
+            roundStart = true;
+        }
+
+        // App-limited samples may underestimate the bandwidth, so they only count when they raise the estimate.
+        if (sample.deliveryRate() >= maxBw || !sample.isAppLimited()) {
+            maxBwFilter[0] = Long.max(maxBwFilter[0], sample.deliveryRate());
+            maxBw = Long.max(maxBwFilter[0], maxBwFilter[1]);
+        }
+
+        boolean probeRttExpired = probeRttMinStamp != null && now.isAfter(probeRttMinStamp.plus(PROBE_RTT_INTERVAL));
+        if (probeRttMinDelay == null || sample.rtt().compareTo(probeRttMinDelay) < 0 || probeRttExpired) {
+            probeRttMinDelay = sample.rtt();
+            probeRttMinStamp = now;
+        }
+        boolean minRttExpired = minRttStamp != null && now.isAfter(minRttStamp.plus(MIN_RTT_FILTER_LENGTH));
+        if (minRtt == null || probeRttMinDelay.compareTo(minRtt) < 0 || minRttExpired) {
+            minRtt = probeRttMinDelay;
+            minRttStamp = probeRttMinStamp;
+        }
+
+        // Random loss should not affect the model, so only loss that occurs while probing for bandwidth (or, in startup,
+        // persistent loss during a whole round) is taken as a signal that too much data is in flight.
+        boolean inflightTooHigh = false;
+        if (state == State.ProbeBwRefill || state == State.ProbeBwUp) {
+            inflightTooHigh = sample.lost() > 0 && sample.lost() > sample.txInFlight() * LOSS_THRESHOLD && !sample.isAppLimited();
+            if (inflightTooHigh) {
+                inflightHi = Long.max(sample.txInFlight(), (long) (targetInflight(1.0) * beta));
+            }
+        }
+        else if (state == State.Startup && roundStart) {
+            long deliveredInRound = delivered - deliveredAtRoundStart;
+            inflightTooHigh = lossEventsInRound >= STARTUP_FULL_LOSS_COUNT && lostInRound > (deliveredInRound + lostInRound) * LOSS_THRESHOLD;
+            if (inflightTooHigh) {
+                inflightHi = Long.max(targetInflight(1.0), bytesInFlight);
+            }
+        }
+        if (inflightTooHigh) {
+            log.cc("BBR: loss rate too high, inflight_hi set to " + inflightHi);
+        }
+        if (roundStart) {
+            lossEventsInRound = 0;
+            lostInRound = 0;
+            deliveredAtRoundStart = delivered;
+        }
+
+        switch (state) {
+            case Startup:
+                checkFullBandwidthReached(sample, inflightTooHigh);
+                if (filledPipe) {
+                    enterDrain();
+                }
+                break;
+            case Drain:
+                if (bytesInFlight <= targetInflight(1.0)) {
+                    enterProbeBwDown(now);
+                }
+                break;
+            case ProbeBwDown:
+                if (isTimeToProbeBandwidth(now)) {
+                    enterProbeBwRefill(now);
+                }
+                else if (bytesInFlight <= inflightWithHeadroom() && bytesInFlight <= targetInflight(1.0)) {
+                    enterProbeBwCruise();
+                }
+                break;
+            case ProbeBwCruise:
+                if (isTimeToProbeBandwidth(now)) {
+                    enterProbeBwRefill(now);
+                }
+                break;
+            case ProbeBwRefill:
+                // Refill the pipe during one round, before probing for more bandwidth.
+                if (roundStart && roundCount > phaseStartRound) {
+                    enterProbeBwUp(now);
+                }
+                break;
+            case ProbeBwUp:
+                if (inflightTooHigh) {
+                    enterProbeBwDown(now);
+                }
+                else if (Duration.between(phaseStart, now).compareTo(minRtt) > 0 && bytesInFlight > targetInflight(PROBE_BW_UP_PACING_GAIN)) {
+                    enterProbeBwDown(now);
+                }
+                break;
+            case ProbeRtt:
+                break;
+        }
+
+        checkProbeRtt(now, probeRttExpired);
+    }
+
+    private void checkFullBandwidthReached(RateSample sample, boolean inflightTooHigh) {
+        if (roundStart && !sample.isAppLimited()) {
+            if (maxBw >= fullBw * FULL_BW_GROWTH) {
+                fullBw = maxBw;
+                fullBwCount = 0;
+            }
+            else if (++fullBwCount >= FULL_BW_ROUNDS) {
+                filledPipe = true;
+            }
+        }
+        if (inflightTooHigh) {
+            filledPipe = true;
+        }
+    }
+
+    private void checkProbeRtt(Instant now, boolean probeRttExpired) {
+        if (state != State.ProbeRtt && probeRttExpired) {
+            // Drain the queue to measure the minimum RTT again.
+            priorCwnd = congestionWindow;
+            setState(State.ProbeRtt, 1.0, PROBE_RTT_CWND_GAIN);
+            probeRttDoneStamp = null;
+        }
+        if (state == State.ProbeRtt) {
+            if (probeRttDoneStamp == null) {
+                if (bytesInFlight <= probeRttCwnd()) {
+                    probeRttDoneStamp = now.plus(PROBE_RTT_DURATION);
+                    probeRttRoundDone = false;
+                    nextRoundDelivered = delivered;
+                }
+            }
+            else {
+                if (roundStart) {
+                    probeRttRoundDone = true;
+                }
+                if (probeRttRoundDone && !now.isBefore(probeRttDoneStamp)) {
+                    probeRttMinStamp = now;
+                    congestionWindow = Long.max(congestionWindow, priorCwnd);
+                    if (filledPipe) {
+                        enterProbeBwDown(now);
+                        enterProbeBwCruise();
+                    }
+                    else {
+                        setState(State.Startup, STARTUP_PACING_GAIN, STARTUP_CWND_GAIN);
+                    }
+                }
+            }
+        }
+    }
+
+    private boolean isTimeToProbeBandwidth(Instant now) {
+        return Duration.between(cycleStart, now).compareTo(bwProbeWait) > 0;
+    }
+
+    private void enterDrain() {
+        setState(State.Drain, DRAIN_PACING_GAIN, STARTUP_CWND_GAIN);
+    }
+
+    private void enterProbeBwDown(Instant now) {
+        // A new bandwidth probe cycle starts, so the oldest bandwidth estimate expires.
+        maxBwFilter[1] = maxBwFilter[0];
+        maxBwFilter[0] = 0;
+        maxBw = maxBwFilter[1];
+        cycleStart = now;
+        // Randomize the time between probes, so flows sharing a bottleneck do not synchronize.
+        bwProbeWait = MIN_BW_PROBE_WAIT.plusMillis(random.nextInt(1000));
+        setState(State.ProbeBwDown, PROBE_BW_DOWN_PACING_GAIN, CWND_GAIN);
+    }
+
+    private void enterProbeBwCruise() {
+        setState(State.ProbeBwCruise, 1.0, CWND_GAIN);
+    }
+
+    private void enterProbeBwRefill(Instant now) {
+        phaseStartRound = roundCount;
+        phaseStart = now;
+        setState(State.ProbeBwRefill, 1.0, CWND_GAIN);
+    }
+
+    private void enterProbeBwUp(Instant now) {
+        phaseStart = now;
+        setState(State.ProbeBwUp, PROBE_BW_UP_PACING_GAIN, PROBE_BW_UP_CWND_GAIN);
+    }
+
+    private void setState(State newState, double newPacingGain, double newCwndGain) {
+        if (state != newState) {
+            log.cc("BBR: " + state + " -> " + newState + " (bw=" + maxBw + " B/s, min rtt=" + minRtt + ")");
+        }
+        state = newState;
+        pacingGain = newPacingGain;
+        cwndGain = newCwndGain;
+    }
+
+    private void updateCongestionWindow(long ackedBytes) {
+        long target = targetInflight(cwndGain);
+        if (filledPipe) {
+            congestionWindow = Long.min(congestionWindow + ackedBytes, target);
+        }
+        else if (congestionWindow < target || delivered < initialWindow) {
+            congestionWindow += ackedBytes;
+        }
+        congestionWindow = Long.max(congestionWindow, minPipeCwnd());
+
+        if (state == State.ProbeRtt) {
+            congestionWindow = Long.min(congestionWindow, probeRttCwnd());
+        }
+        if (inflightHi != Long.MAX_VALUE) {
+            long bound = (state == State.ProbeBwDown || state == State.ProbeBwCruise)? inflightWithHeadroom(): inflightHi;
+            congestionWindow = Long.min(congestionWindow, Long.max(bound, minPipeCwnd()));
+        }
+    }
+
+    private void updatePacingRate() {
+        long bw = maxBw;
+        long rate;
+        if (bw > 0) {
+            rate = (long) (pacingGain * bw * (1 - PACING_MARGIN));
+        }
+        else {
+            // No bandwidth estimate yet: derive it from the initial window and the RTT.
+            rate = (long) (pacingGain * initialWindow * 1_000_000 / Long.max(rttEstimator.getSmoothedRttMicros(), 1));
+        }
+        // Until the pipe is filled, only increase the rate, to not let an early (low) estimate slow down startup.
+        if (filledPipe || rate > pacingRate) {
+            pacingRate = rate;
+        }
+    }
+
+    /**
+     * Returns the amount of data in flight that corresponds with the given gain times the estimated bandwidth-delay
+     * product, plus some extra to allow for the fact that packets are sent in bursts.
+     */
+    private long targetInflight(double gain) {
+        Duration rtt = minRtt;
+        if (rtt == null || maxBw == 0) {
+            return initialWindow;
+        }
+        long bdp = (long) (maxBw * (rtt.toNanos() / 1e9));
+        return (long) (gain * bdp) + 3 * kMaxDatagramSize;
+    }
+
+    private long inflightWithHeadroom() {
+        if (inflightHi == Long.MAX_VALUE) {
+            return Long.MAX_VALUE;
+        }
+        long headroom = Long.max(kMaxDatagramSize, (long) (HEADROOM * inflightHi));
+        return Long.max(inflightHi - headroom, minPipeCwnd());
+    }
+
+    private long probeRttCwnd() {
+        return Long.max(targetInflight(PROBE_RTT_CWND_GAIN), minPipeCwnd());
+    }
+
+    private long minPipeCwnd() {
+        return kMinimumWindow;
+    }
+
+    public void setMinimumWindow(long bytes) {
+        kMinimumWindow = bytes;
+    }
+
+    /**
+     * Sets the factor inflight_hi is multiplied with when the loss rate is too high while probing for bandwidth.
+     * @param factor
+     */
+    public void setLossReductionFactor(double factor) {
+        beta = factor;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    /**
+     * @return  the estimated bottleneck bandwidth in bytes per second, or 0 if not yet estimated
+     */
+    public long getBottleneckBandwidth() {
+        return maxBw;
+    }
+
+    /**
+     * @return  the estimated minimum RTT, or null if not yet estimated
+     */
+    public Duration getMinRtt() {
+        return minRtt;
+    }
+}
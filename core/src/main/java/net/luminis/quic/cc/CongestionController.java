@@ -22,6 +22,7 @@ import net.luminis.quic.packet.PacketInfo;
 import net.luminis.quic.packet.QuicPacket;
 
 import java.util.List;
+import java.util.OptionalLong;
 
 public interface CongestionController {
 
@@ -42,4 +43,13 @@ public interface CongestionController {
     void discard(List<? extends PacketInfo> packetStatusStream);
 
     long remainingCwnd();
+
+    /**
+     * Returns the rate (in bytes per second) at which sending should be paced, for congestion controllers that
+     * determine the pacing rate themselves. When empty, the pacing rate is derived from the congestion window and RTT.
+     * @return
+     */
+    default OptionalLong pacingRate() {
+        return OptionalLong.empty();
+    }
 }
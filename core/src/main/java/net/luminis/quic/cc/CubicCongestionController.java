@@ -0,0 +1,271 @@
+/*
+ * Copyright © 2024 Peter Doornbosch
+ *
+ * This file is part of Kwik, an implementation of the QUIC protocol in Java.
+ *
+ * Kwik is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * Kwik is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.luminis.quic.cc;
+
+import net.luminis.quic.log.Logger;
+import net.luminis.quic.packet.PacketInfo;
+import net.luminis.quic.packet.QuicPacket;
+import net.luminis.quic.recovery.RttEstimator;
+import net.luminis.quic.util.MonotonicClock;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * CUBIC congestion controller, see https://www.rfc-editor.org/rfc/rfc9438.html.
+ * Slow start and the detection of congestion events (including recovery periods) are the same as with NewReno, but
+ * in congestion avoidance, the window grows as a cubic function of the time elapsed since the congestion event:
+ * concave (fast at first, slowing down) until the window size at which the loss occurred is reached again, and convex
+ * (slow at first, speeding up) when probing for more bandwidth beyond that.
+ * All window computations of the cubic function are done in segments (of kMaxDatagramSize bytes), like the RFC does.
+ */
+public class CubicCongestionController extends AbstractCongestionController implements CongestionController {
+
+    // https://www.rfc-editor.org/rfc/rfc9438.html#name-constants-of-interest
+    // Determines the aggressiveness of the window growth; the RFC recommends 0.4.
+    static final double C = 0.4;
+    // https://www.rfc-editor.org/rfc/rfc9438.html#name-multiplicative-decrease
+    // Multiplicative decrease factor; the RFC recommends 0.7 (where NewReno uses 0.5).
+    static final double BETA_CUBIC = 0.7;
+    // https://www.rfc-editor.org/rfc/rfc9438.html#name-reno-friendly-region
+    // "α_cubic = 3 * (1 - β_cubic) / (1 + β_cubic)"
+    static final double ALPHA_CUBIC = 3 * (1 - BETA_CUBIC) / (1 + BETA_CUBIC);
+
+    protected long kMinimumWindow = 2 * 1200;
+    protected long kMaxDatagramSize = 1200;
+
+    private final Clock clock;
+    private final RttEstimator rttEstimator;
+    private volatile boolean fastConvergence = true;
+    private double beta = BETA_CUBIC;
+    private double alpha = ALPHA_CUBIC;
+    private HyStart hyStart;
+    private long slowStartThreshold = Long.MAX_VALUE;
+    private Instant congestionRecoveryStartTime;
+    // Window size (in segments) just before the last reduction.
+    private double wMax;
+    // Start of the current congestion avoidance stage, null if it has not yet started.
+    private Instant epochStart;
+    // Time period (in seconds) the cubic function takes to grow from the window at the start of the epoch to wMax.
+    private double k;
+    // Estimate of the window (in segments) Reno would have, used to stay Reno-friendly.
+    private double wEst;
+    // Fraction of a byte the window should have grown, but that could not be added to the (long) congestion window.
+    private double pendingIncrease;
+
+    public CubicCongestionController(Logger logger, CongestionControlEventListener eventListener, RttEstimator rttEstimator) {
+        this(MonotonicClock.instance(), logger, eventListener, rttEstimator);
+    }
+
+    public CubicCongestionController(Clock clock, Logger logger, CongestionControlEventListener eventListener, RttEstimator rttEstimator) {
+        super(logger, eventListener);
+        this.clock = clock;
+        this.rttEstimator = rttEstimator;
+        congestionRecoveryStartTime = Instant.MIN;
+    }
+
+    @Override
+    public synchronized void registerInFlight(QuicPacket sentPacket) {
+        super.registerInFlight(sentPacket);
+        if (hyStart != null) {
+            hyStart.packetSent();
+        }
+        log.getQLog().emitCongestionControlMetrics(congestionWindow, bytesInFlight);
+    }
+
+    @Override
+    public synchronized void registerAcked(List<? extends PacketInfo> acknowlegdedPackets) {
+        int epsilon = 3;
+        boolean cwndLimited = congestionWindow - bytesInFlight <= epsilon;
+
+        long bytesInFlightBefore = this.bytesInFlight;
+        super.registerAcked(acknowlegdedPackets);
+        if (hyStart != null && congestionWindow < slowStartThreshold) {
+            hyStart.ackReceived(acknowlegdedPackets);
+        }
+
+        // Like NewReno, do not increase the congestion window when it is not fully utilized.
+        if (cwndLimited) {
+            long previousCwnd = congestionWindow;
+            Instant now = clock.instant();
+            acknowlegdedPackets.stream()
+                    .filter(ackedPacket -> ackedPacket.timeSent().isAfter(congestionRecoveryStartTime))
+                    .forEach(ackedPacket -> {
+                        if (congestionWindow < slowStartThreshold) {
+                            int size = ackedPacket.packet().getSize();
+                            congestionWindow += hyStart != null? hyStart.windowIncrease(size): size;
+                        }
+                        else {
+                            congestionAvoidance(ackedPacket.packet().getSize(), now);
+                        }
+                    });
+            if (congestionWindow != previousCwnd) {
+                log.cc("Cwnd(+): " + congestionWindow + " (" + getMode() + "); inflight: " + bytesInFlightBefore);
+            }
+        }
+        if (hyStart != null && hyStart.slowStartEnded() && congestionWindow < slowStartThreshold) {
+            slowStartThreshold = congestionWindow;
+            log.cc("HyStart++: slow start ended at cwnd " + congestionWindow);
+        }
+        log.getQLog().emitCongestionControlMetrics(congestionWindow, this.bytesInFlight);
+    }
+
+    @Override
+    public synchronized void registerLost(List<? extends PacketInfo> lostPackets) {
+        super.registerLost(lostPackets);
+
+        // https://www.rfc-editor.org/rfc/rfc9000.html#name-sending-quic-pmtu-probes
+        // "Loss of a QUIC packet that is carried in a PMTU probe is therefore not a reliable indication of congestion
+        //  and SHOULD NOT trigger a congestion control reaction"
+        lostPackets.stream()
+                .filter(p -> !p.packet().isPmtuProbe())
+                .max((p1, p2) -> p1.packet().getPacketNumber().compareTo(p2.packet().getPacketNumber()))
+                .ifPresent(largest -> fireCongestionEvent(largest.timeSent()));
+        log.getQLog().emitCongestionControlMetrics(congestionWindow, bytesInFlight);
+    }
+
+    private void congestionAvoidance(int ackedBytes, Instant now) {
+        double cwnd = (double) congestionWindow / kMaxDatagramSize;
+        if (epochStart == null) {
+            startEpoch(now, cwnd);
+        }
+        double ackedSegments = (double) ackedBytes / kMaxDatagramSize;
+        double t = Duration.between(epochStart, now).toNanos() / 1e9;
+        double rtt = rttEstimator.getSmoothedRttMicros() / 1e6;
+
+        // https://www.rfc-editor.org/rfc/rfc9438.html#name-reno-friendly-region
+        // "W_est = W_est + α_cubic * segments_acked / cwnd"
+        // Once W_est has reached the window size before the last reduction, it grows with the same rate as Reno.
+        wEst += (wEst >= wMax? 1: alpha) * ackedSegments / cwnd;
+
+        double newCwnd;
+        if (wCubic(t) < wEst) {
+            // Reno-friendly region
+            newCwnd = wEst;
+        }
+        else {
+            // Concave or convex region: grow towards the value the cubic function will have after one RTT, but never
+            // more than 50% per RTT.
+            double target = Double.min(Double.max(wCubic(t + rtt), cwnd), 1.5 * cwnd);
+            newCwnd = cwnd + (target - cwnd) / cwnd * ackedSegments;
+        }
+        increaseWindow((newCwnd - cwnd) * kMaxDatagramSize);
+    }
+
+    private void startEpoch(Instant now, double cwnd) {
+        epochStart = now;
+        wEst = cwnd;
+        if (wMax > cwnd) {
+            // https://www.rfc-editor.org/rfc/rfc9438.html#name-window-increase-function
+            // "K = cubic_root((W_max - cwnd_epoch) / C)"
+            k = Math.cbrt((wMax - cwnd) / C);
+        }
+        else {
+            // No reduction has taken place (or the window has already grown beyond wMax), so probe for more bandwidth
+            // right away.
+            k = 0;
+            wMax = cwnd;
+        }
+    }
+
+    private double wCubic(double t) {
+        // https://www.rfc-editor.org/rfc/rfc9438.html#name-window-increase-function
+        // "W_cubic(t) = C * (t - K)^3 + W_max"
+        return C * Math.pow(t - k, 3) + wMax;
+    }
+
+    private void increaseWindow(double bytes) {
+        if (bytes > 0) {
+            pendingIncrease += bytes;
+            long wholeBytes = (long) pendingIncrease;
+            congestionWindow += wholeBytes;
+            pendingIncrease -= wholeBytes;
+        }
+    }
+
+    private void fireCongestionEvent(Instant timeSent) {
+        if (timeSent.isAfter(congestionRecoveryStartTime)) {
+            congestionRecoveryStartTime = clock.instant();
+            double cwnd = (double) congestionWindow / kMaxDatagramSize;
+            // https://www.rfc-editor.org/rfc/rfc9438.html#name-fast-convergence
+            // When the window did not reach W_max before this congestion event, another flow is probably taking a
+            // larger share of the bandwidth; with fast convergence, W_max is reduced further to release bandwidth.
+            if (fastConvergence && cwnd < wMax) {
+                wMax = cwnd * (1 + beta) / 2;
+            }
+            else {
+                wMax = cwnd;
+            }
+            congestionWindow = Long.max((long) (congestionWindow * beta), kMinimumWindow);
+            slowStartThreshold = congestionWindow;
+            epochStart = null;
+            pendingIncrease = 0;
+            if (hyStart != null) {
+                hyStart.congestionEvent();
+            }
+            log.cc("Cwnd(-): " + congestionWindow + "; inflight: " + bytesInFlight);
+        }
+    }
+
+    public void setFastConvergence(boolean enabled) {
+        fastConvergence = enabled;
+    }
+
+    /**
+     * Enables or disables HyStart++ (RFC 9406), which ends slow start when the RTT increases, before packets are lost.
+     * @param enabled
+     */
+    public synchronized void setHyStart(boolean enabled) {
+        hyStart = enabled? new HyStart(clock): null;
+    }
+
+    public void setMinimumWindow(long bytes) {
+        kMinimumWindow = bytes;
+    }
+
+    /**
+     * Sets the multiplicative decrease factor (β_cubic); the additive increase factor of the Reno-friendly region is
+     * derived from it.
+     * @param factor
+     */
+    public synchronized void setLossReductionFactor(double factor) {
+        beta = factor;
+        // https://www.rfc-editor.org/rfc/rfc9438.html#name-reno-friendly-region
+        // "α_cubic = 3 * (1 - β_cubic) / (1 + β_cubic)"
+        alpha = 3 * (1 - beta) / (1 + beta);
+    }
+
+    /**
+     * @return  the window size (in bytes) the cubic function is heading for, i.e. W_max.
+     */
+    synchronized long getMaxWindow() {
+        return (long) (wMax * kMaxDatagramSize);
+    }
+
+    public NewRenoCongestionController.Mode getMode() {
+        if (congestionWindow < slowStartThreshold) {
+            return NewRenoCongestionController.Mode.SlowStart;
+        }
+        else {
+            return NewRenoCongestionController.Mode.CongestionAvoidance;
+        }
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright © 2024 Peter Doornbosch
+ *
+ * This file is part of Kwik, an implementation of the QUIC protocol in Java.
+ *
+ * Kwik is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * Kwik is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.luminis.quic.cc;
+
+import net.luminis.quic.packet.PacketInfo;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * HyStart++, see https://www.rfc-editor.org/rfc/rfc9406.html.
+ * Detects an increase of the RTT during slow start, which indicates that a queue is building up at the bottleneck, and
+ * then switches to conservative slow start (CSS), in which the window grows at a quarter of the slow start rate. When
+ * the RTT increase persists for a number of rounds, slow start ends; when the RTT drops again, the increase was a false
+ * positive and slow start resumes. This prevents the large loss bursts that occur when slow start overshoots the
+ * available bandwidth.
+ * Rounds are tracked by the time packets are sent instead of by packet number, so packets of all packet number spaces
+ * can be taken into account. As kwik paces its packets, the growth of the window per ack is not limited (L = infinity).
+ */
+class HyStart {
+
+    // https://www.rfc-editor.org/rfc/rfc9406.html#name-tuning-constants-and-other-
+    static final Duration MIN_RTT_THRESH = Duration.ofMillis(4);
+    static final Duration MAX_RTT_THRESH = Duration.ofMillis(16);
+    static final int MIN_RTT_DIVISOR = 8;
+    static final int N_RTT_SAMPLE = 8;
+    static final int CSS_GROWTH_DIVISOR = 4;
+    static final int CSS_ROUNDS = 5;
+
+    enum Phase {
+        SlowStart,
+        ConservativeSlowStart,
+        Done
+    }
+
+    private final Clock clock;
+    private Phase phase = Phase.SlowStart;
+    private Instant lastSent;
+    // Time the last packet before the current round started was sent; the round ends when a packet sent after this
+    // time is acked.
+    private Instant windowEnd;
+    private Duration lastRoundMinRtt;
+    private Duration currentRoundMinRtt;
+    private int rttSampleCount;
+    private Duration cssBaselineMinRtt;
+    private int cssRounds;
+
+    HyStart(Clock clock) {
+        this.clock = clock;
+    }
+
+    void packetSent() {
+        lastSent = clock.instant();
+    }
+
+    /**
+     * Processes an ack received in slow start: tracks rounds and RTT samples and determines the phase.
+     * @param ackedPackets
+     */
+    void ackReceived(List<? extends PacketInfo> ackedPackets) {
+        if (phase == Phase.Done || ackedPackets.isEmpty()) {
+            return;
+        }
+        Instant now = clock.instant();
+        Instant newestSent = ackedPackets.stream().map(PacketInfo::timeSent).max(Instant::compareTo).get();
+        if (windowEnd == null || newestSent.isAfter(windowEnd)) {
+            startRound(now);
+        }
+
+        Duration rtt = Duration.between(newestSent, now);
+        if (currentRoundMinRtt == null || rtt.compareTo(currentRoundMinRtt) < 0) {
+            currentRoundMinRtt = rtt;
+        }
+        rttSampleCount++;
+
+        if (rttSampleCount >= N_RTT_SAMPLE && lastRoundMinRtt != null) {
+            if (phase == Phase.SlowStart) {
+                // https://www.rfc-editor.org/rfc/rfc9406.html#name-algorithm-details
+                // "RttThresh = max(MIN_RTT_THRESH, min(lastRoundMinRTT / MIN_RTT_DIVISOR, MAX_RTT_THRESH))"
+                Duration rttThresh = max(MIN_RTT_THRESH, min(lastRoundMinRtt.dividedBy(MIN_RTT_DIVISOR), MAX_RTT_THRESH));
+                if (currentRoundMinRtt.compareTo(lastRoundMinRtt.plus(rttThresh)) >= 0) {
+                    cssBaselineMinRtt = currentRoundMinRtt;
+                    cssRounds = 0;
+                    phase = Phase.ConservativeSlowStart;
+                }
+            }
+            else if (currentRoundMinRtt.compareTo(cssBaselineMinRtt) < 0) {
+                // The RTT increase was a false positive, so resume slow start.
+                cssBaselineMinRtt = null;
+                phase = Phase.SlowStart;
+            }
+        }
+    }
+
+    /**
+     * Returns the number of bytes the congestion window should grow with for the given number of bytes acked.
+     * @param ackedBytes
+     * @return
+     */
+    long windowIncrease(long ackedBytes) {
+        return phase == Phase.ConservativeSlowStart? ackedBytes / CSS_GROWTH_DIVISOR: ackedBytes;
+    }
+
+    /**
+     * @return  whether slow start should end, because the RTT increase persisted during conservative slow start.
+     */
+    boolean slowStartEnded() {
+        return phase == Phase.Done;
+    }
+
+    /**
+     * Ends slow start because of a congestion event (a lost packet).
+     */
+    void congestionEvent() {
+        phase = Phase.Done;
+    }
+
+    Phase getPhase() {
+        return phase;
+    }
+
+    private void startRound(Instant now) {
+        windowEnd = lastSent != null? lastSent: now;
+        if (currentRoundMinRtt != null) {
+            lastRoundMinRtt = currentRoundMinRtt;
+        }
+        currentRoundMinRtt = null;
+        rttSampleCount = 0;
+        if (phase == Phase.ConservativeSlowStart && ++cssRounds >= CSS_ROUNDS) {
+            phase = Phase.Done;
+        }
+    }
+
+    private static Duration max(Duration a, Duration b) {
+        return a.compareTo(b) >= 0? a: b;
+    }
+
+    private static Duration min(Duration a, Duration b) {
+        return a.compareTo(b) <= 0? a: b;
+    }
+}
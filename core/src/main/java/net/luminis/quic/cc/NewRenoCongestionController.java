@@ -21,7 +21,9 @@ package net.luminis.quic.cc;
 import net.luminis.quic.log.Logger;
 import net.luminis.quic.packet.PacketInfo;
 import net.luminis.quic.packet.QuicPacket;
+import net.luminis.quic.util.MonotonicClock;
 
+import java.time.Clock;
 import java.time.Instant;
 import java.util.List;
 import java.util.stream.Stream;
@@ -37,25 +39,35 @@ public class NewRenoCongestionController extends AbstractCongestionController im
 
     // https://tools.ietf.org/html/draft-ietf-quic-recovery-23#appendix-B.1
     // "Reduction in congestion window when a new loss event is detected.  The RECOMMENDED value is 0.5."
-    protected int kLossReductionFactor = 2;
+    protected double kLossReductionFactor = 0.5;
 
     // https://tools.ietf.org/html/draft-ietf-quic-recovery-23#appendix-B.1
     // "Minimum congestion window in bytes.  The RECOMMENDED value is 2 * kMaxDatagramSize."
-    protected int kMinimumWindow = 2 * 1200;
+    protected long kMinimumWindow = 2 * 1200;
 
     protected long kMaxDatagramSize = 1200;           // TODO: 1200 is the minimum, actual value can be larger
 
+    private final Clock clock;
     private long slowStartThreshold = Long.MAX_VALUE;
     private Instant congestionRecoveryStartTime;
+    private HyStart hyStart;
 
     public NewRenoCongestionController(Logger logger, CongestionControlEventListener eventListener) {
+        this(MonotonicClock.instance(), logger, eventListener);
+    }
+
+    public NewRenoCongestionController(Clock clock, Logger logger, CongestionControlEventListener eventListener) {
         super(logger, eventListener);
+        this.clock = clock;
         congestionRecoveryStartTime = Instant.MIN;
     }
 
     @Override
     public synchronized void registerInFlight(QuicPacket sentPacket) {
         super.registerInFlight(sentPacket);
+        if (hyStart != null) {
+            hyStart.packetSent();
+        }
         log.getQLog().emitCongestionControlMetrics(congestionWindow, bytesInFlight);
     }
 
@@ -66,6 +78,9 @@ public class NewRenoCongestionController extends AbstractCongestionController im
 
         long bytesInFlightBefore = this.bytesInFlight;
         super.registerAcked(acknowlegdedPackets);
+        if (hyStart != null && getMode() == Mode.SlowStart) {
+            hyStart.ackReceived(acknowlegdedPackets);
+        }
 
         // https://tools.ietf.org/html/draft-ietf-quic-recovery-23#section-6.4
         // "QUIC defines the end of recovery as a packet sent after the start of recovery being acknowledged"
@@ -81,7 +96,7 @@ public class NewRenoCongestionController extends AbstractCongestionController im
             notBeforeRecovery.forEach(p -> {
                 if (congestionWindow < slowStartThreshold) {
                     // i.e. mode is slow start
-                    congestionWindow += p.getSize();
+                    congestionWindow += hyStart != null? hyStart.windowIncrease(p.getSize()): p.getSize();
                 } else {
                     // i.e. mode is congestion avoidance
                     congestionWindow += kMaxDatagramSize * p.getSize() / congestionWindow;
@@ -91,6 +106,10 @@ public class NewRenoCongestionController extends AbstractCongestionController im
                 log.cc("Cwnd(+): " + congestionWindow + " (" + getMode() + "); inflight: " + bytesInFlightBefore);
             }
         }
+        if (hyStart != null && hyStart.slowStartEnded() && getMode() == Mode.SlowStart) {
+            slowStartThreshold = congestionWindow;
+            log.cc("HyStart++: slow start ended at cwnd " + congestionWindow);
+        }
 //        log.cc("CC status: bytes in flight:" + bytesInFlight + " cwnd:" + congestionWindow
 //                + "; diff:" + (congestionWindow - bytesInFlight)
 //                + " (" + ((congestionWindow - bytesInFlight) / (congestionWindow / 100)) + "%). Cwnd limited? "+ cwndLimited);
@@ -101,25 +120,47 @@ public class NewRenoCongestionController extends AbstractCongestionController im
     public void registerLost(List<? extends PacketInfo> lostPackets) {
         super.registerLost(lostPackets);
 
-        if (! lostPackets.isEmpty()) {
-            PacketInfo largest = lostPackets.stream().max((p1, p2) -> p1.packet().getPacketNumber().compareTo(p2.packet().getPacketNumber())).get();
-            fireCongestionEvent(largest.timeSent());
-        }
+        // https://www.rfc-editor.org/rfc/rfc9000.html#name-sending-quic-pmtu-probes
+        // "Loss of a QUIC packet that is carried in a PMTU probe is therefore not a reliable indication of congestion
+        //  and SHOULD NOT trigger a congestion control reaction"
+        lostPackets.stream()
+                .filter(p -> !p.packet().isPmtuProbe())
+                .max((p1, p2) -> p1.packet().getPacketNumber().compareTo(p2.packet().getPacketNumber()))
+                .ifPresent(largest -> fireCongestionEvent(largest.timeSent()));
         log.getQLog().emitCongestionControlMetrics(congestionWindow, bytesInFlight);
     }
 
     private void fireCongestionEvent(Instant timeSent) {
         if (timeSent.isAfter(congestionRecoveryStartTime)) {
-            congestionRecoveryStartTime = Instant.now();
-            congestionWindow /= kLossReductionFactor;
+            congestionRecoveryStartTime = clock.instant();
+            congestionWindow = (long) (congestionWindow * kLossReductionFactor);
             if (congestionWindow < kMinimumWindow) {
                 congestionWindow = kMinimumWindow;
             }
             log.cc("Cwnd(-): " + congestionWindow + "; inflight: " + bytesInFlight);
             slowStartThreshold = congestionWindow;
+            if (hyStart != null) {
+                hyStart.congestionEvent();
+            }
         }
     }
 
+    /**
+     * Enables or disables HyStart++ (RFC 9406), which ends slow start when the RTT increases, before packets are lost.
+     * @param enabled
+     */
+    public synchronized void setHyStart(boolean enabled) {
+        hyStart = enabled? new HyStart(clock): null;
+    }
+
+    public void setMinimumWindow(long bytes) {
+        kMinimumWindow = bytes;
+    }
+
+    public void setLossReductionFactor(double factor) {
+        kLossReductionFactor = factor;
+    }
+
     public Mode getMode() {
         if (congestionWindow < slowStartThreshold) {
             return Mode.SlowStart;
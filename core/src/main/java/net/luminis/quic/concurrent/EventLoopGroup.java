@@ -0,0 +1,65 @@
+/*
+ * Copyright © 2024 Peter Doornbosch
+ *
+ * This file is part of Kwik, an implementation of the QUIC protocol in Java.
+ *
+ * Kwik is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * Kwik is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.luminis.quic.concurrent;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Fixed size group of event loops. An event loop is a single threaded executor that runs all tasks (processing
+ * received datagrams, assembling and sending packets, timers) of the connections that are assigned to it; each event
+ * loop is a {@link TimingWheel}, so timers are cheap to schedule and cancel. As each
+ * connection is pinned to one loop, all its tasks execute on the same thread, and the number of threads does not
+ * depend on the number of connections.
+ * Note that as a consequence, tasks executed on an event loop should never block.
+ */
+public class EventLoopGroup {
+
+    private final TimingWheel[] eventLoops;
+    private final AtomicInteger nextLoop = new AtomicInteger();
+
+    public EventLoopGroup(int size) {
+        if (size < 1) {
+            throw new IllegalArgumentException("number of event loops must be at least 1");
+        }
+        DaemonThreadFactory threadFactory = new DaemonThreadFactory("event-loop");
+        eventLoops = new TimingWheel[size];
+        for (int i = 0; i < size; i++) {
+            eventLoops[i] = new TimingWheel(threadFactory);
+        }
+    }
+
+    /**
+     * Returns the event loop to assign a new connection to; loops are assigned round-robin.
+     * @return
+     */
+    public ScheduledExecutorService next() {
+        return eventLoops[Math.floorMod(nextLoop.getAndIncrement(), eventLoops.length)];
+    }
+
+    public int size() {
+        return eventLoops.length;
+    }
+
+    public void shutdown() {
+        for (TimingWheel eventLoop : eventLoops) {
+            eventLoop.shutdown();
+        }
+    }
+}
@@ -0,0 +1,236 @@
+/*
+ * Copyright © 2024 Peter Doornbosch
+ *
+ * This file is part of Kwik, an implementation of the QUIC protocol in Java.
+ *
+ * Kwik is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * Kwik is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.luminis.quic.concurrent;
+
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Bounded, lock-free queue for handing off elements from multiple producer threads to one consumer thread. All slots
+ * are allocated when the buffer is created, so (as opposed to a linked queue) adding an element does not allocate and
+ * never takes a lock. Each slot has a sequence number that tells whether the slot is free for the producer that
+ * claimed the position, or holds an element for the consumer at that position (see Dmitry Vyukov's bounded queue);
+ * producers claim positions with a CAS on the tail counter, the consumer owns the head.
+ * When the buffer is full, elements are not added (see {@link #offer(Object)}); it is up to the producer to decide
+ * what to do with the element.
+ * How the consumer waits for elements is determined by the {@link WaitStrategy}. A parked consumer is unparked by the
+ * producer that adds the next element.
+ * Note that only one thread at a time may call the consumer methods (<code>poll</code>, <code>take</code>).
+ * Closing the buffer wakes up a waiting consumer without interrupting it, which matters for consumers that also do
+ * I/O on an interruptible channel (interrupting such a thread closes the channel).
+ * @param <E>
+ */
+public class MpscRingBuffer<E> {
+
+    static final int SPIN_TRIES = 1000;
+
+    private final Object[] elements;
+    private final AtomicLongArray sequences;
+    private final int mask;
+    private final WaitStrategy waitStrategy;
+    private final AtomicLong tail = new AtomicLong();
+    // Only written by the consumer; volatile for size().
+    private volatile long head;
+    private volatile Thread waitingConsumer;
+    private volatile boolean closed;
+
+    /**
+     * @param capacity  maximum number of elements, will be rounded up to a power of two
+     * @param waitStrategy
+     */
+    public MpscRingBuffer(int capacity, WaitStrategy waitStrategy) {
+        if (capacity <= 0 || capacity > (1 << 30)) {
+            throw new IllegalArgumentException();
+        }
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size *= 2;
+        }
+        elements = new Object[size];
+        sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+        mask = size - 1;
+        this.waitStrategy = Objects.requireNonNull(waitStrategy);
+    }
+
+    /**
+     * Adds the element to the buffer, if there is room for it. Can be called by any thread.
+     * @param element
+     * @return  true if the element was added, false if the buffer is full
+     */
+    public boolean offer(E element) {
+        Objects.requireNonNull(element);
+        long position = tail.get();
+        while (true) {
+            int index = (int) position & mask;
+            long difference = sequences.get(index) - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    elements[index] = element;
+                    // Volatile write publishes the element to the consumer.
+                    sequences.set(index, position + 1);
+                    break;
+                }
+                position = tail.get();
+            }
+            else if (difference < 0) {
+                // Slot still holds the element of the previous round, so the buffer is full.
+                return false;
+            }
+            else {
+                // Another producer claimed this position
+                position = tail.get();
+            }
+        }
+
+        // Read after publishing (both volatile), so either the producer sees the waiting consumer, or the consumer sees the element.
+        Thread consumer = waitingConsumer;
+        if (consumer != null) {
+            LockSupport.unpark(consumer);
+        }
+        return true;
+    }
+
+    /**
+     * Retrieves and removes the next element, if available. Must only be called by the consumer thread.
+     * @return  the element, or null if the buffer is empty
+     */
+    @SuppressWarnings("unchecked")
+    public E poll() {
+        long position = head;
+        int index = (int) position & mask;
+        if (sequences.get(index) != position + 1) {
+            return null;
+        }
+        E element = (E) elements[index];
+        elements[index] = null;
+        // Free the slot for the producer of the next round.
+        sequences.set(index, position + mask + 1);
+        head = position + 1;
+        return element;
+    }
+
+    /**
+     * Retrieves and removes the next element, waiting (according to the wait strategy) until one is available or the
+     * buffer is closed. Must only be called by the consumer thread.
+     * @return  the element, or null if the buffer is closed and empty
+     * @throws InterruptedException
+     */
+    public E take() throws InterruptedException {
+        return waitFor(false, 0);
+    }
+
+    /**
+     * Retrieves and removes the next element, waiting (according to the wait strategy) at most the given time for one
+     * to become available. Must only be called by the consumer thread.
+     * @param timeout
+     * @param unit
+     * @return  the element, or null if none became available within the given time or the buffer is closed and empty
+     * @throws InterruptedException
+     */
+    public E poll(long timeout, TimeUnit unit) throws InterruptedException {
+        return waitFor(true, unit.toNanos(timeout));
+    }
+
+    private E waitFor(boolean timed, long timeoutNanos) throws InterruptedException {
+        E element = poll();
+        if (element != null) {
+            return element;
+        }
+        long deadline = timed? System.nanoTime() + timeoutNanos: 0;
+        int spins = 0;
+        while (true) {
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            element = poll();
+            if (element != null) {
+                return element;
+            }
+            if (closed) {
+                return null;
+            }
+            long remaining = timed? deadline - System.nanoTime(): Long.MAX_VALUE;
+            if (remaining <= 0) {
+                return null;
+            }
+            if (waitStrategy == WaitStrategy.BUSY_SPIN || (waitStrategy == WaitStrategy.SPIN_THEN_PARK && spins++ < SPIN_TRIES)) {
+                Thread.onSpinWait();
+            }
+            else {
+                park(timed, remaining);
+            }
+        }
+    }
+
+    private void park(boolean timed, long nanos) {
+        waitingConsumer = Thread.currentThread();
+        // Check again after registering, otherwise the wake-up for an element that was just added (or for close) might be missed.
+        if (isEmpty() && !closed) {
+            if (timed) {
+                LockSupport.parkNanos(this, nanos);
+            }
+            else {
+                LockSupport.park(this);
+            }
+        }
+        waitingConsumer = null;
+    }
+
+    /**
+     * Closes the buffer: a consumer waiting for an element is woken up and returns null (as will any later call to
+     * <code>take</code> or <code>poll</code> once the buffer is empty). Can be called by any thread.
+     */
+    public void close() {
+        closed = true;
+        // Read after setting closed (both volatile), so either the consumer sees closed, or this thread sees the consumer.
+        Thread consumer = waitingConsumer;
+        if (consumer != null) {
+            LockSupport.unpark(consumer);
+        }
+    }
+
+    public boolean isEmpty() {
+        long position = head;
+        return sequences.get((int) position & mask) != position + 1;
+    }
+
+    /**
+     * Returns the number of elements in the buffer; when called while producers or the consumer are active, the result
+     * is an estimate.
+     * @return
+     */
+    public int size() {
+        long size = tail.get() - head;
+        return (int) Math.max(0, Math.min(size, capacity()));
+    }
+
+    public int capacity() {
+        return elements.length;
+    }
+
+    public WaitStrategy getWaitStrategy() {
+        return waitStrategy;
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright © 2024 Peter Doornbosch
+ *
+ * This file is part of Kwik, an implementation of the QUIC protocol in Java.
+ *
+ * Kwik is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * Kwik is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.luminis.quic.concurrent;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Executor that executes its tasks one at a time, in order of submission, on a (shared) executor. Tasks of different
+ * serial executors that share an executor can run in parallel, whereas tasks of one serial executor never do; this
+ * makes it possible to confine the tasks of one connection to one "virtual" thread, without a thread per connection.
+ * Submitting a task never blocks and does not take a lock.
+ */
+public class SerialExecutor implements Executor {
+
+    private final Executor executor;
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    // Number of tasks submitted but not yet finished; the submitter that raises it from 0 starts the drain task.
+    private final AtomicInteger pending = new AtomicInteger();
+
+    public SerialExecutor(Executor executor) {
+        this.executor = executor;
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        tasks.add(task);
+        if (pending.getAndIncrement() == 0) {
+            try {
+                executor.execute(this::drain);
+            }
+            catch (RejectedExecutionException rejected) {
+                // Shared executor is shut down, so none of the queued tasks will ever run.
+                tasks.clear();
+                pending.set(0);
+                throw rejected;
+            }
+        }
+    }
+
+    private void drain() {
+        do {
+            Runnable task = tasks.poll();
+            try {
+                task.run();
+            }
+            catch (Throwable error) {
+                // A failing task should not prevent the other tasks from being executed.
+                Thread thread = Thread.currentThread();
+                Thread.UncaughtExceptionHandler handler = thread.getUncaughtExceptionHandler();
+                if (handler != null) {
+                    handler.uncaughtException(thread, error);
+                }
+            }
+        }
+        while (pending.decrementAndGet() > 0);
+    }
+}
@@ -0,0 +1,524 @@
+/*
+ * Copyright © 2024 Peter Doornbosch
+ *
+ * This file is part of Kwik, an implementation of the QUIC protocol in Java.
+ *
+ * Kwik is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * Kwik is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.luminis.quic.concurrent;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RunnableScheduledFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Single threaded scheduled executor that keeps its timers in a hashed timing wheel: a circular array of buckets, each
+ * bucket holding the timers that expire in one tick (modulo the wheel size). Scheduling and cancelling a timer are
+ * O(1) operations (as opposed to O(log n) for a priority queue based executor), which matters for timers that are
+ * (re)scheduled very frequently, like the loss detection timer that is rescheduled on every ack received.
+ * The price is precision: timers never expire before their deadline, but may expire up to one tick later.
+ * Tasks submitted for immediate execution are executed in order of submission, on the same thread as the timers;
+ * hence, an instance can be used as an event loop as well. As all tasks are executed by one thread, they should never
+ * block.
+ * When one timing wheel is shared by components whose timer tasks should not delay each other, each component can
+ * use a view (see {@link #dispatchingTo(Executor)}) that hands its expired timers off to an executor of its own, so the
+ * worker thread only keeps track of the timers.
+ */
+public class TimingWheel extends AbstractExecutorService implements ScheduledExecutorService {
+
+    public static final int DEFAULT_TICK_DURATION_MILLIS = 1;
+    public static final int DEFAULT_WHEEL_SIZE = 512;
+
+    private static final Runnable WAKE_UP = () -> {};
+
+    private final long tickNanos;
+    private final TimerBucket[] wheel;
+    private final int mask;
+    private final long startTime;
+    private final Thread workerThread;
+    private final BlockingQueue<Runnable> tasks = new LinkedBlockingQueue<>();
+    private final Queue<TimerTask<?>> newTimers = new ConcurrentLinkedQueue<>();
+    private final Queue<TimerTask<?>> cancelledTimers = new ConcurrentLinkedQueue<>();
+    private final CountDownLatch terminated = new CountDownLatch(1);
+    private volatile boolean shutdown;
+    private volatile boolean idle;
+    // Only accessed by worker thread
+    private long tick;
+    private int timerCount;
+    private final List<TimerTask<?>> expired = new ArrayList<>();
+
+    public TimingWheel(ThreadFactory threadFactory) {
+        this(threadFactory, DEFAULT_TICK_DURATION_MILLIS, TimeUnit.MILLISECONDS, DEFAULT_WHEEL_SIZE);
+    }
+
+    /**
+     * @param threadFactory  factory for creating the (one) thread that executes all tasks
+     * @param tickDuration   duration of one tick, i.e. the precision of the timers
+     * @param unit           time unit of tick duration
+     * @param wheelSize      number of buckets, will be rounded up to a power of two
+     */
+    public TimingWheel(ThreadFactory threadFactory, long tickDuration, TimeUnit unit, int wheelSize) {
+        if (tickDuration <= 0 || wheelSize <= 0) {
+            throw new IllegalArgumentException();
+        }
+        tickNanos = unit.toNanos(tickDuration);
+        int size = Integer.highestOneBit(wheelSize);
+        if (size < wheelSize) {
+            size *= 2;
+        }
+        wheel = new TimerBucket[size];
+        for (int i = 0; i < size; i++) {
+            wheel[i] = new TimerBucket();
+        }
+        mask = size - 1;
+        startTime = System.nanoTime();
+        workerThread = threadFactory.newThread(this::run);
+        workerThread.start();
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        if (shutdown) {
+            throw new RejectedExecutionException("timing wheel is shut down");
+        }
+        tasks.add(command);
+    }
+
+    @Override
+    public ScheduledFuture<?> schedule(Runnable command, long delay, TimeUnit unit) {
+        return addTimer(new TimerTask<>(command, null, deadline(delay, unit), 0, null));
+    }
+
+    @Override
+    public <V> ScheduledFuture<V> schedule(Callable<V> callable, long delay, TimeUnit unit) {
+        return addTimer(new TimerTask<>(callable, deadline(delay, unit), null));
+    }
+
+    @Override
+    public ScheduledFuture<?> scheduleAtFixedRate(Runnable command, long initialDelay, long period, TimeUnit unit) {
+        return addTimer(fixedRateTimer(command, initialDelay, period, unit, null));
+    }
+
+    @Override
+    public ScheduledFuture<?> scheduleWithFixedDelay(Runnable command, long initialDelay, long delay, TimeUnit unit) {
+        return addTimer(fixedDelayTimer(command, initialDelay, delay, unit, null));
+    }
+
+    /**
+     * Returns a view of this timing wheel whose timers are kept by this timing wheel, but whose tasks (including
+     * expired timers) are executed by the given executor, e.g. a {@link SerialExecutor} for one connection. This
+     * prevents a slow task from delaying the timers of other users of this timing wheel. The view cannot be shut down;
+     * it follows the life cycle of this timing wheel.
+     * @param executor
+     * @return
+     */
+    public ScheduledExecutorService dispatchingTo(Executor executor) {
+        return new DispatchingView(executor);
+    }
+
+    @Override
+    public void shutdown() {
+        shutdown = true;
+        tasks.offer(WAKE_UP);
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        shutdown();
+        List<Runnable> pending = new ArrayList<>();
+        tasks.drainTo(pending);
+        pending.remove(WAKE_UP);
+        tasks.offer(WAKE_UP);
+        return pending;
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return shutdown;
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return terminated.getCount() == 0;
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return terminated.await(timeout, unit);
+    }
+
+    /**
+     * @return  whether the current thread is the thread executing the tasks of this timing wheel
+     */
+    public boolean inWorkerThread() {
+        return Thread.currentThread() == workerThread;
+    }
+
+    private long now() {
+        return System.nanoTime() - startTime;
+    }
+
+    private long deadline(long delay, TimeUnit unit) {
+        return now() + Math.max(unit.toNanos(delay), 0);
+    }
+
+    private TimerTask<Void> fixedRateTimer(Runnable command, long initialDelay, long period, TimeUnit unit, Executor executor) {
+        if (period <= 0) {
+            throw new IllegalArgumentException();
+        }
+        return new TimerTask<>(command, null, deadline(initialDelay, unit), unit.toNanos(period), executor);
+    }
+
+    private TimerTask<Void> fixedDelayTimer(Runnable command, long initialDelay, long delay, TimeUnit unit, Executor executor) {
+        if (delay <= 0) {
+            throw new IllegalArgumentException();
+        }
+        return new TimerTask<>(command, null, deadline(initialDelay, unit), -unit.toNanos(delay), executor);
+    }
+
+    private <V> TimerTask<V> addTimer(TimerTask<V> timer) {
+        if (shutdown) {
+            throw new RejectedExecutionException("timing wheel is shut down");
+        }
+        queueTimer(timer);
+        return timer;
+    }
+
+    private void queueTimer(TimerTask<?> timer) {
+        newTimers.add(timer);
+        if (idle) {
+            // Worker thread is waiting without timeout, because there were no timers.
+            tasks.offer(WAKE_UP);
+        }
+    }
+
+    private void run() {
+        try {
+            while (!shutdown) {
+                transferNewTimers();
+                removeCancelledTimers();
+                long waitTime = (tick + 1) * tickNanos - now();
+                if (waitTime > 0) {
+                    Runnable task = waitForTask(waitTime);
+                    if (task != null) {
+                        runTask(task);
+                    }
+                }
+                else {
+                    expireTimers(wheel[(int) (tick & mask)]);
+                    tick++;
+                }
+            }
+        }
+        catch (InterruptedException interrupted) {
+            // Terminate, see finally.
+        }
+        finally {
+            shutdown = true;
+            Runnable task;
+            while ((task = tasks.poll()) != null) {
+                runTask(task);
+            }
+            for (TimerBucket bucket : wheel) {
+                bucket.clear();
+            }
+            newTimers.clear();
+            terminated.countDown();
+        }
+    }
+
+    private Runnable waitForTask(long waitTime) throws InterruptedException {
+        if (timerCount == 0) {
+            idle = true;
+            // Re-check after setting flag, to avoid missing a timer that is added concurrently.
+            if (newTimers.isEmpty()) {
+                Runnable task = tasks.take();
+                idle = false;
+                return task;
+            }
+            idle = false;
+            return null;
+        }
+        return tasks.poll(waitTime, TimeUnit.NANOSECONDS);
+    }
+
+    private void runTask(Runnable task) {
+        try {
+            task.run();
+        }
+        catch (Throwable error) {
+            // A failing task should not kill the worker thread, as other tasks would not be executed anymore.
+            Thread.UncaughtExceptionHandler handler = workerThread.getUncaughtExceptionHandler();
+            if (handler != null) {
+                handler.uncaughtException(workerThread, error);
+            }
+        }
+    }
+
+    private void transferNewTimers() {
+        TimerTask<?> timer;
+        while ((timer = newTimers.poll()) != null) {
+            if (!timer.isCancelled()) {
+                if (timerCount == 0) {
+                    // When the wheel is empty, there is no need to visit all buckets of the (idle) period that has passed.
+                    tick = Math.max(tick, now() / tickNanos);
+                }
+                long expirationTick = timer.deadline / tickNanos;
+                timer.remainingRounds = (expirationTick - tick) / wheel.length;
+                wheel[(int) (Math.max(expirationTick, tick) & mask)].add(timer);
+                timerCount++;
+            }
+        }
+    }
+
+    private void removeCancelledTimers() {
+        TimerTask<?> timer;
+        while ((timer = cancelledTimers.poll()) != null) {
+            unlink(timer);
+        }
+    }
+
+    private void unlink(TimerTask<?> timer) {
+        if (timer.bucket != null) {
+            timer.bucket.remove(timer);
+            timerCount--;
+        }
+    }
+
+    private void expireTimers(TimerBucket bucket) {
+        // First collect, then run: running a timer task may (directly) cancel other timers in the same bucket.
+        TimerTask<?> timer = bucket.head;
+        while (timer != null) {
+            TimerTask<?> next = timer.next;
+            if (timer.remainingRounds <= 0 || timer.isCancelled()) {
+                unlink(timer);
+                if (!timer.isCancelled()) {
+                    expired.add(timer);
+                }
+            }
+            else {
+                timer.remainingRounds--;
+            }
+            timer = next;
+        }
+        for (TimerTask<?> expiredTimer : expired) {
+            if (expiredTimer.executor != null) {
+                dispatch(expiredTimer);
+            }
+            else {
+                runTask(expiredTimer);
+            }
+        }
+        expired.clear();
+    }
+
+    private void dispatch(TimerTask<?> timer) {
+        try {
+            timer.executor.execute(timer);
+        }
+        catch (RejectedExecutionException rejected) {
+            // Executor is shut down, so the timer task cannot run anymore.
+            timer.cancel(false);
+        }
+    }
+
+    private class TimerTask<V> extends FutureTask<V> implements RunnableScheduledFuture<V> {
+
+        // Deadline in nanoseconds, relative to start time of the wheel
+        private long deadline;
+        // Positive for fixed rate, negative for fixed delay, 0 for one-shot
+        private final long period;
+        // Executor that runs the task when the timer expires, or null for running it on the worker thread
+        private final Executor executor;
+        // Fields below only accessed by worker thread
+        private long remainingRounds;
+        private TimerBucket bucket;
+        private TimerTask<?> previous;
+        private TimerTask<?> next;
+
+        TimerTask(Runnable command, V result, long deadline, long period, Executor executor) {
+            super(command, result);
+            this.deadline = deadline;
+            this.period = period;
+            this.executor = executor;
+        }
+
+        TimerTask(Callable<V> callable, long deadline, Executor executor) {
+            super(callable);
+            this.deadline = deadline;
+            this.period = 0;
+            this.executor = executor;
+        }
+
+        @Override
+        public boolean isPeriodic() {
+            return period != 0;
+        }
+
+        @Override
+        public void run() {
+            if (!isPeriodic()) {
+                super.run();
+            }
+            else if (runAndReset() && !shutdown) {
+                deadline = period > 0? deadline + period: now() - period;
+                // When run by another executor, the worker thread may have become idle in the meantime.
+                queueTimer(this);
+            }
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            boolean cancelled = super.cancel(false);
+            if (cancelled) {
+                if (inWorkerThread()) {
+                    unlink(this);
+                }
+                else {
+                    cancelledTimers.add(this);
+                }
+            }
+            return cancelled;
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(deadline - now(), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return Long.compare(getDelay(TimeUnit.NANOSECONDS), other.getDelay(TimeUnit.NANOSECONDS));
+        }
+    }
+
+    private class DispatchingView extends AbstractExecutorService implements ScheduledExecutorService {
+
+        private final Executor executor;
+
+        DispatchingView(Executor executor) {
+            this.executor = Objects.requireNonNull(executor);
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            if (shutdown) {
+                throw new RejectedExecutionException("timing wheel is shut down");
+            }
+            executor.execute(command);
+        }
+
+        @Override
+        public ScheduledFuture<?> schedule(Runnable command, long delay, TimeUnit unit) {
+            return addTimer(new TimerTask<>(command, null, deadline(delay, unit), 0, executor));
+        }
+
+        @Override
+        public <V> ScheduledFuture<V> schedule(Callable<V> callable, long delay, TimeUnit unit) {
+            return addTimer(new TimerTask<>(callable, deadline(delay, unit), executor));
+        }
+
+        @Override
+        public ScheduledFuture<?> scheduleAtFixedRate(Runnable command, long initialDelay, long period, TimeUnit unit) {
+            return addTimer(fixedRateTimer(command, initialDelay, period, unit, executor));
+        }
+
+        @Override
+        public ScheduledFuture<?> scheduleWithFixedDelay(Runnable command, long initialDelay, long delay, TimeUnit unit) {
+            return addTimer(fixedDelayTimer(command, initialDelay, delay, unit, executor));
+        }
+
+        @Override
+        public void shutdown() {
+            // Life cycle is determined by the timing wheel.
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            return List.of();
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return TimingWheel.this.isShutdown();
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return TimingWheel.this.isTerminated();
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+            return TimingWheel.this.awaitTermination(timeout, unit);
+        }
+    }
+
+    private static class TimerBucket {
+
+        private TimerTask<?> head;
+        private TimerTask<?> tail;
+
+        void add(TimerTask<?> timer) {
+            timer.bucket = this;
+            if (head == null) {
+                head = timer;
+            }
+            else {
+                tail.next = timer;
+                timer.previous = tail;
+            }
+            tail = timer;
+        }
+
+        void remove(TimerTask<?> timer) {
+            if (timer.previous != null) {
+                timer.previous.next = timer.next;
+            }
+            else {
+                head = timer.next;
+            }
+            if (timer.next != null) {
+                timer.next.previous = timer.previous;
+            }
+            else {
+                tail = timer.previous;
+            }
+            timer.previous = null;
+            timer.next = null;
+            timer.bucket = null;
+        }
+
+        void clear() {
+            head = null;
+            tail = null;
+        }
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright © 2024 Peter Doornbosch
+ *
+ * This file is part of Kwik, an implementation of the QUIC protocol in Java.
+ *
+ * Kwik is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * Kwik is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.luminis.quic.concurrent;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Provides thread factories for virtual threads, when running on a Java runtime that supports them (Java 21 or later).
+ * Kwik is compiled for Java 11, so the virtual thread API is accessed by method handles, which are only looked up once
+ * (when creating the factory); creating threads with the factory has no overhead. Virtual threads can be used for
+ * connection and stream handler threads by passing such a factory to the connection (or server connector) builder.
+ * As virtual threads are cheap, the blocking stream API then scales to a very large number of streams.
+ */
+public final class VirtualThreads {
+
+    private VirtualThreads() {
+    }
+
+    /**
+     * @return  whether the Java runtime supports virtual threads
+     */
+    public static boolean isSupported() {
+        return ofVirtualMethod() != null;
+    }
+
+    /**
+     * Returns a factory that creates virtual threads, named with the given base name, followed by a sequence number.
+     * @param threadBaseName
+     * @return
+     * @throws UnsupportedOperationException  when the Java runtime does not support virtual threads
+     */
+    public static ThreadFactory threadFactory(String threadBaseName) {
+        MethodHandle ofVirtual = ofVirtualMethod();
+        if (ofVirtual == null) {
+            throw new UnsupportedOperationException("virtual threads require Java 21 or later");
+        }
+        try {
+            // Equivalent to Thread.ofVirtual().name(threadBaseName + "-", 1).factory()
+            Object builder = ofVirtual.invoke();
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+            builder = lookup.findVirtual(builderClass, "name", MethodType.methodType(builderClass, String.class, long.class))
+                    .invoke(builder, threadBaseName + "-", 1L);
+            return (ThreadFactory) lookup.findVirtual(builderClass, "factory", MethodType.methodType(ThreadFactory.class))
+                    .invoke(builder);
+        }
+        catch (Throwable error) {
+            throw new UnsupportedOperationException("cannot create virtual thread factory", error);
+        }
+    }
+
+    private static MethodHandle ofVirtualMethod() {
+        try {
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder$OfVirtual");
+            return MethodHandles.publicLookup().findStatic(Thread.class, "ofVirtual", MethodType.methodType(builderClass));
+        }
+        catch (ClassNotFoundException | NoSuchMethodException | IllegalAccessException notSupported) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,44 @@
+/*
+ * Copyright © 2024 Peter Doornbosch
+ *
+ * This file is part of Kwik, an implementation of the QUIC protocol in Java.
+ *
+ * Kwik is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * Kwik is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.luminis.quic.concurrent;
+
+/**
+ * Determines how the consumer of a {@link MpscRingBuffer} waits for an element to become available, which is a
+ * trade-off between latency and CPU usage.
+ */
+public enum WaitStrategy {
+
+    /**
+     * Consumer thread is parked immediately and unparked by the producer; lowest CPU usage, but each hand-off to a
+     * waiting consumer costs a wake-up.
+     */
+    BLOCKING,
+
+    /**
+     * Consumer thread first spins for a short while before it is parked; avoids the wake-up cost when elements arrive
+     * in quick succession, at the expense of some CPU.
+     */
+    SPIN_THEN_PARK,
+
+    /**
+     * Consumer thread never parks, but keeps spinning until an element is available; lowest latency, but keeps one core
+     * busy all the time, so only sensible with a few dedicated (platform) threads.
+     */
+    BUSY_SPIN
+}
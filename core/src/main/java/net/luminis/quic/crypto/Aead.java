@@ -20,6 +20,8 @@ package net.luminis.quic.crypto;
 
 import net.luminis.quic.impl.DecryptionException;
 
+import java.nio.ByteBuffer;
+
 /**
  * https://www.rfc-editor.org/rfc/rfc9001.html#name-packet-protection
  * "As with TLS over TCP, QUIC protects packets with keys derived from the TLS handshake, using the AEAD algorithm [AEAD]
@@ -31,12 +33,50 @@ public interface Aead {
 
     byte[] createHeaderProtectionMask(byte[] sample);
 
+    /**
+     * Creates the header protection mask for the sample that is located in the given buffer at the given (absolute)
+     * offset. To avoid allocations, the returned array is reused by the next call, so it must not be retained.
+     * @param buffer
+     * @param sampleOffset
+     * @return  the mask, of which (only) the first 5 bytes are relevant
+     */
+    byte[] createHeaderProtectionMask(ByteBuffer buffer, int sampleOffset);
+
     byte[] getWriteIV();
 
     byte[] aeadEncrypt(byte[] associatedData, byte[] message, byte[] nonce);
 
     byte[] aeadDecrypt(byte[] associatedData, byte[] message, byte[] nonce) throws DecryptionException;
 
+    /**
+     * Encrypts a packet payload in place: the plaintext located in the buffer at the payload offset is overwritten
+     * with the ciphertext, which is 16 bytes longer (the authentication tag), so the buffer must have room for it.
+     * The associated data is the content of the buffer from the associated data offset up to the payload offset.
+     * The nonce is derived from the packet number.
+     * All offsets are absolute; neither position nor limit of the buffer are changed.
+     * @param buffer
+     * @param associatedDataOffset
+     * @param payloadOffset
+     * @param payloadLength
+     * @param packetNumber
+     */
+    void aeadEncrypt(ByteBuffer buffer, int associatedDataOffset, int payloadOffset, int payloadLength, long packetNumber);
+
+    /**
+     * Decrypts a packet payload in place: the ciphertext located in the buffer at the payload offset is overwritten
+     * with the plaintext. If decryption fails, the content of the buffer is not changed.
+     * The nonce is derived from the packet number.
+     * All offsets are absolute; neither position nor limit of the buffer are changed.
+     * @param buffer
+     * @param associatedDataOffset
+     * @param payloadOffset
+     * @param ciphertextLength
+     * @param packetNumber
+     * @return  the length of the plaintext
+     * @throws DecryptionException
+     */
+    int aeadDecrypt(ByteBuffer buffer, int associatedDataOffset, int payloadOffset, int ciphertextLength, long packetNumber) throws DecryptionException;
+
     /**
      * Check whether the key phase carried by a received packet still matches the current key phase; if not, compute
      * new keys (to be used for decryption). Note that the changed key phase can also be caused by packet corruption,
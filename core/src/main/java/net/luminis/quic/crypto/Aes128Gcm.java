@@ -14,6 +14,8 @@ import javax.crypto.IllegalBlockSizeException;
 import javax.crypto.NoSuchPaddingException;
 import javax.crypto.spec.GCMParameterSpec;
 import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
 import java.security.InvalidAlgorithmParameterException;
 import java.security.InvalidKeyException;
 import java.security.NoSuchAlgorithmException;
@@ -82,6 +84,18 @@ public class Aes128Gcm extends BaseAeadImpl {
         return mask;
     }
 
+    @Override
+    public byte[] createHeaderProtectionMask(ByteBuffer buffer, int sampleOffset) {
+        copySample(buffer, sampleOffset, hpSample);
+        try {
+            getHeaderProtectionCipher().doFinal(hpSample, 0, hpSample.length, hpMask, 0);
+        } catch (GeneralSecurityException e) {
+            // Programming error
+            throw new RuntimeException();
+        }
+        return hpMask;
+    }
+
     @Override
     public SecretKeySpec getWriteKeySpec() {
         if (possibleKeyUpdateInProgresss) {
@@ -151,4 +165,41 @@ public class Aes128Gcm extends BaseAeadImpl {
             throw new RuntimeException();
         }
     }
+
+    @Override
+    public void aeadEncrypt(ByteBuffer buffer, int associatedDataOffset, int payloadOffset, int payloadLength, long packetNumber) {
+        Cipher aeadCipher = getWriteCipher();
+        SecretKeySpec secretKey = getWriteKeySpec();
+        try {
+            GCMParameterSpec parameterSpec = new GCMParameterSpec(128, computeNonce(getWriteIV(), packetNumber, nonce));   // https://tools.ietf.org/html/rfc5116#section-5.3: "the tag length t is 16"
+            aeadCipher.init(Cipher.ENCRYPT_MODE, secretKey, parameterSpec);
+            directBufferScratch = scratchFor(directBufferScratch, buffer, payloadOffset - associatedDataOffset + payloadLength + 16);
+            doFinalInPlace(aeadCipher, buffer, associatedDataOffset, payloadOffset, payloadLength, payloadLength + 16, directBufferScratch);
+        } catch (GeneralSecurityException e) {
+            // Programming error
+            throw new RuntimeException();
+        }
+    }
+
+    @Override
+    public int aeadDecrypt(ByteBuffer buffer, int associatedDataOffset, int payloadOffset, int ciphertextLength, long packetNumber) throws DecryptionException {
+        if (ciphertextLength <= 16) {
+            // https://www.rfc-editor.org/rfc/rfc9001.html#name-aead-usage
+            // "These cipher suites have a 16-byte authentication tag and produce an output 16 bytes larger than their input."
+            throw new DecryptionException("ciphertext must be longer than 16 bytes");
+        }
+        SecretKeySpec secretKey = getWriteKeySpec();
+        Cipher aeadCipher = getWriteCipher();
+        try {
+            GCMParameterSpec parameterSpec = new GCMParameterSpec(128, computeNonce(getWriteIV(), packetNumber, nonce));   // https://tools.ietf.org/html/rfc5116#section-5.3: "the tag length t is 16"
+            aeadCipher.init(Cipher.DECRYPT_MODE, secretKey, parameterSpec);
+            directBufferScratch = scratchFor(directBufferScratch, buffer, payloadOffset - associatedDataOffset + ciphertextLength);
+            return doFinalInPlace(aeadCipher, buffer, associatedDataOffset, payloadOffset, ciphertextLength, ciphertextLength - 16, directBufferScratch);
+        } catch (AEADBadTagException decryptError) {
+            throw new DecryptionException();
+        } catch (GeneralSecurityException e) {
+            // Programming error
+            throw new RuntimeException();
+        }
+    }
 }
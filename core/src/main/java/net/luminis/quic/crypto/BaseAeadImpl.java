@@ -27,6 +27,7 @@ import javax.crypto.Cipher;
 import javax.crypto.spec.SecretKeySpec;
 import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
+import java.security.GeneralSecurityException;
 
 import static net.luminis.quic.impl.Role.Client;
 
@@ -63,6 +64,12 @@ public abstract class BaseAeadImpl implements Aead {
     protected SecretKeySpec writeKeySpec;
     protected SecretKeySpec newWriteKeySpec;
     protected Cipher writeCipher;
+    // Scratch buffers that are reused for each packet, to avoid allocations. Just like the ciphers they are used with,
+    // these require that an instance is not used by multiple threads at the same time.
+    protected final byte[] nonce = new byte[12];
+    protected final byte[] hpSample = new byte[16];
+    protected final byte[] hpMask = new byte[16];
+    protected byte[] directBufferScratch = new byte[0];
     private int keyUpdateCounter = 0;
     protected boolean possibleKeyUpdateInProgresss = false;
     private volatile Aead peerAead;
@@ -234,6 +241,98 @@ public abstract class BaseAeadImpl implements Aead {
         return hp;
     }
 
+    /**
+     * Computes the AEAD nonce for the given packet number into the given (reused) nonce buffer.
+     * @param iv
+     * @param packetNumber
+     * @param nonce
+     * @return  the nonce buffer
+     */
+    protected static byte[] computeNonce(byte[] iv, long packetNumber, byte[] nonce) {
+        // https://www.rfc-editor.org/rfc/rfc9001.html#name-aead-usage
+        // "The nonce, N, is formed by combining the packet protection IV with the packet number. The 62 bits of the
+        //  reconstructed QUIC packet number in network byte order are left-padded with zeros to the size of the IV.
+        //  The exclusive OR of the padded packet number and the IV forms the AEAD nonce."
+        int pnStart = nonce.length - 8;
+        System.arraycopy(iv, 0, nonce, 0, pnStart);
+        for (int i = 0; i < 8; i++) {
+            nonce[pnStart + i] = (byte) (iv[pnStart + i] ^ (packetNumber >> (56 - i * 8)));
+        }
+        return nonce;
+    }
+
+    /**
+     * Copies the header protection sample from the given buffer into the given (reused) sample buffer.
+     * @param buffer
+     * @param sampleOffset  absolute offset of the sample in the buffer
+     * @param sample
+     * @return  whether the sample differs from the previous content of the sample buffer
+     */
+    protected static boolean copySample(ByteBuffer buffer, int sampleOffset, byte[] sample) {
+        boolean changed = false;
+        for (int i = 0; i < sample.length; i++) {
+            byte value = buffer.get(sampleOffset + i);
+            changed |= sample[i] != value;
+            sample[i] = value;
+        }
+        return changed;
+    }
+
+    /**
+     * Finishes an (initialized) AEAD cipher operation on data located in the given buffer, writing the output back into
+     * the same buffer, at the same offset as the input. This is safe for both encryption and decryption: when
+     * encrypting, output is never written ahead of the input that is still to be read, and the AEAD ciphers that QUIC
+     * uses do not release decrypted output before the authentication tag has been verified.
+     * @param cipher  the cipher, initialized for encryption or decryption
+     * @param buffer
+     * @param associatedDataOffset  absolute offset of the associated data, which ends where the input starts
+     * @param inputOffset  absolute offset of the input, which also is the offset where the output is written
+     * @param inputLength
+     * @param outputLength
+     * @param scratch  array for processing data from a direct buffer, see {@link #scratchFor(byte[], ByteBuffer, int)}
+     * @return  the number of bytes written
+     * @throws GeneralSecurityException
+     */
+    protected static int doFinalInPlace(Cipher cipher, ByteBuffer buffer, int associatedDataOffset, int inputOffset, int inputLength, int outputLength, byte[] scratch) throws GeneralSecurityException {
+        int associatedDataLength = inputOffset - associatedDataOffset;
+        if (buffer.hasArray()) {
+            cipher.updateAAD(view(buffer, associatedDataOffset, associatedDataLength));
+            return cipher.doFinal(view(buffer, inputOffset, inputLength), view(buffer, inputOffset, outputLength));
+        }
+        else {
+            // The JDK cipher implementations process direct buffers by copying chunks into temporary arrays; copying
+            // into a reused array avoids these allocations.
+            view(buffer, associatedDataOffset, associatedDataLength + inputLength).get(scratch, 0, associatedDataLength + inputLength);
+            cipher.updateAAD(scratch, 0, associatedDataLength);
+            int outputSize = cipher.doFinal(scratch, associatedDataLength, inputLength, scratch, associatedDataLength);
+            view(buffer, inputOffset, outputSize).put(scratch, associatedDataLength, outputSize);
+            return outputSize;
+        }
+    }
+
+    /**
+     * Returns an array that is large enough for processing data of the given length from the given buffer with
+     * {@link #doFinalInPlace(Cipher, ByteBuffer, int, int, int, int, byte[])}, which is the given array if possible.
+     * @param scratch
+     * @param buffer
+     * @param length  length of associated data and (the largest of) input or output
+     * @return
+     */
+    protected static byte[] scratchFor(byte[] scratch, ByteBuffer buffer, int length) {
+        if (buffer.hasArray() || scratch.length >= length) {
+            return scratch;
+        }
+        return new byte[Integer.max(length, 1500)];
+    }
+
+    private static ByteBuffer view(ByteBuffer buffer, int offset, int length) {
+        ByteBuffer view = buffer.duplicate();
+        view.clear();
+        view.position(offset);
+        view.limit(offset + length);
+        return view;
+    }
+
     public abstract Cipher getHeaderProtectionCipher();
 
     public abstract SecretKeySpec getWriteKeySpec();
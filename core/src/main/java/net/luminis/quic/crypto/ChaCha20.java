@@ -34,6 +34,7 @@ import javax.crypto.spec.ChaCha20ParameterSpec;
 import javax.crypto.spec.IvParameterSpec;
 import javax.crypto.spec.SecretKeySpec;
 import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
 import java.security.InvalidAlgorithmParameterException;
 import java.security.InvalidKeyException;
 import java.security.Key;
@@ -48,6 +49,12 @@ import java.util.Arrays;
  */
 public class ChaCha20 extends BaseAeadImpl {
 
+    private static final byte[] ZEROS = new byte[5];
+
+    private final byte[] hpNonce = new byte[12];
+    private SecretKeySpec hpKeySpec;
+    private boolean hpMaskComputed;
+
     public ChaCha20(Version quicVersion, Role server, Logger log) {
         super(quicVersion, server, log);
     }
@@ -148,6 +155,79 @@ public class ChaCha20 extends BaseAeadImpl {
         }
     }
 
+    @Override
+    public void aeadEncrypt(ByteBuffer buffer, int associatedDataOffset, int payloadOffset, int payloadLength, long packetNumber) {
+        try {
+            Cipher aeadCipher = getWriteCipher();
+            IvParameterSpec chacha20poly1305Spec = new IvParameterSpec(computeNonce(getWriteIV(), packetNumber, nonce));
+            Key key = getWriteKeySpec();
+            aeadCipher.init(Cipher.ENCRYPT_MODE, key, chacha20poly1305Spec);
+            directBufferScratch = scratchFor(directBufferScratch, buffer, payloadOffset - associatedDataOffset + payloadLength + 16);
+            doFinalInPlace(aeadCipher, buffer, associatedDataOffset, payloadOffset, payloadLength, payloadLength + 16, directBufferScratch);
+        }
+        catch (GeneralSecurityException e) {
+            // Programming error
+            throw new RuntimeException();
+        }
+    }
+
+    @Override
+    public int aeadDecrypt(ByteBuffer buffer, int associatedDataOffset, int payloadOffset, int ciphertextLength, long packetNumber) throws DecryptionException {
+        if (ciphertextLength <= 16) {
+            // https://www.rfc-editor.org/rfc/rfc9001.html#name-aead-usage
+            // "These cipher suites have a 16-byte authentication tag and produce an output 16 bytes larger than their input."
+            throw new DecryptionException("ciphertext must be longer than 16 bytes");
+        }
+        try {
+            Cipher aeadCipher = getWriteCipher();
+            IvParameterSpec chacha20poly1305Spec = new IvParameterSpec(computeNonce(getWriteIV(), packetNumber, nonce));
+            Key key = getWriteKeySpec();
+            aeadCipher.init(Cipher.DECRYPT_MODE, key, chacha20poly1305Spec);
+            directBufferScratch = scratchFor(directBufferScratch, buffer, payloadOffset - associatedDataOffset + ciphertextLength);
+            return doFinalInPlace(aeadCipher, buffer, associatedDataOffset, payloadOffset, ciphertextLength, ciphertextLength - 16, directBufferScratch);
+        }
+        catch (AEADBadTagException decryptError) {
+            throw new DecryptionException();
+        }
+        catch (GeneralSecurityException e) {
+            // Programming error
+            throw new RuntimeException();
+        }
+    }
+
+    @Override
+    public byte[] createHeaderProtectionMask(ByteBuffer buffer, int sampleOffset) {
+        boolean sampleChanged = copySample(buffer, sampleOffset, hpSample);
+        if (!sampleChanged && hpMaskComputed) {
+            // The cipher refuses to be initialized with the same key and nonce twice in a row; as the mask would be the
+            // same anyway, just return it.
+            return hpMask;
+        }
+        // https://www.rfc-editor.org/rfc/rfc9001.html#name-chacha20-based-header-prote
+        // "counter = sample[0..3]
+        //  nonce = sample[4..15]
+        //  mask = ChaCha20(hp_key, counter, nonce, {0,0,0,0,0})"
+        // "The first 4 bytes of the sampled ciphertext are the block counter. A ChaCha20 implementation could take a
+        //  32-bit integer in place of a byte sequence, in which case, the byte sequence is interpreted as a little-endian
+        //  value."
+        int counter = (hpSample[0] & 0xff) | (hpSample[1] & 0xff) << 8 | (hpSample[2] & 0xff) << 16 | (hpSample[3] & 0xff) << 24;
+        System.arraycopy(hpSample, 4, hpNonce, 0, hpNonce.length);
+        try {
+            if (hpKeySpec == null) {
+                hpKeySpec = new SecretKeySpec(getHp(), "ChaCha20");
+            }
+            Cipher hpCipher = getHeaderProtectionCipher();
+            hpCipher.init(Cipher.ENCRYPT_MODE, hpKeySpec, new ChaCha20ParameterSpec(hpNonce, counter));
+            hpCipher.doFinal(ZEROS, 0, ZEROS.length, hpMask, 0);
+            hpMaskComputed = true;
+        }
+        catch (GeneralSecurityException e) {
+            // Programming error
+            throw new RuntimeException();
+        }
+        return hpMask;
+    }
+
     @Override
     public byte[] createHeaderProtectionMask(byte[] sample) {
         try {
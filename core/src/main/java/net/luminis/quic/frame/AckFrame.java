@@ -25,11 +25,14 @@ import net.luminis.quic.log.Logger;
 import net.luminis.quic.packet.QuicPacket;
 
 import java.nio.ByteBuffer;
+import java.time.Duration;
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
 import java.util.stream.Stream;
 
 /**
@@ -44,8 +47,12 @@ public class AckFrame extends QuicFrame {
 
     private byte[] frameBytes;
     private long largestAcknowledged;
-    private int ackDelay;
-    private List<Range> acknowledgedRanges;
+    private long ackDelay;
+    // The acknowledged ranges, in reverse sorted order, as pairs of (largest, smallest) packet numbers.
+    private long[] ranges = new long[0];
+    private int rangeCount;
+    // Range objects are only created when requested.
+    private volatile List<Range> acknowledgedRanges;
     // https://www.rfc-editor.org/rfc/rfc9000.html#name-transport-parameter-definit
     // "...  a default value of 3 is assumed (indicating a multiplier of 8)."
     private int delayScale = 8;
@@ -73,13 +80,30 @@ public class AckFrame extends QuicFrame {
      * @param ackDelayInMillis   the ack delay in milliseconds
      */
     public AckFrame(Version quicVersion, List<Range> ackRanges, int ackDelayInMillis) {
+        this(quicVersion, ackRanges, Duration.ofMillis(ackDelayInMillis));
+    }
+
+    /**
+     * Creates an AckFrame given a (sorted, non-adjacent) list of ranges and an ack delay; the ack delay is encoded with
+     * microsecond precision (as far as the ack delay exponent allows).
+     * @param quicVersion
+     * @param ackRanges
+     * @param delay
+     */
+    public AckFrame(Version quicVersion, List<Range> ackRanges, Duration delay) {
         if (! Range.validRangeList(ackRanges)) {
             throw new IllegalArgumentException("invalid range");  // TODO: replace by assert?
         }
 
         acknowledgedRanges = List.copyOf(ackRanges);
+        ranges = new long[2 * ackRanges.size()];
+        for (Range range : ackRanges) {
+            ranges[2 * rangeCount] = range.getLargest();
+            ranges[2 * rangeCount + 1] = range.getSmallest();
+            rangeCount++;
+        }
         this.delayScale = FIXED_SENDER_ACK_DELAY_SCALE;
-        this.ackDelay = ackDelayInMillis * 1000 / delayScale;   // In an ack frame, the delay is in _microseconds_!
+        this.ackDelay = delay.toNanos() / 1000 / delayScale;   // In an ack frame, the delay is in _microseconds_!
 
         Iterator<Range> rangeIterator = ackRanges.iterator();
         Range firstRange = rangeIterator.next();
@@ -130,7 +154,8 @@ public class AckFrame extends QuicFrame {
 
     public AckFrame parse(ByteBuffer buffer, Logger log) throws InvalidIntegerEncodingException {
         log.debug("Parsing AckFrame");
-        acknowledgedRanges = new ArrayList<>();
+        acknowledgedRanges = null;
+        rangeCount = 0;
 
         int frameType = buffer.get();
 
@@ -138,9 +163,11 @@ public class AckFrame extends QuicFrame {
 
         // Parse as long to protect to against buggy peers. Convert to int as MAX_INT is large enough to hold the
         // largest ack delay that makes sense (even with an delay exponent of 0, MAX_INT is approx 2147 seconds, approx. half an hour).
-        ackDelay = (int) VariableLengthInteger.parseLong(buffer);
+        ackDelay = VariableLengthInteger.parseLong(buffer);
 
         int ackBlockCount = (int) VariableLengthInteger.parseLong(buffer);
+        // Each ack range takes at least two bytes, so do not trust the count for allocating the array.
+        ranges = new long[2 * (1 + Integer.max(0, Integer.min(ackBlockCount, buffer.remaining() / 2)))];
 
         long currentSmallest = largestAcknowledged;
         // The smallest of the first block is the largest - (rangeSize - 1).
@@ -176,7 +203,12 @@ public class AckFrame extends QuicFrame {
     }
 
     private int addAcknowledgeRange(long largestOfRange, int rangeSize) {
-        acknowledgedRanges.add(new Range(largestOfRange - rangeSize + 1, largestOfRange));
+        if (2 * rangeCount == ranges.length) {
+            ranges = Arrays.copyOf(ranges, 2 * ranges.length);
+        }
+        ranges[2 * rangeCount] = largestOfRange;
+        ranges[2 * rangeCount + 1] = largestOfRange - rangeSize + 1;
+        rangeCount++;
         return rangeSize;
     }
 
@@ -185,25 +217,73 @@ public class AckFrame extends QuicFrame {
      * @return
      */
     public Stream<Long> getAckedPacketNumbers() {
-        return acknowledgedRanges.stream().flatMap(r -> r.stream());
+        return ackedPacketNumbers().boxed();
     }
 
     /**
-     * Returns the acked ranges in reverse sorted order (so largest first)
+     * Returns the acked packet numbers in reverse sorted order (so largest first), without boxing them.
+     * @return
+     */
+    public LongStream ackedPacketNumbers() {
+        return IntStream.range(0, rangeCount)
+                .mapToObj(i -> LongStream.iterate(ranges[2 * i], pn -> pn >= ranges[2 * i + 1], pn -> pn - 1))
+                .flatMapToLong(s -> s);
+    }
+
+    /**
+     * Returns the acked ranges in reverse sorted order (so largest first). As this creates range objects, it should
+     * be avoided in the processing of received acks; use {@link #rangeCursor()} instead.
      * @return
      */
     public List<Range> getAcknowledgedRanges() {
-        return acknowledgedRanges;
+        List<Range> rangeList = acknowledgedRanges;
+        if (rangeList == null) {
+            List<Range> newList = new ArrayList<>(rangeCount);
+            for (int i = 0; i < rangeCount; i++) {
+                newList.add(new Range(ranges[2 * i + 1], ranges[2 * i]));
+            }
+            rangeList = List.copyOf(newList);
+            acknowledgedRanges = rangeList;
+        }
+        return rangeList;
+    }
+
+    /**
+     * Returns a cursor over the acked ranges, in reverse sorted order (so largest first). To avoid allocating a cursor
+     * for each ack frame, use {@link AckRangeCursor#reset(AckFrame)} on an existing cursor instead.
+     * @return
+     */
+    public AckRangeCursor rangeCursor() {
+        return new AckRangeCursor().reset(this);
+    }
+
+    /**
+     * @return  the number of acked ranges.
+     */
+    public int getRangeCount() {
+        return rangeCount;
+    }
+
+    // Only for use by AckRangeCursor, which does not modify the array.
+    long[] rangeArray() {
+        return ranges;
     }
 
     @Override
     public String toString() {
         if (stringRepresentation == null) {
-            stringRepresentation = acknowledgedRanges.stream()
-                    .map(r -> r.size() == 1? "" + r.getLargest(): "" + r.getLargest() + "-" + r.getSmallest())
-                    .collect(Collectors.joining(","));
+            StringBuilder builder = new StringBuilder();
+            for (int i = 0; i < rangeCount; i++) {
+                if (i > 0) {
+                    builder.append(',');
+                }
+                long largest = ranges[2 * i];
+                long smallest = ranges[2 * i + 1];
+                builder.append(largest == smallest? "" + largest: largest + "-" + smallest);
+            }
+            stringRepresentation = builder.toString();
         }
-        return "AckFrame[" + stringRepresentation + "|\u0394" + (ackDelay * delayScale) / 1000  + "]";
+        return "AckFrame[" + stringRepresentation + "|\u0394" + getAckDelay() + "]";
     }
 
     // https://tools.ietf.org/html/draft-ietf-quic-recovery-33#section-2
@@ -222,7 +302,16 @@ public class AckFrame extends QuicFrame {
      * @return
      */
     public int getAckDelay() {
-        return (ackDelay * delayScale) / 1000;
+        return (int) Long.min(getAckDelayMicros() / 1000, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Get ack delay in microseconds, i.e. with the full precision the (peer's) ack delay exponent allows.
+     * @return
+     */
+    public long getAckDelayMicros() {
+        // Ack delay is a variable length integer, so a (malicious) peer can send a value that would overflow.
+        return ackDelay <= Long.MAX_VALUE / delayScale? ackDelay * delayScale: Long.MAX_VALUE;
     }
 
     public void setDelayExponent(int exponent) {
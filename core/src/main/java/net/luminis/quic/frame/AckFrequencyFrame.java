@@ -0,0 +1,116 @@
+/*
+ * Copyright © 2024 Peter Doornbosch
+ *
+ * This file is part of Kwik, an implementation of the QUIC protocol in Java.
+ *
+ * Kwik is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * Kwik is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.luminis.quic.frame;
+
+import net.luminis.quic.generic.InvalidIntegerEncodingException;
+import net.luminis.quic.generic.VariableLengthInteger;
+import net.luminis.quic.log.Logger;
+import net.luminis.quic.packet.QuicPacket;
+
+import java.nio.ByteBuffer;
+import java.time.Instant;
+
+/**
+ * ACK_FREQUENCY frame, with which the sender can request the peer to change its acknowledgement behaviour.
+ * https://datatracker.ietf.org/doc/draft-ietf-quic-ack-frequency/
+ */
+public class AckFrequencyFrame extends QuicFrame {
+
+    public static final int FRAME_TYPE = 0xaf;
+
+    private long sequenceNumber;
+    private long ackElicitingThreshold;
+    private long requestMaxAckDelay;
+    private long reorderingThreshold;
+
+    public AckFrequencyFrame() {
+    }
+
+    /**
+     * @param sequenceNumber  sequence number, to determine which frame is the latest
+     * @param ackElicitingThreshold  maximum number of ack-eliciting packets received before an acknowledgement must be sent
+     * @param requestMaxAckDelay  requested maximum ack delay, in microseconds
+     * @param reorderingThreshold  number of out-of-order packets that should trigger an immediate acknowledgement; 0
+     *                             means out-of-order packets should not trigger an immediate acknowledgement
+     */
+    public AckFrequencyFrame(long sequenceNumber, long ackElicitingThreshold, long requestMaxAckDelay, long reorderingThreshold) {
+        this.sequenceNumber = sequenceNumber;
+        this.ackElicitingThreshold = ackElicitingThreshold;
+        this.requestMaxAckDelay = requestMaxAckDelay;
+        this.reorderingThreshold = reorderingThreshold;
+    }
+
+    public AckFrequencyFrame parse(ByteBuffer buffer, Logger log) throws InvalidIntegerEncodingException {
+        if (VariableLengthInteger.parseLong(buffer) != FRAME_TYPE) {
+            throw new RuntimeException();  // Would be a programming error.
+        }
+        sequenceNumber = VariableLengthInteger.parseLong(buffer);
+        ackElicitingThreshold = VariableLengthInteger.parseLong(buffer);
+        requestMaxAckDelay = VariableLengthInteger.parseLong(buffer);
+        reorderingThreshold = VariableLengthInteger.parseLong(buffer);
+        return this;
+    }
+
+    @Override
+    public int getFrameLength() {
+        return VariableLengthInteger.bytesNeeded(FRAME_TYPE)
+                + VariableLengthInteger.bytesNeeded(sequenceNumber)
+                + VariableLengthInteger.bytesNeeded(ackElicitingThreshold)
+                + VariableLengthInteger.bytesNeeded(requestMaxAckDelay)
+                + VariableLengthInteger.bytesNeeded(reorderingThreshold);
+    }
+
+    @Override
+    public void serialize(ByteBuffer buffer) {
+        VariableLengthInteger.encode(FRAME_TYPE, buffer);
+        VariableLengthInteger.encode(sequenceNumber, buffer);
+        VariableLengthInteger.encode(ackElicitingThreshold, buffer);
+        VariableLengthInteger.encode(requestMaxAckDelay, buffer);
+        VariableLengthInteger.encode(reorderingThreshold, buffer);
+    }
+
+    public long getSequenceNumber() {
+        return sequenceNumber;
+    }
+
+    public long getAckElicitingThreshold() {
+        return ackElicitingThreshold;
+    }
+
+    /**
+     * @return  the requested max ack delay in microseconds
+     */
+    public long getRequestMaxAckDelay() {
+        return requestMaxAckDelay;
+    }
+
+    public long getReorderingThreshold() {
+        return reorderingThreshold;
+    }
+
+    @Override
+    public String toString() {
+        return "AckFrequencyFrame[" + sequenceNumber + "|" + ackElicitingThreshold + "|" + requestMaxAckDelay + "|" + reorderingThreshold + "]";
+    }
+
+    @Override
+    public void accept(FrameProcessor frameProcessor, QuicPacket packet, Instant timeReceived) {
+        frameProcessor.process(this, packet, timeReceived);
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright © 2024 Peter Doornbosch
+ *
+ * This file is part of Kwik, an implementation of the QUIC protocol in Java.
+ *
+ * Kwik is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * Kwik is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.luminis.quic.frame;
+
+/**
+ * Cursor over the ranges of an ack frame, in descending order (largest range first), that exposes each range as a pair
+ * of primitive longs. A cursor can be reused for any number of ack frames (by calling {@link #reset(AckFrame)}), so
+ * iterating the ranges of an ack frame does not allocate.
+ * Usage:
+ * <pre>
+ *     cursor.reset(ackFrame);
+ *     while (cursor.next()) {
+ *         for (long pn = cursor.largest(); pn &gt;= cursor.smallest(); pn--) { ... }
+ *     }
+ * </pre>
+ * Not thread-safe.
+ */
+public final class AckRangeCursor {
+
+    private long[] ranges;
+    private int rangeCount;
+    private int index;
+
+    public AckRangeCursor() {
+        ranges = new long[0];
+    }
+
+    /**
+     * Positions the cursor before the first (largest) range of the given ack frame.
+     * @param ackFrame
+     * @return  this cursor
+     */
+    public AckRangeCursor reset(AckFrame ackFrame) {
+        ranges = ackFrame.rangeArray();
+        rangeCount = ackFrame.getRangeCount();
+        index = -1;
+        return this;
+    }
+
+    /**
+     * Moves the cursor to the next range.
+     * @return  true if there is a next range, false if all ranges have been visited
+     */
+    public boolean next() {
+        if (index + 1 < rangeCount) {
+            index++;
+            return true;
+        }
+        else {
+            index = rangeCount;
+            return false;
+        }
+    }
+
+    /**
+     * @return  the largest packet number of the current range
+     */
+    public long largest() {
+        checkPosition();
+        return ranges[2 * index];
+    }
+
+    /**
+     * @return  the smallest packet number of the current range
+     */
+    public long smallest() {
+        checkPosition();
+        return ranges[2 * index + 1];
+    }
+
+    /**
+     * @return  whether the current range contains the given packet number
+     */
+    public boolean contains(long packetNumber) {
+        return packetNumber <= largest() && packetNumber >= smallest();
+    }
+
+    private void checkPosition() {
+        if (index < 0 || index >= rangeCount) {
+            throw new IllegalStateException("cursor is not positioned on a range");
+        }
+    }
+}
@@ -0,0 +1,32 @@
+/*
+ * Copyright © 2019, 2020, 2021, 2022, 2023, 2024 Peter Doornbosch
+ *
+ * This file is part of Kwik, an implementation of the QUIC protocol in Java.
+ *
+ * Kwik is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * Kwik is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.luminis.quic.frame;
+
+/**
+ * A frame that must be notified when a packet containing it is acknowledged by the peer, e.g. to release resources
+ * that are only needed as long as the frame might have to be retransmitted.
+ */
+public interface AcknowledgeableFrame {
+
+    /**
+     * Called when a packet containing this frame is acknowledged. Note that a frame can be sent in more than one packet
+     * (e.g. when it is retransmitted in a probe), so this method can be called more than once.
+     */
+    void acknowledged();
+}
@@ -11,6 +11,8 @@ public interface FrameProcessor {
 
     void process(AckFrame ackFrame, QuicPacket packet, Instant timeReceived);
 
+    void process(AckFrequencyFrame ackFrequencyFrame, QuicPacket packet, Instant timeReceived);
+
     void process(ConnectionCloseFrame connectionCloseFrame, QuicPacket packet, Instant timeReceived);
 
     void process(CryptoFrame cryptoFrame, QuicPacket packet, Instant timeReceived);
@@ -19,6 +21,8 @@ public interface FrameProcessor {
 
     void process(HandshakeDoneFrame handshakeDoneFrame, QuicPacket packet, Instant timeReceived);
 
+    void process(ImmediateAckFrame immediateAckFrame, QuicPacket packet, Instant timeReceived);
+
     void process(MaxDataFrame maxDataFrame, QuicPacket packet, Instant timeReceived);
 
     void process(MaxStreamDataFrame maxStreamDataFrame, QuicPacket packet, Instant timeReceived);
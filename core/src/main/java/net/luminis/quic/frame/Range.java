@@ -21,7 +21,7 @@ package net.luminis.quic.frame;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Objects;
-import java.util.function.Supplier;
+import java.util.stream.LongStream;
 import java.util.stream.Stream;
 
 /**
@@ -243,16 +243,14 @@ public class Range {
     }
 
     public Stream<Long> stream() {
-        return Stream.generate(new StreamElementGenerator()).limit(size());
+        return longStream().boxed();
     }
 
-    private class StreamElementGenerator implements Supplier<Long> {
-
-        private long next = to;
-
-        @Override
-        public Long get() {
-            return next--;
-        }
+    /**
+     * Returns the numbers in this range in descending order, without boxing them.
+     * @return
+     */
+    public LongStream longStream() {
+        return LongStream.iterate(to, number -> number >= from, number -> number - 1);
     }
 }
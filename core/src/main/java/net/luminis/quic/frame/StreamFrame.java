@@ -62,14 +62,22 @@ public class StreamFrame extends QuicFrame implements StreamElement {
     }
 
     public StreamFrame(Version quicVersion, int streamId, long streamOffset, byte[] applicationData, int dataOffset, int dataLength, boolean fin) {
-        streamType = Stream.of(StreamType.values()).filter(t -> t.value == (streamId & 0x03)).findFirst().get();
-        this.streamId = streamId;
-        this.offset = streamOffset;
+        this(quicVersion, streamId, streamOffset, dataLength, fin);
         this.streamData = new byte[dataLength];
         // This implementation copies the application data, which would not be necessary if the caller guarantees
         // it will not reuse the data buffer (or at least, the range that is used by this frame) and its content
         // will never change.
         ByteBuffer.wrap(streamData).put(applicationData, dataOffset, dataLength);
+    }
+
+    /**
+     * Creates a stream frame without data; for subclasses that provide the data themselves, in which case they must
+     * override {@link #serializeData(ByteBuffer)} and {@link #getStreamData()}.
+     */
+    protected StreamFrame(Version quicVersion, int streamId, long streamOffset, int dataLength, boolean fin) {
+        streamType = Stream.of(StreamType.values()).filter(t -> t.value == (streamId & 0x03)).findFirst().get();
+        this.streamId = streamId;
+        this.offset = streamOffset;
         this.length = dataLength;
         isFinal = fin;
 
@@ -95,6 +103,10 @@ public class StreamFrame extends QuicFrame implements StreamElement {
         VariableLengthInteger.encode(streamId, buffer);
         VariableLengthInteger.encode(offset, buffer);
         VariableLengthInteger.encode(length, buffer);
+        serializeData(buffer);
+    }
+
+    protected void serializeData(ByteBuffer buffer) {
         buffer.put(streamData);
     }
 
@@ -147,7 +159,7 @@ public class StreamFrame extends QuicFrame implements StreamElement {
                 offset == that.offset &&
                 length == that.length &&
                 isFinal == that.isFinal &&
-                Arrays.equals(streamData, that.streamData);
+                Arrays.equals(getStreamData(), that.getStreamData());
     }
 
     @Override
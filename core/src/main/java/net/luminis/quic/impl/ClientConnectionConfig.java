@@ -18,7 +18,10 @@
  */
 package net.luminis.quic.impl;
 
+import net.luminis.quic.CongestionControlAlgorithm;
+import net.luminis.quic.CongestionControllerFactory;
 import net.luminis.quic.ConnectionConfig;
+import net.luminis.quic.send.Pacer;
 
 public class ClientConnectionConfig implements ConnectionConfig {
 
@@ -30,6 +33,12 @@ public class ClientConnectionConfig implements ConnectionConfig {
     private long maxBidirectionalStreamBufferSize;
     private int activeConnectionIdLimit;
     private int maxUdpPayloadSize;
+    private int pacingBurst = Pacer.DEFAULT_MAX_BURST_PACKETS;
+    private CongestionControllerFactory congestionControllerFactory = CongestionControllerFactory.of(CongestionControlAlgorithm.NEW_RENO);
+    private long maxConnectionReceiveWindow = QuicClientConnectionImpl.DEFAULT_MAX_CONNECTION_RECEIVE_WINDOW;
+    private long maxStreamReceiveWindow = QuicClientConnectionImpl.DEFAULT_MAX_STREAM_RECEIVE_WINDOW;
+    private int ackElicitingThreshold = 1;
+    private int requestedMaxAckDelay = 25;
 
     @Override
     public int maxIdleTimeout() {
@@ -95,6 +104,21 @@ public class ClientConnectionConfig implements ConnectionConfig {
         this.maxBidirectionalStreamBufferSize = maxBidirectionalStreamBufferSize;
     }
 
+    @Override
+    public long maxConnectionReceiveWindow() {
+        return maxConnectionReceiveWindow;
+    }
+
+    @Override
+    public long maxStreamReceiveWindow() {
+        return maxStreamReceiveWindow;
+    }
+
+    void setMaxReceiveWindows(long maxStreamReceiveWindow, long maxConnectionReceiveWindow) {
+        this.maxStreamReceiveWindow = maxStreamReceiveWindow;
+        this.maxConnectionReceiveWindow = maxConnectionReceiveWindow;
+    }
+
     public int getActiveConnectionIdLimit() {
         return activeConnectionIdLimit;
     }
@@ -110,4 +134,33 @@ public class ClientConnectionConfig implements ConnectionConfig {
     public void setMaxUdpPayloadSize(int maxSize) {
         maxUdpPayloadSize = maxSize;
     }
+
+    public int getPacingBurst() {
+        return pacingBurst;
+    }
+
+    public void setPacingBurst(int maxBurstPackets) {
+        pacingBurst = maxBurstPackets;
+    }
+
+    public CongestionControllerFactory getCongestionControllerFactory() {
+        return congestionControllerFactory;
+    }
+
+    public void setCongestionControllerFactory(CongestionControllerFactory factory) {
+        congestionControllerFactory = factory;
+    }
+
+    public int getAckElicitingThreshold() {
+        return ackElicitingThreshold;
+    }
+
+    public int getRequestedMaxAckDelay() {
+        return requestedMaxAckDelay;
+    }
+
+    public void setAckFrequency(int ackElicitingThreshold, int maxAckDelay) {
+        this.ackElicitingThreshold = ackElicitingThreshold;
+        this.requestedMaxAckDelay = maxAckDelay;
+    }
 }
@@ -0,0 +1,156 @@
+/*
+ * Copyright © 2024 Peter Doornbosch
+ *
+ * This file is part of Kwik, an implementation of the QUIC protocol in Java.
+ *
+ * Kwik is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * Kwik is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.luminis.quic.impl;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The memory account of a connection: all memory used for buffering data by the connection (received stream data,
+ * stream data waiting to be sent and sent packets waiting to be acknowledged) is charged to this account, and thus to
+ * the {@link MemoryAccountant} it belongs to. The account also determines how much flow control credit the connection
+ * can give, based on the memory pressure of the accountant.
+ */
+public class ConnectionMemory {
+
+    /**
+     * The minimum flow control window that is granted when memory is tight, to ensure there is always progress.
+     */
+    public static final long MIN_WINDOW = 4096;
+
+    private final MemoryAccountant accountant;
+    private final String name;
+    private final AtomicLong usage = new AtomicLong();
+    private final AtomicLong reserved = new AtomicLong();
+    private volatile boolean closed;
+
+    /**
+     * Creates an account that is not part of a budget, i.e. usage is only tracked and flow control credit is never limited.
+     * @return
+     */
+    public static ConnectionMemory unlimited() {
+        return new ConnectionMemory(null, "");
+    }
+
+    ConnectionMemory(MemoryAccountant accountant, String name) {
+        this.accountant = accountant;
+        this.name = name;
+    }
+
+    /**
+     * Charges the given number of bytes to this account.
+     * @param bytes
+     */
+    public void allocate(long bytes) {
+        if (bytes != 0 && !closed) {
+            usage.addAndGet(bytes);
+            if (accountant != null) {
+                accountant.charge(bytes);
+            }
+            if (closed) {
+                // Raced with close: make sure nothing remains charged to the accountant.
+                releaseAll();
+            }
+        }
+    }
+
+    /**
+     * Releases the given number of bytes from this account.
+     * @param bytes
+     */
+    public void release(long bytes) {
+        allocate(-bytes);
+    }
+
+    /**
+     * Reserves memory for the initial flow control credit given to the peer: as the peer may send that much data
+     * without further notice, the credit is charged to this account until the data is actually received (see
+     * {@link #useReservation(long)}). Replaces any previous reservation.
+     * @param credit  the initial flow control credit (in bytes) given to the peer
+     */
+    public void reserve(long credit) {
+        long previous = reserved.getAndSet(credit);
+        allocate(credit - previous);
+    }
+
+    /**
+     * Releases the part of the reservation that is used by received data, as that data is charged to this account
+     * when it is buffered.
+     * @param bytes  the number of bytes received
+     */
+    public void useReservation(long bytes) {
+        long previous = reserved.getAndUpdate(current -> Long.max(0, current - bytes));
+        release(Long.min(previous, bytes));
+    }
+
+    /**
+     * Determines the flow control window that can be granted, given the desired window and the current memory pressure.
+     * When memory is tight, the window is reduced; above the high watermark, no credit is given at all when the receiver
+     * still has unread data buffered, as reading that data will lead to a re-evaluation. Otherwise, a minimal window is
+     * granted, to avoid a peer being blocked forever.
+     * @param window  the desired window
+     * @param bufferedBytes  the number of bytes the receiver (stream or connection) has buffered that are not yet read
+     * @return  the window that can be granted
+     */
+    public long allowedWindow(long window, long bufferedBytes) {
+        if (accountant == null) {
+            return window;
+        }
+        double factor = accountant.creditFactor();
+        if (factor >= 1.0) {
+            return window;
+        }
+        long allowed = (long) (window * factor);
+        if (allowed < MIN_WINDOW) {
+            return bufferedBytes > 0? 0: Long.min(window, MIN_WINDOW);
+        }
+        return allowed;
+    }
+
+    /**
+     * @return  the number of bytes currently charged to this account
+     */
+    public long getUsage() {
+        return usage.get();
+    }
+
+    String getName() {
+        return name;
+    }
+
+    /**
+     * Closes the account, releasing all memory that is still charged to it. Memory that is allocated or released after
+     * the account is closed is ignored.
+     */
+    public void close() {
+        if (!closed) {
+            closed = true;
+            releaseAll();
+            if (accountant != null) {
+                accountant.closeAccount(this);
+            }
+        }
+    }
+
+    private void releaseAll() {
+        long remaining = usage.getAndSet(0);
+        if (accountant != null) {
+            accountant.charge(-remaining);
+        }
+    }
+}
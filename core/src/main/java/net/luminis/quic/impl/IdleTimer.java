@@ -21,6 +21,7 @@ package net.luminis.quic.impl;
 import net.luminis.quic.concurrent.DaemonThreadFactory;
 import net.luminis.quic.log.Logger;
 import net.luminis.quic.packet.QuicPacket;
+import net.luminis.quic.util.MonotonicClock;
 
 import java.time.Clock;
 import java.time.Instant;
@@ -34,6 +35,7 @@ public class IdleTimer {
 
     private final Clock clock;
     private final ScheduledExecutorService timer;
+    private final boolean ownTimer;
     private final int timerResolution;
     private volatile long timeout;
     private final QuicConnectionImpl connection;
@@ -49,17 +51,30 @@ public class IdleTimer {
     }
 
     public IdleTimer(QuicConnectionImpl connection, Logger logger, int timerResolution) {
-        this(Clock.systemUTC(), connection, logger, timerResolution);
+        this(MonotonicClock.instance(), connection, logger, timerResolution);
     }
 
     public IdleTimer(Clock clock, QuicConnectionImpl connection, Logger logger, int timerResolution) {
+        this(clock, connection, logger, timerResolution, null);
+    }
+
+    /**
+     * Creates an idle timer that uses the given executor (e.g. the event loop the connection is assigned to) for
+     * scheduling; when null, the idle timer will create its own.
+     */
+    public IdleTimer(QuicConnectionImpl connection, Logger logger, ScheduledExecutorService timer) {
+        this(MonotonicClock.instance(), connection, logger, 1000, timer);
+    }
+
+    IdleTimer(Clock clock, QuicConnectionImpl connection, Logger logger, int timerResolution, ScheduledExecutorService timer) {
         this.clock = clock;
         this.connection = connection;
         this.ptoSupplier = () -> 0;
         this.log = logger;
         this.timerResolution = timerResolution;
 
-        timer = Executors.newScheduledThreadPool(1, new DaemonThreadFactory("idle-timer"));
+        ownTimer = timer == null;
+        this.timer = ownTimer? Executors.newScheduledThreadPool(1, new DaemonThreadFactory("idle-timer")): timer;
         lastAction = clock.instant();
     }
 
@@ -95,7 +110,7 @@ public class IdleTimer {
                 // To avoid excessively small idle timeout periods, endpoints MUST increase the idle timeout period
                 // to be at least three times the current Probe Timeout (PTO)
                 if (lastAction.plusMillis(3L * currentPto).isBefore(now)) {
-                    timer.shutdown();
+                    stopTimer();
                     connection.silentlyCloseConnection(timeout + currentPto);
                 }
             }}
@@ -122,8 +137,17 @@ public class IdleTimer {
 
     public void shutdown() {
         if (enabled) {
+            stopTimer();
+        }
+    }
+
+    private void stopTimer() {
+        if (ownTimer) {
             timer.shutdown();
         }
+        else {
+            timerTask.cancel(false);
+        }
     }
 }
 
@@ -20,6 +20,7 @@ package net.luminis.quic.impl;
 
 import net.luminis.quic.frame.PingFrame;
 import net.luminis.quic.send.Sender;
+import net.luminis.quic.util.MonotonicClock;
 
 import java.time.Clock;
 import java.time.Duration;
@@ -40,8 +41,10 @@ public class KeepAliveActor {
     private final Sender sender;
     private final Instant started;
     private final ScheduledExecutorService scheduler;
+    private final boolean ownScheduler;
     private final int pingInterval;
     private volatile ScheduledFuture<?> scheduledTask;
+    private volatile boolean stopped;
 
     /**
      * @param quicVersion
@@ -50,15 +53,32 @@ public class KeepAliveActor {
      * @param sender
      */
     public KeepAliveActor(VersionHolder quicVersion, int keepAliveTime, int peerIdleTimeout, Sender sender) {
-        this(Clock.systemUTC(), quicVersion, keepAliveTime, peerIdleTimeout, sender, Executors.newScheduledThreadPool(1));
+        this(MonotonicClock.instance(), quicVersion, keepAliveTime, peerIdleTimeout, sender, Executors.newScheduledThreadPool(1), true);
+    }
+
+    /**
+     * Creates a keep alive actor that uses the given (shared) scheduler for scheduling pings.
+     * @param quicVersion
+     * @param keepAliveTime       the time the connection should be kept alive in seconds
+     * @param peerIdleTimeout     the idle timeout of the peer, in milliseconds
+     * @param sender
+     * @param scheduler           the scheduler, which will not be shut down by this actor
+     */
+    public KeepAliveActor(VersionHolder quicVersion, int keepAliveTime, int peerIdleTimeout, Sender sender, ScheduledExecutorService scheduler) {
+        this(MonotonicClock.instance(), quicVersion, keepAliveTime, peerIdleTimeout, sender, scheduler, false);
     }
 
     KeepAliveActor(Clock clock, VersionHolder quicVersion, int keepAliveTime, int peerIdleTimeout, Sender sender, ScheduledExecutorService scheduler) {
+        this(clock, quicVersion, keepAliveTime, peerIdleTimeout, sender, scheduler, false);
+    }
+
+    private KeepAliveActor(Clock clock, VersionHolder quicVersion, int keepAliveTime, int peerIdleTimeout, Sender sender, ScheduledExecutorService scheduler, boolean ownScheduler) {
         this.clock = clock;
         this.quicVersion = quicVersion;
         this.keepAliveTime = keepAliveTime;
         this.sender = sender;
         this.scheduler = scheduler;
+        this.ownScheduler = ownScheduler;
 
         started = clock.instant();
         pingInterval = peerIdleTimeout / 1000 / 2;
@@ -75,12 +95,18 @@ public class KeepAliveActor {
 
     private void scheduleNextPing() {
         Instant now = clock.instant();
-        if (Duration.between(started, now).compareTo(Duration.of(keepAliveTime - pingInterval, SECONDS)) < 0) {
+        if (!stopped && Duration.between(started, now).compareTo(Duration.of(keepAliveTime - pingInterval, SECONDS)) < 0) {
             scheduledTask = scheduler.schedule(() -> ping(), pingInterval, java.util.concurrent.TimeUnit.SECONDS);
         }
     }
 
     public void shutdown() {
-        scheduler.shutdown();
+        stopped = true;
+        if (ownScheduler) {
+            scheduler.shutdown();
+        }
+        else if (scheduledTask != null) {
+            scheduledTask.cancel(false);
+        }
     }
 }
@@ -0,0 +1,126 @@
+/*
+ * Copyright © 2024 Peter Doornbosch
+ *
+ * This file is part of Kwik, an implementation of the QUIC protocol in Java.
+ *
+ * Kwik is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * Kwik is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.luminis.quic.impl;
+
+import net.luminis.quic.MemoryMetrics;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps track of the memory used for buffering data by a group of connections (e.g. all connections of a server
+ * connector), against a fixed budget. Each connection has an account ({@link ConnectionMemory}) that all its buffer
+ * allocations are charged to. As received data cannot be refused once flow control credit has been given, the budget
+ * is enforced by limiting the flow control credit that is given to peers: when usage exceeds the low watermark, credit
+ * is reduced proportionally and above the high watermark, credit is (as far as possible) withheld. The initial credit
+ * of a connection is reserved (charged) up front, so the credit given to many connections together cannot exceed the
+ * budget, and above the high watermark, new connections are not accepted at all.
+ */
+public class MemoryAccountant implements MemoryMetrics {
+
+    // Fraction of the budget below which flow control credit is not limited.
+    static final double LOW_WATERMARK = 0.5;
+    // Fraction of the budget above which flow control credit is withheld.
+    static final double HIGH_WATERMARK = 0.9;
+
+    private final long budget;
+    private final AtomicLong usage = new AtomicLong();
+    private final AtomicLong highWaterMark = new AtomicLong();
+    private final Set<ConnectionMemory> accounts = ConcurrentHashMap.newKeySet();
+
+    public MemoryAccountant(long budget) {
+        if (budget <= 0) {
+            throw new IllegalArgumentException("memory budget must be positive");
+        }
+        this.budget = budget;
+    }
+
+    /**
+     * Opens an account for a connection.
+     * @param name  name identifying the connection, used when reporting usage per connection
+     * @return
+     */
+    public ConnectionMemory openAccount(String name) {
+        ConnectionMemory account = new ConnectionMemory(this, name);
+        accounts.add(account);
+        return account;
+    }
+
+    void closeAccount(ConnectionMemory account) {
+        accounts.remove(account);
+    }
+
+    void charge(long bytes) {
+        long newUsage = usage.addAndGet(bytes);
+        if (bytes > 0) {
+            highWaterMark.accumulateAndGet(newUsage, Long::max);
+        }
+    }
+
+    /**
+     * Returns the fraction of the desired flow control credit that can be given, given the current usage.
+     * @return  a value between 0 (credit should be withheld) and 1 (credit is not limited)
+     */
+    double creditFactor() {
+        double utilization = (double) usage.get() / budget;
+        if (utilization <= LOW_WATERMARK) {
+            return 1.0;
+        }
+        else if (utilization >= HIGH_WATERMARK) {
+            return 0.0;
+        }
+        else {
+            return (HIGH_WATERMARK - utilization) / (HIGH_WATERMARK - LOW_WATERMARK);
+        }
+    }
+
+    /**
+     * Determines whether new connections can be accepted: above the high watermark, credit would be withheld from new
+     * connections anyway, so accepting them would only lead to connections that cannot make progress.
+     * @return
+     */
+    public boolean acceptsNewConnections() {
+        return usage.get() < HIGH_WATERMARK * budget;
+    }
+
+    @Override
+    public long getBudget() {
+        return budget;
+    }
+
+    @Override
+    public long getUsage() {
+        return usage.get();
+    }
+
+    @Override
+    public long getHighWaterMark() {
+        return highWaterMark.get();
+    }
+
+    @Override
+    public Map<String, Long> getUsagePerConnection() {
+        Map<String, Long> usagePerConnection = new HashMap<>();
+        accounts.forEach(account -> usagePerConnection.merge(account.getName(), account.getUsage(), Long::sum));
+        return usagePerConnection;
+    }
+}
@@ -18,16 +18,20 @@
  */
 package net.luminis.quic.impl;
 
+import net.luminis.quic.CongestionControlAlgorithm;
+import net.luminis.quic.CongestionControllerFactory;
 import net.luminis.quic.DatagramSocketFactory;
 import net.luminis.quic.QuicClientConnection;
 import net.luminis.quic.QuicSessionTicket;
 import net.luminis.quic.QuicStream;
+import net.luminis.quic.ack.AckGenerator;
 import net.luminis.quic.ack.GlobalAckGenerator;
 import net.luminis.quic.cid.ConnectionIdInfo;
 import net.luminis.quic.cid.ConnectionIdManager;
 import net.luminis.quic.client.CertificateSelector;
 import net.luminis.quic.common.EncryptionLevel;
 import net.luminis.quic.common.PnSpace;
+import net.luminis.quic.concurrent.WaitStrategy;
 import net.luminis.quic.crypto.CryptoStream;
 import net.luminis.quic.crypto.MissingKeysException;
 import net.luminis.quic.frame.*;
@@ -35,6 +39,7 @@ import net.luminis.quic.log.Logger;
 import net.luminis.quic.log.NullLogger;
 import net.luminis.quic.packet.*;
 import net.luminis.quic.receive.RawPacket;
+import net.luminis.quic.receive.ReceiveQueueConfig;
 import net.luminis.quic.receive.Receiver;
 import net.luminis.quic.send.SenderImpl;
 import net.luminis.quic.stream.EarlyDataStream;
@@ -42,6 +47,7 @@ import net.luminis.quic.stream.FlowControl;
 import net.luminis.quic.stream.StreamManager;
 import net.luminis.quic.tls.QuicTransportParametersExtension;
 import net.luminis.quic.util.Bytes;
+import net.luminis.quic.util.MonotonicClock;
 import net.luminis.tls.NewSessionTicket;
 import net.luminis.tls.TlsConstants;
 import net.luminis.tls.engine.CertificateWithPrivateKey;
@@ -62,6 +68,7 @@ import javax.net.ssl.X509TrustManager;
 import java.io.IOException;
 import java.net.*;
 import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
 import java.nio.file.Path;
 import java.security.KeyStore;
 import java.security.KeyStoreException;
@@ -72,6 +79,7 @@ import java.time.Duration;
 import java.time.Instant;
 import java.util.*;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 import java.util.function.BiConsumer;
 import java.util.function.Consumer;
@@ -102,6 +110,8 @@ public class QuicClientConnectionImpl extends QuicConnectionImpl implements Quic
     public static final int MIN_RECEIVER_BUFFER_SIZE = 1500;
     public static final long DEFAULT_MAX_STREAM_DATA = 250_000;
     public static final int MAX_DATA_FACTOR = 10;
+    public static final long DEFAULT_MAX_STREAM_RECEIVE_WINDOW = 16 * 1024 * 1024;
+    public static final long DEFAULT_MAX_CONNECTION_RECEIVE_WINDOW = 24 * 1024 * 1024;
     public static final int MAX_OPEN_PEER_INITIATED_BIDI_STREAMS = 3;
     public static final int MAX_OPEN_PEER_INITIATED_UNI_STREAMS = 3;
     // https://www.rfc-editor.org/rfc/rfc9000.html#name-transport-parameter-definit
@@ -111,6 +121,8 @@ public class QuicClientConnectionImpl extends QuicConnectionImpl implements Quic
     // https://www.rfc-editor.org/rfc/rfc9000.html#name-transport-parameter-definit
     // "Values below 1200 are invalid."
     public static final int MIN_MAX_UDP_PAYLOAD_SIZE = 1200;
+    // "The default for this parameter is the maximum permitted UDP payload of 65527."
+    public static final int MAX_MAX_UDP_PAYLOAD_SIZE = 65527;
     public static final int DEFAULT_MAX_UDP_PAYLOAD_SIZE = Receiver.MAX_DATAGRAM_SIZE;
 
     public enum EarlyDataStatus {
@@ -164,8 +176,8 @@ public class QuicClientConnectionImpl extends QuicConnectionImpl implements Quic
                                      String proxyHost, Path secretsFile, Integer initialRtt, Integer cidLength,
                                      List<TlsConstants.CipherSuite> cipherSuites,
                                      X509Certificate clientCertificate, PrivateKey clientCertificateKey,
-                                     DatagramSocketFactory socketFactory) throws UnknownHostException, SocketException {
-        super(originalVersion, Role.Client, secretsFile, log);
+                                     DatagramSocketFactory socketFactory, ThreadFactory threadFactory) throws UnknownHostException, SocketException {
+        super(originalVersion, Role.Client, secretsFile, log, null, threadFactory);
         this.applicationProtocol = applicationProtocol;
         this.connectTimeout = connectTimeout;
         this.connectionProperties = connectionProperties;
@@ -179,20 +191,28 @@ public class QuicClientConnectionImpl extends QuicConnectionImpl implements Quic
         this.cipherSuites = cipherSuites;
         this.clientCertificate = clientCertificate;
         this.clientCertificateKey = clientCertificateKey;
-        this.socketFactory = socketFactory != null? socketFactory: (address) -> new DatagramSocket();
+        this.socketFactory = socketFactory != null? socketFactory: (address) -> createChannelSocket();
 
         socket = this.socketFactory.createSocket(serverAddress);
 
-        idleTimer = new IdleTimer(this, log);
-        sender = new SenderImpl(quicVersion, getMaxPacketSize(), socket, new InetSocketAddress(serverAddress, port),
-                        this, "", initialRtt, log);
+        // All timers of the connection share the connection's scheduler.
+        idleTimer = new IdleTimer(this, log, getScheduler());
+        sender = new SenderImpl(MonotonicClock.instance(), quicVersion, getMaxPacketSize(), socket, new InetSocketAddress(serverAddress, port),
+                        this, "", initialRtt, getScheduler(), null, connectionProperties.getCongestionControllerFactory(), log);
         sender.enableAllLevels();
+        sender.setConnectionMemory(connectionMemory);
+        sender.enablePathMtuDiscovery(connectionProperties.getMaxUdpPayloadSize());
+        sender.setPacingBurst(connectionProperties.getPacingBurst());
+        setRequestedAckFrequency(connectionProperties.getAckElicitingThreshold(), connectionProperties.getRequestedMaxAckDelay());
         idleTimer.setPtoSupplier(sender::getPto);
         ackGenerator = sender.getGlobalAckGenerator();
 
-        receiver = new Receiver(socket, log, this::abortConnection, createPacketFilter());
+        // Receive buffers must be able to hold the largest datagram the server may send, which is limited by the
+        // max_udp_payload_size transport parameter.
+        receiver = new Receiver(socket, log, this::abortConnection, createPacketFilter(), getThreadFactory(),
+                new ReceiveQueueConfig(Receiver.DEFAULT_QUEUE_CAPACITY, WaitStrategy.BLOCKING), connectionProperties.getMaxUdpPayloadSize());
 
-        streamManager = new StreamManager(this, Role.Client, log, connectionProperties);
+        streamManager = new StreamManager(this, Role.Client, log, connectionProperties, connectionMemory);
 
         BiConsumer<Integer, String> closeWithErrorFunction = (error, reason) -> {
             immediateCloseWithError(EncryptionLevel.App, error, reason);
@@ -320,6 +340,7 @@ public class QuicClientConnectionImpl extends QuicConnectionImpl implements Quic
         else {
             throw new IllegalArgumentException("maxUdpPayloadSize must be set");
         }
+        parameters.setMinAckDelay(AckGenerator.MIN_ACK_DELAY);
         return parameters;
     }
 
@@ -443,7 +464,7 @@ public class QuicClientConnectionImpl extends QuicConnectionImpl implements Quic
         }
 
         if (idleTimer.isEnabled()) {
-            keepAliveActor = new KeepAliveActor(quicVersion, seconds, (int) idleTimer.getIdleTimeout(), sender);
+            keepAliveActor = new KeepAliveActor(quicVersion, seconds, (int) idleTimer.getIdleTimeout(), sender, getScheduler());
         }
     }
 
@@ -457,8 +478,26 @@ public class QuicClientConnectionImpl extends QuicConnectionImpl implements Quic
         }
     }
 
+    /**
+     * Creates a socket that is backed by a datagram channel, which enables the receiver to use pooled (direct) buffers.
+     * @return
+     * @throws SocketException
+     */
+    private static DatagramSocket createChannelSocket() throws SocketException {
+        try {
+            return DatagramChannel.open().bind(null).socket();
+        }
+        catch (SocketException socketException) {
+            throw socketException;
+        }
+        catch (IOException ioException) {
+            throw new SocketException(ioException.getMessage());
+        }
+    }
+
     private void startReceiverLoop() {
-        receiverThread = new Thread(this::receiveAndProcessPackets, "receiver-loop");
+        receiverThread = getThreadFactory().newThread(this::receiveAndProcessPackets);
+        receiverThread.setName("receiver-loop");
         receiverThread.setDaemon(true);
         receiverThread.start();
     }
@@ -473,10 +512,10 @@ public class QuicClientConnectionImpl extends QuicConnectionImpl implements Quic
                 new DatagramParserFilter(parser));
 
         try {
-            while (! currentThread.isInterrupted()) {
+            while (! currentThread.isInterrupted() && ! receiver.isShutdown()) {
                 RawPacket rawPacket = receiver.get(15);
                 if (rawPacket != null) {
-                    Duration processDelay = Duration.between(rawPacket.getTimeReceived(), Instant.now());
+                    Duration processDelay = Duration.between(rawPacket.getTimeReceived(), MonotonicClock.instance().instant());
                     log.raw("Start processing packet " + ++receivedPacketCounter + " (" + rawPacket.getLength() + " bytes)", rawPacket.getData(), 0, rawPacket.getLength());
                     log.debug("Processing delay for packet #" + receivedPacketCounter + ": " + processDelay.toMillis() + " ms");
 
@@ -484,6 +523,8 @@ public class QuicClientConnectionImpl extends QuicConnectionImpl implements Quic
                     datagramProcessingChain.processDatagram(rawPacket.getData(), metaData);
 
                     sender.datagramProcessed(receiver.hasMore());
+                    // Processing is synchronous and copies whatever must be retained, so the buffer can be reused.
+                    rawPacket.release();
                 }
             }
         }
@@ -795,11 +836,10 @@ public class QuicClientConnectionImpl extends QuicConnectionImpl implements Quic
     protected void terminate() {
         super.terminate();
         handshakeFinishedCondition.countDown();
+        // Shutting down the receiver ends the receiver loop; the receiver loop thread is not interrupted, as interrupting
+        // a thread that is doing I/O on the (channel-backed) socket would close the socket under its feet.
         receiver.shutdown();
         socket.close();
-        if (receiverThread != null) {
-            receiverThread.interrupt();
-        }
     }
 
     public void changeAddress() {
@@ -850,6 +890,12 @@ public class QuicClientConnectionImpl extends QuicConnectionImpl implements Quic
         if (!verifyConnectionIds(receivedTransportParameters)) {
             return;
         }
+        // https://datatracker.ietf.org/doc/draft-ietf-quic-ack-frequency/
+        // A min_ack_delay that is larger than max_ack_delay must be treated as a TRANSPORT_PARAMETER_ERROR.
+        if (receivedTransportParameters.getMinAckDelay() > receivedTransportParameters.getMaxAckDelay() * 1000L) {
+            immediateCloseWithError(Handshake, TRANSPORT_PARAMETER_ERROR.value, "min_ack_delay larger than max_ack_delay");
+            return;
+        }
 
         if (versionNegotiationStatus == VersionNegotiationStatus.VersionChangeUnconfirmed) {
             verifyVersionNegotiation(receivedTransportParameters);
@@ -1298,6 +1344,7 @@ public class QuicClientConnectionImpl extends QuicConnectionImpl implements Quic
         private X509Certificate clientCertificate;
         private PrivateKey clientCertificateKey;
         private DatagramSocketFactory socketFactory;
+        private ThreadFactory threadFactory;
         private long connectTimeoutInMillis = DEFAULT_CONNECT_TIMEOUT_IN_MILLIS;
         private String applicationProtocol = "";
         private KeyStore customTrustStore;
@@ -1326,7 +1373,7 @@ public class QuicClientConnectionImpl extends QuicConnectionImpl implements Quic
             QuicClientConnectionImpl quicConnection =
                     new QuicClientConnectionImpl(host, port, applicationProtocol, connectTimeoutInMillis, connectionProperties, sessionTicket, Version.of(quicVersion),
                             Version.of(preferredVersion), log, proxyHost, secretsFile, initialRtt, connectionIdLength,
-                            cipherSuites, clientCertificate, clientCertificateKey, socketFactory);
+                            cipherSuites, clientCertificate, clientCertificateKey, socketFactory, threadFactory);
 
             if (omitCertificateCheck) {
                 quicConnection.trustAnyServerCertificate();
@@ -1549,6 +1596,54 @@ public class QuicClientConnectionImpl extends QuicConnectionImpl implements Quic
             this.socketFactory = socketFactory;
             return this;
         }
+
+        @Override
+        public Builder threadFactory(ThreadFactory threadFactory) {
+            this.threadFactory = threadFactory;
+            return this;
+        }
+
+        @Override
+        public Builder receiveWindowAutoTuning(long maxStreamReceiveWindow, long maxConnectionReceiveWindow) {
+            if (maxStreamReceiveWindow < 0 || maxConnectionReceiveWindow < 0) {
+                throw new IllegalArgumentException("Max receive window cannot be negative.");
+            }
+            connectionProperties.setMaxReceiveWindows(maxStreamReceiveWindow, maxConnectionReceiveWindow);
+            return this;
+        }
+
+        @Override
+        public Builder pacingBurst(int maxBurstPackets) {
+            if (maxBurstPackets < 1) {
+                throw new IllegalArgumentException("Pacing burst must be at least 1 packet.");
+            }
+            connectionProperties.setPacingBurst(maxBurstPackets);
+            return this;
+        }
+
+        @Override
+        public Builder congestionControl(CongestionControlAlgorithm algorithm) {
+            connectionProperties.setCongestionControllerFactory(CongestionControllerFactory.of(Objects.requireNonNull(algorithm)));
+            return this;
+        }
+
+        @Override
+        public Builder congestionControllerFactory(CongestionControllerFactory factory) {
+            connectionProperties.setCongestionControllerFactory(Objects.requireNonNull(factory));
+            return this;
+        }
+
+        @Override
+        public Builder ackFrequency(int ackElicitingThreshold, int maxAckDelay) {
+            if (ackElicitingThreshold < 0) {
+                throw new IllegalArgumentException("Ack-eliciting threshold cannot be negative.");
+            }
+            if (maxAckDelay < 1 || maxAckDelay >= 16384) {
+                throw new IllegalArgumentException("Max ack delay must be between 1 and 16383 milliseconds.");
+            }
+            connectionProperties.setAckFrequency(ackElicitingThreshold, maxAckDelay);
+            return this;
+        }
     }
 
     /**
@@ -1568,6 +1663,9 @@ public class QuicClientConnectionImpl extends QuicConnectionImpl implements Quic
             if (maxSize < MIN_MAX_UDP_PAYLOAD_SIZE) {
                 throw new IllegalArgumentException("Max UDP payload size must be at least " + MIN_MAX_UDP_PAYLOAD_SIZE + ".");
             }
+            if (maxSize > MAX_MAX_UDP_PAYLOAD_SIZE) {
+                throw new IllegalArgumentException("Max UDP payload size must be at most " + MAX_MAX_UDP_PAYLOAD_SIZE + ".");
+            }
             connectionProperties.setMaxUdpPayloadSize(maxSize);
         }
     }
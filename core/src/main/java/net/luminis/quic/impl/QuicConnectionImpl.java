@@ -22,9 +22,11 @@ import net.luminis.quic.QuicConnection;
 import net.luminis.quic.QuicConstants;
 import net.luminis.quic.QuicStream;
 import net.luminis.quic.Statistics;
+import net.luminis.quic.ack.AckGenerator;
 import net.luminis.quic.ack.GlobalAckGenerator;
 import net.luminis.quic.cid.ConnectionIdManager;
 import net.luminis.quic.concurrent.DaemonThreadFactory;
+import net.luminis.quic.concurrent.TimingWheel;
 import net.luminis.quic.common.EncryptionLevel;
 import net.luminis.quic.common.PnSpace;
 import net.luminis.quic.crypto.ConnectionSecrets;
@@ -51,15 +53,16 @@ import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.CopyOnWriteArrayList;
-import java.util.concurrent.Executors;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 import java.util.function.Function;
 
 import static net.luminis.quic.QuicConstants.TransportErrorCode.INTERNAL_ERROR;
 import static net.luminis.quic.QuicConstants.TransportErrorCode.NO_ERROR;
+import static net.luminis.quic.QuicConstants.TransportErrorCode.PROTOCOL_VIOLATION;
 import static net.luminis.quic.common.EncryptionLevel.App;
 import static net.luminis.quic.common.EncryptionLevel.Initial;
 import static net.luminis.quic.impl.QuicConnectionImpl.ErrorType.APPLICATION_ERROR;
@@ -116,17 +119,38 @@ public abstract class QuicConnectionImpl implements QuicConnection, PacketProces
     // https://www.rfc-editor.org/rfc/rfc9000.html#name-transport-parameter-definit
     // "If this value is absent, a default value of 3 is assumed (indicating a multiplier of 8)."
     protected volatile int peerAckDelayExponent = 3;
+    // Acknowledgement frequency to request from the peer (if it supports the ack frequency extension); a threshold
+    // of 1 (the RFC 9000 default) means no request is sent.
+    private volatile int requestedAckElicitingThreshold = 1;
+    private volatile int requestedMaxAckDelay;
 
     protected volatile FlowControl flowController;
     protected long[] largestPacketNumber = new long[PnSpace.values().length];
 
     protected volatile Status connectionState;
+    // Memory account for all data buffered by this connection; subclasses that use a memory budget should replace it
+    // before creating the stream manager and sender.
+    protected ConnectionMemory connectionMemory = ConnectionMemory.unlimited();
 
     private RateLimiter closeFramesSendRateLimiter;
     private final ScheduledExecutorService scheduler;
+    private final boolean ownScheduler;
+    private final ThreadFactory threadFactory;
 
 
     protected QuicConnectionImpl(Version originalVersion, Role role, Path secretsFile, Logger log) {
+        this(originalVersion, role, secretsFile, log, null, null);
+    }
+
+    /**
+     * Creates connection that uses the given scheduler (e.g. the event loop the connection is assigned to) for
+     * scheduling tasks. When scheduler is null, the connection will create its own, which subclasses can share with
+     * other components of the connection (see {@link #getScheduler()}), so all timers use the same thread.
+     * Threads (e.g. for receiving and sending) are created with the given thread factory; when null, platform threads
+     * are created.
+     */
+    protected QuicConnectionImpl(Version originalVersion, Role role, Path secretsFile, Logger log, ScheduledExecutorService scheduler,
+                                 ThreadFactory threadFactory) {
         this.quicVersion = new VersionHolder(originalVersion);
         this.role = role;
         this.log = log;
@@ -137,7 +161,23 @@ public abstract class QuicConnectionImpl implements QuicConnection, PacketProces
 
         connectionState = Status.Created;
         closeFramesSendRateLimiter = new ProgressivelyIncreasingRateLimiter();
-        scheduler = Executors.newScheduledThreadPool(1, new DaemonThreadFactory("scheduler"));
+        ownScheduler = scheduler == null;
+        this.scheduler = ownScheduler? new TimingWheel(new DaemonThreadFactory("scheduler")): scheduler;
+        this.threadFactory = threadFactory != null? threadFactory: Thread::new;
+    }
+
+    /**
+     * @return  the scheduler for connection timers; when owned by this connection, it is shut down when the connection is terminated
+     */
+    protected ScheduledExecutorService getScheduler() {
+        return scheduler;
+    }
+
+    /**
+     * @return  the factory for creating the threads of this connection
+     */
+    public ThreadFactory getThreadFactory() {
+        return threadFactory;
     }
 
     public void addHandshakeStateListener(RecoveryManager recoveryManager) {
@@ -237,6 +277,42 @@ public abstract class QuicConnectionImpl implements QuicConnection, PacketProces
         getSender().setReceiverMaxAckDelay(peerTransportParams.getMaxAckDelay());
 
         getSender().registerMaxUdpPayloadSize(peerTransportParams.getMaxUdpPayloadSize());
+
+        if (peerTransportParams.getMinAckDelay() > 0 && requestedAckElicitingThreshold != 1) {
+            requestAckFrequency(peerTransportParams);
+        }
+    }
+
+    /**
+     * Sets the acknowledgement frequency that will be requested from the peer, if the peer supports the ack frequency
+     * extension (https://datatracker.ietf.org/doc/draft-ietf-quic-ack-frequency/).
+     * @param ackElicitingThreshold  the number of ack-eliciting packets the peer may receive without acknowledging
+     * @param maxAckDelay  the max ack delay (in milliseconds) to request from the peer
+     */
+    protected void setRequestedAckFrequency(int ackElicitingThreshold, int maxAckDelay) {
+        requestedAckElicitingThreshold = ackElicitingThreshold;
+        requestedMaxAckDelay = maxAckDelay;
+    }
+
+    private void requestAckFrequency(TransportParameters peerTransportParams) {
+        // https://datatracker.ietf.org/doc/draft-ietf-quic-ack-frequency/
+        // The requested max ack delay must not be less than the peer's min_ack_delay.
+        long maxAckDelayMicros = Long.max(requestedMaxAckDelay * 1000L, peerTransportParams.getMinAckDelay());
+        // As the receiver should acknowledge a gap in the packet numbers immediately, loss detection is not delayed.
+        AckFrequencyFrame ackFrequencyFrame = new AckFrequencyFrame(0, requestedAckElicitingThreshold, maxAckDelayMicros, 1);
+        // The frame can only be sent in 1-RTT packets, so wait until the handshake is confirmed.
+        handshakeStateListeners.add(newState -> {
+            if (newState == HandshakeState.Confirmed) {
+                send(ackFrequencyFrame, this::retransmitAckFrequencyFrame, false);
+            }
+        });
+        // Until the frame is processed by the peer, it may use either max ack delay, so the largest must be assumed.
+        int maxAckDelay = (int) Long.max(peerTransportParams.getMaxAckDelay(), (maxAckDelayMicros + 999) / 1000);
+        getSender().setReceiverMaxAckDelay(maxAckDelay);
+    }
+
+    private void retransmitAckFrequencyFrame(QuicFrame lostFrame) {
+        send(lostFrame, this::retransmitAckFrequencyFrame, false);
     }
 
     @Override
@@ -264,6 +340,23 @@ public abstract class QuicConnectionImpl implements QuicConnection, PacketProces
         recoveryManager.received(ackFrame, packet.getPnSpace(), timeReceived);
     }
 
+    @Override
+    public void process(AckFrequencyFrame ackFrequencyFrame, QuicPacket packet, Instant timeReceived) {
+        // https://datatracker.ietf.org/doc/draft-ietf-quic-ack-frequency/
+        // A requested max ack delay that is less than the advertised min_ack_delay must be treated as a connection
+        // error of type PROTOCOL_VIOLATION.
+        if (ackFrequencyFrame.getRequestMaxAckDelay() < AckGenerator.MIN_ACK_DELAY) {
+            immediateCloseWithError(EncryptionLevel.App, PROTOCOL_VIOLATION.value, "requested max ack delay less than min ack delay");
+            return;
+        }
+        getAckGenerator().getAckGenerator(packet.getPnSpace()).process(ackFrequencyFrame);
+    }
+
+    @Override
+    public void process(ImmediateAckFrame immediateAckFrame, QuicPacket packet, Instant timeReceived) {
+        getAckGenerator().getAckGenerator(packet.getPnSpace()).immediateAckRequested();
+    }
+
     @Override
     public void process(CryptoFrame cryptoFrame, QuicPacket packet, Instant timeReceived) {
         try {
@@ -586,7 +679,10 @@ public abstract class QuicConnectionImpl implements QuicConnection, PacketProces
         idleTimer.shutdown();
         getSender().shutdown(postSenderShutdownAction);
         connectionState = Status.Closed;
-        scheduler.shutdown();
+        connectionMemory.close();
+        if (ownScheduler) {
+            scheduler.shutdown();
+        }
     }
 
     protected int quicError(TlsProtocolException tlsError) {
@@ -619,7 +715,9 @@ public abstract class QuicConnectionImpl implements QuicConnection, PacketProces
         //   packets larger than 1280 bytes.  Assuming the minimum IP header size,
         //   this results in a QUIC maximum packet size of 1232 bytes for IPv6 and
         //   1252 bytes for IPv4."
-        // As it is not know (yet) whether running over IP4 or IP6, take the smallest of the two:
+        // As it is not know (yet) whether running over IP4 or IP6, take the smallest of the two. This is the size
+        // the connection starts with; path MTU discovery (see PmtuDiscovery) can increase it once the handshake is
+        // confirmed.
         return 1232;
     }
 
@@ -680,7 +778,7 @@ public abstract class QuicConnectionImpl implements QuicConnection, PacketProces
 
     @Override
     public Statistics getStats() {
-        return new Statistics(getSender().getStatistics());
+        return new Statistics(getSender().getStatistics(), connectionMemory.getUsage());
     }
 
     @Override
@@ -692,6 +790,13 @@ public abstract class QuicConnectionImpl implements QuicConnection, PacketProces
     
     protected abstract SenderImpl getSender();
 
+    /**
+     * @return  the smoothed RTT in microseconds
+     */
+    public long getSmoothedRttMicros() {
+        return getSender().getSmoothedRttMicros();
+    }
+
     protected abstract TlsEngine getTlsEngine();
 
     protected abstract GlobalAckGenerator getAckGenerator();
@@ -39,6 +39,7 @@ public class TransportParameters {
     private boolean disableMigration;
     private PreferredAddress preferredAddress;
     private int maxAckDelay;
+    private long minAckDelay;
     private int activeConnectionIdLimit;
     private byte[] initialSourceConnectionId;
     private byte[] retrySourceConnectionId;
@@ -167,6 +168,18 @@ public class TransportParameters {
         return maxAckDelay;
     }
 
+    public void setMinAckDelay(long minAckDelay) {
+        this.minAckDelay = minAckDelay;
+    }
+
+    /**
+     * Retrieve the min ack delay (ack frequency extension) in microseconds
+     * @return  the min ack delay, or 0 when absent (i.e. the ack frequency extension is not supported)
+     */
+    public long getMinAckDelay() {
+        return minAckDelay;
+    }
+
     public int getActiveConnectionIdLimit() {
         return activeConnectionIdLimit;
     }
@@ -228,6 +241,7 @@ public class TransportParameters {
                 "\n- initial max streams uni\t\t" + initialMaxStreamsUni +
                 "\n- ack delay exponent\t\t\t" + ackDelayExponent +
                 "\n- max ack delay\t\t\t\t" + maxAckDelay +
+                "\n- min ack delay\t\t\t\t" + minAckDelay +
                 "\n- disable migration\t\t\t" + disableMigration +
                 "\n- active connection id limit\t\t" + activeConnectionIdLimit +
                 "\n- initial source connection id\t\t" + formatCid(initialSourceConnectionId) +
@@ -305,6 +305,13 @@ public abstract class BaseLogger implements Logger {
         }
     }
 
+    @Override
+    public void decrypted(String message, ByteBuffer data, int offset, int length) {
+        if (logDecrypted) {
+            logWithHexDump(message + " (" + length + "): ", data, offset, length);
+        }
+    }
+
     @Override
     public void decrypted(String message) {
         if (logDecrypted) {
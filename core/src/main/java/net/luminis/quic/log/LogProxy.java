@@ -213,6 +213,11 @@ public class LogProxy implements Logger {
         proxiedLogger.decrypted(message, data, length);
     }
 
+    @Override
+    public void decrypted(String message, ByteBuffer data, int offset, int length) {
+        proxiedLogger.decrypted(message, data, offset, length);
+    }
+
     @Override
     public void decrypted(String message) {
         proxiedLogger.decrypted(message);
@@ -110,27 +110,60 @@ public abstract class LongHeaderPacket extends QuicPacket {
 
     @Override
     public byte[] generatePacketBytes(Aead aead) {
+        ByteBuffer packetBuffer = ByteBuffer.allocate(MAX_PACKET_SIZE);
+        generatePacketBytes(aead, packetBuffer);
+
+        byte[] packetBytes = new byte[packetBuffer.position()];
+        packetBuffer.flip();
+        packetBuffer.get(packetBytes);
+        return packetBytes;
+    }
+
+    @Override
+    public void generatePacketBytes(Aead aead, ByteBuffer packetBuffer) {
         assert(packetNumber >= 0);
 
-        ByteBuffer packetBuffer = ByteBuffer.allocate(MAX_PACKET_SIZE);
+        int packetStart = packetBuffer.position();
         generateFrameHeaderInvariant(packetBuffer);
         generateAdditionalFields(packetBuffer);
-        byte[] encodedPacketNumber = encodePacketNumber(packetNumber);
-        ByteBuffer frameBytes = generatePayloadBytes(encodedPacketNumber.length);
-        addLength(packetBuffer, encodedPacketNumber.length, frameBytes.limit());
-        packetBuffer.put(encodedPacketNumber);
+        int packetNumberSize = computePacketNumberSize(packetNumber);
 
-        protectPacketNumberAndPayload(packetBuffer, encodedPacketNumber.length, frameBytes, 0, aead);
+        // The length field precedes the payload, so its size must be known before the frames are serialized in place;
+        // if the estimate based on the frame lengths turns out to be wrong, the payload is moved.
+        int lengthPosition = packetBuffer.position();
+        int estimatedPayloadSize = Integer.max(4 - packetNumberSize, getFrames().stream().mapToInt(f -> f.getFrameLength()).sum());
+        int lengthSize = VariableLengthInteger.bytesNeeded(packetNumberSize + estimatedPayloadSize + 16);
+        int payloadPosition = lengthPosition + lengthSize + packetNumberSize;
+        packetBuffer.position(payloadPosition);
+        int payloadSize = serializeFrames(packetBuffer, packetNumberSize);
+
+        int actualLengthSize = VariableLengthInteger.bytesNeeded(packetNumberSize + payloadSize + 16);
+        if (actualLengthSize != lengthSize) {
+            int newPayloadPosition = payloadPosition + actualLengthSize - lengthSize;
+            movePayload(packetBuffer, payloadPosition, newPayloadPosition, payloadSize);
+            payloadPosition = newPayloadPosition;
+        }
+        packetBuffer.position(lengthPosition);
+        addLength(packetBuffer, packetNumberSize, payloadSize);
+        encodePacketNumber(packetNumber, packetBuffer);
+        packetBuffer.position(payloadPosition + payloadSize);
 
-        packetBuffer.limit(packetBuffer.position());
-        packetSize = packetBuffer.limit();
+        protectPacketNumberAndPayload(packetBuffer, packetStart, packetNumberSize, payloadSize, aead);
 
-        byte[] packetBytes = new byte[packetBuffer.position()];
-        packetBuffer.rewind();
-        packetBuffer.get(packetBytes);
+        packetSize = packetBuffer.position() - packetStart;
+    }
 
-        packetSize = packetBytes.length;
-        return packetBytes;
+    private static void movePayload(ByteBuffer buffer, int from, int to, int length) {
+        if (to < from) {
+            for (int i = 0; i < length; i++) {
+                buffer.put(to + i, buffer.get(from + i));
+            }
+        }
+        else {
+            for (int i = length - 1; i >= 0; i--) {
+                buffer.put(to + i, buffer.get(from + i));
+            }
+        }
     }
 
     @Override
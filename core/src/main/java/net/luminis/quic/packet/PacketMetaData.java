@@ -27,12 +27,25 @@ public class PacketMetaData {
     private final InetSocketAddress sourceAddress;
     private final int datagramNumber;
     private final boolean moreDataInDatagram;
+    private final Runnable datagramReleaseFunction;
 
     public PacketMetaData(Instant timeReceived, InetSocketAddress sourceAddress, int datagramNumber) {
+        this(timeReceived, sourceAddress, datagramNumber, null);
+    }
+
+    /**
+     * Creates meta data for a datagram whose underlying buffer can be reused once the datagram is processed.
+     * @param timeReceived
+     * @param sourceAddress
+     * @param datagramNumber
+     * @param datagramReleaseFunction  function that releases the datagram buffer, may be null
+     */
+    public PacketMetaData(Instant timeReceived, InetSocketAddress sourceAddress, int datagramNumber, Runnable datagramReleaseFunction) {
         this.timeReceived = timeReceived;
         this.sourceAddress = sourceAddress;
         this.datagramNumber = datagramNumber;
         moreDataInDatagram = false;
+        this.datagramReleaseFunction = datagramReleaseFunction;
     }
 
     public PacketMetaData(PacketMetaData original, boolean moreDataInDatagram) {
@@ -40,6 +53,8 @@ public class PacketMetaData {
         this.sourceAddress = original.sourceAddress;
         this.datagramNumber = original.datagramNumber;
         this.moreDataInDatagram = moreDataInDatagram;
+        // Releasing is a datagram level operation, meta data for individual packets can never release the datagram.
+        this.datagramReleaseFunction = null;
     }
 
     public Instant timeReceived() {
@@ -57,4 +72,14 @@ public class PacketMetaData {
     public int datagramNumber() {
         return datagramNumber;
     }
+
+    /**
+     * Signals that the datagram (buffer) is not used anymore. Should only be called by the party that finally processed
+     * the datagram; not calling it is harmless, it only prevents the buffer from being reused.
+     */
+    public void releaseDatagram() {
+        if (datagramReleaseFunction != null) {
+            datagramReleaseFunction.run();
+        }
+    }
 }
@@ -42,6 +42,7 @@ abstract public class QuicPacket {
     protected int packetSize = -1;
     protected byte[] destinationConnectionId;
     protected boolean isProbe;
+    protected boolean isPmtuProbe;
 
     public QuicPacket() {
         frames = new ArrayList<>();
@@ -62,6 +63,15 @@ abstract public class QuicPacket {
         }
     }
 
+    static void encodePacketNumber(long packetNumber, ByteBuffer buffer) {
+        if (packetNumber > 0xffffffffL) {
+            throw new NotYetImplementedException("cannot encode pn > 4 bytes");
+        }
+        for (int i = computePacketNumberSize(packetNumber) - 1; i >= 0; i--) {
+            buffer.put((byte) (packetNumber >> (i * 8)));
+        }
+    }
+
     static byte[] encodePacketNumber(long packetNumber) {
         if (packetNumber <= 0xff) {
             return new byte[] { (byte) packetNumber };
@@ -113,7 +123,7 @@ abstract public class QuicPacket {
         // "When removing packet protection, an endpoint
         //   first removes the header protection."
 
-        int currentPosition = buffer.position();
+        int packetNumberPosition = buffer.position();
         // https://tools.ietf.org/html/draft-ietf-quic-tls-17#section-5.4.2:
         // "The same number of bytes are always sampled, but an allowance needs
         //   to be made for the endpoint removing protection, which will not know
@@ -123,19 +133,16 @@ abstract public class QuicPacket {
         if (buffer.remaining() < 4) {
             throw new InvalidPacketException();
         }
-        buffer.position(currentPosition + 4);
         // https://tools.ietf.org/html/draft-ietf-quic-tls-17#section-5.4.2:
         // "This algorithm samples 16 bytes from the packet ciphertext."
-        if (buffer.remaining() < 16) {
+        if (buffer.remaining() < 4 + 16) {
             throw new InvalidPacketException();
         }
-        byte[] sample = new byte[16];
-        buffer.get(sample);
         // https://tools.ietf.org/html/draft-ietf-quic-tls-17#section-5.4.1:
         // "Header protection is applied after packet protection is applied (see
         //   Section 5.3).  The ciphertext of the packet is sampled and used as
         //   input to an encryption algorithm."
-        byte[] mask = createHeaderProtectionMask(sample, aead);
+        byte[] mask = createHeaderProtectionMask(buffer, packetNumberPosition, aead);
         // https://tools.ietf.org/html/draft-ietf-quic-tls-17#section-5.4.1
         // "The output of this algorithm is a 5 byte mask which is applied to the
         //   protected header fields using exclusive OR.  The least significant
@@ -151,40 +158,30 @@ abstract public class QuicPacket {
             decryptedFlags = (byte) (flags ^ mask[0] & 0x1f);
         }
         setUnprotectedHeader(decryptedFlags);
-        buffer.position(currentPosition);
 
         // https://tools.ietf.org/html/draft-ietf-quic-tls-17#section-5.4.1:
         // "pn_length = (packet[0] & 0x03) + 1"
         int protectedPackageNumberLength = (decryptedFlags & 0x03) + 1;
-        byte[] protectedPackageNumber = new byte[protectedPackageNumberLength];
-        buffer.get(protectedPackageNumber);
-
-        byte[] unprotectedPacketNumber = new byte[protectedPackageNumberLength];
+        long truncatedPacketNumber = 0;
         for (int i = 0; i < protectedPackageNumberLength; i++) {
             // https://tools.ietf.org/html/draft-ietf-quic-tls-17#section-5.4.1:
             // " ...and the packet number is
             //   masked with the remaining bytes.  Any unused bytes of mask that might
             //   result from a shorter packet number encoding are unused."
-            unprotectedPacketNumber[i] = (byte) (protectedPackageNumber[i] ^ mask[1+i]);
+            byte unprotectedPacketNumberByte = (byte) (buffer.get(packetNumberPosition + i) ^ mask[1+i]);
+            // Header protection is removed in place, so the header in the buffer can be used as associated data.
+            buffer.put(packetNumberPosition + i, unprotectedPacketNumberByte);
+            truncatedPacketNumber = (truncatedPacketNumber << 8) | (unprotectedPacketNumberByte & 0xff);
         }
-        long truncatedPacketNumber = bytesToInt(unprotectedPacketNumber);
+        buffer.put(0, decryptedFlags);
         packetNumber = decodePacketNumber(truncatedPacketNumber, largestPacketNumber, protectedPackageNumberLength * 8);
         log.decrypted("Unprotected packet number: " + packetNumber);
 
-        currentPosition = buffer.position();
         // https://tools.ietf.org/html/draft-ietf-quic-tls-17#section-5.3
         // "The associated data, A, for the AEAD is the contents of the QUIC
         //   header, starting from the flags byte in either the short or long
         //   header, up to and including the unprotected packet number."
-        byte[] frameHeader = new byte[buffer.position()];
-        buffer.position(0);
-        buffer.get(frameHeader);
-        frameHeader[0] = decryptedFlags;
-        buffer.position(currentPosition);
-
-        // Copy unprotected (decrypted) packet number in frame header, before decrypting payload.
-        System.arraycopy(unprotectedPacketNumber, 0, frameHeader, frameHeader.length - (protectedPackageNumberLength), protectedPackageNumberLength);
-        log.encrypted("Frame header", frameHeader);
+        int payloadPosition = packetNumberPosition + protectedPackageNumberLength;
 
         // "The input plaintext, P, for the AEAD is the payload of the QUIC
         //   packet, as described in [QUIC-TRANSPORT]."
@@ -193,75 +190,48 @@ abstract public class QuicPacket {
         if (encryptedPayloadLength < 1) {
             throw new InvalidPacketException();
         }
-        byte[] payload = new byte[encryptedPayloadLength];
-        buffer.get(payload, 0, encryptedPayloadLength);
-        log.encrypted("Encrypted payload", payload);
+        buffer.position(payloadPosition + encryptedPayloadLength);
 
-        byte[] frameBytes = decryptPayload(payload, frameHeader, packetNumber, aead);
-        log.decrypted("Decrypted payload", frameBytes);
+        int payloadLength = decryptPayload(buffer, payloadPosition, encryptedPayloadLength, packetNumber, aead);
+        log.decrypted("Decrypted payload", buffer, payloadPosition, payloadLength);
 
+        ByteBuffer frameBytes = buffer.duplicate();
+        frameBytes.limit(payloadPosition + payloadLength);
+        frameBytes.position(payloadPosition);
         frames = new ArrayList<>();
         parseFrames(frameBytes, log);
     }
 
     protected void setUnprotectedHeader(byte decryptedFlags) {}
 
-    byte[] createHeaderProtectionMask(byte[] sample, Aead aead) {
-        return createHeaderProtectionMask(sample, 4, aead);
-    }
-
-    byte[] createHeaderProtectionMask(byte[] ciphertext, int encodedPacketNumberLength, Aead aead) {
+    /**
+     * Creates the header protection mask, using the sample taken from the packet ciphertext in the given buffer.
+     * @param buffer
+     * @param packetNumberPosition  absolute position of the packet number in the buffer
+     * @param aead
+     * @return  the mask; note that the array is reused by the aead, so it must not be retained
+     */
+    byte[] createHeaderProtectionMask(ByteBuffer buffer, int packetNumberPosition, Aead aead) {
         // https://tools.ietf.org/html/draft-ietf-quic-tls-17#section-5.4
         // "The same number of bytes are always sampled, but an allowance needs
         //   to be made for the endpoint removing protection, which will not know
         //   the length of the Packet Number field.  In sampling the packet
         //   ciphertext, the Packet Number field is assumed to be 4 bytes long
         //   (its maximum possible encoded length)."
-        int sampleOffset = 4 - encodedPacketNumberLength;
-        byte[] sample = new byte[16];
-        System.arraycopy(ciphertext, sampleOffset, sample, 0, 16);
-
-        return aead.createHeaderProtectionMask(sample);
+        int sampleOffset = packetNumberPosition + 4;
+        return aead.createHeaderProtectionMask(buffer, sampleOffset);
     }
 
-    byte[] encryptPayload(byte[] message, byte[] associatedData, long packetNumber, Aead aead) {
-
-        // From https://tools.ietf.org/html/draft-ietf-quic-tls-16#section-5.3:
-        // "The nonce, N, is formed by combining the packet
-        //   protection IV with the packet number.  The 64 bits of the
-        //   reconstructed QUIC packet number in network byte order are left-
-        //   padded with zeros to the size of the IV.  The exclusive OR of the
-        //   padded packet number and the IV forms the AEAD nonce"
-        byte[] writeIV = aead.getWriteIV();
-        ByteBuffer nonceInput = ByteBuffer.allocate(writeIV.length);
-        for (int i = 0; i < nonceInput.capacity() - 8; i++)
-            nonceInput.put((byte) 0x00);
-        nonceInput.putLong(packetNumber);
-
-        byte[] nonce = new byte[12];
-        int i = 0;
-        for (byte b : nonceInput.array())
-            nonce[i] = (byte) (b ^ writeIV[i++]);
-
-        return aead.aeadEncrypt(associatedData, message, nonce);
-    }
-
-    byte[] decryptPayload(byte[] message, byte[] associatedData, long packetNumber, Aead aead) throws DecryptionException {
-        ByteBuffer nonceInput = ByteBuffer.allocate(12);
-        nonceInput.putInt(0);
-        nonceInput.putLong(packetNumber);
+    void encryptPayload(ByteBuffer buffer, int associatedDataPosition, int payloadPosition, int payloadLength, long packetNumber, Aead aead) {
+        aead.aeadEncrypt(buffer, associatedDataPosition, payloadPosition, payloadLength, packetNumber);
+    }
 
+    int decryptPayload(ByteBuffer buffer, int payloadPosition, int encryptedPayloadLength, long packetNumber, Aead aead) throws DecryptionException {
         if (this instanceof ShortHeaderPacket) {
             aead.checkKeyPhase(((ShortHeaderPacket) this).keyPhaseBit);
         }
 
-        byte[] writeIV = aead.getWriteIV();
-        byte[] nonce = new byte[12];
-        int i = 0;
-        for (byte b : nonceInput.array())
-            nonce[i] = (byte) (b ^ writeIV[i++]);
-
-        return aead.aeadDecrypt(associatedData, message, nonce);
+        return aead.aeadDecrypt(buffer, 0, payloadPosition, encryptedPayloadLength, packetNumber);
     }
 
     static long decodePacketNumber(long truncatedPacketNumber, long largestPacketNumber, int bits) {
@@ -283,8 +253,7 @@ abstract public class QuicPacket {
         return candidatePn;
     }
 
-    protected void parseFrames(byte[] frameBytes, Logger log) throws InvalidPacketException {
-        ByteBuffer buffer = ByteBuffer.wrap(frameBytes);
+    protected void parseFrames(ByteBuffer buffer, Logger log) throws InvalidPacketException {
 
         int frameType = -1;
         try {
@@ -356,6 +325,18 @@ abstract public class QuicPacket {
                     case 0x1e:
                         frames.add(new HandshakeDoneFrame(quicVersion).parse(buffer, log));
                         break;
+                    case 0x1f:
+                        frames.add(new ImmediateAckFrame().parse(buffer, log));
+                        break;
+                    case 0x40:
+                        // Frame types in the range 0x40 - 0x3fff are encoded in two bytes.
+                        if (buffer.remaining() >= 2 && (buffer.getShort(buffer.position()) & 0x3fff) == AckFrequencyFrame.FRAME_TYPE) {
+                            frames.add(new AckFrequencyFrame().parse(buffer, log));
+                        }
+                        else {
+                            throw new ProtocolError("connection error FRAME_ENCODING_ERROR");
+                        }
+                        break;
                     default:
                         if ((frameType >= 0x08) && (frameType <= 0x0f)) {
                             frames.add(new StreamFrame().parse(buffer, log));
@@ -401,10 +382,17 @@ abstract public class QuicPacket {
         packetNumber = pn;
     }
 
-    protected ByteBuffer generatePayloadBytes(int encodedPacketNumberLength) {
-        ByteBuffer frameBytes = ByteBuffer.allocate(MAX_PACKET_SIZE);
-        frames.stream().forEachOrdered(frame -> frame.serialize(frameBytes));
-        int serializeFramesLength = frameBytes.position();
+    /**
+     * Serializes the frames of this packet into the given buffer, at the buffer's current position, adding padding
+     * when necessary.
+     * @param buffer
+     * @param encodedPacketNumberLength
+     * @return  the length of the (unprotected) payload
+     */
+    protected int serializeFrames(ByteBuffer buffer, int encodedPacketNumberLength) {
+        int payloadStart = buffer.position();
+        frames.stream().forEachOrdered(frame -> frame.serialize(buffer));
+        int serializeFramesLength = buffer.position() - payloadStart;
         // https://tools.ietf.org/html/draft-ietf-quic-tls-27#section-5.4.2
         // "To ensure that sufficient data is available for sampling, packets are
         //   padded so that the combined lengths of the encoded packet number and
@@ -416,42 +404,42 @@ abstract public class QuicPacket {
         //   for header protection. (...). This results in needing at least 3 bytes of frames in the unprotected payload
         //   if the packet number is encoded on a single byte, or 2 bytes of frames for a 2-byte packet number encoding."
         if (encodedPacketNumberLength + serializeFramesLength < 4) {
-            Padding padding = new Padding(4 - encodedPacketNumberLength - frameBytes.position());
+            Padding padding = new Padding(4 - encodedPacketNumberLength - serializeFramesLength);
             frames.add(padding);
-            padding.serialize(frameBytes);
+            padding.serialize(buffer);
         }
-        frameBytes.flip();
-        return frameBytes;
+        return buffer.position() - payloadStart;
     }
 
-    protected void protectPacketNumberAndPayload(ByteBuffer packetBuffer, int packetNumberSize, ByteBuffer payload, int paddingSize, Aead aead) {
-        int packetNumberPosition = packetBuffer.position() - packetNumberSize;
+    /**
+     * Applies packet protection and header protection in place, to the packet that has been written into the given
+     * buffer, starting at the given position and with the (unprotected) payload ending at the buffer's current position.
+     * On return, the position of the buffer is at the end of the protected packet.
+     * @param packetBuffer
+     * @param packetStart  absolute position of the first byte of the packet
+     * @param packetNumberSize
+     * @param payloadLength
+     * @param aead
+     */
+    protected void protectPacketNumberAndPayload(ByteBuffer packetBuffer, int packetStart, int packetNumberSize, int payloadLength, Aead aead) {
+        int payloadPosition = packetBuffer.position() - payloadLength;
+        int packetNumberPosition = payloadPosition - packetNumberSize;
 
         // From https://tools.ietf.org/html/draft-ietf-quic-tls-16#section-5.3:
         // "The associated data, A, for the AEAD is the contents of the QUIC
         //   header, starting from the flags octet in either the short or long
         //   header, up to and including the unprotected packet number."
-        int additionalDataSize = packetBuffer.position();
-        byte[] additionalData = new byte[additionalDataSize];
-        packetBuffer.flip();  // Prepare for reading from start
-        packetBuffer.get(additionalData);  // Position is now where it was at start of this method.
-        packetBuffer.limit(packetBuffer.capacity());  // Ensure we can continue writing
-
-        byte[] paddedPayload = new byte[payload.limit() + paddingSize];
-        payload.get(paddedPayload, 0, payload.limit());
-        byte[] encryptedPayload = encryptPayload(paddedPayload, additionalData, packetNumber, aead);
-        packetBuffer.put(encryptedPayload);
-
-        byte[] protectedPacketNumber;
-        byte[] encodedPacketNumber = encodePacketNumber(packetNumber);
-        byte[] mask = createHeaderProtectionMask(encryptedPayload, encodedPacketNumber.length, aead);
+        encryptPayload(packetBuffer, packetStart, payloadPosition, payloadLength, packetNumber, aead);
+        // https://www.rfc-editor.org/rfc/rfc9001.html#name-aead-usage
+        // "These cipher suites have a 16-byte authentication tag and produce an output 16 bytes larger than their input."
+        packetBuffer.position(payloadPosition + payloadLength + 16);
 
-        protectedPacketNumber = new byte[encodedPacketNumber.length];
-        for (int i = 0; i < encodedPacketNumber.length; i++) {
-            protectedPacketNumber[i] = (byte) (encodedPacketNumber[i] ^ mask[1+i]);
+        byte[] mask = createHeaderProtectionMask(packetBuffer, packetNumberPosition, aead);
+        for (int i = 0; i < packetNumberSize; i++) {
+            packetBuffer.put(packetNumberPosition + i, (byte) (packetBuffer.get(packetNumberPosition + i) ^ mask[1+i]));
         }
 
-        byte flags = packetBuffer.get(0);
+        byte flags = packetBuffer.get(packetStart);
         if ((flags & 0x80) == 0x80) {
             // Long header: 4 bits masked
             flags ^= (byte) (mask[0] & 0x0f);
@@ -460,12 +448,7 @@ abstract public class QuicPacket {
             // Short header: 5 bits masked
             flags ^= (byte) (mask[0] & 0x1f);
         }
-        packetBuffer.put(0, flags);
-
-        int currentPosition = packetBuffer.position();
-        packetBuffer.position(packetNumberPosition);
-        packetBuffer.put(protectedPacketNumber);
-        packetBuffer.position(currentPosition);
+        packetBuffer.put(packetStart, flags);
     }
 
     static long bytesToInt(byte[] data) {
@@ -511,6 +494,16 @@ abstract public class QuicPacket {
 
     public abstract byte[] generatePacketBytes(Aead aead);
 
+    /**
+     * Generates the (protected) packet directly into the given buffer, starting at the buffer's current position.
+     * On return, the position of the buffer is at the end of the packet.
+     * @param aead
+     * @param buffer
+     */
+    public void generatePacketBytes(Aead aead, ByteBuffer buffer) {
+        buffer.put(generatePacketBytes(aead));
+    }
+
     public abstract void parse(ByteBuffer data, Aead aead, long largestPacketNumber, Logger log, int sourceConnectionIdLength) throws DecryptionException, InvalidPacketException;
 
     public List<QuicFrame> getFrames() {
@@ -565,6 +558,19 @@ abstract public class QuicPacket {
         isProbe = probe;
     }
 
+    /**
+     * Marks this packet as a path MTU probe, i.e. a packet that is used to determine whether packets of its size can
+     * be sent to the peer.
+     * @param pmtuProbe
+     */
+    public void setIsPmtuProbe(boolean pmtuProbe) {
+        isPmtuProbe = pmtuProbe;
+    }
+
+    public boolean isPmtuProbe() {
+        return isPmtuProbe;
+    }
+
     public Version getVersion() {
         return quicVersion;
     }
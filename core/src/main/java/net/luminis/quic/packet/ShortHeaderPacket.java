@@ -129,9 +129,20 @@ public class ShortHeaderPacket extends QuicPacket {
 
     @Override
     public byte[] generatePacketBytes(Aead aead) {
+        ByteBuffer buffer = ByteBuffer.allocate(MAX_PACKET_SIZE);
+        generatePacketBytes(aead, buffer);
+
+        byte[] packetBytes = new byte[buffer.position()];
+        buffer.flip();
+        buffer.get(packetBytes);
+        return packetBytes;
+    }
+
+    @Override
+    public void generatePacketBytes(Aead aead, ByteBuffer buffer) {
         assert(packetNumber >= 0);
 
-        ByteBuffer buffer = ByteBuffer.allocate(MAX_PACKET_SIZE);
+        int packetStart = buffer.position();
         byte flags;
         // https://tools.ietf.org/html/draft-ietf-quic-transport-17#section-17.3
         // "|0|1|S|R|R|K|P P|"
@@ -146,21 +157,13 @@ public class ShortHeaderPacket extends QuicPacket {
         buffer.put(flags);
         buffer.put(destinationConnectionId);
 
-        byte[] encodedPacketNumber = encodePacketNumber(packetNumber);
-        buffer.put(encodedPacketNumber);
-
-        ByteBuffer frameBytes = generatePayloadBytes(encodedPacketNumber.length);
-        protectPacketNumberAndPayload(buffer, encodedPacketNumber.length, frameBytes, 0, aead);
-
-        buffer.limit(buffer.position());
-        packetSize = buffer.limit();
-        byte[] packetBytes = new byte[packetSize];
-        buffer.rewind();
-        buffer.get(packetBytes);
+        int packetNumberSize = computePacketNumberSize(packetNumber);
+        encodePacketNumber(packetNumber, buffer);
 
-        packetSize = packetBytes.length;
+        int payloadLength = serializeFrames(buffer, packetNumberSize);
+        protectPacketNumberAndPayload(buffer, packetStart, packetNumberSize, payloadLength, aead);
 
-        return packetBytes;
+        packetSize = buffer.position() - packetStart;
     }
 
     @Override
@@ -0,0 +1,81 @@
+/*
+ * Copyright © 2024 Peter Doornbosch
+ *
+ * This file is part of Kwik, an implementation of the QUIC protocol in Java.
+ *
+ * Kwik is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * Kwik is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.luminis.quic.receive;
+
+import net.luminis.quic.ReceiveQueueMetrics;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Combined metrics of a group of receive queues that all have the same capacity, e.g. the queues of all connections.
+ * The depth is the total depth of all registered queues, the high-water mark the highest mark of any queue (including
+ * the ones that are unregistered) and drop counts are totals over all queues (also including unregistered).
+ * The metrics are computed when requested, so the queues themselves do not share any state.
+ */
+public class AggregatedReceiveQueueMetrics implements ReceiveQueueMetrics {
+
+    private final int capacity;
+    private final Set<ReceiveQueueMetrics> queues = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger retiredHighWaterMark = new AtomicInteger();
+    private final AtomicLongArray retiredDropCounts = new AtomicLongArray(DropReason.values().length);
+
+    public AggregatedReceiveQueueMetrics(int capacity) {
+        this.capacity = capacity;
+    }
+
+    public void register(ReceiveQueueMetrics queueMetrics) {
+        queues.add(queueMetrics);
+    }
+
+    /**
+     * Removes the queue from the group; its high-water mark and drop counts are retained in the aggregated metrics.
+     * @param queueMetrics
+     */
+    public void unregister(ReceiveQueueMetrics queueMetrics) {
+        if (queues.remove(queueMetrics)) {
+            retiredHighWaterMark.accumulateAndGet(queueMetrics.getHighWaterMark(), Math::max);
+            for (DropReason reason : DropReason.values()) {
+                retiredDropCounts.addAndGet(reason.ordinal(), queueMetrics.getDropCount(reason));
+            }
+        }
+    }
+
+    @Override
+    public int getCapacity() {
+        return capacity;
+    }
+
+    @Override
+    public int getDepth() {
+        return queues.stream().mapToInt(ReceiveQueueMetrics::getDepth).sum();
+    }
+
+    @Override
+    public int getHighWaterMark() {
+        return Math.max(retiredHighWaterMark.get(), queues.stream().mapToInt(ReceiveQueueMetrics::getHighWaterMark).max().orElse(0));
+    }
+
+    @Override
+    public long getDropCount(DropReason reason) {
+        return retiredDropCounts.get(reason.ordinal()) + queues.stream().mapToLong(queue -> queue.getDropCount(reason)).sum();
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright © 2024 Peter Doornbosch
+ *
+ * This file is part of Kwik, an implementation of the QUIC protocol in Java.
+ *
+ * Kwik is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * Kwik is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.luminis.quic.receive;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Pool of (direct) byte buffers for receiving datagrams, to avoid allocating a new buffer for each datagram received.
+ * Buffers are allocated on demand; when released, a buffer is kept for reuse as long as the pool has not reached its
+ * maximum size. Buffers that are not released (e.g. because the datagram is dropped somewhere in the processing
+ * chain) are simply garbage collected, so failing to release a buffer is harmless; releasing a buffer that is still
+ * in use however, is not.
+ */
+public class DatagramBufferPool {
+
+    private final int bufferSize;
+    private final BlockingQueue<ByteBuffer> freeBuffers;
+
+    public DatagramBufferPool(int bufferSize, int maxPooledBuffers) {
+        if (bufferSize <= 0 || maxPooledBuffers <= 0) {
+            throw new IllegalArgumentException();
+        }
+        this.bufferSize = bufferSize;
+        freeBuffers = new ArrayBlockingQueue<>(maxPooledBuffers);
+    }
+
+    /**
+     * Returns a cleared buffer with at least the pool's buffer size as capacity.
+     * @return
+     */
+    public ByteBuffer acquire() {
+        ByteBuffer buffer = freeBuffers.poll();
+        if (buffer == null) {
+            buffer = ByteBuffer.allocateDirect(bufferSize);
+        }
+        return buffer;
+    }
+
+    /**
+     * Returns the given buffer to the pool. The caller must not use the buffer (or any view derived from it) anymore.
+     * @param buffer
+     */
+    public void release(ByteBuffer buffer) {
+        if (buffer.capacity() == bufferSize) {
+            buffer.clear();
+            freeBuffers.offer(buffer);
+        }
+    }
+
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    int pooledBuffers() {
+        return freeBuffers.size();
+    }
+}
@@ -20,6 +20,7 @@ package net.luminis.quic.receive;
 
 import java.net.DatagramPacket;
 import java.net.InetAddress;
+import java.net.InetSocketAddress;
 import java.nio.ByteBuffer;
 import java.time.Instant;
 
@@ -28,19 +29,37 @@ import java.time.Instant;
  */
 public class RawPacket {
 
-    private final DatagramPacket receivedPacket;
     private final Instant timeReceived;
     private final int number;
     private final ByteBuffer data;
+    private final InetSocketAddress sourceAddress;
+    private DatagramBufferPool bufferPool;
 
     public RawPacket(DatagramPacket receivedPacket, Instant timeReceived, int number) {
-        this.receivedPacket = receivedPacket;
         this.timeReceived = timeReceived;
         this.number = number;
+        sourceAddress = (InetSocketAddress) receivedPacket.getSocketAddress();
 
         data = ByteBuffer.wrap(receivedPacket.getData(), 0, receivedPacket.getLength());
     }
 
+    /**
+     * Creates a raw packet for a datagram that was received in a buffer obtained from the given pool. The buffer is
+     * returned to the pool when the packet is released.
+     * @param data  the datagram data, positioned at the start of the datagram
+     * @param sourceAddress
+     * @param timeReceived
+     * @param number
+     * @param bufferPool
+     */
+    public RawPacket(ByteBuffer data, InetSocketAddress sourceAddress, Instant timeReceived, int number, DatagramBufferPool bufferPool) {
+        this.timeReceived = timeReceived;
+        this.number = number;
+        this.data = data;
+        this.sourceAddress = sourceAddress;
+        this.bufferPool = bufferPool;
+    }
+
     public Instant getTimeReceived() {
         return timeReceived;
     }
@@ -58,10 +77,26 @@ public class RawPacket {
     }
 
     public InetAddress getAddress() {
-        return receivedPacket.getAddress();
+        return sourceAddress.getAddress();
     }
 
     public int getPort() {
-        return receivedPacket.getPort();
+        return sourceAddress.getPort();
+    }
+
+    public InetSocketAddress getSourceAddress() {
+        return sourceAddress;
+    }
+
+    /**
+     * Signals that the datagram data is not used anymore, so the underlying buffer can be reused for receiving another
+     * datagram. Must only be called once, by the party that finally processed the datagram, and only when no references
+     * to the data are retained.
+     */
+    public void release() {
+        if (bufferPool != null) {
+            bufferPool.release(data);
+            bufferPool = null;
+        }
     }
 }
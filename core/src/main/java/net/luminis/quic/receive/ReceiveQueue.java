@@ -0,0 +1,127 @@
+/*
+ * Copyright © 2024 Peter Doornbosch
+ *
+ * This file is part of Kwik, an implementation of the QUIC protocol in Java.
+ *
+ * Kwik is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * Kwik is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.luminis.quic.receive;
+
+import net.luminis.quic.ReceiveQueueMetrics;
+import net.luminis.quic.concurrent.MpscRingBuffer;
+
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Bounded queue for received datagrams (or objects wrapping them), that drops datagrams according to its drop policy
+ * when it is full and keeps metrics on its depth and the number of dropped datagrams. Multiple threads can add
+ * datagrams, but only one thread at a time may retrieve them.
+ * @param <E>
+ */
+public class ReceiveQueue<E> {
+
+    private final MpscRingBuffer<E> ringBuffer;
+    private final ReceiveQueueLimiter limiter;
+    private final Predicate<E> isHandshake;
+    private final Consumer<E> dropHandler;
+
+    /**
+     * @param config
+     * @param isHandshake  determines whether the given element contains a handshake packet
+     * @param dropHandler  called for each element that is dropped, e.g. to release the datagram buffer
+     */
+    public ReceiveQueue(ReceiveQueueConfig config, Predicate<E> isHandshake, Consumer<E> dropHandler) {
+        limiter = new ReceiveQueueLimiter(config);
+        ringBuffer = new MpscRingBuffer<>(limiter.physicalCapacity(), config.getWaitStrategy());
+        this.isHandshake = Objects.requireNonNull(isHandshake);
+        this.dropHandler = Objects.requireNonNull(dropHandler);
+    }
+
+    /**
+     * Adds the element to the queue, unless it must be dropped according to the drop policy, in which case the drop
+     * handler is called.
+     * @param element
+     * @return  true if the element was added
+     */
+    public boolean offer(E element) {
+        if (limiter.tryAdd(isHandshake.test(element)) != null) {
+            dropHandler.accept(element);
+            return false;
+        }
+        if (!ringBuffer.offer(element)) {
+            limiter.addFailed();
+            dropHandler.accept(element);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Retrieves the next element, waiting if necessary until one is available or the queue is closed.
+     * @return  the element, or null if the queue is closed and empty
+     * @throws InterruptedException
+     */
+    public E take() throws InterruptedException {
+        while (true) {
+            E element = ringBuffer.take();
+            if (element == null || !evicted(element)) {
+                return element;
+            }
+        }
+    }
+
+    /**
+     * Retrieves the next element, waiting at most the given time for one to become available.
+     * @param timeout
+     * @param unit
+     * @return  the element, or null if none became available within the given time or the queue is closed and empty
+     * @throws InterruptedException
+     */
+    public E poll(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (true) {
+            E element = ringBuffer.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+            if (element == null || !evicted(element)) {
+                return element;
+            }
+        }
+    }
+
+    /**
+     * Closes the queue, which wakes up the consumer when it is waiting for an element. The consumer should release the
+     * elements that are still queued, if any (which can be retrieved with <code>poll</code>).
+     */
+    public void close() {
+        ringBuffer.close();
+    }
+
+    public boolean isEmpty() {
+        return ringBuffer.isEmpty();
+    }
+
+    public ReceiveQueueMetrics getMetrics() {
+        return limiter;
+    }
+
+    private boolean evicted(E element) {
+        if (limiter.removed()) {
+            dropHandler.accept(element);
+            return true;
+        }
+        return false;
+    }
+}
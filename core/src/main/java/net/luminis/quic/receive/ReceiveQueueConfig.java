@@ -0,0 +1,64 @@
+/*
+ * Copyright © 2024 Peter Doornbosch
+ *
+ * This file is part of Kwik, an implementation of the QUIC protocol in Java.
+ *
+ * Kwik is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * Kwik is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.luminis.quic.receive;
+
+import net.luminis.quic.DropPolicy;
+import net.luminis.quic.concurrent.WaitStrategy;
+
+import java.util.Objects;
+
+/**
+ * Configuration of a queue that holds received datagrams until they are processed.
+ */
+public class ReceiveQueueConfig {
+
+    private final int capacity;
+    private final WaitStrategy waitStrategy;
+    private final DropPolicy dropPolicy;
+
+    public ReceiveQueueConfig(int capacity, WaitStrategy waitStrategy) {
+        this(capacity, waitStrategy, DropPolicy.DROP_NEWEST);
+    }
+
+    /**
+     * @param capacity  maximum number of datagrams in the queue
+     * @param waitStrategy  how the thread processing the datagrams waits for new ones
+     * @param dropPolicy  which datagrams to drop when the queue is full
+     */
+    public ReceiveQueueConfig(int capacity, WaitStrategy waitStrategy, DropPolicy dropPolicy) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("queue capacity must be positive");
+        }
+        this.capacity = capacity;
+        this.waitStrategy = Objects.requireNonNull(waitStrategy);
+        this.dropPolicy = Objects.requireNonNull(dropPolicy);
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public WaitStrategy getWaitStrategy() {
+        return waitStrategy;
+    }
+
+    public DropPolicy getDropPolicy() {
+        return dropPolicy;
+    }
+}
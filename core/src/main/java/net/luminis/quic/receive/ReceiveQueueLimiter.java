@@ -0,0 +1,141 @@
+/*
+ * Copyright © 2024 Peter Doornbosch
+ *
+ * This file is part of Kwik, an implementation of the QUIC protocol in Java.
+ *
+ * Kwik is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * Kwik is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.luminis.quic.receive;
+
+import net.luminis.quic.DropPolicy;
+import net.luminis.quic.ReceiveQueueMetrics;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Keeps track of the depth of a receive queue and decides, according to the queue's drop policy, whether a datagram
+ * can be added to it or must be dropped. Datagrams can be added by multiple threads concurrently; as the depth is
+ * checked before a datagram is added, concurrent producers can exceed the capacity with a few datagrams.
+ */
+public class ReceiveQueueLimiter implements ReceiveQueueMetrics {
+
+    /**
+     * Percentage of the capacity that is reserved for handshake packets when the drop policy is {@link DropPolicy#PREFER_HANDSHAKE}.
+     */
+    public static final int HANDSHAKE_RESERVE_PERCENTAGE = 25;
+
+    private final int capacity;
+    private final DropPolicy dropPolicy;
+    private final int handshakeThreshold;
+    private final AtomicInteger depth = new AtomicInteger();
+    private final AtomicInteger highWaterMark = new AtomicInteger();
+    private final AtomicLongArray dropCounts = new AtomicLongArray(DropReason.values().length);
+
+    public ReceiveQueueLimiter(int capacity, DropPolicy dropPolicy) {
+        this.capacity = capacity;
+        this.dropPolicy = dropPolicy;
+        handshakeThreshold = capacity - capacity * HANDSHAKE_RESERVE_PERCENTAGE / 100;
+    }
+
+    public ReceiveQueueLimiter(ReceiveQueueConfig config) {
+        this(config.getCapacity(), config.getDropPolicy());
+    }
+
+    /**
+     * Maximum number of datagrams that can actually be queued; with the drop-oldest policy, the queue may temporarily
+     * hold more datagrams than its capacity, because the oldest are only dropped when the consumer gets to them.
+     * @return
+     */
+    public int physicalCapacity() {
+        return dropPolicy == DropPolicy.DROP_OLDEST? 2 * capacity: capacity;
+    }
+
+    /**
+     * Determines whether a datagram can be added to the queue, and if so, counts it as added.
+     * @param isHandshake  whether the datagram contains a handshake (long header) packet
+     * @return  null when the datagram can be added, otherwise the reason for dropping it (which is counted as dropped)
+     */
+    public DropReason tryAdd(boolean isHandshake) {
+        int currentDepth = depth.get();
+        DropReason dropReason = null;
+        if (currentDepth >= physicalCapacity()) {
+            dropReason = DropReason.QUEUE_FULL;
+        }
+        else if (dropPolicy == DropPolicy.PREFER_HANDSHAKE && !isHandshake && currentDepth >= handshakeThreshold) {
+            dropReason = DropReason.NOT_HANDSHAKE;
+        }
+        if (dropReason != null) {
+            dropped(dropReason);
+            return dropReason;
+        }
+        int newDepth = depth.incrementAndGet();
+        if (newDepth > highWaterMark.get()) {
+            highWaterMark.accumulateAndGet(newDepth, Math::max);
+        }
+        return null;
+    }
+
+    /**
+     * Registers that a datagram that was accepted by {@link #tryAdd(boolean)} could not be added after all, because
+     * the queue turned out to be full.
+     */
+    public void addFailed() {
+        depth.decrementAndGet();
+        dropped(DropReason.QUEUE_FULL);
+    }
+
+    /**
+     * Registers that a datagram was taken from the queue. When the drop policy is drop-oldest and the queue holds more
+     * datagrams than its capacity, the datagram is one of the oldest and should be dropped; in that case it is counted
+     * as evicted.
+     * @return  true if the datagram should be dropped
+     */
+    public boolean removed() {
+        int previousDepth = depth.getAndDecrement();
+        if (dropPolicy == DropPolicy.DROP_OLDEST && previousDepth > capacity) {
+            dropped(DropReason.EVICTED);
+            return true;
+        }
+        return false;
+    }
+
+    private void dropped(DropReason reason) {
+        dropCounts.incrementAndGet(reason.ordinal());
+    }
+
+    @Override
+    public int getCapacity() {
+        return capacity;
+    }
+
+    @Override
+    public int getDepth() {
+        return Math.max(0, depth.get());
+    }
+
+    @Override
+    public int getHighWaterMark() {
+        return highWaterMark.get();
+    }
+
+    @Override
+    public long getDropCount(DropReason reason) {
+        return dropCounts.get(reason.ordinal());
+    }
+
+    public DropPolicy getDropPolicy() {
+        return dropPolicy;
+    }
+}
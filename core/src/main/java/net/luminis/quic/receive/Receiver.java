@@ -18,34 +18,58 @@
  */
 package net.luminis.quic.receive;
 
+import net.luminis.quic.ReceiveQueueMetrics;
+import net.luminis.quic.concurrent.WaitStrategy;
 import net.luminis.quic.log.Logger;
+import net.luminis.quic.util.MonotonicClock;
 
 import java.io.IOException;
 import java.net.DatagramPacket;
 import java.net.DatagramSocket;
+import java.net.InetSocketAddress;
 import java.net.SocketException;
 import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousCloseException;
+import java.nio.channels.DatagramChannel;
 import java.time.Instant;
 import java.util.Objects;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 import java.util.function.Predicate;
 
 /**
  * Receives UDP datagrams on separate thread and queues them for asynchronous processing.
+ * When the socket is backed by a <code>DatagramChannel</code>, datagrams are received via the channel into (direct)
+ * buffers taken from a pool; otherwise, the datagrams are received with the (blocking) socket API into one reusable
+ * array and copied into a pooled buffer. In both cases, the consumer should release the received packet (see
+ * {@link RawPacket#release()}) when done, so the buffer can be reused.
+ * Only the buffers are recycled: the small objects wrapping a datagram on its way to the connection (raw packet,
+ * packet meta data) are not, as they are short-lived and handed over between threads, which makes them cheap for the
+ * garbage collector but error-prone to reuse.
+ * Received datagrams are handed off via a bounded queue; when it is full (because processing cannot keep up),
+ * datagrams are dropped according to the queue's drop policy, just like the OS would do when the socket receive buffer
+ * is full.
+ * Only one thread at a time should retrieve packets from the receiver.
  */
 public class Receiver {
 
     public static final int MAX_DATAGRAM_SIZE = 1500;
+    public static final int MAX_POOLED_BUFFERS = 512;
+    public static final int DEFAULT_QUEUE_CAPACITY = 4096;
 
     private volatile DatagramSocket socket;
     private final Logger log;
     private final Consumer<Throwable> abortCallback;
     private final Predicate<DatagramPacket> packetFilter;
     private final Thread receiverThread;
-    private final BlockingQueue<RawPacket> receivedPacketsQueue;
+    private final ReceiveQueue<RawPacket> receivedPacketsQueue;
+    private final DatagramBufferPool bufferPool;
+    private final DatagramPacket filterPacket;
+    // Only used by the receiver thread, when the socket has no channel.
+    private final byte[] socketReceiveBuffer;
+    private final DatagramPacket socketReceivePacket;
     private volatile boolean isClosing = false;
     private volatile boolean changing = false;
 
@@ -53,15 +77,61 @@ public class Receiver {
         this(socket, log, abortCallback, d -> true);
     }
 
+    /**
+     * Creates a receiver that only queues datagrams that pass the given filter. Note that when the socket is backed by
+     * a <code>DatagramChannel</code>, the datagram packet passed to the filter only contains the source address and
+     * port, not the datagram data.
+     * @param socket
+     * @param log
+     * @param abortCallback
+     * @param packetFilter
+     */
     public Receiver(DatagramSocket socket, Logger log, Consumer<Throwable> abortCallback, Predicate<DatagramPacket> packetFilter) {
+        this(socket, log, abortCallback, packetFilter, Thread::new);
+    }
+
+    /**
+     * Creates a receiver that creates its thread with the given thread factory.
+     * See {@link #Receiver(DatagramSocket, Logger, Consumer, Predicate)} for the other parameters.
+     * @param threadFactory
+     */
+    public Receiver(DatagramSocket socket, Logger log, Consumer<Throwable> abortCallback, Predicate<DatagramPacket> packetFilter,
+                    ThreadFactory threadFactory) {
+        this(socket, log, abortCallback, packetFilter, threadFactory, new ReceiveQueueConfig(DEFAULT_QUEUE_CAPACITY, WaitStrategy.BLOCKING));
+    }
+
+    /**
+     * Creates a receiver with the given configuration for the queue that holds received packets until they are
+     * retrieved. See {@link #Receiver(DatagramSocket, Logger, Consumer, Predicate, ThreadFactory)} for the other parameters.
+     * @param queueConfig
+     */
+    public Receiver(DatagramSocket socket, Logger log, Consumer<Throwable> abortCallback, Predicate<DatagramPacket> packetFilter,
+                    ThreadFactory threadFactory, ReceiveQueueConfig queueConfig) {
+        this(socket, log, abortCallback, packetFilter, threadFactory, queueConfig, MAX_DATAGRAM_SIZE);
+    }
+
+    /**
+     * Creates a receiver that can receive datagrams up to the given size; larger datagrams are truncated. The size
+     * should match the max_udp_payload_size transport parameter that is sent to peers.
+     * See {@link #Receiver(DatagramSocket, Logger, Consumer, Predicate, ThreadFactory, ReceiveQueueConfig)} for the
+     * other parameters.
+     * @param maxDatagramSize
+     */
+    public Receiver(DatagramSocket socket, Logger log, Consumer<Throwable> abortCallback, Predicate<DatagramPacket> packetFilter,
+                    ThreadFactory threadFactory, ReceiveQueueConfig queueConfig, int maxDatagramSize) {
         this.socket = Objects.requireNonNull(socket);
         this.log = Objects.requireNonNull(log);
         this.abortCallback = Objects.requireNonNull(abortCallback);
         this.packetFilter = Objects.requireNonNull(packetFilter);
 
-        receiverThread = new Thread(() -> run(), "receiver");
+        receiverThread = threadFactory.newThread(() -> run());
+        receiverThread.setName("receiver");
         receiverThread.setDaemon(true);
-        receivedPacketsQueue = new LinkedBlockingQueue<>();
+        receivedPacketsQueue = new ReceiveQueue<>(queueConfig, Receiver::isLongHeaderPacket, RawPacket::release);
+        bufferPool = new DatagramBufferPool(maxDatagramSize, MAX_POOLED_BUFFERS);
+        filterPacket = new DatagramPacket(new byte[0], 0);
+        socketReceiveBuffer = new byte[maxDatagramSize];
+        socketReceivePacket = new DatagramPacket(socketReceiveBuffer, socketReceiveBuffer.length);
 
         try {
             log.debug("Socket receive buffer size: " + socket.getReceiveBufferSize());
@@ -74,11 +144,25 @@ public class Receiver {
         receiverThread.start();
     }
 
+    /**
+     * Stops the receiver; a consumer waiting for a packet is woken up (and gets null). The receiver thread is not
+     * interrupted, because interrupting a thread that is blocked on a channel closes the channel; it ends when the
+     * socket is closed, which is the responsibility of the caller.
+     */
     public void shutdown() {
         isClosing = true;
-        receiverThread.interrupt();
+        receivedPacketsQueue.close();
+    }
+
+    public boolean isShutdown() {
+        return isClosing;
     }
 
+    /**
+     * Retrieves a received packet from the queue, waiting until one is available or the receiver is shut down.
+     * @return  the packet, or null when the receiver is shut down
+     * @throws InterruptedException
+     */
     public RawPacket get() throws InterruptedException {
         return receivedPacketsQueue.take();
     }
@@ -90,33 +174,39 @@ public class Receiver {
     /**
      * Retrieves a received packet from the queue.
      * @param timeout    the wait timeout in seconds
-     * @return
+     * @return  the packet, or null when none was received within the given time or the receiver is shut down
      * @throws InterruptedException
      */
     public RawPacket get(int timeout) throws InterruptedException {
         return receivedPacketsQueue.poll(timeout, TimeUnit.SECONDS);
     }
 
+    public ReceiveQueueMetrics getQueueMetrics() {
+        return receivedPacketsQueue.getMetrics();
+    }
+
+    private static boolean isLongHeaderPacket(RawPacket rawPacket) {
+        ByteBuffer data = rawPacket.getData();
+        return data.limit() > 0 && (data.get(0) & 0x80) != 0;
+    }
+
     private void run() {
         int counter = 0;
 
         try {
             while (! isClosing) {
-                byte[] receiveBuffer = new byte[MAX_DATAGRAM_SIZE];
-                DatagramPacket receivedPacket = new DatagramPacket(receiveBuffer, receiveBuffer.length);
                 try {
-                    socket.receive(receivedPacket);
-
-                    if (packetFilter.test(receivedPacket)) {
-                        Instant timeReceived = Instant.now();
-                        RawPacket rawPacket = new RawPacket(receivedPacket, timeReceived, counter++);
-                        receivedPacketsQueue.add(rawPacket);
+                    DatagramChannel channel = socket.getChannel();
+                    RawPacket rawPacket = channel != null? receiveFromChannel(channel, counter): receiveFromSocket(counter);
+                    if (rawPacket != null) {
+                        counter++;
+                        receivedPacketsQueue.offer(rawPacket);
                     }
                 }
                 catch (SocketTimeoutException timeout) {
                     // Impossible, as no socket timeout set
                 }
-                catch (SocketException socketError) {
+                catch (SocketException | AsynchronousCloseException socketError) {
                     if (changing) {
                         // Expected
                         log.debug("Ignoring socket closed exception, because changing socket", socketError);
@@ -146,6 +236,37 @@ public class Receiver {
         }
     }
 
+    private RawPacket receiveFromSocket(int counter) throws IOException {
+        // Receiving sets the packet length to the datagram length, so reset it to receive datagrams up to the max size.
+        socketReceivePacket.setLength(socketReceiveBuffer.length);
+        socket.receive(socketReceivePacket);
+
+        if (packetFilter.test(socketReceivePacket)) {
+            Instant timeReceived = MonotonicClock.instance().instant();
+            ByteBuffer buffer = bufferPool.acquire();
+            buffer.put(socketReceiveBuffer, 0, socketReceivePacket.getLength());
+            buffer.flip();
+            return new RawPacket(buffer, (InetSocketAddress) socketReceivePacket.getSocketAddress(), timeReceived, counter, bufferPool);
+        }
+        return null;
+    }
+
+    private RawPacket receiveFromChannel(DatagramChannel channel, int counter) throws IOException {
+        ByteBuffer buffer = bufferPool.acquire();
+        InetSocketAddress sourceAddress = (InetSocketAddress) channel.receive(buffer);
+        buffer.flip();
+
+        filterPacket.setSocketAddress(sourceAddress);
+        if (packetFilter.test(filterPacket)) {
+            Instant timeReceived = MonotonicClock.instance().instant();
+            return new RawPacket(buffer, sourceAddress, timeReceived, counter, bufferPool);
+        }
+        else {
+            bufferPool.release(buffer);
+            return null;
+        }
+    }
+
     public void changeAddress(DatagramSocket newSocket) {
         DatagramSocket oldSocket = socket;
         socket = newSocket;
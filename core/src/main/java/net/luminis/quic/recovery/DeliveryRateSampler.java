@@ -0,0 +1,155 @@
+/*
+ * Copyright © 2024 Peter Doornbosch
+ *
+ * This file is part of Kwik, an implementation of the QUIC protocol in Java.
+ *
+ * Kwik is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * Kwik is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.luminis.quic.recovery;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Estimates the delivery rate of the path by sampling, for each ack, the amount of data delivered over the time it
+ * took to deliver it, as described in https://datatracker.ietf.org/doc/html/draft-cheng-iccrg-delivery-rate-estimation.
+ * When a packet is sent, a snapshot of the delivery state of the connection is stored with it; when a packet is
+ * acknowledged, the snapshot of the most recently sent packet that is acknowledged by the ack is compared with the
+ * current state to generate a rate sample.
+ * The interval of a sample is the longer of the send interval and the ack interval, as neither can be shorter than the
+ * bottleneck allows; this prevents over-estimation because of ack compression or because of bursts of sent packets.
+ */
+public class DeliveryRateSampler {
+
+    private final Consumer<RateSample> sampleConsumer;
+    // Total number of bytes delivered (acknowledged) so far.
+    private long delivered;
+    // Time the last acknowledgement was received.
+    private Instant deliveredTime;
+    // Send time of the packet that was most recently marked as delivered.
+    private Instant firstSentTime;
+    // The value of delivered until which samples are app-limited; 0 when not app-limited.
+    private long appLimitedUntil;
+    // Total number of bytes lost so far.
+    private long lost;
+    private long minRtt = Long.MAX_VALUE;
+
+    public DeliveryRateSampler(Consumer<RateSample> sampleConsumer) {
+        this.sampleConsumer = sampleConsumer;
+    }
+
+    /**
+     * Records the delivery state of the connection when the given in-flight packet is sent.
+     * @param size  size of the packet
+     * @param timeSent
+     * @param bytesInFlight  the number of bytes in flight before the packet was sent
+     * @return  the state that must be passed when the packet is acknowledged
+     */
+    synchronized SendState packetSent(int size, Instant timeSent, long bytesInFlight) {
+        if (bytesInFlight == 0 || deliveredTime == null) {
+            // Start of a new flight: measure from now on.
+            firstSentTime = timeSent;
+            deliveredTime = timeSent;
+        }
+        return new SendState(timeSent, delivered, deliveredTime, firstSentTime, appLimitedUntil != 0, bytesInFlight + size, lost);
+    }
+
+    /**
+     * Marks the connection as application limited, i.e. the sender has no data to send, although congestion control
+     * and pacing would allow it. Rate samples for packets that are sent while application limited are marked as such,
+     * because they may underestimate the bandwidth of the path.
+     * @param bytesInFlight
+     */
+    public synchronized void applicationLimited(long bytesInFlight) {
+        appLimitedUntil = Long.max(delivered + bytesInFlight, 1);
+    }
+
+    synchronized void packetsAcked(List<PacketStatus> ackedPackets, Instant timeReceived) {
+        SendState newest = null;
+        int newestSize = 0;
+        for (PacketStatus packetStatus : ackedPackets) {
+            SendState state = packetStatus.deliveryState();
+            if (state == null) {
+                continue;
+            }
+            delivered += packetStatus.packet().getSize();
+            deliveredTime = timeReceived;
+            if (newest == null || state.delivered > newest.delivered
+                    || (state.delivered == newest.delivered && state.timeSent.isAfter(newest.timeSent))) {
+                newest = state;
+                newestSize = packetStatus.packet().getSize();
+            }
+        }
+        if (newest == null) {
+            return;
+        }
+        // Subsequent samples start measuring at the send time of the packet that is now delivered.
+        firstSentTime = newest.timeSent;
+        if (appLimitedUntil != 0 && delivered > appLimitedUntil) {
+            appLimitedUntil = 0;
+        }
+
+        long sendElapsed = Duration.between(newest.firstSentTime, newest.timeSent).toNanos();
+        long ackElapsed = Duration.between(newest.deliveredTime, deliveredTime).toNanos();
+        long interval = Long.max(sendElapsed, ackElapsed);
+        long rtt = Duration.between(newest.timeSent, timeReceived).toNanos();
+        minRtt = Long.min(minRtt, rtt);
+        long deliveredInInterval = delivered - newest.delivered;
+        // An interval shorter than the minimum RTT is not plausible (e.g. because of ack compression) and would
+        // over-estimate the delivery rate.
+        if (interval <= 0 || interval < minRtt) {
+            return;
+        }
+        long deliveryRate = (long) (deliveredInInterval * 1_000_000_000.0 / interval);
+        sampleConsumer.accept(new RateSample(deliveryRate, deliveredInInterval, lost - newest.lost, newest.txInFlight,
+                newest.delivered, delivered, Duration.ofNanos(rtt), newest.isAppLimited, newestSize));
+    }
+
+    synchronized void packetsLost(List<PacketStatus> lostPackets) {
+        for (PacketStatus packetStatus : lostPackets) {
+            if (packetStatus.deliveryState() != null) {
+                lost += packetStatus.packet().getSize();
+            }
+        }
+    }
+
+    synchronized long getDelivered() {
+        return delivered;
+    }
+
+    /**
+     * Snapshot of the delivery state of the connection at the time a packet was sent.
+     */
+    static class SendState {
+        final Instant timeSent;
+        final long delivered;
+        final Instant deliveredTime;
+        final Instant firstSentTime;
+        final boolean isAppLimited;
+        final long txInFlight;
+        final long lost;
+
+        SendState(Instant timeSent, long delivered, Instant deliveredTime, Instant firstSentTime, boolean isAppLimited, long txInFlight, long lost) {
+            this.timeSent = timeSent;
+            this.delivered = delivered;
+            this.deliveredTime = deliveredTime;
+            this.firstSentTime = firstSentTime;
+            this.isAppLimited = isAppLimited;
+            this.txInFlight = txInFlight;
+            this.lost = lost;
+        }
+    }
+}
@@ -20,16 +20,21 @@ package net.luminis.quic.recovery;
 
 import net.luminis.quic.cc.CongestionController;
 import net.luminis.quic.frame.AckFrame;
+import net.luminis.quic.frame.AcknowledgeableFrame;
+import net.luminis.quic.frame.AckRangeCursor;
+import net.luminis.quic.frame.QuicFrame;
+import net.luminis.quic.impl.ConnectionMemory;
 import net.luminis.quic.log.QLog;
 import net.luminis.quic.packet.PacketInfo;
 import net.luminis.quic.packet.QuicPacket;
+import net.luminis.quic.util.MonotonicClock;
 
 import java.time.Clock;
 import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Map;
-import java.util.Optional;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
 import java.util.stream.Collectors;
@@ -45,17 +50,28 @@ public class LossDetector {
     private final QLog qLog;
     private float kTimeThreshold = 9f/8f;
     private int kPacketThreshold = 3;
-    private final Map<Long, PacketStatus> packetSentLog;
+    // Packets that are not yet acknowledged or declared lost; access must be synchronized on this loss detector.
+    private final SentPacketLog packetSentLog;
+    // Only used while holding the lock of this loss detector.
+    private final AckRangeCursor ackRangeCursor = new AckRangeCursor();
+    // Largest packet number up to which acknowledgements have been processed. Packets up to this number that are still
+    // in the sent log have not been acknowledged; these are kept (in ascending order) in unackedBelowProcessed, so
+    // ranges that are repeated in subsequent ACK frames do not need to be walked again.
+    private long largestProcessed = -1;
+    private long[] unackedBelowProcessed = new long[16];
+    private int unackedBelowProcessedCount;
     private final AtomicInteger ackElicitingInFlight;
     private volatile long largestAcked = -1;
     private volatile long lost;
     private volatile Instant lossTime;
     private volatile Instant lastAckElicitingSent;
     private volatile boolean isReset;
+    private volatile PacketDeliveryListener deliveryListener = PacketDeliveryListener.NONE;
+    private volatile DeliveryRateSampler deliveryRateSampler;
 
 
     public LossDetector(RecoveryManager recoveryManager, RttEstimator rttEstimator, CongestionController congestionController, Runnable postProcessLostCallback, QLog qLog) {
-        this(Clock.systemUTC(), recoveryManager, rttEstimator, congestionController, postProcessLostCallback, qLog);
+        this(MonotonicClock.instance(), recoveryManager, rttEstimator, congestionController, postProcessLostCallback, qLog);
     }
 
     public LossDetector(Clock clock, RecoveryManager recoveryManager, RttEstimator rttEstimator, CongestionController congestionController, Runnable postProcessLostCallback, QLog qLog) {
@@ -67,7 +83,7 @@ public class LossDetector {
         this.qLog = qLog;
 
         ackElicitingInFlight = new AtomicInteger();
-        packetSentLog = new ConcurrentHashMap<>();
+        packetSentLog = new SentPacketLog();
     }
 
     public synchronized void packetSent(QuicPacket packet, Instant sent, Consumer<QuicPacket> lostPacketCallback) {
@@ -75,7 +91,12 @@ public class LossDetector {
             return;
         }
 
+        PacketStatus packetStatus = new PacketStatus(sent, packet, lostPacketCallback);
         if (packet.isInflightPacket()) {  // Redundant: caller checked
+            DeliveryRateSampler sampler = deliveryRateSampler;
+            if (sampler != null) {
+                packetStatus.setDeliveryState(sampler.packetSent(packet.getSize(), sent, congestionController.getBytesInFlight()));
+            }
             congestionController.registerInFlight(packet);
         }
 
@@ -85,7 +106,7 @@ public class LossDetector {
         }
 
         // This method is synchronized, because during a reset operation, no new packets must be logged as sent.
-        packetSentLog.put(packet.getPacketNumber(), new PacketStatus(sent, packet, lostPacketCallback));
+        packetSentLog.add(packetStatus);
     }
 
     public void onAckReceived(AckFrame ackFrame, Instant timeReceived) {
@@ -95,12 +116,28 @@ public class LossDetector {
 
         largestAcked = Long.max(largestAcked, ackFrame.getLargestAcknowledged());
 
-        List<PacketStatus> newlyAcked = ackFrame.getAckedPacketNumbers()
-                .filter(pn -> packetSentLog.containsKey(pn) && !packetSentLog.get(pn).acked())
-                .map(pn -> packetSentLog.get(pn))
-                .filter(packetStatus -> packetStatus != null)      // Could be null when reset is executed concurrently.
-                .filter(packetStatus -> packetStatus.setAcked())   // Only keep the ones that actually got set to acked
-                .collect(Collectors.toList());
+        List<PacketStatus> newlyAcked = new ArrayList<>();
+        synchronized (this) {
+            if (!packetSentLog.isEmpty()) {
+                // Only the part of the ranges that overlaps with the log needs to be visited; packets below the oldest
+                // packet in the log have already been acknowledged or declared lost.
+                long first = packetSentLog.firstPacketNumber();
+                long last = packetSentLog.endPacketNumber() - 1;
+                AckRangeCursor range = ackRangeCursor.reset(ackFrame);
+                while (range.next()) {
+                    // Packets above the largest processed packet number are visited one by one, ...
+                    long lowest = Long.max(Long.max(range.smallest(), first), largestProcessed + 1);
+                    for (long pn = Long.min(range.largest(), last); pn >= lowest; pn--) {
+                        ackPacket(pn, newlyAcked);
+                    }
+                    // ... below it, only packets that were not acknowledged by earlier ACK frames need to be visited.
+                    if (range.smallest() <= largestProcessed) {
+                        ackUnackedBelowProcessed(range.smallest(), Long.min(range.largest(), largestProcessed), newlyAcked);
+                    }
+                }
+                updateLargestProcessed(Long.min(ackFrame.getLargestAcknowledged(), last));
+            }
+        }
 
         // Possible optimization: everything that follows only if newlyAcked not empty
 
@@ -108,26 +145,86 @@ public class LossDetector {
         assert ackedAckEliciting <= ackElicitingInFlight.get();
         ackElicitingInFlight.getAndAdd(-1 * ackedAckEliciting);
 
+        DeliveryRateSampler sampler = deliveryRateSampler;
+        if (sampler != null && !newlyAcked.isEmpty()) {
+            // Must precede registering the acked packets with the congestion controller, as the latter uses the sample.
+            sampler.packetsAcked(newlyAcked, timeReceived);
+        }
         congestionController.registerAcked(filterInFlight(newlyAcked));
+        if (!newlyAcked.isEmpty()) {
+            deliveryListener.packetsAcked(newlyAcked);
+            notifyAcknowledgedFrames(newlyAcked);
+        }
 
         detectLostPackets();
 
         recoveryManager.setLossDetectionTimer();
 
         rttEstimater.ackReceived(ackFrame, timeReceived, newlyAcked);
+    }
 
-        // Cleanup
-        newlyAcked.stream().forEach(p -> packetSentLog.remove(p.packet().getPacketNumber()));
+    private void ackPacket(long packetNumber, List<PacketStatus> newlyAcked) {
+        PacketStatus packetStatus = packetSentLog.get(packetNumber);
+        if (packetStatus != null && packetStatus.setAcked()) {   // Only keep the ones that actually got set to acked
+            newlyAcked.add(packetStatus);
+            packetSentLog.remove(packetNumber);
+        }
+    }
+
+    private void ackUnackedBelowProcessed(long smallest, long largest, List<PacketStatus> newlyAcked) {
+        int kept = 0;
+        for (int i = 0; i < unackedBelowProcessedCount; i++) {
+            long packetNumber = unackedBelowProcessed[i];
+            if (packetNumber >= smallest && packetNumber <= largest) {
+                ackPacket(packetNumber, newlyAcked);
+            }
+            // Also drops packets that have been declared lost in the meantime.
+            if (packetSentLog.get(packetNumber) != null) {
+                unackedBelowProcessed[kept++] = packetNumber;
+            }
+        }
+        unackedBelowProcessedCount = kept;
+    }
+
+    private void updateLargestProcessed(long newLargestProcessed) {
+        if (newLargestProcessed > largestProcessed) {
+            // Drop packets that have been declared lost in the meantime.
+            int kept = 0;
+            for (int i = 0; i < unackedBelowProcessedCount; i++) {
+                if (packetSentLog.get(unackedBelowProcessed[i]) != null) {
+                    unackedBelowProcessed[kept++] = unackedBelowProcessed[i];
+                }
+            }
+            unackedBelowProcessedCount = kept;
+            // Each packet number is scanned here only once, when it drops below the largest processed packet number.
+            for (long pn = Long.max(largestProcessed + 1, packetSentLog.firstPacketNumber()); pn <= newLargestProcessed; pn++) {
+                if (packetSentLog.get(pn) != null) {
+                    if (unackedBelowProcessedCount == unackedBelowProcessed.length) {
+                        unackedBelowProcessed = Arrays.copyOf(unackedBelowProcessed, 2 * unackedBelowProcessed.length);
+                    }
+                    unackedBelowProcessed[unackedBelowProcessedCount++] = pn;
+                }
+            }
+            largestProcessed = newLargestProcessed;
+        }
+    }
+
+    private void notifyAcknowledgedFrames(List<PacketStatus> ackedPackets) {
+        for (PacketStatus packetStatus : ackedPackets) {
+            for (QuicFrame frame : packetStatus.packet().getFrames()) {
+                if (frame instanceof AcknowledgeableFrame) {
+                    ((AcknowledgeableFrame) frame).acknowledged();
+                }
+            }
+        }
     }
 
     public synchronized void reset() {
-        List<PacketStatus> inflightPackets = packetSentLog.values().stream()
-                .filter(packet -> packet.inFlight())
-                .filter(packetStatus -> packetStatus.setLost())   // Only keep the ones that actually were set to lost
-                .collect(Collectors.toList());
+        List<PacketStatus> inflightPackets = packetSentLog.filter(packetStatus -> packetStatus.setLost());  // Only keep the ones that actually were set to lost
         congestionController.discard(inflightPackets);
         ackElicitingInFlight.set(0);
         packetSentLog.clear();
+        unackedBelowProcessedCount = 0;
         lossTime = null;
         lastAckElicitingSent = null;
         isReset = true;
@@ -138,9 +235,11 @@ public class LossDetector {
             return;
         }
 
-        int lossDelay = (int) (kTimeThreshold * Integer.max(rttEstimater.getSmoothedRtt(), rttEstimater.getLatestRtt()));
-        assert(lossDelay > 0);  // Minimum time of kGranularity before packets are deemed lost
-        Instant lostSendTime = Instant.now(clock).minusMillis(lossDelay);
+        // Computed in microseconds, as on low latency networks the RTT can be (much) less than a millisecond.
+        long lossDelay = (long) (kTimeThreshold * Long.max(rttEstimater.getSmoothedRttMicros(), rttEstimater.getLatestRttMicros()));
+        // Minimum time of kGranularity before packets are deemed lost
+        lossDelay = Long.max(lossDelay, RttEstimator.kGranularity);
+        Instant lostSendTime = clock.instant().minus(lossDelay, ChronoUnit.MICROS);
 
         // https://tools.ietf.org/html/draft-ietf-quic-recovery-20#section-6.1
         // "A packet is declared lost if it meets all the following conditions:
@@ -153,24 +252,39 @@ public class LossDetector {
         // "In-flight:  Packets are considered in-flight when they have been sent
         //      and neither acknowledged nor declared lost, and they are not ACK-
         //      only."
-        List<PacketStatus> lostPackets = packetSentLog.values().stream()
-                .filter(p -> p.inFlight())
-                .filter(p -> pnTooOld(p) || sentTimeTooLongAgo(p, lostSendTime))
-                .filter(p -> !p.packet().isAckOnly())
-                .collect(Collectors.toList());
+        // As only packets sent prior to an acknowledged packet can be lost, the scan starts at the oldest packet in the
+        // log and ends at the largest acknowledged.
+        List<PacketStatus> lostPackets = new ArrayList<>();
+        Instant earliestSentTime = null;
+        synchronized (this) {
+            if (!packetSentLog.isEmpty()) {
+                long last = Long.min(largestAcked, packetSentLog.endPacketNumber() - 1);
+                for (long pn = packetSentLog.firstPacketNumber(); pn <= last; pn++) {
+                    PacketStatus p = packetSentLog.get(pn);
+                    if (p == null || !p.inFlight()) {
+                        continue;
+                    }
+                    if (p.packet().isAckOnly()) {
+                        // Cannot be declared lost, but when it is this old, an ack for it is not relevant anymore.
+                        if (pnTooOld(p)) {
+                            packetSentLog.remove(pn);
+                        }
+                    }
+                    else if (pnTooOld(p) || sentTimeTooLongAgo(p, lostSendTime)) {
+                        lostPackets.add(p);
+                    }
+                    else if (earliestSentTime == null || p.timeSent().isBefore(earliestSentTime)) {
+                        earliestSentTime = p.timeSent();
+                    }
+                }
+            }
+        }
         if (!lostPackets.isEmpty()) {
             declareLost(lostPackets);
         }
 
-        Optional<Instant> earliestSentTime = packetSentLog.values().stream()
-                .filter(p -> p.inFlight())
-                .filter(p -> p.packet().getPacketNumber() <= largestAcked)
-                .filter(p -> !p.packet().isAckOnly())
-                .map(p -> p.timeSent())
-                .min(Instant::compareTo);
-
-        if (earliestSentTime.isPresent() && earliestSentTime.get().isAfter(lostSendTime)) {
-            lossTime = earliestSentTime.get().plusMillis(lossDelay);
+        if (earliestSentTime != null && earliestSentTime.isAfter(lostSendTime)) {
+            lossTime = earliestSentTime.plus(lossDelay, ChronoUnit.MICROS);
         }
         else {
             lossTime = null;
@@ -191,19 +305,16 @@ public class LossDetector {
         return actualAckElicitingInFlight != 0;
     }
 
-    List<QuicPacket> unAcked() {
-        return packetSentLog.values().stream()
-                .filter(p -> p.inFlight())
+    synchronized List<QuicPacket> unAcked() {
+        return packetSentLog.filter(p -> p.inFlight()).stream()
                 .filter(p -> !p.packet().isAckOnly())
                 .map(p -> p.packet())
                 .collect(Collectors.toList());
     }
 
     // For debugging only
-    List<PacketInfo> getInFlight() {
-        return packetSentLog.values().stream()
-                .filter(p -> !p.packet().isAckOnly())
-                .filter(p -> p.inFlight())
+    synchronized List<PacketInfo> getInFlight() {
+        return packetSentLog.filter(p -> !p.packet().isAckOnly() && p.inFlight()).stream()
                 .collect(Collectors.toList());
     }
 
@@ -231,14 +342,23 @@ public class LossDetector {
                     // see https://tools.ietf.org/html/draft-ietf-quic-transport-32#section-13.3
                     packetStatus.lostPacketCallback().accept(packetStatus.packet());
                     lost++;
-                    qLog.emitPacketLostEvent(packetStatus.packet(), Instant.now());
+                    qLog.emitPacketLostEvent(packetStatus.packet(), clock.instant());
                 });
         postProcessLostCallback.run();
 
+        DeliveryRateSampler sampler = deliveryRateSampler;
+        if (sampler != null) {
+            sampler.packetsLost(lostPacketsInfo);
+        }
         congestionController.registerLost(filterInFlight(lostPacketsInfo));
+        if (!lostPacketsInfo.isEmpty()) {
+            deliveryListener.packetsLost(lostPacketsInfo);
+        }
 
         // Cleanup
-        lostPacketsInfo.stream().forEach(p -> packetSentLog.remove(p.packet().getPacketNumber()));
+        synchronized (this) {
+            lostPacketsInfo.forEach(p -> packetSentLog.remove(p.packet().getPacketNumber()));
+        }
     }
 
     private List<PacketStatus> filterInFlight(List<PacketStatus> packets) {
@@ -247,6 +367,18 @@ public class LossDetector {
                 .collect(Collectors.toList());
     }
 
+    public void setPacketDeliveryListener(PacketDeliveryListener listener) {
+        deliveryListener = listener;
+    }
+
+    public void setDeliveryRateSampler(DeliveryRateSampler sampler) {
+        deliveryRateSampler = sampler;
+    }
+
+    public synchronized void setConnectionMemory(ConnectionMemory connectionMemory) {
+        packetSentLog.setMemory(connectionMemory);
+    }
+
     public long getLost() {
         return lost;
     }
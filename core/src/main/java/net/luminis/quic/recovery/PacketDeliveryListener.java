@@ -0,0 +1,51 @@
+/*
+ * Copyright © 2024 Peter Doornbosch
+ *
+ * This file is part of Kwik, an implementation of the QUIC protocol in Java.
+ *
+ * Kwik is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * Kwik is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.luminis.quic.recovery;
+
+import net.luminis.quic.packet.PacketInfo;
+
+import java.util.List;
+
+/**
+ * Listener for the outcome of sent packets, i.e. whether they were acknowledged or declared lost by loss detection.
+ */
+public interface PacketDeliveryListener {
+
+    PacketDeliveryListener NONE = new PacketDeliveryListener() {
+        @Override
+        public void packetsAcked(List<? extends PacketInfo> ackedPackets) {
+        }
+
+        @Override
+        public void packetsLost(List<? extends PacketInfo> lostPackets) {
+        }
+    };
+
+    /**
+     * Called with the packets that are newly acknowledged by a received ack frame.
+     * @param ackedPackets
+     */
+    void packetsAcked(List<? extends PacketInfo> ackedPackets);
+
+    /**
+     * Called with the packets that are declared lost by one loss detection event.
+     * @param lostPackets
+     */
+    void packetsLost(List<? extends PacketInfo> lostPackets);
+}
@@ -29,6 +29,7 @@ class PacketStatus extends PacketInfo {
 
     private boolean lost;
     private boolean acked;
+    private DeliveryRateSampler.SendState deliveryState;
 
     public PacketStatus(Instant sent, QuicPacket packet, Consumer<QuicPacket> lostPacketCallback) {
         super(sent, packet, lostPacketCallback);
@@ -62,6 +63,14 @@ class PacketStatus extends PacketInfo {
         }
     }
 
+    DeliveryRateSampler.SendState deliveryState() {
+        return deliveryState;
+    }
+
+    void setDeliveryState(DeliveryRateSampler.SendState state) {
+        deliveryState = state;
+    }
+
     public String status() {
         if (acked) {
             return "Acked";
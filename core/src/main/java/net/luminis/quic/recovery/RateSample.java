@@ -0,0 +1,119 @@
+/*
+ * Copyright © 2024 Peter Doornbosch
+ *
+ * This file is part of Kwik, an implementation of the QUIC protocol in Java.
+ *
+ * Kwik is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * Kwik is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.luminis.quic.recovery;
+
+import java.time.Duration;
+
+/**
+ * Delivery rate sample, generated by the {@link DeliveryRateSampler} when an ack is received.
+ */
+public class RateSample {
+
+    private final long deliveryRate;
+    private final long delivered;
+    private final long lost;
+    private final long txInFlight;
+    private final long priorDelivered;
+    private final long totalDelivered;
+    private final Duration rtt;
+    private final boolean appLimited;
+    private final int packetSize;
+
+    public RateSample(long deliveryRate, long delivered, long lost, long txInFlight, long priorDelivered, long totalDelivered,
+                      Duration rtt, boolean appLimited, int packetSize) {
+        this.deliveryRate = deliveryRate;
+        this.delivered = delivered;
+        this.lost = lost;
+        this.txInFlight = txInFlight;
+        this.priorDelivered = priorDelivered;
+        this.totalDelivered = totalDelivered;
+        this.rtt = rtt;
+        this.appLimited = appLimited;
+        this.packetSize = packetSize;
+    }
+
+    /**
+     * @return  the delivery rate in bytes per second
+     */
+    public long deliveryRate() {
+        return deliveryRate;
+    }
+
+    /**
+     * @return  the number of bytes delivered in the sample interval
+     */
+    public long delivered() {
+        return delivered;
+    }
+
+    /**
+     * @return  the number of bytes lost in the sample interval
+     */
+    public long lost() {
+        return lost;
+    }
+
+    /**
+     * @return  the number of bytes in flight when the packet the sample is based on was sent (including that packet)
+     */
+    public long txInFlight() {
+        return txInFlight;
+    }
+
+    /**
+     * @return  the total number of bytes delivered when the packet the sample is based on was sent
+     */
+    public long priorDelivered() {
+        return priorDelivered;
+    }
+
+    /**
+     * @return  the total number of bytes delivered, including the ones acknowledged by the ack that generated the sample
+     */
+    public long totalDelivered() {
+        return totalDelivered;
+    }
+
+    /**
+     * @return  the round trip time of the packet the sample is based on
+     */
+    public Duration rtt() {
+        return rtt;
+    }
+
+    /**
+     * @return  whether the sample is taken while the sender was application limited
+     */
+    public boolean isAppLimited() {
+        return appLimited;
+    }
+
+    /**
+     * @return  the size of the packet the sample is based on
+     */
+    public int packetSize() {
+        return packetSize;
+    }
+
+    @Override
+    public String toString() {
+        return "RateSample[" + deliveryRate + " B/s, delivered=" + delivered + ", lost=" + lost + ", rtt=" + rtt.toMillis()
+                + (appLimited? ", app-limited": "") + "]";
+    }
+}
@@ -30,6 +30,7 @@ import net.luminis.quic.impl.*;
 import net.luminis.quic.log.Logger;
 import net.luminis.quic.packet.QuicPacket;
 import net.luminis.quic.send.Sender;
+import net.luminis.quic.util.MonotonicClock;
 
 import java.time.Clock;
 import java.time.Duration;
@@ -37,6 +38,7 @@ import java.time.Instant;
 import java.time.LocalTime;
 import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
 import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
@@ -104,6 +106,7 @@ public class RecoveryManager implements FrameReceivedListener<AckFrame>, Handsha
     private final Sender sender;
     private final Logger log;
     private final ScheduledExecutorService scheduler;
+    private final boolean ownScheduler;
     private int receiverMaxAckDelay;
     private ScheduledFuture<?> lossDetectionFuture;  // Concurrency: guarded by scheduleLock
     private final Object scheduleLock = new Object();
@@ -113,10 +116,18 @@ public class RecoveryManager implements FrameReceivedListener<AckFrame>, Handsha
     private volatile boolean hasBeenReset = false;
 
     public RecoveryManager(Role role, RttEstimator rttEstimater, CongestionController congestionController, Sender sender, Logger logger) {
-        this(Clock.systemUTC(), role, rttEstimater, congestionController, sender, logger);
+        this(MonotonicClock.instance(), role, rttEstimater, congestionController, sender, logger);
     }
 
     public RecoveryManager(Clock clock, Role role, RttEstimator rttEstimater, CongestionController congestionController, Sender sender, Logger logger) {
+        this(clock, role, rttEstimater, congestionController, sender, null, logger);
+    }
+
+    /**
+     * Creates a recovery manager that uses the given scheduler (e.g. the event loop the connection is assigned to) for
+     * the loss detection timer; when scheduler is null, the recovery manager creates its own.
+     */
+    public RecoveryManager(Clock clock, Role role, RttEstimator rttEstimater, CongestionController congestionController, Sender sender, ScheduledExecutorService scheduler, Logger logger) {
         this.clock = clock;
         this.role = role;
         this.rttEstimater = rttEstimater;
@@ -126,7 +137,8 @@ public class RecoveryManager implements FrameReceivedListener<AckFrame>, Handsha
         this.sender = sender;
         log = logger;
 
-        scheduler = Executors.newScheduledThreadPool(1, new DaemonThreadFactory("loss-detection"));
+        ownScheduler = scheduler == null;
+        this.scheduler = ownScheduler? Executors.newScheduledThreadPool(1, new DaemonThreadFactory("loss-detection")): scheduler;
         synchronized (scheduleLock) {
             lossDetectionFuture = new NullScheduledFuture();
         }
@@ -176,8 +188,9 @@ public class RecoveryManager implements FrameReceivedListener<AckFrame>, Handsha
      * @return a <code>PnSpaceTime</code> object defining the next probe: its time and for which packet number space.
      */
     private PnSpaceTime getPtoTimeAndSpace() {
-        int ptoDuration = rttEstimater.getSmoothedRtt() + Integer.max(1, 4 * rttEstimater.getRttVar());
-        ptoDuration *= (int) (Math.pow(2, ptoCount));
+        // Computed in microseconds, as on low latency networks the RTT can be (much) less than a millisecond.
+        long ptoDuration = rttEstimater.getSmoothedRttMicros() + Long.max(RttEstimator.kGranularity, 4 * rttEstimater.getRttVarMicros());
+        ptoDuration *= (long) (Math.pow(2, ptoCount));
 
         // The pseudo code in https://www.rfc-editor.org/rfc/rfc9002.html#name-setting-the-loss-detection- test for
         // ! ackElicitingInFlight() to determine whether peer is awaiting address validation. In a multi-threaded
@@ -185,10 +198,10 @@ public class RecoveryManager implements FrameReceivedListener<AckFrame>, Handsha
         if (peerAwaitingAddressValidation()) {
             if (handshakeState.hasNoHandshakeKeys()) {
                 log.recovery("getPtoTimeAndSpace: no ack eliciting in flight and no handshake keys -> probe Initial");
-                return new PnSpaceTime(PnSpace.Initial, clock.instant().plusMillis(ptoDuration));
+                return new PnSpaceTime(PnSpace.Initial, clock.instant().plus(ptoDuration, ChronoUnit.MICROS));
             } else {
                 log.recovery("getPtoTimeAndSpace: no ack eliciting in flight but handshake keys -> probe Handshake");
-                return new PnSpaceTime(PnSpace.Handshake, clock.instant().plusMillis(ptoDuration));
+                return new PnSpaceTime(PnSpace.Handshake, clock.instant().plus(ptoDuration, ChronoUnit.MICROS));
             }
         }
 
@@ -206,11 +219,11 @@ public class RecoveryManager implements FrameReceivedListener<AckFrame>, Handsha
                 if (pnSpace == PnSpace.App) {
                     // https://www.rfc-editor.org/rfc/rfc9002.html#name-setting-the-loss-detection-
                     // "Include max_ack_delay and backoff for Application Data"
-                    ptoDuration += receiverMaxAckDelay * (int) (Math.pow(2, ptoCount));
+                    ptoDuration += receiverMaxAckDelay * 1000L * (long) (Math.pow(2, ptoCount));
                 }
                 Instant lastAckElicitingSent = lossDetectors[pnSpace.ordinal()].getLastAckElicitingSent();
-                if (lastAckElicitingSent != null && lastAckElicitingSent.plusMillis(ptoDuration).isBefore(ptoTime)) {
-                    ptoTime = lastAckElicitingSent.plusMillis(ptoDuration);
+                if (lastAckElicitingSent != null && lastAckElicitingSent.plus(ptoDuration, ChronoUnit.MICROS).isBefore(ptoTime)) {
+                    ptoTime = lastAckElicitingSent.plus(ptoDuration, ChronoUnit.MICROS);
                     ptoSpace = pnSpace;
                 }
             }
@@ -390,9 +403,9 @@ public class RecoveryManager implements FrameReceivedListener<AckFrame>, Handsha
                 // Cancelling the current future and setting the new must be in a sync'd block to ensure the right future is cancelled
                 lossDetectionFuture.cancel(false);
                 timerExpiration = scheduledTime;
-                long delay = Duration.between(clock.instant(), scheduledTime).toMillis();
+                long delay = Duration.between(clock.instant(), scheduledTime).toNanos() / 1000;
                 // Delay can be 0 or negative, but that's no problem for ScheduledExecutorService: "Zero and negative delays are also allowed, and are treated as requests for immediate execution."
-                lossDetectionFuture = scheduler.schedule(this::runLossDetectionTimeout, delay, TimeUnit.MILLISECONDS);
+                lossDetectionFuture = scheduler.schedule(this::runLossDetectionTimeout, delay, TimeUnit.MICROSECONDS);
             }
         }
         catch (RejectedExecutionException taskRejected) {
@@ -470,7 +483,9 @@ public class RecoveryManager implements FrameReceivedListener<AckFrame>, Handsha
         if (! hasBeenReset) {
             hasBeenReset = true;
             unschedule();
-            scheduler.shutdown();
+            if (ownScheduler) {
+                scheduler.shutdown();
+            }
             for (PnSpace pnSpace: PnSpace.values()) {
                 lossDetectors[pnSpace.ordinal()].reset();
             }
@@ -487,6 +502,39 @@ public class RecoveryManager implements FrameReceivedListener<AckFrame>, Handsha
         }
     }
 
+    /**
+     * Registers a listener that is notified of all packets (in any packet number space) that are acknowledged or
+     * declared lost.
+     * @param listener
+     */
+    public void setPacketDeliveryListener(PacketDeliveryListener listener) {
+        for (LossDetector lossDetector: lossDetectors) {
+            lossDetector.setPacketDeliveryListener(listener);
+        }
+    }
+
+    /**
+     * Sets the sampler that estimates the delivery rate, based on all in-flight packets (in any packet number space)
+     * that are sent and acknowledged.
+     * @param sampler
+     */
+    public void setDeliveryRateSampler(DeliveryRateSampler sampler) {
+        for (LossDetector lossDetector: lossDetectors) {
+            lossDetector.setDeliveryRateSampler(sampler);
+        }
+    }
+
+    /**
+     * Sets the memory account to which the memory for retaining sent packets (until they are acknowledged or declared
+     * lost) is charged.
+     * @param connectionMemory
+     */
+    public void setConnectionMemory(ConnectionMemory connectionMemory) {
+        for (LossDetector lossDetector: lossDetectors) {
+            lossDetector.setConnectionMemory(connectionMemory);
+        }
+    }
+
     public long getLost() {
         return Stream.of(lossDetectors).mapToLong(ld -> ld.getLost()).sum();
     }
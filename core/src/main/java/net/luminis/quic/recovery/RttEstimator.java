@@ -29,16 +29,20 @@ import java.util.Optional;
 
 public class RttEstimator {
 
-    private static final int NOT_SET = -1;
+    private static final long NOT_SET = -1;
+    // https://www.rfc-editor.org/rfc/rfc9002.html#name-constants-of-interest
+    // "The RECOMMENDED value of the timer granularity (kGranularity) is 1 millisecond." (in microseconds)
+    static final long kGranularity = 1000;
 
     private final Logger log;
-    // All intervals are in milliseconds (1/1000 second)
-    private volatile int initialRtt;
-    private volatile int minRtt = Integer.MAX_VALUE;
-    private volatile int smoothedRtt = NOT_SET;
-    private volatile int rttVar = NOT_SET;
-    private volatile int latestRtt;
-    private volatile int maxAckDelay;
+    // All intervals are in microseconds (1/1000000 second); on low latency networks, millisecond precision is not
+    // enough: all samples would be rounded to 0 or 1 ms.
+    private volatile long initialRtt;
+    private volatile long minRtt = Long.MAX_VALUE;
+    private volatile long smoothedRtt = NOT_SET;
+    private volatile long rttVar = NOT_SET;
+    private volatile long latestRtt;
+    private volatile long maxAckDelay;
 
 
     public RttEstimator(Logger log) {
@@ -47,19 +51,33 @@ public class RttEstimator {
         // https://tools.ietf.org/html/draft-ietf-quic-recovery-20#section-6.2
         // "If no previous RTT is available, or if the network
         //   changes, the initial RTT SHOULD be set to 500ms"
-        initialRtt = 500;
+        initialRtt = 500_000;
 
         // https://tools.ietf.org/html/draft-ietf-quic-transport-30#section-8.2
         // "If this value is absent, a default of 25 milliseconds is assumed."
-        maxAckDelay = 25;
+        maxAckDelay = 25_000;
     }
 
+    /**
+     * @param log
+     * @param initialRtt  initial RTT in milliseconds
+     */
     public RttEstimator(Logger log, int initialRtt) {
         this.log = log;
-        this.initialRtt = initialRtt;
+        this.initialRtt = initialRtt * 1000L;
     }
 
+    /**
+     * Adds an RTT sample.
+     * @param timeReceived  time the ack was received
+     * @param timeSent  time the acknowledged packet was sent
+     * @param ackDelay  ack delay in milliseconds
+     */
     public void addSample(Instant timeReceived, Instant timeSent, int ackDelay) {
+        addSampleWithAckDelayMicros(timeReceived, timeSent, ackDelay * 1000L);
+    }
+
+    private void addSampleWithAckDelayMicros(Instant timeReceived, Instant timeSent, long ackDelay) {
         if (timeReceived.isBefore(timeSent)) {
             // This sometimes happens in the Interop runner; reconsider solution after new sender is implemented.
             log.error("Receiving negative rtt estimate: sent=" + timeSent + ", received=" + timeReceived);
@@ -70,13 +88,12 @@ public class RttEstimator {
             ackDelay = maxAckDelay;
         }
 
-        int previousSmoothed = smoothedRtt;
+        long previousSmoothed = smoothedRtt;
 
-        int rttSample = (int) Duration.between(timeSent, timeReceived).toMillis();
+        long rttSample = Duration.between(timeSent, timeReceived).toNanos() / 1000;
         if (rttSample < minRtt)
             minRtt = rttSample;
-        // Adjust for ack delay if it's plausible. Because times are truncated at millisecond precision,
-        // consider rtt equal to min as plausible.
+        // Adjust for ack delay if it's plausible.
         if (rttSample >= minRtt + ackDelay) {
             rttSample -= ackDelay;
         }
@@ -88,24 +105,55 @@ public class RttEstimator {
             rttVar = rttSample / 2;
         }
         else {
-            int currentRttVar = Math.abs(smoothedRtt - rttSample);
+            long currentRttVar = Math.abs(smoothedRtt - rttSample);
             rttVar = (3 * rttVar + currentRttVar + 2) / 4;        // Add 2 to round to nearest integer
             smoothedRtt = (7 * smoothedRtt + rttSample + 4) / 8;  // Add 4 to round to nearest integer
         }
 
-        log.debug("RTT: " + previousSmoothed + " + " + rttSample + " -> " + smoothedRtt);
+        log.debug("RTT (us): " + previousSmoothed + " + " + rttSample + " -> " + smoothedRtt);
     }
 
+    /**
+     * @return  the smoothed RTT in milliseconds (rounded to the nearest integer)
+     */
     public int getSmoothedRtt() {
-        if (smoothedRtt == NOT_SET) {
-            return initialRtt;
-        }
-        else {
-            return smoothedRtt;
-        }
+        return toMillis(getSmoothedRttMicros());
     }
 
+    /**
+     * @return  the smoothed RTT in microseconds
+     */
+    public long getSmoothedRttMicros() {
+        long smoothed = smoothedRtt;
+        return smoothed != NOT_SET? smoothed: initialRtt;
+    }
+
+    /**
+     * @return  the minimum RTT observed in milliseconds, or 0 if there are no RTT samples yet
+     */
+    public int getMinRtt() {
+        return toMillis(getMinRttMicros());
+    }
+
+    /**
+     * @return  the minimum RTT observed in microseconds, or 0 if there are no RTT samples yet
+     */
+    public long getMinRttMicros() {
+        long min = minRtt;
+        return min != Long.MAX_VALUE? min: 0;
+    }
+
+    /**
+     * @return  the RTT variation in milliseconds; rounded up, so a (small) variation never becomes 0
+     */
     public int getRttVar() {
+        return (int) ((getRttVarMicros() + 999) / 1000);
+    }
+
+    /**
+     * @return  the RTT variation in microseconds
+     */
+    public long getRttVarMicros() {
         // Rtt-var is only used for computing PTO.
         // https://tools.ietf.org/html/draft-ietf-quic-recovery-23#section-5.3
         // "The initial probe timeout for a new connection or new path SHOULD be set to twice the initial RTT"
@@ -113,12 +161,8 @@ public class RttEstimator {
         // "PTO = smoothed_rtt + max(4*rttvar, kGranularity) + max_ack_delay"
         // Hence, using an initial rtt-var of initial-rtt / 4, will result in an initial PTO of twice the initial RTT.
         // After the first packet is received, the rttVar will be computed from the real RTT sample.
-        if (rttVar == NOT_SET) {
-            return initialRtt / 4;
-        }
-        else {
-            return rttVar;
-        }
+        long var = rttVar;
+        return var != NOT_SET? var: initialRtt / 4;
     }
 
     public void ackReceived(AckFrame ack, Instant timeReceived, List<PacketStatus> newlyAcked) {
@@ -131,16 +175,33 @@ public class RttEstimator {
                 .findFirst();
         if (largestAcked.isPresent()) {
             if (newlyAcked.stream().anyMatch(s -> s.packet().isAckEliciting())) {
-                addSample(timeReceived, largestAcked.get().timeSent(), ack.getAckDelay());
+                addSampleWithAckDelayMicros(timeReceived, largestAcked.get().timeSent(), ack.getAckDelayMicros());
             }
         }
     }
 
+    /**
+     * @return  the latest RTT sample in milliseconds (rounded to the nearest integer)
+     */
     public int getLatestRtt() {
+        return toMillis(latestRtt);
+    }
+
+    /**
+     * @return  the latest RTT sample in microseconds
+     */
+    public long getLatestRttMicros() {
         return latestRtt;
     }
 
+    /**
+     * @param maxAckDelay  max ack delay in milliseconds
+     */
     public void setMaxAckDelay(int maxAckDelay) {
-        this.maxAckDelay = maxAckDelay;
+        this.maxAckDelay = maxAckDelay * 1000L;
+    }
+
+    private static int toMillis(long micros) {
+        return (int) ((micros + 500) / 1000);
     }
 }
@@ -0,0 +1,185 @@
+/*
+ * Copyright © 2024 Peter Doornbosch
+ *
+ * This file is part of Kwik, an implementation of the QUIC protocol in Java.
+ *
+ * Kwik is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * Kwik is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.luminis.quic.recovery;
+
+import net.luminis.quic.impl.ConnectionMemory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * Log of the sent packets of one packet number space, that are not yet acknowledged or declared lost. As packet
+ * numbers are assigned in increasing order, the log is a circular array that is indexed by packet number and covers the
+ * range from the oldest packet still present to the largest packet number sent; looking up a packet is a simple index
+ * computation, without boxing the packet number. The start of the range moves forward when the oldest packets are
+ * removed, so a scan from the oldest packet only visits packets that are (or were recently) in flight. The array
+ * grows (doubles) when the range of packet numbers does not fit.
+ * When a memory account is set, the size of the packets retained in the log is charged to that account.
+ * Not thread-safe; callers must synchronize access.
+ */
+class SentPacketLog {
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private PacketStatus[] slots;
+    private int mask;
+    // Packet number of the oldest packet in the log (if not empty).
+    private long first;
+    // One more than the largest packet number in the log (if not empty).
+    private long end;
+    private int size;
+    private ConnectionMemory memory;
+    private long retainedBytes;
+
+    SentPacketLog() {
+        slots = new PacketStatus[INITIAL_CAPACITY];
+        mask = INITIAL_CAPACITY - 1;
+    }
+
+    void add(PacketStatus packetStatus) {
+        long packetNumber = packetStatus.packet().getPacketNumber();
+        if (size == 0) {
+            first = packetNumber;
+            end = packetNumber + 1;
+        }
+        else {
+            long newFirst = Long.min(first, packetNumber);
+            long newEnd = Long.max(end, packetNumber + 1);
+            if (newEnd - newFirst > slots.length) {
+                grow(newEnd - newFirst);
+            }
+            first = newFirst;
+            end = newEnd;
+        }
+        int index = (int) (packetNumber & mask);
+        if (slots[index] == null) {
+            size++;
+        }
+        else {
+            released(slots[index]);
+        }
+        slots[index] = packetStatus;
+        if (memory != null) {
+            int packetSize = packetStatus.packet().getSize();
+            retainedBytes += packetSize;
+            memory.allocate(packetSize);
+        }
+    }
+
+    PacketStatus get(long packetNumber) {
+        if (size == 0 || packetNumber < first || packetNumber >= end) {
+            return null;
+        }
+        return slots[(int) (packetNumber & mask)];
+    }
+
+    PacketStatus remove(long packetNumber) {
+        PacketStatus packetStatus = get(packetNumber);
+        if (packetStatus != null) {
+            slots[(int) (packetNumber & mask)] = null;
+            released(packetStatus);
+            size--;
+            if (size == 0) {
+                first = end;
+            }
+            else if (packetNumber == first) {
+                while (slots[(int) (first & mask)] == null) {
+                    first++;
+                }
+            }
+        }
+        return packetStatus;
+    }
+
+    /**
+     * Returns the packet number of the oldest packet in the log; only valid when the log is not empty.
+     */
+    long firstPacketNumber() {
+        return first;
+    }
+
+    /**
+     * Returns one more than the largest packet number in the log; only valid when the log is not empty.
+     */
+    long endPacketNumber() {
+        return end;
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    List<PacketStatus> filter(Predicate<PacketStatus> predicate) {
+        List<PacketStatus> result = new ArrayList<>();
+        for (long pn = first; size > 0 && pn < end; pn++) {
+            PacketStatus packetStatus = slots[(int) (pn & mask)];
+            if (packetStatus != null && predicate.test(packetStatus)) {
+                result.add(packetStatus);
+            }
+        }
+        return result;
+    }
+
+    void clear() {
+        for (long pn = first; size > 0 && pn < end; pn++) {
+            slots[(int) (pn & mask)] = null;
+        }
+        size = 0;
+        first = end;
+        if (memory != null) {
+            memory.release(retainedBytes);
+            retainedBytes = 0;
+        }
+    }
+
+    /**
+     * Sets the memory account to charge retained packets to; must be set before packets are added.
+     * @param memory
+     */
+    void setMemory(ConnectionMemory memory) {
+        this.memory = memory;
+    }
+
+    private void released(PacketStatus packetStatus) {
+        if (memory != null) {
+            int packetSize = packetStatus.packet().getSize();
+            retainedBytes -= packetSize;
+            memory.release(packetSize);
+        }
+    }
+
+    private void grow(long minCapacity) {
+        int capacity = slots.length;
+        while (capacity < minCapacity) {
+            capacity *= 2;
+        }
+        PacketStatus[] newSlots = new PacketStatus[capacity];
+        int newMask = capacity - 1;
+        for (long pn = first; pn < end; pn++) {
+            newSlots[(int) (pn & newMask)] = slots[(int) (pn & mask)];
+        }
+        slots = newSlots;
+        mask = newMask;
+    }
+}
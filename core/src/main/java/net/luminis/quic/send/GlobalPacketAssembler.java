@@ -35,6 +35,7 @@ import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
 
+import static net.luminis.quic.common.EncryptionLevel.App;
 import static net.luminis.quic.common.EncryptionLevel.Handshake;
 import static net.luminis.quic.common.EncryptionLevel.Initial;
 import static net.luminis.quic.common.EncryptionLevel.ZeroRTT;
@@ -152,6 +153,22 @@ public class GlobalPacketAssembler {
         return packets;
     }
 
+    /**
+     * Assembles a path MTU probe of the given size, to be sent in a datagram of its own. Probes are only sent with
+     * 1-RTT packets.
+     * @param probeSize
+     * @param sourceConnectionId
+     * @param destinationConnectionId
+     * @return
+     */
+    public Optional<SendItem> assemblePmtuProbe(int probeSize, byte[] sourceConnectionId, byte[] destinationConnectionId) {
+        PacketAssembler assembler = packetAssembler[App.ordinal()];
+        if (assembler != null && Arrays.asList(enabledLevels).contains(App)) {
+            return assembler.assemblePmtuProbe(probeSize, sourceConnectionId, destinationConnectionId);
+        }
+        return Optional.empty();
+    }
+
     public Optional<Instant> nextDelayedSendTime() {
         return Arrays.stream(enabledLevels)
                 .map(level -> sendRequestQueue[level.ordinal()])
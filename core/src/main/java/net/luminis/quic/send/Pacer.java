@@ -0,0 +1,145 @@
+/*
+ * Copyright © 2024 Peter Doornbosch
+ *
+ * This file is part of Kwik, an implementation of the QUIC protocol in Java.
+ *
+ * Kwik is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * Kwik is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.luminis.quic.send;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Token bucket pacer, that spreads the sending of in-flight packets over the round trip time, instead of sending all
+ * that the congestion window allows in one burst.
+ * The bucket is filled at the pacing rate (derived from congestion window and smoothed RTT) up to its size, which is
+ * the burst allowance, but at least what is needed to sustain the pacing rate with the timer granularity of the sender;
+ * a packet can be sent when the bucket holds enough tokens (bytes) for it.
+ */
+public class Pacer {
+
+    // https://www.rfc-editor.org/rfc/rfc9002.html#name-pacing
+    // "rate = N * congestion_window / smoothed_rtt"
+    // "Using a value for N that is small, but at least 1 (for example, 1.25) ensures that variations in RTT do not
+    //  result in underutilization of the congestion window."
+    static final double N = 1.25;
+
+    // https://www.rfc-editor.org/rfc/rfc9002.html#name-pacing
+    // "Senders SHOULD limit bursts to the initial congestion window; see Section 7.2."
+    public static final int DEFAULT_MAX_BURST_PACKETS = 10;
+
+    // Interval between two wake-ups of the sender the bucket must be able to cover, to compensate for timer inaccuracy.
+    static final Duration TIMER_GRANULARITY = Duration.ofMillis(2);
+
+    private final Clock clock;
+    private volatile int maxBurstPackets;
+    // Pacing rate in bytes per second.
+    private volatile long rate;
+    private double tokens = -1;
+    private Instant lastRefill;
+    private volatile long delayCount;
+
+    public Pacer(Clock clock) {
+        this(clock, DEFAULT_MAX_BURST_PACKETS);
+    }
+
+    public Pacer(Clock clock, int maxBurstPackets) {
+        if (maxBurstPackets < 1) {
+            throw new IllegalArgumentException("burst must be at least one packet");
+        }
+        this.clock = clock;
+        this.maxBurstPackets = maxBurstPackets;
+    }
+
+    /**
+     * Updates the pacing rate.
+     * @param congestionWindow  congestion window in bytes
+     * @param smoothedRttMicros  smoothed RTT in microseconds
+     */
+    public void updateRate(long congestionWindow, long smoothedRttMicros) {
+        rate = (long) (N * congestionWindow * 1_000_000 / Long.max(smoothedRttMicros, 1));
+    }
+
+    /**
+     * Sets the pacing rate, for congestion controllers that determine the pacing rate themselves.
+     * @param bytesPerSecond
+     */
+    public void setRate(long bytesPerSecond) {
+        rate = bytesPerSecond;
+    }
+
+    /**
+     * Returns how long to wait (in milliseconds) before a packet of the given size can be sent; 0 means it can be sent
+     * now.
+     * @param packetSize
+     * @return
+     */
+    public synchronized long timeUntilSend(int packetSize) {
+        refill(packetSize);
+        if (tokens >= packetSize || rate <= 0) {
+            return 0;
+        }
+        delayCount++;
+        double millisNeeded = (packetSize - tokens) * 1000 / rate;
+        return Long.max((long) Math.ceil(millisNeeded), 1);
+    }
+
+    /**
+     * Registers that a datagram with in-flight packets of the given size is sent.
+     * @param size
+     */
+    public synchronized void packetSent(int size) {
+        refill(size);
+        tokens = Double.max(tokens - size, 0);
+    }
+
+    public void setMaxBurstPackets(int maxBurstPackets) {
+        if (maxBurstPackets < 1) {
+            throw new IllegalArgumentException("burst must be at least one packet");
+        }
+        this.maxBurstPackets = maxBurstPackets;
+    }
+
+    /**
+     * @return  the current pacing rate in bytes per second.
+     */
+    public long getRate() {
+        return rate;
+    }
+
+    /**
+     * @return  the number of times sending a packet had to be postponed because of pacing.
+     */
+    public long getDelayCount() {
+        return delayCount;
+    }
+
+    private void refill(int packetSize) {
+        Instant now = clock.instant();
+        double bucketSize = Double.max(maxBurstPackets * packetSize, (double) rate * TIMER_GRANULARITY.toNanos() / 1e9);
+        if (tokens < 0) {
+            // Initially, the bucket is full, to allow an initial burst.
+            tokens = bucketSize;
+        }
+        else {
+            long elapsed = Duration.between(lastRefill, now).toNanos();
+            if (elapsed > 0) {
+                tokens = Double.min(tokens + elapsed * (double) rate / 1e9, bucketSize);
+            }
+        }
+        lastRefill = now;
+    }
+}
@@ -20,6 +20,7 @@ package net.luminis.quic.send;
 
 import net.luminis.quic.ack.AckGenerator;
 import net.luminis.quic.frame.AckFrame;
+import net.luminis.quic.frame.Padding;
 import net.luminis.quic.frame.PingFrame;
 import net.luminis.quic.frame.QuicFrame;
 import net.luminis.quic.common.EncryptionLevel;
@@ -197,6 +198,26 @@ public class PacketAssembler {
         return assembledItem;
     }
 
+    /**
+     * Assembles a path MTU probe: a packet containing a PING frame that is padded to the given size.
+     * @param probeSize
+     * @param sourceConnectionId
+     * @param destinationConnectionId
+     * @return
+     */
+    Optional<SendItem> assemblePmtuProbe(int probeSize, byte[] sourceConnectionId, byte[] destinationConnectionId) {
+        QuicPacket packet = createPacket(sourceConnectionId, destinationConnectionId);
+        packet.addFrame(new PingFrame());
+        // Estimate with some additional payload, to exclude the minimal padding needed for header protection sampling.
+        int paddingSize = probeSize - (packet.estimateLength(4) - 4);
+        if (paddingSize > 0) {
+            packet.addFrame(new Padding(paddingSize));
+        }
+        packet.setIsPmtuProbe(true);
+        // Lost probes need not be retransmitted, as a PING frame does not convey any information.
+        return Optional.of(new SendItem(packet));
+    }
+
     protected long nextPacketNumber() {
         return packetNumberGenerator.nextPacketNumber();
     }
@@ -0,0 +1,267 @@
+/*
+ * Copyright © 2024 Peter Doornbosch
+ *
+ * This file is part of Kwik, an implementation of the QUIC protocol in Java.
+ *
+ * Kwik is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * Kwik is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.luminis.quic.send;
+
+import net.luminis.quic.log.Logger;
+import net.luminis.quic.packet.PacketInfo;
+import net.luminis.quic.packet.QuicPacket;
+import net.luminis.quic.recovery.PacketDeliveryListener;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.function.IntConsumer;
+
+/**
+ * Datagram Packetization Layer Path MTU Discovery (DPLPMTUD, RFC 8899), which determines the largest packet size that
+ * can be sent to the peer (the PLPMTU). Probes are PING packets padded to the size being tested; when a probe is
+ * acknowledged, the probed size becomes the new PLPMTU. The search is a binary search between the PLPMTU and the
+ * maximum size, which is limited by both the local maximum and the peer's max_udp_payload_size transport parameter;
+ * the maximum size is tried first, so on paths that support it, it is found with one probe.
+ * When a number of subsequent loss events contain packets larger than the base PLPMTU, without any such packet being
+ * acknowledged in between, the path is considered a black hole for packets of the current size: the PLPMTU falls back
+ * to the base size and the search is restarted.
+ */
+public class PmtuDiscovery implements PacketDeliveryListener {
+
+    enum State {
+        Disabled,
+        Searching,
+        SearchComplete
+    }
+
+    // https://www.rfc-editor.org/rfc/rfc8899.html#name-constants
+    // "The default value of MAX_PROBES is 3."
+    static final int MAX_PROBES = 3;
+
+    // https://www.rfc-editor.org/rfc/rfc8899.html#name-timers
+    // Period after which the search is resumed, to detect an increase of the PMTU; RFC 8899 recommends 600 seconds.
+    static final Duration PMTU_RAISE_TIMER = Duration.ofSeconds(600);
+
+    // Searching stops when the interval that is left to search is smaller than this.
+    static final int SEARCH_GRANULARITY = 16;
+
+    // Number of subsequent loss events with packets larger than the base PLPMTU that indicate a black hole.
+    static final int BLACK_HOLE_THRESHOLD = 3;
+
+    private final Clock clock;
+    private final IntConsumer plpmtuListener;
+    private final Logger log;
+    private int basePlpmtu;
+    private int localMaxPlpmtu;
+    private int peerMaxUdpPayloadSize = Integer.MAX_VALUE;
+    private int plpmtu;
+    private State state = State.Disabled;
+    // Largest size that is not (yet) known to fail.
+    private int searchHigh;
+    private boolean searchHighFailed;
+    private int probeSize;
+    private long probePacketNumber = -1;
+    private int probeCount;
+    private int blackHoleCount;
+    private Instant searchCompleteTime;
+
+    /**
+     * @param basePlpmtu  the initial (and smallest) PLPMTU
+     * @param clock
+     * @param plpmtuListener  called with the new PLPMTU when it changes
+     * @param log
+     */
+    public PmtuDiscovery(int basePlpmtu, Clock clock, IntConsumer plpmtuListener, Logger log) {
+        this.basePlpmtu = basePlpmtu;
+        this.localMaxPlpmtu = basePlpmtu;
+        this.plpmtu = basePlpmtu;
+        this.clock = clock;
+        this.plpmtuListener = plpmtuListener;
+        this.log = log;
+    }
+
+    /**
+     * Sets the maximum packet size (i.e. UDP payload size) that is used locally; discovery will not probe larger sizes.
+     * @param maxPacketSize
+     */
+    public synchronized void setLocalMaxPacketSize(int maxPacketSize) {
+        localMaxPlpmtu = Integer.max(maxPacketSize, basePlpmtu);
+        if (plpmtu > maxPlpmtu()) {
+            updatePlpmtu(maxPlpmtu());
+        }
+        limitSearch();
+    }
+
+    /**
+     * Registers the value of the peer's max_udp_payload_size transport parameter.
+     * @param maxUdpPayloadSize
+     */
+    public synchronized void setPeerMaxUdpPayloadSize(int maxUdpPayloadSize) {
+        peerMaxUdpPayloadSize = maxUdpPayloadSize;
+        basePlpmtu = Integer.min(basePlpmtu, maxUdpPayloadSize);
+        if (plpmtu > maxPlpmtu()) {
+            updatePlpmtu(maxPlpmtu());
+        }
+        limitSearch();
+    }
+
+    /**
+     * Starts searching; probes should only be sent when the handshake is confirmed.
+     */
+    public synchronized void start() {
+        if (state == State.Disabled) {
+            startSearch(maxPlpmtu());
+        }
+    }
+
+    /**
+     * Returns the size of the probe to be sent now, or 0 when no probe needs to be sent.
+     * @return
+     */
+    public synchronized int nextProbeSize() {
+        if (state == State.SearchComplete && plpmtu < maxPlpmtu()
+                && !clock.instant().isBefore(searchCompleteTime.plus(PMTU_RAISE_TIMER))) {
+            // Periodically resume searching, as the path might support larger packets by now.
+            startSearch(maxPlpmtu());
+        }
+        if (state != State.Searching || probePacketNumber >= 0) {
+            return 0;
+        }
+        if (probeSize == 0) {
+            probeSize = searchHighFailed? (plpmtu + searchHigh + 1) / 2: searchHigh;
+        }
+        return probeSize;
+    }
+
+    /**
+     * Registers that a probe (of the size returned by {@link #nextProbeSize()}) is sent.
+     * @param probe
+     */
+    public synchronized void probeSent(QuicPacket probe) {
+        probePacketNumber = probe.getPacketNumber();
+    }
+
+    @Override
+    public synchronized void packetsAcked(List<? extends PacketInfo> ackedPackets) {
+        for (PacketInfo ackedPacket: ackedPackets) {
+            QuicPacket packet = ackedPacket.packet();
+            if (packet.isPmtuProbe()) {
+                if (packet.getPacketNumber() == probePacketNumber) {
+                    probeAcked();
+                }
+            }
+            else if (packet.getSize() > basePlpmtu) {
+                blackHoleCount = 0;
+            }
+        }
+    }
+
+    @Override
+    public synchronized void packetsLost(List<? extends PacketInfo> lostPackets) {
+        boolean largePacketLost = false;
+        for (PacketInfo lostPacket: lostPackets) {
+            QuicPacket packet = lostPacket.packet();
+            if (packet.isPmtuProbe()) {
+                if (packet.getPacketNumber() == probePacketNumber) {
+                    probeLost();
+                }
+            }
+            else if (packet.getSize() > basePlpmtu) {
+                largePacketLost = true;
+            }
+        }
+        if (largePacketLost && ++blackHoleCount >= BLACK_HOLE_THRESHOLD) {
+            // https://www.rfc-editor.org/rfc/rfc8899.html#name-black-hole-detection-and-re
+            // On detecting a black hole, fall back to the base PLPMTU and search again (below the failing size).
+            log.warn("Path MTU black hole detected; falling back from " + plpmtu + " to " + basePlpmtu + " bytes");
+            int failedSize = plpmtu;
+            updatePlpmtu(basePlpmtu);
+            startSearch(failedSize - 1);
+            searchHighFailed = true;
+        }
+    }
+
+    public synchronized int getPlpmtu() {
+        return plpmtu;
+    }
+
+    synchronized State getState() {
+        return state;
+    }
+
+    private void probeAcked() {
+        log.info("Path MTU probe of " + probeSize + " bytes acknowledged");
+        updatePlpmtu(probeSize);
+        probeSize = 0;
+        probePacketNumber = -1;
+        probeCount = 0;
+        checkSearchComplete();
+    }
+
+    private void probeLost() {
+        probePacketNumber = -1;
+        probeCount++;
+        if (probeCount >= MAX_PROBES) {
+            // Probed size is not supported by the path, continue searching below it.
+            searchHigh = probeSize - 1;
+            searchHighFailed = true;
+            probeSize = 0;
+            probeCount = 0;
+            checkSearchComplete();
+        }
+    }
+
+    private void startSearch(int high) {
+        searchHigh = high;
+        searchHighFailed = false;
+        probeSize = 0;
+        probePacketNumber = -1;
+        probeCount = 0;
+        blackHoleCount = 0;
+        state = State.Searching;
+        checkSearchComplete();
+    }
+
+    private void limitSearch() {
+        if (state == State.Searching && searchHigh > maxPlpmtu()) {
+            searchHigh = maxPlpmtu();
+            if (probeSize > searchHigh) {
+                probeSize = 0;
+                probePacketNumber = -1;
+                probeCount = 0;
+            }
+            checkSearchComplete();
+        }
+    }
+
+    private void checkSearchComplete() {
+        if (searchHigh - plpmtu < SEARCH_GRANULARITY) {
+            state = State.SearchComplete;
+            searchCompleteTime = clock.instant();
+        }
+    }
+
+    private void updatePlpmtu(int newPlpmtu) {
+        if (newPlpmtu != plpmtu) {
+            plpmtu = newPlpmtu;
+            plpmtuListener.accept(newPlpmtu);
+        }
+    }
+
+    private int maxPlpmtu() {
+        return Integer.min(localMaxPlpmtu, peerMaxUdpPayloadSize);
+    }
+}
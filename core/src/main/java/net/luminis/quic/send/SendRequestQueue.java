@@ -23,6 +23,7 @@ import net.luminis.quic.frame.PathResponseFrame;
 import net.luminis.quic.frame.PingFrame;
 import net.luminis.quic.frame.QuicFrame;
 import net.luminis.quic.common.EncryptionLevel;
+import net.luminis.quic.util.MonotonicClock;
 
 import java.time.Clock;
 import java.time.Duration;
@@ -44,7 +45,7 @@ public class SendRequestQueue {
     private volatile boolean cleared;
 
     public SendRequestQueue(EncryptionLevel level) {
-        this(Clock.systemUTC(), level);
+        this(MonotonicClock.instance(), level);
     }
 
     public SendRequestQueue(Clock clock, EncryptionLevel level) {
@@ -29,8 +29,22 @@ public class SendStatistics {
     private final int smoothedRtt;
     private final int rttVar;
     private final int latestRtt;
+    private final long pacingRate;
+    private final long pacingDelays;
+    private final long bottleneckBandwidth;
+    private final long minRttMicros;
 
     public SendStatistics(int datagramsSent, long packetsSent, long bytesSent, long dataBytesSent, long lostPackets, int smoothedRtt, int rttVar, int latestRtt) {
+        this(datagramsSent, packetsSent, bytesSent, dataBytesSent, lostPackets, smoothedRtt, rttVar, latestRtt, 0, 0);
+    }
+
+    public SendStatistics(int datagramsSent, long packetsSent, long bytesSent, long dataBytesSent, long lostPackets, int smoothedRtt, int rttVar, int latestRtt,
+                          long pacingRate, long pacingDelays) {
+        this(datagramsSent, packetsSent, bytesSent, dataBytesSent, lostPackets, smoothedRtt, rttVar, latestRtt, pacingRate, pacingDelays, 0, 0);
+    }
+
+    public SendStatistics(int datagramsSent, long packetsSent, long bytesSent, long dataBytesSent, long lostPackets, int smoothedRtt, int rttVar, int latestRtt,
+                          long pacingRate, long pacingDelays, long bottleneckBandwidth, long minRttMicros) {
         this.datagramsSent = datagramsSent;
         this.packetsSent = packetsSent;
         this.bytesSent = bytesSent;
@@ -39,6 +53,10 @@ public class SendStatistics {
         this.smoothedRtt = smoothedRtt;
         this.rttVar = rttVar;
         this.latestRtt = latestRtt;
+        this.pacingRate = pacingRate;
+        this.pacingDelays = pacingDelays;
+        this.bottleneckBandwidth = bottleneckBandwidth;
+        this.minRttMicros = minRttMicros;
     }
 
     public int datagramsSent() {
@@ -72,4 +90,39 @@ public class SendStatistics {
     public int latestRtt() {
         return latestRtt;
     }
+
+    /**
+     * @return  the current pacing rate in bytes per second
+     */
+    public long pacingRate() {
+        return pacingRate;
+    }
+
+    /**
+     * @return  the number of times sending was postponed by the pacer
+     */
+    public long pacingDelays() {
+        return pacingDelays;
+    }
+
+    /**
+     * @return  the estimated bottleneck bandwidth in bytes per second, or 0 when not estimated
+     */
+    public long bottleneckBandwidth() {
+        return bottleneckBandwidth;
+    }
+
+    /**
+     * @return  the (estimated) minimum RTT in milliseconds; rounded up, so a sub-millisecond RTT is not reported as 0
+     */
+    public int minRtt() {
+        return (int) ((minRttMicros + 999) / 1000);
+    }
+
+    /**
+     * @return  the (estimated) minimum RTT in microseconds
+     */
+    public long minRttMicros() {
+        return minRttMicros;
+    }
 }
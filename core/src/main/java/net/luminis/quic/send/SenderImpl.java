@@ -18,16 +18,19 @@
  */
 package net.luminis.quic.send;
 
+import net.luminis.quic.CongestionControlAlgorithm;
+import net.luminis.quic.CongestionControllerFactory;
 import net.luminis.quic.ack.GlobalAckGenerator;
+import net.luminis.quic.cc.BbrCongestionController;
 import net.luminis.quic.cc.CongestionControlEventListener;
 import net.luminis.quic.cc.CongestionController;
-import net.luminis.quic.cc.NewRenoCongestionController;
 import net.luminis.quic.crypto.Aead;
 import net.luminis.quic.crypto.ConnectionSecrets;
 import net.luminis.quic.crypto.MissingKeysException;
 import net.luminis.quic.frame.QuicFrame;
 import net.luminis.quic.frame.StreamFrame;
 import net.luminis.quic.common.EncryptionLevel;
+import net.luminis.quic.impl.ConnectionMemory;
 import net.luminis.quic.impl.IdleTimer;
 import net.luminis.quic.common.PnSpace;
 import net.luminis.quic.impl.QuicConnectionImpl;
@@ -37,8 +40,11 @@ import net.luminis.quic.log.QLog;
 import net.luminis.quic.packet.QuicPacket;
 import net.luminis.quic.packet.RetryPacket;
 import net.luminis.quic.packet.ShortHeaderPacket;
+import net.luminis.quic.recovery.DeliveryRateSampler;
 import net.luminis.quic.recovery.RecoveryManager;
 import net.luminis.quic.recovery.RttEstimator;
+import net.luminis.quic.util.DontFragment;
+import net.luminis.quic.util.MonotonicClock;
 
 import java.io.IOException;
 import java.net.DatagramPacket;
@@ -46,6 +52,7 @@ import java.net.DatagramSocket;
 import java.net.InetSocketAddress;
 import java.nio.BufferOverflowException;
 import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
 import java.time.Clock;
 import java.time.Duration;
 import java.time.Instant;
@@ -53,8 +60,18 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.stream.Collectors;
@@ -84,6 +101,8 @@ public class SenderImpl implements Sender, CongestionControlEventListener {
 
     private final Clock clock;
     private volatile int maxPacketSize;
+    // Largest datagram this sender can send (path MTU probes included), which determines the size of the send buffer.
+    private volatile int maxDatagramSize;
     private volatile DatagramSocket socket;
     private final InetSocketAddress peerAddress;
     private final QuicConnectionImpl connection;
@@ -95,12 +114,27 @@ public class SenderImpl implements Sender, CongestionControlEventListener {
     private final GlobalPacketAssembler packetAssembler;
     private final GlobalAckGenerator globalAckGenerator;
     private final RecoveryManager recoveryManager;
+    private final PmtuDiscovery pmtuDiscovery;
+    private volatile boolean pmtuDiscoveryEnabled;
+    private final Pacer pacer;
+    private final DeliveryRateSampler deliveryRateSampler;
+    private volatile Instant pacingResumeTime;
     private final IdleTimer idleTimer;
     private final Thread senderThread;
+    private final ScheduledExecutorService eventLoop;
+    private final ScheduledExecutorService timer;
+    private final AtomicBoolean sendTaskQueued = new AtomicBoolean();
+    private ScheduledFuture<?> delayedSendTask;  // Only accessed by sender thread or event loop
+    private long delayedSendTime;  // Only accessed by sender thread or event loop
+    private ByteBuffer sendBuffer;  // Only accessed by sender thread or event loop
+    private DatagramPacket sendPacket;  // Only accessed by sender thread or event loop
     private final boolean[] discardedSpaces = new boolean[PnSpace.values().length];
     private ConnectionSecrets connectionSecrets;
-    private final Object condition = new Object();
-    private boolean signalled;
+    // Lock and condition (rather than a monitor) for waking up the sender loop, so a virtual thread running the loop does
+    // not pin its carrier thread while waiting.
+    private final ReentrantLock wakeUpLock = new ReentrantLock();
+    private final Condition wakeUpCondition = wakeUpLock.newCondition();
+    private boolean signalled;  // Guarded by wakeUpLock
 
     // Using thread-confinement strategy for concurrency control: only the sender thread created in this class accesses these members
     private volatile boolean running;
@@ -119,13 +153,33 @@ public class SenderImpl implements Sender, CongestionControlEventListener {
 
     public SenderImpl(VersionHolder version, int maxPacketSize, DatagramSocket socket, InetSocketAddress peerAddress,
                       QuicConnectionImpl connection, String id, Integer initialRtt, Logger log) {
-        this(Clock.systemUTC(), version, maxPacketSize, socket, peerAddress, connection, id, initialRtt, log);
+        this(MonotonicClock.instance(), version, maxPacketSize, socket, peerAddress, connection, id, initialRtt, log);
     }
 
     public SenderImpl(Clock clock, VersionHolder version, int maxPacketSize, DatagramSocket socket, InetSocketAddress peerAddress,
                       QuicConnectionImpl connection, String id, Integer initialRtt, Logger log) {
+        this(clock, version, maxPacketSize, socket, peerAddress, connection, id, initialRtt, null, null, log);
+    }
+
+    /**
+     * Creates a sender that registers its timers (loss detection, delayed sends) with the given timer, instead of
+     * creating executors of its own. When an event loop is given, the sender executes all its work (assembling and
+     * sending packets) as tasks on that event loop, instead of on a sender thread of its own; when no timer is given,
+     * the event loop is used for timers too.
+     */
+    public SenderImpl(Clock clock, VersionHolder version, int maxPacketSize, DatagramSocket socket, InetSocketAddress peerAddress,
+                      QuicConnectionImpl connection, String id, Integer initialRtt, ScheduledExecutorService timer,
+                      ScheduledExecutorService eventLoop, Logger log) {
+        this(clock, version, maxPacketSize, socket, peerAddress, connection, id, initialRtt, timer, eventLoop,
+                CongestionControllerFactory.of(CongestionControlAlgorithm.NEW_RENO), log);
+    }
+
+    public SenderImpl(Clock clock, VersionHolder version, int maxPacketSize, DatagramSocket socket, InetSocketAddress peerAddress,
+                      QuicConnectionImpl connection, String id, Integer initialRtt, ScheduledExecutorService timer,
+                      ScheduledExecutorService eventLoop, CongestionControllerFactory congestionControllerFactory, Logger log) {
         this.clock = clock;
         this.maxPacketSize = maxPacketSize;
+        this.maxDatagramSize = maxPacketSize;
         this.socket = socket;
         this.peerAddress = peerAddress;
         this.connection = connection;
@@ -139,22 +193,50 @@ public class SenderImpl implements Sender, CongestionControlEventListener {
         globalAckGenerator = new GlobalAckGenerator(this);
         packetAssembler = new GlobalPacketAssembler(version, sendRequestQueue, globalAckGenerator);
 
-        congestionController = new NewRenoCongestionController(log, this);
         rttEstimater = (initialRtt == null)? new RttEstimator(log): new RttEstimator(log, initialRtt);
+        if (congestionControllerFactory == null) {
+            congestionControllerFactory = CongestionControllerFactory.of(CongestionControlAlgorithm.NEW_RENO);
+        }
+        congestionController = congestionControllerFactory.createCongestionController(clock, log, this, rttEstimater);
 
-        recoveryManager = new RecoveryManager(connection.getRole(), rttEstimater, congestionController, this, log);
+        this.eventLoop = eventLoop;
+        this.timer = timer != null? timer: eventLoop;
+        recoveryManager = new RecoveryManager(MonotonicClock.instance(), connection.getRole(), rttEstimater, congestionController, this, this.timer, log);
         connection.addHandshakeStateListener(recoveryManager);
         connection.addAckFrameReceivedListener(recoveryManager);
+        pmtuDiscovery = new PmtuDiscovery(maxPacketSize, clock, newSize -> this.maxPacketSize = newSize, log);
+        recoveryManager.setPacketDeliveryListener(pmtuDiscovery);
+        if (congestionController instanceof BbrCongestionController) {
+            deliveryRateSampler = new DeliveryRateSampler(((BbrCongestionController) congestionController)::rateSample);
+            recoveryManager.setDeliveryRateSampler(deliveryRateSampler);
+        }
+        else {
+            deliveryRateSampler = null;
+        }
+        pacer = new Pacer(clock);
 
         idleTimer = connection.getIdleTimer();
 
-        senderThread = new Thread(() -> sendLoop(), "sender" + (!id.isBlank()? "-" + id: ""));
-        senderThread.setDaemon(true);
+        if (eventLoop == null) {
+            ThreadFactory threadFactory = Objects.requireNonNullElse(connection.getThreadFactory(), Thread::new);
+            senderThread = threadFactory.newThread(() -> sendLoop());
+            senderThread.setName("sender" + (!id.isBlank()? "-" + id: ""));
+            senderThread.setDaemon(true);
+        }
+        else {
+            senderThread = null;
+        }
     }
 
     public void start(ConnectionSecrets secrets) {
         connectionSecrets = secrets;
-        senderThread.start();
+        if (eventLoop == null) {
+            senderThread.start();
+        }
+        else {
+            running = true;
+            wakeUpSenderLoop();
+        }
     }
 
     @Override
@@ -242,6 +324,12 @@ public class SenderImpl implements Sender, CongestionControlEventListener {
     }
     
     public void changeAddress(DatagramSocket newSocket) {
+        if (pmtuDiscoveryEnabled && !DontFragment.enable(newSocket)) {
+            // Without DF, larger packets might be fragmented; fall back to the (safe) base size.
+            log.warn("Cannot set Don't Fragment bit on new socket; disabling path MTU discovery");
+            pmtuDiscoveryEnabled = false;
+            pmtuDiscovery.setLocalMaxPacketSize(0);
+        }
         socket = newSocket;
     }
 
@@ -253,6 +341,12 @@ public class SenderImpl implements Sender, CongestionControlEventListener {
                 log.recovery("Discarding pn space " + space + " because " + reason);
                 globalAckGenerator.discard(space);
                 discardedSpaces[space.ordinal()] = true;
+                if (space == PnSpace.Handshake) {
+                    // https://www.rfc-editor.org/rfc/rfc9001.html#name-discarding-handshake-keys
+                    // "An endpoint MUST discard its Handshake keys when the TLS handshake is confirmed"
+                    // so from now on, path MTU probes can be sent.
+                    pmtuDiscovery.start();
+                }
             }
         }
     }
@@ -276,7 +370,9 @@ public class SenderImpl implements Sender, CongestionControlEventListener {
 
         shutdownHook = postShutdownAction;
         stopping = true;
-        senderThread.interrupt();
+        // Do not interrupt the sender thread: interrupting a thread that is writing to a channel-backed socket closes the
+        // channel, which on a server is the socket shared by all connections.
+        wakeUpSenderLoop();
     }
 
     @Override
@@ -304,25 +400,37 @@ public class SenderImpl implements Sender, CongestionControlEventListener {
                 log.warn("Ignoring " + fatalError + " because sender is shutting down.");
             }
         }
+        if (delayedSendTask != null) {
+            delayedSendTask.cancel(false);
+        }
         if (shutdownHook != null) {
             shutdownHook.run();
         }
     }
 
     void doLoopIteration() throws IOException {
-        synchronized (condition) {
-            try {
-                if (! signalled) {
-                    long timeout = determineMaximumWaitTime();
-                    if (timeout > 0) {
-                        condition.wait(timeout);
+        wakeUpLock.lock();
+        try {
+            if (! signalled) {
+                long timeout = determineMaximumWaitTime();
+                if (timeout > 0) {
+                    if (timer != null) {
+                        // Let the (shared) timer wake up the sender, instead of a timed wait for each sender.
+                        scheduleDelayedSend(timeout);
+                        wakeUpCondition.await();
+                    }
+                    else {
+                        wakeUpCondition.await(timeout, TimeUnit.MILLISECONDS);
                     }
                 }
-                signalled = false;
-            }
-            catch (InterruptedException e) {
-                log.debug("Sender thread is interrupted; probably shutting down? " + running);
             }
+            signalled = false;
+        }
+        catch (InterruptedException e) {
+            log.debug("Sender thread is interrupted; probably shutting down? " + running);
+        }
+        finally {
+            wakeUpLock.unlock();
         }
 
         // Determine whether this loop must be ended _before_ composing packets, to avoid race conditions with
@@ -343,12 +451,94 @@ public class SenderImpl implements Sender, CongestionControlEventListener {
             }
         }
         while (!items.isEmpty());
+
+        if (deliveryRateSampler != null && pacingResumeTime == null && congestionController.remainingCwnd() >= maxPacketSize) {
+            // Neither congestion control nor pacing is limiting, so the sender is limited by the application.
+            deliveryRateSampler.applicationLimited(congestionController.getBytesInFlight());
+        }
     }
 
     private void wakeUpSenderLoop() {
-        synchronized (condition) {
+        if (eventLoop != null) {
+            // Coalesce wake-ups: at most one send task is queued at any time.
+            if (sendTaskQueued.compareAndSet(false, true)) {
+                try {
+                    eventLoop.execute(this::runSendTask);
+                }
+                catch (RejectedExecutionException rejected) {
+                    // Event loop is shut down, so nothing can be sent anymore.
+                    sendTaskQueued.set(false);
+                }
+            }
+            return;
+        }
+        wakeUpLock.lock();
+        try {
             signalled = true;
-            condition.notify();
+            wakeUpCondition.signal();
+        }
+        finally {
+            wakeUpLock.unlock();
+        }
+    }
+
+    /**
+     * Event loop equivalent of one iteration of the sender loop: sends what can be sent and schedules a wake-up for
+     * the next time something must be sent (e.g. a delayed ack).
+     */
+    private void runSendTask() {
+        sendTaskQueued.set(false);
+        if (!running) {
+            return;
+        }
+        try {
+            // Like in the sender loop, determine whether to end before composing packets, to avoid race conditions.
+            if (stopping) {
+                running = false;
+            }
+            sendIfAny();
+        }
+        catch (Throwable fatalError) {
+            if (running) {
+                log.error("Sender task aborted with exception", fatalError);
+                running = false;
+                connection.abortConnection(fatalError);
+            }
+            else {
+                log.warn("Ignoring " + fatalError + " because sender is shutting down.");
+            }
+        }
+        if (running) {
+            scheduleDelayedSend(determineMaximumWaitTime());
+        }
+        else {
+            if (delayedSendTask != null) {
+                delayedSendTask.cancel(false);
+            }
+            if (shutdownHook != null) {
+                shutdownHook.run();
+            }
+        }
+    }
+
+    private void scheduleDelayedSend(long delay) {
+        if (delay <= 0) {
+            wakeUpSenderLoop();
+            return;
+        }
+        long sendTime = clock.millis() + delay;
+        if (delayedSendTask != null && !delayedSendTask.isDone()) {
+            if (delayedSendTime == sendTime) {
+                return;
+            }
+            delayedSendTask.cancel(false);
+        }
+        delayedSendTime = sendTime;
+        try {
+            delayedSendTask = timer.schedule(this::wakeUpSenderLoop, delay, TimeUnit.MILLISECONDS);
+        }
+        catch (RejectedExecutionException rejected) {
+            // Timer is shut down, so connection is terminated and nothing will be sent anymore.
         }
     }
 
@@ -357,6 +547,18 @@ public class SenderImpl implements Sender, CongestionControlEventListener {
      * @return
      */
     long determineMaximumWaitTime() {
+        long waitTime = determineSendRequestWaitTime();
+        Instant resumeTime = pacingResumeTime;
+        if (resumeTime != null) {
+            // Sending in-flight packets is held back by the pacer, so wake up when it allows sending again.
+            // Round up, as waking up too early (in the same millisecond) would make the sender spin.
+            long nanosUntilResume = Duration.between(clock.instant(), resumeTime).toNanos();
+            waitTime = Long.min(waitTime, max((nanosUntilResume + 999_999) / 1_000_000, 0));
+        }
+        return waitTime;
+    }
+
+    private long determineSendRequestWaitTime() {
         Optional<Instant> nextDelayedSendTime = packetAssembler.nextDelayedSendTime();
         if (nextDelayedSendTime.isPresent()) {
             long delay = max(Duration.between(clock.instant(), nextDelayedSendTime.get()).toMillis(), 0);
@@ -388,17 +590,19 @@ public class SenderImpl implements Sender, CongestionControlEventListener {
     }
 
     void send(List<SendItem> itemsToSend) throws IOException {
-        byte[] datagramData = new byte[maxPacketSize];
-        ByteBuffer buffer = ByteBuffer.wrap(datagramData);
+        DatagramSocket currentSocket = socket;
+        DatagramChannel channel = currentSocket.getChannel();
+        ByteBuffer buffer = prepareSendBuffer(channel != null);
         try {
             Iterator<SendItem> packetIterator = itemsToSend.iterator();
             while (packetIterator.hasNext()) {
                 QuicPacket packet = packetIterator.next().getPacket();
                 try {
                     Aead aead = connectionSecrets.getOwnAead(packet.getEncryptionLevel());
-                    byte[] packetData = packet.generatePacketBytes(aead);
-                    buffer.put(packetData);
-                    log.raw("packet sent, pn: " + packet.getPacketNumber(), packetData);
+                    // Packet is generated and protected directly in the datagram buffer.
+                    int packetStart = buffer.position();
+                    packet.generatePacketBytes(aead, buffer);
+                    log.raw("packet sent, pn: " + packet.getPacketNumber(), buffer, packetStart, buffer.position() - packetStart);
                 }
                 catch (MissingKeysException e) {
                     if (e.getMissingKeysCause() == MissingKeysException.Cause.DiscardedKeys) {
@@ -416,18 +620,30 @@ public class SenderImpl implements Sender, CongestionControlEventListener {
             // rethrow
             throw bufferOverflow;
         }
-        if (buffer.position() == 0) {
+        int datagramLength = buffer.position();
+        if (datagramLength == 0) {
             // Nothing to send
             return;
         }
-        
-        DatagramPacket datagram = new DatagramPacket(datagramData, buffer.position(), peerAddress.getAddress(), peerAddress.getPort());
 
         Instant timeSent = clock.instant();
-        socket.send(datagram);
+        if (channel != null) {
+            buffer.flip();
+            channel.send(buffer, peerAddress);
+        }
+        else {
+            if (sendPacket == null) {
+                sendPacket = new DatagramPacket(buffer.array(), 0, peerAddress.getAddress(), peerAddress.getPort());
+            }
+            sendPacket.setData(buffer.array(), 0, datagramLength);
+            currentSocket.send(sendPacket);
+        }
         datagramsSent++;
         packetsSent += itemsToSend.size();
-        bytesSent += buffer.position();
+        bytesSent += datagramLength;
+        if (itemsToSend.stream().anyMatch(item -> item.getPacket().isInflightPacket())) {
+            pacer.packetSent(datagramLength);
+        }
 
         itemsToSend.stream()
                 .forEach(item -> {
@@ -441,9 +657,45 @@ public class SenderImpl implements Sender, CongestionControlEventListener {
         qlog.emitPacketSentEvent(packetsSent, timeSent);
     }
 
+    /**
+     * Returns the (cleared) buffer for assembling a datagram, which is reused for all datagrams sent. Its size is
+     * based on the largest datagram that can be sent, so the packets do not need to be measured before they are
+     * generated. When sending via a channel, the buffer is direct, so the channel does not need to copy it.
+     * @param direct
+     * @return
+     */
+    private ByteBuffer prepareSendBuffer(boolean direct) {
+        // The max packet size may have changed since the packets were assembled (e.g. due to path MTU black hole
+        // detection), but it will never exceed the max datagram size.
+        int size = Integer.max(maxDatagramSize, maxPacketSize);
+        if (sendBuffer == null || sendBuffer.capacity() < size || sendBuffer.isDirect() != direct) {
+            sendBuffer = direct? ByteBuffer.allocateDirect(size): ByteBuffer.allocate(size);
+        }
+        sendBuffer.clear();
+        return sendBuffer;
+    }
+
     private List<SendItem> assemblePacket() {
         int remainingCwnd = (int) congestionController.remainingCwnd();
         int currentMaxPacketSize = maxPacketSize;
+        pacingResumeTime = null;
+        if (remainingCwnd > 0) {
+            // https://www.rfc-editor.org/rfc/rfc9002.html#name-pacing
+            // "A sender SHOULD pace sending of all in-flight packets based on input from the congestion controller."
+            OptionalLong congestionControllerRate = congestionController.pacingRate();
+            if (congestionControllerRate.isPresent()) {
+                pacer.setRate(congestionControllerRate.getAsLong());
+            }
+            else {
+                pacer.updateRate(congestionController.getWindowSize(), rttEstimater.getSmoothedRttMicros());
+            }
+            long pacingDelay = pacer.timeUntilSend(currentMaxPacketSize);
+            if (pacingDelay > 0) {
+                // Only packets that are not congestion controlled (acks, probes) can be sent now.
+                remainingCwnd = 0;
+                pacingResumeTime = clock.instant().plusMillis(pacingDelay);
+            }
+        }
         if (antiAmplificationLimit >= 0) {
             if (bytesSent < antiAmplificationLimit) {
                 if (antiAmplificationLimit - bytesSent < currentMaxPacketSize) {
@@ -460,6 +712,17 @@ public class SenderImpl implements Sender, CongestionControlEventListener {
         }
         byte[] srcCid = connection.getSourceConnectionId();
         byte[] destCid = connection.getDestinationConnectionId();
+        int probeSize = pmtuDiscovery.nextProbeSize();
+        // https://www.rfc-editor.org/rfc/rfc9000.html#name-sending-quic-pmtu-probes
+        // "PMTU probes are ack-eliciting packets."
+        // Like other ack-eliciting packets, probes are subject to congestion control.
+        if (probeSize > 0 && antiAmplificationLimit < 0 && remainingCwnd >= probeSize) {
+            Optional<SendItem> probe = packetAssembler.assemblePmtuProbe(probeSize, srcCid, destCid);
+            if (probe.isPresent()) {
+                pmtuDiscovery.probeSent(probe.get().getPacket());
+                return List.of(probe.get());
+            }
+        }
         return packetAssembler.assemble(remainingCwnd, currentMaxPacketSize, srcCid, destCid);
     }
 
@@ -486,8 +749,26 @@ public class SenderImpl implements Sender, CongestionControlEventListener {
     }
 
     public SendStatistics getStatistics() {
+        long bottleneckBandwidth = 0;
+        long minRttMicros = rttEstimater.getMinRttMicros();
+        if (congestionController instanceof BbrCongestionController) {
+            BbrCongestionController bbr = (BbrCongestionController) congestionController;
+            bottleneckBandwidth = bbr.getBottleneckBandwidth();
+            Duration bbrMinRtt = bbr.getMinRtt();
+            if (bbrMinRtt != null) {
+                minRttMicros = TimeUnit.NANOSECONDS.toMicros(bbrMinRtt.toNanos());
+            }
+        }
         return new SendStatistics(datagramsSent, packetsSent, bytesSent, dataSent, recoveryManager.getLost(),
-                rttEstimater.getSmoothedRtt(), rttEstimater.getRttVar(), rttEstimater.getLatestRtt());
+                rttEstimater.getSmoothedRtt(), rttEstimater.getRttVar(), rttEstimater.getLatestRtt(),
+                pacer.getRate(), pacer.getDelayCount(), bottleneckBandwidth, minRttMicros);
+    }
+
+    /**
+     * @return  the smoothed RTT in microseconds
+     */
+    public long getSmoothedRttMicros() {
+        return rttEstimater.getSmoothedRttMicros();
     }
 
     public int getPto() {
@@ -508,6 +789,14 @@ public class SenderImpl implements Sender, CongestionControlEventListener {
         return globalAckGenerator;
     }
 
+    /**
+     * Sets the memory account to which the memory for retaining sent packets is charged.
+     * @param connectionMemory
+     */
+    public void setConnectionMemory(ConnectionMemory connectionMemory) {
+        recoveryManager.setConnectionMemory(connectionMemory);
+    }
+
     public void setAntiAmplificationLimit(int antiAmplificationLimit) {
         this.antiAmplificationLimit = antiAmplificationLimit;
     }
@@ -525,9 +814,39 @@ public class SenderImpl implements Sender, CongestionControlEventListener {
     }
 
     public void registerMaxUdpPayloadSize(int maxUdpPayloadSize) {
-        if (maxUdpPayloadSize < maxPacketSize) {
-            maxPacketSize = maxUdpPayloadSize;
+        pmtuDiscovery.setPeerMaxUdpPayloadSize(maxUdpPayloadSize);
+    }
+
+    /**
+     * Enables path MTU discovery, to find out whether packets larger than the initial maximum packet size can be sent
+     * to the peer. Probing starts when the handshake is confirmed; packets will never be larger than the given maximum
+     * or than the peer's max_udp_payload_size.
+     * Discovery requires the "Don't Fragment" bit to be set on the socket (otherwise oversized probes would be
+     * fragmented and acknowledged); when it cannot be set, discovery stays disabled.
+     * @param maxPacketSize
+     * @return  whether path MTU discovery is enabled
+     */
+    public boolean enablePathMtuDiscovery(int maxPacketSize) {
+        if (!DontFragment.enable(socket)) {
+            log.info("Path MTU discovery disabled, because the Don't Fragment bit cannot be set on the socket");
+            return false;
         }
+        pmtuDiscoveryEnabled = true;
+        maxDatagramSize = Integer.max(maxDatagramSize, maxPacketSize);
+        pmtuDiscovery.setLocalMaxPacketSize(maxPacketSize);
+        return true;
+    }
+
+    /**
+     * Sets the maximum number of packets that can be sent in one burst, i.e. without being paced.
+     * @param maxBurstPackets
+     */
+    public void setPacingBurst(int maxBurstPackets) {
+        pacer.setMaxBurstPackets(maxBurstPackets);
+    }
+
+    public int getMaxPacketSize() {
+        return maxPacketSize;
     }
 }
 
@@ -18,6 +18,8 @@
  */
 package net.luminis.quic.server;
 
+import net.luminis.quic.CongestionControlAlgorithm;
+import net.luminis.quic.CongestionControllerFactory;
 import net.luminis.quic.ConnectionConfig;
 import net.luminis.quic.server.impl.ServerConnectionConfigImpl;
 
@@ -31,6 +33,38 @@ public interface ServerConnectionConfig extends ConnectionConfig {
 
     int initialRtt();
 
+    /**
+     * @return  the maximum size of UDP payloads (i.e. datagrams) the server is willing to receive; this value is sent
+     * to clients as max_udp_payload_size transport parameter and limits the size of the packets the server sends.
+     */
+    int maxUdpPayloadSize();
+
+    /**
+     * @return  the maximum number of packets a connection can send in one burst, without pacing.
+     */
+    int pacingBurst();
+
+    /**
+     * @return  the congestion control algorithm connections use.
+     */
+    CongestionControlAlgorithm congestionControlAlgorithm();
+
+    /**
+     * @return  the factory that creates the congestion controllers of connections.
+     */
+    CongestionControllerFactory congestionControllerFactory();
+
+    /**
+     * @return  the number of ack-eliciting packets connections request the peer to receive before sending an ack
+     * (only requested when the peer supports the ack frequency extension and when not equal to the default of 1).
+     */
+    int ackElicitingThreshold();
+
+    /**
+     * @return  the max ack delay (in milliseconds) connections request the peer to use, when requesting an ack frequency.
+     */
+    int requestedMaxAckDelay();
+
     ServerConnectionConfig merge(ApplicationProtocolSettings protocol);
 
     static Builder builder() {
@@ -50,6 +84,8 @@ public interface ServerConnectionConfig extends ConnectionConfig {
 
         Builder maxBidirectionalStreamBufferSize(long size);
 
+        Builder receiveWindowAutoTuning(long maxStreamReceiveWindow, long maxConnectionReceiveWindow);
+
         Builder maxOpenPeerInitiatedUnidirectionalStreams(int max);
 
         Builder maxOpenPeerInitiatedBidirectionalStreams(int max);
@@ -63,5 +99,15 @@ public interface ServerConnectionConfig extends ConnectionConfig {
         Builder maxTotalPeerInitiatedUnidirectionalStreams(long max);
 
         Builder maxTotalPeerInitiatedBidirectionalStreams(long max);
+
+        Builder maxUdpPayloadSize(int maxSize);
+
+        Builder pacingBurst(int maxBurstPackets);
+
+        Builder congestionControl(CongestionControlAlgorithm algorithm);
+
+        Builder congestionControllerFactory(CongestionControllerFactory factory);
+
+        Builder ackFrequency(int ackElicitingThreshold, int maxAckDelay);
     }
 }
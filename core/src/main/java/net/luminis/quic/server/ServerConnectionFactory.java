@@ -18,11 +18,21 @@
  */
 package net.luminis.quic.server;
 
+import net.luminis.quic.MemoryMetrics;
+import net.luminis.quic.ReceiveQueueMetrics;
+import net.luminis.quic.concurrent.EventLoopGroup;
+import net.luminis.quic.concurrent.SerialExecutor;
+import net.luminis.quic.concurrent.TimingWheel;
+import net.luminis.quic.concurrent.WaitStrategy;
+import net.luminis.quic.impl.MemoryAccountant;
 import net.luminis.quic.impl.Version;
 import net.luminis.quic.log.Logger;
 import net.luminis.quic.packet.InitialPacket;
 import net.luminis.quic.packet.PacketMetaData;
+import net.luminis.quic.receive.AggregatedReceiveQueueMetrics;
+import net.luminis.quic.receive.ReceiveQueueConfig;
 import net.luminis.quic.server.impl.ApplicationProtocolRegistry;
+import net.luminis.quic.server.impl.ServerConnectionEventLoopProxy;
 import net.luminis.quic.server.impl.ServerConnectionImpl;
 import net.luminis.quic.server.impl.ServerConnectionProxy;
 import net.luminis.quic.server.impl.ServerConnectionThread;
@@ -32,6 +42,9 @@ import net.luminis.tls.engine.TlsServerEngineFactory;
 import java.net.DatagramSocket;
 import java.net.InetSocketAddress;
 import java.nio.ByteBuffer;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
 import java.util.function.Consumer;
 
 import static net.luminis.quic.server.Constants.MAXIMUM_CONNECTION_ID_LENGTH;
@@ -47,10 +60,36 @@ public class ServerConnectionFactory {
     private final Consumer<ServerConnectionImpl> closeCallback;
     private final ServerConnectionRegistry connectionRegistry;
     private final ServerConnectionConfig configuration;
+    private final EventLoopGroup eventLoopGroup;
+    private final TimingWheel timer;
+    private final Executor timerCallbackExecutor;
+    private final ThreadFactory threadFactory;
+    private final ReceiveQueueConfig connectionQueueConfig;
+    private final AggregatedReceiveQueueMetrics connectionQueueMetrics;
+    private final MemoryAccountant memoryAccountant;
 
     public ServerConnectionFactory(DatagramSocket serverSocket, TlsServerEngineFactory tlsServerEngineFactory,
                                    ServerConnectionConfig configuration, ApplicationProtocolRegistry applicationProtocolRegistry,
                                    ServerConnectionRegistry connectionRegistry, Consumer<ServerConnectionImpl> closeCallback, Logger log)
+    {
+        this(serverSocket, tlsServerEngineFactory, configuration, applicationProtocolRegistry, connectionRegistry, closeCallback, null, null, null, null, null, null, log);
+    }
+
+    /**
+     * Creates a factory for server connections that, when an event loop group is given, assigns each connection to one
+     * of the event loops of the group; otherwise, each connection will use threads of its own for receiving and
+     * sending, and, when a timer is given, register all its timers with that (shared) timer. When a timer callback
+     * executor is given as well, the timer tasks of each connection are executed one at a time by that executor instead
+     * of by the timer thread, so a slow timer task of one connection does not delay the timers of the others. Connection
+     * threads are created with the given thread factory, or are platform threads when it is null; the queue for handing off received
+     * datagrams to the connection is created with the given configuration, or with defaults when it is null. When a
+     * memory accountant is given, the memory used by all connections is charged to it.
+     */
+    public ServerConnectionFactory(DatagramSocket serverSocket, TlsServerEngineFactory tlsServerEngineFactory,
+                                   ServerConnectionConfig configuration, ApplicationProtocolRegistry applicationProtocolRegistry,
+                                   ServerConnectionRegistry connectionRegistry, Consumer<ServerConnectionImpl> closeCallback,
+                                   EventLoopGroup eventLoopGroup, TimingWheel timer, Executor timerCallbackExecutor, ThreadFactory threadFactory,
+                                   ReceiveQueueConfig connectionQueueConfig, MemoryAccountant memoryAccountant, Logger log)
     {
         if (configuration.connectionIdLength() > MAXIMUM_CONNECTION_ID_LENGTH || configuration.connectionIdLength() < MINIMUM_CONNECTION_ID_LENGTH) {
             throw new IllegalArgumentException();
@@ -62,6 +101,14 @@ public class ServerConnectionFactory {
         this.closeCallback = closeCallback;
         this.log = log;
         this.serverSocket = serverSocket;
+        this.eventLoopGroup = eventLoopGroup;
+        this.timer = timer;
+        this.timerCallbackExecutor = timerCallbackExecutor;
+        this.threadFactory = threadFactory;
+        this.connectionQueueConfig = connectionQueueConfig != null? connectionQueueConfig:
+                new ReceiveQueueConfig(ServerConnectionThread.DEFAULT_QUEUE_CAPACITY, WaitStrategy.BLOCKING);
+        connectionQueueMetrics = new AggregatedReceiveQueueMetrics(this.connectionQueueConfig.getCapacity());
+        this.memoryAccountant = memoryAccountant;
     }
 
     /**
@@ -73,8 +120,12 @@ public class ServerConnectionFactory {
      * @return
      */
     public ServerConnectionImpl createNewConnection(Version version, InetSocketAddress clientAddress, byte[] scid, byte[] originalDcid) {
+        ScheduledExecutorService eventLoop = eventLoopGroup != null? eventLoopGroup.next(): null;
+        // With an event loop, timers run on the event loop as well.
+        ScheduledExecutorService connectionTimer = eventLoop != null? eventLoop: createConnectionTimer();
         ServerConnectionImpl connection = new ServerConnectionImpl(version, serverSocket, clientAddress, scid, originalDcid,
-                tlsServerEngineFactory, configuration, applicationProtocolRegistry, connectionRegistry, closeCallback, log);
+                tlsServerEngineFactory, configuration, applicationProtocolRegistry, connectionRegistry, closeCallback,
+                connectionTimer, eventLoop, threadFactory, memoryAccountant, log);
 
         log.info("Creating new connection with version " + version + " for odcid " + Bytes.bytesToHex(originalDcid)
                 + " with " + clientAddress.getAddress().getHostAddress() + ": " + Bytes.bytesToHex(connection.getInitialConnectionId()));
@@ -82,7 +133,43 @@ public class ServerConnectionFactory {
         return connection;
     }
 
+    private ScheduledExecutorService createConnectionTimer() {
+        if (timer != null && timerCallbackExecutor != null) {
+            return timer.dispatchingTo(new SerialExecutor(timerCallbackExecutor));
+        }
+        return timer;
+    }
+
     public ServerConnectionProxy createServerConnectionProxy(ServerConnectionImpl connection, InitialPacket initialPacket, ByteBuffer data, PacketMetaData metaData) {
-        return new ServerConnectionThread(connection, initialPacket, data, metaData);
+        if (connection.getEventLoop() != null) {
+            return new ServerConnectionEventLoopProxy(connection, initialPacket, data, metaData, connection.getEventLoop(),
+                    connectionQueueConfig, connectionQueueMetrics);
+        }
+        return new ServerConnectionThread(connection, initialPacket, data, metaData, connectionQueueConfig, connectionQueueMetrics);
+    }
+
+    /**
+     * Returns the combined metrics of the receive queues of all connections created by this factory.
+     * @return
+     */
+    public ReceiveQueueMetrics getConnectionQueueMetrics() {
+        return connectionQueueMetrics;
+    }
+
+    /**
+     * Determines whether new connections can be accepted, which is not the case when the memory used by the existing
+     * connections exceeds the high watermark of the memory budget.
+     * @return
+     */
+    public boolean acceptsNewConnections() {
+        return memoryAccountant == null || memoryAccountant.acceptsNewConnections();
+    }
+
+    /**
+     * Returns the metrics of the memory used by the connections created by this factory.
+     * @return  the metrics, or null when no memory accountant is used
+     */
+    public MemoryMetrics getMemoryMetrics() {
+        return memoryAccountant;
     }
 }
@@ -18,7 +18,11 @@
  */
 package net.luminis.quic.server;
 
+import net.luminis.quic.DropPolicy;
+import net.luminis.quic.MemoryMetrics;
 import net.luminis.quic.QuicConnection;
+import net.luminis.quic.ReceiveQueueMetrics;
+import net.luminis.quic.concurrent.WaitStrategy;
 import net.luminis.quic.log.Logger;
 import net.luminis.quic.server.impl.ServerConnectorImpl;
 
@@ -27,6 +31,7 @@ import java.net.DatagramSocket;
 import java.security.KeyStore;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ThreadFactory;
 
 /**
  * Listens for QUIC connections on a given port. Requires server certificate and corresponding private key.
@@ -39,6 +44,31 @@ public interface ServerConnector {
 
     void start();
 
+    /**
+     * Stops the server connector: stops receiving datagrams and closes the socket(s). Connections that are still open
+     * are not closed gracefully, i.e. peers are not notified.
+     */
+    void close();
+
+    /**
+     * Returns the metrics of the queue(s) holding received datagrams until they are dispatched to the connection they
+     * belong to; one for each socket.
+     * @return
+     */
+    List<ReceiveQueueMetrics> getReceiveQueueMetrics();
+
+    /**
+     * Returns the combined metrics of the receive queues of all connections.
+     * @return
+     */
+    ReceiveQueueMetrics getConnectionReceiveQueueMetrics();
+
+    /**
+     * Returns the metrics of the memory used by all connections for buffering data, including the usage per connection.
+     * @return
+     */
+    MemoryMetrics getMemoryMetrics();
+
     static Builder builder() {
         return new ServerConnectorImpl.BuilderImpl();
     }
@@ -76,6 +106,91 @@ public interface ServerConnector {
 
         Builder withLogger(Logger log);
 
+        /**
+         * Lets the server connector bind the given number of sockets to the port, using the SO_REUSEPORT socket option,
+         * so the kernel can distribute incoming datagrams over multiple sockets, each being served by its own receive
+         * thread. All sockets share the same connection registry, so datagrams that arrive on another socket than
+         * before (e.g. after a NAT rebinding) are still delivered to the right connection.
+         * Cannot be combined with {@link #withSocket(DatagramSocket)}; requires platform support for SO_REUSEPORT.
+         * @param count  number of sockets, default is 1
+         * @return
+         */
+        Builder withReusePortSockets(int count);
+
+        /**
+         * Lets the server connector execute connections on a fixed group of event loops, instead of using a number of
+         * threads for each connection. Each connection is assigned to one event loop, which executes all its work:
+         * processing received datagrams, assembling and sending packets and running its timers. This limits the number
+         * of threads (and context switches) when serving many connections; a reasonable value is the number of
+         * available processors. Note that application protocol handlers are called on the event loop as well and should
+         * therefore not block.
+         * @param count  number of event loops; 0 (the default) means each connection uses threads of its own
+         * @return
+         */
+        Builder withEventLoops(int count);
+
+        /**
+         * Sets the factory for creating the threads of the server connector and its connections (for receiving and
+         * sending). For example, to use virtual threads (requires Java 21 or later), use
+         * {@link net.luminis.quic.concurrent.VirtualThreads#threadFactory(String)}. When not set, platform threads are used.
+         * Note that threads created by application protocol handlers (e.g. for handling a stream) are not covered.
+         * @param threadFactory
+         * @return
+         */
+        Builder withThreadFactory(ThreadFactory threadFactory);
+
+        /**
+         * Configures the queue(s) that hold received datagrams until the server connector has dispatched them to the
+         * connection they belong to; there is one queue for each socket. When a queue is full, datagrams are dropped.
+         * @param capacity  maximum number of datagrams in the queue, default is 4096
+         * @param waitStrategy  how the dispatching thread waits for datagrams, default is {@link WaitStrategy#BLOCKING}
+         * @return
+         */
+        Builder withReceiveQueue(int capacity, WaitStrategy waitStrategy);
+
+        /**
+         * Like {@link #withReceiveQueue(int, WaitStrategy)}, with the policy that determines which datagrams are dropped
+         * when the queue is full; default is {@link DropPolicy#DROP_NEWEST}.
+         * @param capacity
+         * @param waitStrategy
+         * @param dropPolicy
+         * @return
+         */
+        Builder withReceiveQueue(int capacity, WaitStrategy waitStrategy, DropPolicy dropPolicy);
+
+        /**
+         * Configures the queue that holds received datagrams until the connection has processed them; each connection
+         * has a queue of its own. When the queue is full, datagrams are dropped. With event loops (see
+         * {@link #withEventLoops(int)}), the capacity limits the number of datagrams of one connection waiting to be
+         * processed on the event loop; the wait strategy is not used. The default capacity is small, to limit the memory
+         * used per connection; when connections have a high bandwidth-delay product, increase the capacity to avoid
+         * datagrams being dropped when the connection falls behind temporarily.
+         * @param capacity  maximum number of datagrams in the queue, default is 128
+         * @param waitStrategy  how the connection thread waits for datagrams, default is {@link WaitStrategy#BLOCKING}
+         * @return
+         */
+        Builder withConnectionReceiveQueue(int capacity, WaitStrategy waitStrategy);
+
+        /**
+         * Like {@link #withConnectionReceiveQueue(int, WaitStrategy)}, with the policy that determines which datagrams
+         * are dropped when the queue is full; default is {@link DropPolicy#DROP_NEWEST}.
+         * @param capacity
+         * @param waitStrategy
+         * @param dropPolicy
+         * @return
+         */
+        Builder withConnectionReceiveQueue(int capacity, WaitStrategy waitStrategy, DropPolicy dropPolicy);
+
+        /**
+         * Sets the memory budget for all connections of the server connector together: the amount of memory they can
+         * use for buffering data (received stream data, stream data waiting to be sent and sent packets waiting to be
+         * acknowledged). When usage approaches the budget, the flow control credit given to peers is reduced and
+         * eventually withheld, so peers cannot send more data than the server can buffer.
+         * @param bytes  the memory budget in bytes, default is a quarter of the maximum heap size
+         * @return
+         */
+        Builder withMemoryBudget(long bytes);
+
         ServerConnector build() throws Exception;
     }
 }
@@ -0,0 +1,287 @@
+/*
+ * Copyright © 2024 Peter Doornbosch
+ *
+ * This file is part of Kwik, an implementation of the QUIC protocol in Java.
+ *
+ * Kwik is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * Kwik is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.luminis.quic.server.impl;
+
+import java.nio.ByteBuffer;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Hash table that maps connection IDs to values, optimized for lookups on the receive path: lookups are lock-free,
+ * do not allocate and can be done directly on the bytes of a received datagram, so the connection ID does not need to
+ * be copied first. Connection IDs of 8 bytes (the length kwik uses by default) are compared as a single long.
+ * The table uses open addressing with linear probing; removed entries are replaced by a tombstone, so probe sequences
+ * of concurrent lookups are never broken. Updates are serialized; they are expected to be much less frequent than
+ * lookups. As some connection IDs are chosen by peers, the hash is seeded with a random value to make it infeasible to
+ * create colliding connection IDs on purpose.
+ * @param <V>
+ */
+class ConnectionIdTable<V> {
+
+    private static final int MIN_CAPACITY = 16;
+    private static final long FNV_PRIME = 0x100000001b3L;
+    @SuppressWarnings("rawtypes")
+    private static final Entry TOMBSTONE = new Entry<>(new byte[0], 0, 0, null);
+
+    private final long seed;
+    // Readers take a snapshot of the array reference; on resize, the new array is only published when complete.
+    private volatile AtomicReferenceArray<Entry<V>> table;
+    private int size;
+    private int tombstones;
+
+    ConnectionIdTable() {
+        seed = new SecureRandom().nextLong();
+        table = new AtomicReferenceArray<>(MIN_CAPACITY);
+    }
+
+    V get(byte[] connectionId) {
+        int hash = hash(connectionId);
+        long key = connectionId.length == 8? toLong(connectionId): 0;
+        AtomicReferenceArray<Entry<V>> tab = table;
+        int mask = tab.length() - 1;
+        for (int index = hash & mask; ; index = (index + 1) & mask) {
+            Entry<V> entry = tab.get(index);
+            if (entry == null) {
+                return null;
+            }
+            if (entry != TOMBSTONE && entry.hash == hash && entry.matches(connectionId, key)) {
+                return entry.value;
+            }
+        }
+    }
+
+    /**
+     * Looks up the value for the connection ID that is located in the given buffer at the given (absolute) offset.
+     * Neither the position nor the limit of the buffer are changed. The buffer must have big endian byte order (which
+     * is the default).
+     * @param buffer
+     * @param offset
+     * @param length
+     * @return  the value, or null if the connection ID is not present
+     */
+    V get(ByteBuffer buffer, int offset, int length) {
+        int hash = hash(buffer, offset, length);
+        long key = length == 8? buffer.getLong(offset): 0;
+        AtomicReferenceArray<Entry<V>> tab = table;
+        int mask = tab.length() - 1;
+        for (int index = hash & mask; ; index = (index + 1) & mask) {
+            Entry<V> entry = tab.get(index);
+            if (entry == null) {
+                return null;
+            }
+            if (entry != TOMBSTONE && entry.hash == hash && entry.matches(buffer, offset, length, key)) {
+                return entry.value;
+            }
+        }
+    }
+
+    synchronized V put(byte[] connectionId, V value) {
+        connectionId = connectionId.clone();
+        int hash = hash(connectionId);
+        long key = connectionId.length == 8? toLong(connectionId): 0;
+        Entry<V> newEntry = new Entry<>(connectionId, key, hash, value);
+
+        AtomicReferenceArray<Entry<V>> tab = table;
+        int mask = tab.length() - 1;
+        int freeIndex = -1;
+        for (int index = hash & mask; ; index = (index + 1) & mask) {
+            Entry<V> entry = tab.get(index);
+            if (entry == null) {
+                if (freeIndex < 0) {
+                    freeIndex = index;
+                }
+                break;
+            }
+            if (entry == TOMBSTONE) {
+                if (freeIndex < 0) {
+                    freeIndex = index;
+                }
+            }
+            else if (entry.hash == hash && entry.matches(connectionId, key)) {
+                tab.set(index, newEntry);
+                return entry.value;
+            }
+        }
+
+        if (tab.get(freeIndex) == TOMBSTONE) {
+            tombstones--;
+        }
+        tab.set(freeIndex, newEntry);
+        size++;
+        // Keep load factor (including tombstones) below 0.5, which also guarantees there are always empty slots to end probing.
+        if ((size + tombstones) * 2 > tab.length()) {
+            rehash();
+        }
+        return null;
+    }
+
+    @SuppressWarnings("unchecked")
+    synchronized V remove(byte[] connectionId) {
+        int hash = hash(connectionId);
+        long key = connectionId.length == 8? toLong(connectionId): 0;
+        AtomicReferenceArray<Entry<V>> tab = table;
+        int mask = tab.length() - 1;
+        for (int index = hash & mask; ; index = (index + 1) & mask) {
+            Entry<V> entry = tab.get(index);
+            if (entry == null) {
+                return null;
+            }
+            if (entry != TOMBSTONE && entry.hash == hash && entry.matches(connectionId, key)) {
+                tab.set(index, TOMBSTONE);
+                size--;
+                tombstones++;
+                return entry.value;
+            }
+        }
+    }
+
+    synchronized int size() {
+        return size;
+    }
+
+    synchronized boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Returns a snapshot of the current content of the table.
+     * @return
+     */
+    List<Map.Entry<byte[], V>> entries() {
+        AtomicReferenceArray<Entry<V>> tab = table;
+        List<Map.Entry<byte[], V>> entries = new ArrayList<>();
+        for (int i = 0; i < tab.length(); i++) {
+            Entry<V> entry = tab.get(i);
+            if (entry != null && entry != TOMBSTONE) {
+                entries.add(Map.entry(entry.connectionId.clone(), entry.value));
+            }
+        }
+        return entries;
+    }
+
+    int capacity() {
+        return table.length();
+    }
+
+    private void rehash() {
+        int capacity = MIN_CAPACITY;
+        while (capacity < size * 4) {
+            capacity *= 2;
+        }
+        AtomicReferenceArray<Entry<V>> oldTable = table;
+        AtomicReferenceArray<Entry<V>> newTable = new AtomicReferenceArray<>(capacity);
+        int mask = capacity - 1;
+        for (int i = 0; i < oldTable.length(); i++) {
+            Entry<V> entry = oldTable.get(i);
+            if (entry != null && entry != TOMBSTONE) {
+                int index = entry.hash & mask;
+                while (newTable.get(index) != null) {
+                    index = (index + 1) & mask;
+                }
+                newTable.set(index, entry);
+            }
+        }
+        tombstones = 0;
+        table = newTable;
+    }
+
+    private int hash(byte[] connectionId) {
+        if (connectionId.length == 8) {
+            return mix(toLong(connectionId));
+        }
+        long hash = seed ^ connectionId.length;
+        for (byte b : connectionId) {
+            hash = (hash ^ (b & 0xff)) * FNV_PRIME;
+        }
+        return mix(hash);
+    }
+
+    private int hash(ByteBuffer buffer, int offset, int length) {
+        if (length == 8) {
+            return mix(buffer.getLong(offset));
+        }
+        long hash = seed ^ length;
+        for (int i = 0; i < length; i++) {
+            hash = (hash ^ (buffer.get(offset + i) & 0xff)) * FNV_PRIME;
+        }
+        return mix(hash);
+    }
+
+    private int mix(long value) {
+        // Finalization step of MurmurHash3 (64 bit)
+        long hash = value ^ seed;
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return (int) hash;
+    }
+
+    private static long toLong(byte[] bytes) {
+        long value = 0;
+        for (int i = 0; i < 8; i++) {
+            value = (value << 8) | (bytes[i] & 0xff);
+        }
+        return value;
+    }
+
+    private static class Entry<V> {
+        final byte[] connectionId;
+        final long key;
+        final int hash;
+        final V value;
+
+        Entry(byte[] connectionId, long key, int hash, V value) {
+            this.connectionId = connectionId;
+            this.key = key;
+            this.hash = hash;
+            this.value = value;
+        }
+
+        boolean matches(byte[] otherConnectionId, long otherKey) {
+            if (connectionId.length != otherConnectionId.length) {
+                return false;
+            }
+            if (connectionId.length == 8) {
+                return key == otherKey;
+            }
+            return Arrays.equals(connectionId, otherConnectionId);
+        }
+
+        boolean matches(ByteBuffer buffer, int offset, int length, long otherKey) {
+            if (connectionId.length != length) {
+                return false;
+            }
+            if (length == 8) {
+                return key == otherKey;
+            }
+            for (int i = 0; i < length; i++) {
+                if (connectionId[i] != buffer.get(offset + i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -155,7 +155,7 @@ public class ServerConnectionCandidate implements ServerConnectionProxy, Datagra
     }
 
     private ServerConnectionProxy wrapWithFilters(ServerConnectionProxy connection, Consumer<Integer> receivedPayloadBytesCounterFunction, Runnable postProcessingFunction) {
-        DatagramFilter adapter = (data, metaData) -> connection.parsePackets(metaData.datagramNumber(), metaData.timeReceived(), data, metaData.sourceAddress());
+        DatagramFilter adapter = (data, metaData) -> connection.parsePackets(data, metaData);
 
         // The wrapper takes care of propagating other (non-filter) methods to the connection proxy.
         return new ServerConnectionWrapper(connection, log,
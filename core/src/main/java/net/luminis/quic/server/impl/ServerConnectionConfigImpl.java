@@ -18,9 +18,15 @@
  */
 package net.luminis.quic.server.impl;
 
+import net.luminis.quic.CongestionControlAlgorithm;
+import net.luminis.quic.CongestionControllerFactory;
+import net.luminis.quic.receive.Receiver;
+import net.luminis.quic.send.Pacer;
 import net.luminis.quic.server.ApplicationProtocolSettings;
 import net.luminis.quic.server.ServerConnectionConfig;
 
+import java.util.Objects;
+
 import static java.lang.Long.max;
 import static java.lang.Long.min;
 import static net.luminis.quic.server.ApplicationProtocolSettings.NOT_SPECIFIED;
@@ -32,6 +38,13 @@ public class ServerConnectionConfigImpl implements ServerConnectionConfig {
 
     private static final int DEFAULT_MAX_IDLE_TIMEOUT = 30_000;
     private static final int DEFAULT_CONNECTION_ID_LENGTH = 8;
+    private static final long DEFAULT_MAX_STREAM_RECEIVE_WINDOW = 16 * 1024 * 1024;
+    private static final long DEFAULT_MAX_CONNECTION_RECEIVE_WINDOW = 24 * 1024 * 1024;
+    // https://www.rfc-editor.org/rfc/rfc9000.html#name-transport-parameter-definit
+    // "Values below 1200 are invalid."
+    private static final int MIN_MAX_UDP_PAYLOAD_SIZE = 1200;
+    // "The default for this parameter is the maximum permitted UDP payload of 65527."
+    private static final int MAX_MAX_UDP_PAYLOAD_SIZE = 65527;
 
     private int maxIdleTimeout = DEFAULT_MAX_IDLE_TIMEOUT;
     private int maxOpenUnidirectionalStreams;
@@ -41,8 +54,15 @@ public class ServerConnectionConfigImpl implements ServerConnectionConfig {
     private long maxConnectionBufferSize;
     private long maxUnidirectionalStreamBufferSize;
     private long maxBidirectionalStreamBufferSize;
+    private long maxConnectionReceiveWindow = DEFAULT_MAX_CONNECTION_RECEIVE_WINDOW;
+    private long maxStreamReceiveWindow = DEFAULT_MAX_STREAM_RECEIVE_WINDOW;
     private ServerConnectionConfig.RetryRequired retryRequired;
     private int connectionIdLength = DEFAULT_CONNECTION_ID_LENGTH;
+    private int maxUdpPayloadSize = Receiver.MAX_DATAGRAM_SIZE;
+    private int pacingBurst = Pacer.DEFAULT_MAX_BURST_PACKETS;
+    private CongestionControllerFactory congestionControllerFactory = CongestionControllerFactory.of(CongestionControlAlgorithm.NEW_RENO);
+    private int ackElicitingThreshold = 1;
+    private int requestedMaxAckDelay = 25;
 
     private ServerConnectionConfigImpl() {
     }
@@ -87,6 +107,16 @@ public class ServerConnectionConfigImpl implements ServerConnectionConfig {
         return maxBidirectionalStreamBufferSize;
     }
 
+    @Override
+    public long maxConnectionReceiveWindow() {
+        return maxConnectionReceiveWindow;
+    }
+
+    @Override
+    public long maxStreamReceiveWindow() {
+        return maxStreamReceiveWindow;
+    }
+
     public int connectionIdLength() {
         return connectionIdLength;
     }
@@ -99,6 +129,36 @@ public class ServerConnectionConfigImpl implements ServerConnectionConfig {
         return 100;
     }
 
+    @Override
+    public int maxUdpPayloadSize() {
+        return maxUdpPayloadSize;
+    }
+
+    @Override
+    public int pacingBurst() {
+        return pacingBurst;
+    }
+
+    @Override
+    public CongestionControlAlgorithm congestionControlAlgorithm() {
+        return congestionControllerFactory.getAlgorithm();
+    }
+
+    @Override
+    public CongestionControllerFactory congestionControllerFactory() {
+        return congestionControllerFactory;
+    }
+
+    @Override
+    public int ackElicitingThreshold() {
+        return ackElicitingThreshold;
+    }
+
+    @Override
+    public int requestedMaxAckDelay() {
+        return requestedMaxAckDelay;
+    }
+
     @Override
     public ServerConnectionConfig merge(ApplicationProtocolSettings protocol) {
         ServerConnectionConfig.Builder configBuilder = ServerConnectionConfig.builder();
@@ -116,6 +176,7 @@ public class ServerConnectionConfigImpl implements ServerConnectionConfig {
         // Connection buffer size must be at least as large as the largest stream buffer size.
         long maxConnectionBufferSize = max(max(maxUnidirectionalStreamBufferSize, maxBidirectionalStreamBufferSize), this.maxConnectionBufferSize());
         configBuilder.maxConnectionBufferSize(maxConnectionBufferSize);
+        configBuilder.receiveWindowAutoTuning(this.maxStreamReceiveWindow(), this.maxConnectionReceiveWindow());
 
         configBuilder.maxOpenPeerInitiatedUnidirectionalStreams(limitValue(0,
                 protocol.maxConcurrentPeerInitiatedUnidirectionalStreams(), this.maxOpenPeerInitiatedUnidirectionalStreams()));
@@ -127,6 +188,10 @@ public class ServerConnectionConfigImpl implements ServerConnectionConfig {
         configBuilder.maxTotalPeerInitiatedBidirectionalStreams(protocol.maxTotalPeerInitiatedBidirectionalStreams());
         configBuilder.retryRequired(this.retryRequired());
         configBuilder.connectionIdLength(this.connectionIdLength());
+        configBuilder.maxUdpPayloadSize(this.maxUdpPayloadSize());
+        configBuilder.pacingBurst(this.pacingBurst());
+        configBuilder.congestionControllerFactory(this.congestionControllerFactory());
+        configBuilder.ackFrequency(this.ackElicitingThreshold(), this.requestedMaxAckDelay());
 
         return configBuilder.build();
     }
@@ -247,6 +312,16 @@ public class ServerConnectionConfigImpl implements ServerConnectionConfig {
             return this;
         }
 
+        @Override
+        public Builder receiveWindowAutoTuning(long maxStreamReceiveWindow, long maxConnectionReceiveWindow) {
+            if (maxStreamReceiveWindow < 0 || maxConnectionReceiveWindow < 0) {
+                throw new IllegalArgumentException();
+            }
+            config.maxStreamReceiveWindow = maxStreamReceiveWindow;
+            config.maxConnectionReceiveWindow = maxConnectionReceiveWindow;
+            return this;
+        }
+
         @Override
         public Builder maxOpenPeerInitiatedUnidirectionalStreams(int max) {
             if (max < 0) {
@@ -297,5 +372,48 @@ public class ServerConnectionConfigImpl implements ServerConnectionConfig {
             config.maxTotalBidirectionalStreams = max;
             return this;
         }
+
+        @Override
+        public Builder maxUdpPayloadSize(int maxSize) {
+            if (maxSize < MIN_MAX_UDP_PAYLOAD_SIZE || maxSize > MAX_MAX_UDP_PAYLOAD_SIZE) {
+                throw new IllegalArgumentException("Max UDP payload size must be between " + MIN_MAX_UDP_PAYLOAD_SIZE + " and " + MAX_MAX_UDP_PAYLOAD_SIZE);
+            }
+            config.maxUdpPayloadSize = maxSize;
+            return this;
+        }
+
+        @Override
+        public Builder pacingBurst(int maxBurstPackets) {
+            if (maxBurstPackets < 1) {
+                throw new IllegalArgumentException("Pacing burst must be at least 1 packet");
+            }
+            config.pacingBurst = maxBurstPackets;
+            return this;
+        }
+
+        @Override
+        public Builder congestionControl(CongestionControlAlgorithm algorithm) {
+            config.congestionControllerFactory = CongestionControllerFactory.of(Objects.requireNonNull(algorithm));
+            return this;
+        }
+
+        @Override
+        public Builder congestionControllerFactory(CongestionControllerFactory factory) {
+            config.congestionControllerFactory = Objects.requireNonNull(factory);
+            return this;
+        }
+
+        @Override
+        public Builder ackFrequency(int ackElicitingThreshold, int maxAckDelay) {
+            if (ackElicitingThreshold < 0) {
+                throw new IllegalArgumentException("Ack-eliciting threshold cannot be negative");
+            }
+            if (maxAckDelay < 1 || maxAckDelay >= 16384) {
+                throw new IllegalArgumentException("Max ack delay must be between 1 and 16383 milliseconds");
+            }
+            config.ackElicitingThreshold = ackElicitingThreshold;
+            config.requestedMaxAckDelay = maxAckDelay;
+            return this;
+        }
     }
 }
@@ -0,0 +1,165 @@
+/*
+ * Copyright © 2024 Peter Doornbosch
+ *
+ * This file is part of Kwik, an implementation of the QUIC protocol in Java.
+ *
+ * Kwik is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * Kwik is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.luminis.quic.server.impl;
+
+import net.luminis.quic.ReceiveQueueMetrics;
+import net.luminis.quic.concurrent.WaitStrategy;
+import net.luminis.quic.packet.DatagramParserFilter;
+import net.luminis.quic.packet.InitialPacket;
+import net.luminis.quic.packet.PacketMetaData;
+import net.luminis.quic.receive.AggregatedReceiveQueueMetrics;
+import net.luminis.quic.receive.ReceiveQueueConfig;
+import net.luminis.quic.receive.ReceiveQueueLimiter;
+import net.luminis.quic.util.Bytes;
+
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Proxy for server connection that ensures that all processing of received datagrams is executed on the event loop
+ * the connection is assigned to. As the event loop is single threaded, and all other tasks of the connection (sending,
+ * timers) execute on the same loop, the methods that execute as part of processing received datagrams can use the same
+ * thread-confinement strategy for concurrency control as with the thread-per-connection model (see
+ * {@link ServerConnectionThread}), without the cost of a thread for each connection.
+ * The number of datagrams that are waiting to be processed on the event loop is limited per connection; when the limit
+ * is reached, datagrams are dropped according to the configured drop policy, so one connection that receives faster
+ * than it can process cannot flood the event loop (and thus delay the other connections on the same loop).
+ */
+public class ServerConnectionEventLoopProxy implements ServerConnectionProxy {
+
+    private final ServerConnectionImpl serverConnection;
+    private final Executor eventLoop;
+    private final ReceiveQueueLimiter queueLimiter;
+    private final AggregatedReceiveQueueMetrics aggregatedMetrics;
+    // Only accessed on the event loop
+    private DatagramParserFilter datagramProcessingChain;
+    private volatile boolean disposed;
+
+    public ServerConnectionEventLoopProxy(ServerConnectionImpl serverConnection, InitialPacket firstInitialPacket,
+                                          ByteBuffer remainingDatagramData, PacketMetaData initialPacketMetaData, Executor eventLoop) {
+        this(serverConnection, firstInitialPacket, remainingDatagramData, initialPacketMetaData, eventLoop,
+                new ReceiveQueueConfig(ServerConnectionThread.DEFAULT_QUEUE_CAPACITY, WaitStrategy.BLOCKING), null);
+    }
+
+    /**
+     * Creates a proxy that limits the number of datagrams waiting for processing as specified by the given queue
+     * configuration (the wait strategy is not used); its queue metrics are added to the given aggregated metrics (when
+     * not null) until the proxy is disposed.
+     */
+    public ServerConnectionEventLoopProxy(ServerConnectionImpl serverConnection, InitialPacket firstInitialPacket,
+                                          ByteBuffer remainingDatagramData, PacketMetaData initialPacketMetaData, Executor eventLoop,
+                                          ReceiveQueueConfig queueConfig, AggregatedReceiveQueueMetrics aggregatedMetrics) {
+        this.serverConnection = serverConnection;
+        this.eventLoop = eventLoop;
+        queueLimiter = new ReceiveQueueLimiter(queueConfig);
+        this.aggregatedMetrics = aggregatedMetrics;
+        if (aggregatedMetrics != null) {
+            aggregatedMetrics.register(queueLimiter);
+        }
+
+        execute(() -> {
+            if (firstInitialPacket != null) {
+                serverConnection.getPacketProcessorChain().processPacket(firstInitialPacket, initialPacketMetaData);
+            }
+
+            datagramProcessingChain = new DatagramParserFilter(serverConnection.createParser());
+
+            if (remainingDatagramData.hasRemaining()) {
+                datagramProcessingChain.processDatagram(remainingDatagramData.slice(), initialPacketMetaData);
+            }
+        }, initialPacketMetaData);
+    }
+
+    @Override
+    public byte[] getOriginalDestinationConnectionId() {
+        return serverConnection.getOriginalDestinationConnectionId();
+    }
+
+    @Override
+    public void parsePackets(int datagramNumber, Instant timeReceived, ByteBuffer data, InetSocketAddress sourceAddress) {
+        parsePackets(data, new PacketMetaData(timeReceived, sourceAddress, datagramNumber));
+    }
+
+    @Override
+    public void parsePackets(ByteBuffer data, PacketMetaData metaData) {
+        if (queueLimiter.tryAdd(ServerConnectionThread.isLongHeaderPacket(data)) != null) {
+            metaData.releaseDatagram();
+            return;
+        }
+        execute(() -> {
+            // With the drop-oldest policy, processing a datagram is skipped when there are too many newer ones waiting.
+            if (!queueLimiter.removed()) {
+                datagramProcessingChain.processDatagram(data, metaData);
+            }
+        }, metaData);
+    }
+
+    @Override
+    public boolean isClosed() {
+        return serverConnection.isClosed();
+    }
+
+    @Override
+    public void dispose() {
+        disposed = true;
+        if (aggregatedMetrics != null) {
+            aggregatedMetrics.unregister(queueLimiter);
+        }
+    }
+
+    public ReceiveQueueMetrics getQueueMetrics() {
+        return queueLimiter;
+    }
+
+    private void execute(Runnable processingTask, PacketMetaData metaData) {
+        if (disposed) {
+            metaData.releaseDatagram();
+            return;
+        }
+        try {
+            eventLoop.execute(() -> {
+                try {
+                    if (!disposed) {
+                        processingTask.run();
+                    }
+                }
+                catch (Throwable error) {
+                    // Of course, this should never happen. But if it does, there is no point in going on with this connection.
+                    disposed = true;
+                    serverConnection.abortConnection(error);
+                }
+                finally {
+                    // Parsing copies whatever must be retained, so datagram buffer can be reused now.
+                    metaData.releaseDatagram();
+                }
+            });
+        }
+        catch (RejectedExecutionException shutdown) {
+            metaData.releaseDatagram();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "ServerConnectionEventLoopProxy[" + Bytes.bytesToHex(getOriginalDestinationConnectionId()) + "]";
+    }
+}
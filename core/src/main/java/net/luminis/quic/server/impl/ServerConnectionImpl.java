@@ -19,6 +19,7 @@
 package net.luminis.quic.server.impl;
 
 import net.luminis.quic.QuicStream;
+import net.luminis.quic.ack.AckGenerator;
 import net.luminis.quic.ack.GlobalAckGenerator;
 import net.luminis.quic.cid.ConnectionIdManager;
 import net.luminis.quic.common.EncryptionLevel;
@@ -43,6 +44,7 @@ import net.luminis.quic.stream.FlowControl;
 import net.luminis.quic.stream.StreamManager;
 import net.luminis.quic.tls.QuicTransportParametersExtension;
 import net.luminis.quic.util.Bytes;
+import net.luminis.quic.util.MonotonicClock;
 import net.luminis.tls.NewSessionTicket;
 import net.luminis.tls.TlsConstants;
 import net.luminis.tls.TlsProtocolException;
@@ -68,6 +70,8 @@ import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
 import java.util.Random;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
 import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 
@@ -100,6 +104,7 @@ public class ServerConnectionImpl extends QuicConnectionImpl implements ServerCo
     private boolean acceptedEarlyData = false;
     private int allowedClientConnectionIds = 3;
     private boolean applicationProtocolStarted;
+    private final ScheduledExecutorService eventLoop;
 
     /**
      * Creates a server connection implementation.
@@ -120,13 +125,39 @@ public class ServerConnectionImpl extends QuicConnectionImpl implements ServerCo
                                 byte[] peerCid, byte[] originalDcid, TlsServerEngineFactory tlsServerEngineFactory,
                                 ServerConnectionConfig configuration, ApplicationProtocolRegistry applicationProtocolRegistry,
                                 ServerConnectionRegistry connectionRegistry, Consumer<ServerConnectionImpl> closeCallback, Logger log) {
-        super(originalVersion, Role.Server, null, new LogProxy(log, originalDcid));
+        this(originalVersion, serverSocket, initialClientAddress, peerCid, originalDcid, tlsServerEngineFactory, configuration,
+                applicationProtocolRegistry, connectionRegistry, closeCallback, null, null, null, null, log);
+    }
+
+    /**
+     * Creates a server connection implementation that registers its timers with the given (shared) timer and runs on
+     * the given event loop. When event loop is null, the connection uses threads of its own for receiving and sending;
+     * when both are null, the connection also creates its own timer. Threads are created with the given thread factory.
+     * See {@link #ServerConnectionImpl(Version, DatagramSocket, InetSocketAddress, byte[], byte[], TlsServerEngineFactory, ServerConnectionConfig, ApplicationProtocolRegistry, ServerConnectionRegistry, Consumer, Logger)}
+     * for the other parameters.
+     * @param timer                       the timer for all connection timers, or null to use the event loop (if any)
+     * @param eventLoop                   the event loop the connection is assigned to, or null
+     * @param threadFactory               factory for creating threads, or null for platform threads
+     * @param memoryAccountant            the accountant to charge the memory used by the connection to, or null when
+     *                                    memory usage is not limited
+     */
+    public ServerConnectionImpl(Version originalVersion, DatagramSocket serverSocket, InetSocketAddress initialClientAddress,
+                                byte[] peerCid, byte[] originalDcid, TlsServerEngineFactory tlsServerEngineFactory,
+                                ServerConnectionConfig configuration, ApplicationProtocolRegistry applicationProtocolRegistry,
+                                ServerConnectionRegistry connectionRegistry, Consumer<ServerConnectionImpl> closeCallback,
+                                ScheduledExecutorService timer, ScheduledExecutorService eventLoop, ThreadFactory threadFactory,
+                                MemoryAccountant memoryAccountant, Logger log) {
+        super(originalVersion, Role.Server, null, new LogProxy(log, originalDcid), timer != null? timer: eventLoop, threadFactory);
+        this.eventLoop = eventLoop;
         this.originalVersion = originalVersion;
         this.initialClientAddress = initialClientAddress;
         this.retryRequired = configuration.retryRequired() == ServerConnectionConfig.RetryRequired.Always;
         this.configuration = configuration;
         this.applicationProtocolRegistry = applicationProtocolRegistry;
         this.closeCallback = closeCallback;
+        if (memoryAccountant != null) {
+            connectionMemory = memoryAccountant.openAccount(Bytes.bytesToHex(originalDcid));
+        }
 
         tlsEngine = tlsServerEngineFactory.createServerEngine(new TlsMessageSender(), this);
         tlsEngine.addSupportedCiphers(List.of(
@@ -137,12 +168,21 @@ public class ServerConnectionImpl extends QuicConnectionImpl implements ServerCo
                 // TlsConstants.CipherSuite.TLS_AES_128_CCM_8_SHA256 not used in QUIC!
         ));
 
-        idleTimer = new IdleTimer(this, log);
-        sender = new SenderImpl(quicVersion, getMaxPacketSize(), serverSocket, initialClientAddress,this, Bytes.bytesToHex(originalDcid), configuration.initialRtt(), this.log);
+        // All timers of the connection share the connection's scheduler.
+        idleTimer = new IdleTimer(this, log, getScheduler());
+        sender = new SenderImpl(MonotonicClock.instance(), quicVersion, getMaxPacketSize(), serverSocket, initialClientAddress, this,
+                Bytes.bytesToHex(originalDcid), configuration.initialRtt(), getScheduler(), eventLoop,
+                configuration.congestionControllerFactory(), this.log);
+        sender.setConnectionMemory(connectionMemory);
         if (! retryRequired) {
             sender.setAntiAmplificationLimit(0);
         }
+        sender.enablePathMtuDiscovery(configuration.maxUdpPayloadSize());
+        if (configuration.pacingBurst() > 0) {
+            sender.setPacingBurst(configuration.pacingBurst());
+        }
         idleTimer.setPtoSupplier(sender::getPto);
+        setRequestedAckFrequency(configuration.ackElicitingThreshold(), configuration.requestedMaxAckDelay());
 
         BiConsumer<Integer, String> closeWithErrorFunction = (error, reason) -> {
             immediateCloseWithError(EncryptionLevel.App, error, reason);
@@ -164,11 +204,18 @@ public class ServerConnectionImpl extends QuicConnectionImpl implements ServerCo
         connectionSecrets.computeInitialKeys(originalDcid);
         sender.start(connectionSecrets);
 
-        streamManager = new StreamManager(this, Role.Server, log, configuration);
+        streamManager = new StreamManager(this, Role.Server, log, configuration, connectionMemory);
 
         this.log.getQLog().emitConnectionCreatedEvent(Instant.now());
     }
 
+    /**
+     * @return  the event loop this connection is assigned to, or null when the connection uses threads of its own
+     */
+    public ScheduledExecutorService getEventLoop() {
+        return eventLoop;
+    }
+
     @Override
     protected PacketFilter createProcessorChain() {
         return new CheckDestinationFilter(
@@ -187,6 +234,7 @@ public class ServerConnectionImpl extends QuicConnectionImpl implements ServerCo
     @Override
     public void abortConnection(Throwable error) {
         log.error(this + " aborted due to internal error", error);
+        connectionMemory.close();
         closeCallback.accept(this);
     }
 
@@ -218,7 +266,7 @@ public class ServerConnectionImpl extends QuicConnectionImpl implements ServerCo
     @Override
     @Deprecated
     public long getInitialMaxStreamData() {
-        return configuration.maxBidirectionalStreamBufferSize();
+        return streamManager.getMaxBidirectionalStreamBufferSize();
     }
 
     @Override
@@ -386,12 +434,15 @@ public class ServerConnectionImpl extends QuicConnectionImpl implements ServerCo
     TransportParameters initTransportParameters() {
         TransportParameters parameters = new TransportParameters();
         parameters.setMaxIdleTimeout(configuration.maxIdleTimeout());
-        parameters.setInitialMaxStreamDataBidiLocal(configuration.maxBidirectionalStreamBufferSize());
-        parameters.setInitialMaxStreamDataBidiRemote(configuration.maxBidirectionalStreamBufferSize());
-        parameters.setInitialMaxStreamDataUni(configuration.maxUnidirectionalStreamBufferSize());
-        parameters.setInitialMaxData(configuration.maxConnectionBufferSize());
+        // Initial credit is determined by the stream manager, as it is reduced when memory is tight.
+        parameters.setInitialMaxStreamDataBidiLocal(streamManager.getMaxBidirectionalStreamBufferSize());
+        parameters.setInitialMaxStreamDataBidiRemote(streamManager.getMaxBidirectionalStreamBufferSize());
+        parameters.setInitialMaxStreamDataUni(streamManager.getMaxUnidirectionalStreamBufferSize());
+        parameters.setInitialMaxData(streamManager.getInitialMaxData());
         parameters.setInitialMaxStreamsBidi(configuration.maxOpenPeerInitiatedBidirectionalStreams());
         parameters.setInitialMaxStreamsUni(configuration.maxOpenPeerInitiatedUnidirectionalStreams());
+        parameters.setMaxUdpPayloadSize(configuration.maxUdpPayloadSize());
+        parameters.setMinAckDelay(AckGenerator.MIN_ACK_DELAY);
         return parameters;
     }
 
@@ -588,6 +639,11 @@ public class ServerConnectionImpl extends QuicConnectionImpl implements ServerCo
         if (transportParameters.getActiveConnectionIdLimit() < 2) {
             throw new TransportError(TRANSPORT_PARAMETER_ERROR);
         }
+        // https://datatracker.ietf.org/doc/draft-ietf-quic-ack-frequency/
+        // A min_ack_delay that is larger than max_ack_delay must be treated as a TRANSPORT_PARAMETER_ERROR.
+        if (transportParameters.getMinAckDelay() > transportParameters.getMaxAckDelay() * 1000L) {
+            throw new TransportError(TRANSPORT_PARAMETER_ERROR);
+        }
         if (!connectionIdManager.validateInitialPeerConnectionId(transportParameters.getInitialSourceConnectionId())) {
             // https://tools.ietf.org/html/draft-ietf-quic-transport-32#section-7.3
             // "An endpoint MUST treat absence of the initial_source_connection_id transport parameter from either
@@ -18,6 +18,8 @@
  */
 package net.luminis.quic.server.impl;
 
+import net.luminis.quic.packet.PacketMetaData;
+
 import java.net.InetSocketAddress;
 import java.nio.ByteBuffer;
 import java.time.Instant;
@@ -29,6 +31,17 @@ public interface ServerConnectionProxy {
 
     void parsePackets(int datagramNumber, Instant timeReceived, ByteBuffer data, InetSocketAddress sourceAddress);
 
+    /**
+     * Parses the packets in the given datagram. Implementations that (eventually) process the datagram should release
+     * it (see {@link PacketMetaData#releaseDatagram()}) when done, so the datagram buffer can be reused; the default
+     * implementation does not, which is safe, the buffer will just not be reused.
+     * @param data
+     * @param metaData
+     */
+    default void parsePackets(ByteBuffer data, PacketMetaData metaData) {
+        parsePackets(metaData.datagramNumber(), metaData.timeReceived(), data, metaData.sourceAddress());
+    }
+
     boolean isClosed();
 
     /**
@@ -23,39 +23,38 @@ import net.luminis.quic.server.ServerConnectionRegistry;
 import net.luminis.quic.util.Bytes;
 
 import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
 import java.util.Comparator;
 import java.util.List;
-import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 public class ServerConnectionRegistryImpl implements ServerConnectionRegistry {
 
     private final Logger log;
-    private final Map<ConnectionSource, ServerConnectionProxy> currentConnections;
+    private final ConnectionIdTable<ServerConnectionProxy> currentConnections;
 
     ServerConnectionRegistryImpl(Logger log) {
         this.log = log;
-        currentConnections = new ConcurrentHashMap<>();
+        currentConnections = new ConnectionIdTable<>();
     }
 
     @Override
     public void registerConnection(ServerConnectionProxy connection, byte[] connectionId) {
-        currentConnections.put(new ConnectionSource(connectionId), connection);
+        currentConnections.put(connectionId, connection);
     }
 
     @Override
     public void deregisterConnection(ServerConnectionProxy connection, byte[] connectionId) {
-        currentConnections.remove(new ConnectionSource(connectionId));
+        currentConnections.remove(connectionId);
     }
 
     @Override
     public void registerAdditionalConnectionId(byte[] currentConnectionId, byte[] newConnectionId) {
-        ServerConnectionProxy connection = currentConnections.get(new ConnectionSource(currentConnectionId));
+        ServerConnectionProxy connection = currentConnections.get(currentConnectionId);
         if (connection != null) {
-            currentConnections.put(new ConnectionSource(newConnectionId), connection);
+            currentConnections.put(newConnectionId, connection);
         }
         else {
             log.error("Cannot add additional cid to non-existing connection " + Bytes.bytesToHex(currentConnectionId));
@@ -64,21 +63,32 @@ public class ServerConnectionRegistryImpl implements ServerConnectionRegistry {
 
     @Override
     public void deregisterConnectionId(byte[] connectionId) {
-        currentConnections.remove(new ConnectionSource(connectionId));
+        currentConnections.remove(connectionId);
     }
 
     Optional<ServerConnectionProxy> isExistingConnection(InetSocketAddress clientAddress, byte[] dcid) {
-        return Optional.ofNullable(currentConnections.get(new ConnectionSource(dcid)));
+        return Optional.ofNullable(currentConnections.get(dcid));
+    }
+
+    /**
+     * Returns the connection registered with the connection id that is located in the given datagram at the given
+     * offset, without copying the connection id (and without allocating any objects).
+     * @param datagram
+     * @param dcidOffset  the (absolute) offset of the connection id in the datagram buffer
+     * @param dcidLength
+     * @return  the connection or null if no connection is registered with the connection id
+     */
+    ServerConnectionProxy getConnection(ByteBuffer datagram, int dcidOffset, int dcidLength) {
+        return currentConnections.get(datagram, dcidOffset, dcidLength);
     }
 
     ServerConnectionProxy removeConnection(ServerConnectionImpl connection) {
         // Remove the entry this is registered with the original dcid
-        ServerConnectionProxy removed = currentConnections.remove(new ConnectionSource(connection.getOriginalDestinationConnectionId()));
+        ServerConnectionProxy removed = currentConnections.remove(connection.getOriginalDestinationConnectionId());
 
         // Remove all entries that are registered with the active cids
         List<ServerConnectionProxy> removedConnections = connection.getActiveConnectionIds().stream()
-                .map(cid -> new ConnectionSource(cid))
-                .map(cs -> currentConnections.remove(cs))
+                .map(cid -> currentConnections.remove(cid))
                 .filter(Objects::nonNull)
                 .collect(Collectors.toList());
         // For the active connection IDs, all entries must have pointed to the same connection.
@@ -103,14 +113,9 @@ public class ServerConnectionRegistryImpl implements ServerConnectionRegistry {
      */
     void logConnectionTable() {
         log.info("Connection table: \n" +
-                currentConnections.entrySet().stream()
-                        .sorted(new Comparator<Map.Entry<ConnectionSource, ServerConnectionProxy>>() {
-                            @Override
-                            public int compare(Map.Entry<ConnectionSource, ServerConnectionProxy> o1, Map.Entry<ConnectionSource, ServerConnectionProxy> o2) {
-                                return o1.getValue().toString().compareTo(o2.getValue().toString());
-                            }
-                        })
-                        .map(e -> e.getKey() + "->" + e.getValue())
+                currentConnections.entries().stream()
+                        .sorted(Comparator.comparing(e -> e.getValue().toString()))
+                        .map(e -> Bytes.bytesToHex(e.getKey()) + "->" + e.getValue())
                         .collect(Collectors.joining("\n")));
 
     }
@@ -18,41 +18,75 @@
  */
 package net.luminis.quic.server.impl;
 
+import net.luminis.quic.ReceiveQueueMetrics;
+import net.luminis.quic.concurrent.WaitStrategy;
 import net.luminis.quic.packet.DatagramParserFilter;
 import net.luminis.quic.packet.InitialPacket;
 import net.luminis.quic.packet.PacketMetaData;
+import net.luminis.quic.receive.AggregatedReceiveQueueMetrics;
+import net.luminis.quic.receive.ReceiveQueue;
+import net.luminis.quic.receive.ReceiveQueueConfig;
 import net.luminis.quic.util.Bytes;
 
 import java.net.InetSocketAddress;
 import java.nio.ByteBuffer;
 import java.time.Instant;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.Objects;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Proxy for server connection that ensures that all processing of received datagrams is executed on a separate thread.
  * This implementation creates a new thread for each connection, so the methods that execute as part of processing
  * received datagrams can use thread-confinement strategy for concurrency control.
+ * Datagrams are handed off to the connection thread via a bounded queue; when it is full, datagrams are dropped
+ * according to the queue's drop policy.
  */
 public class ServerConnectionThread implements ServerConnectionProxy {
 
+    /**
+     * Default capacity of the per connection receive queue. This is kept small, as each connection has a queue of its
+     * own; it is enough to absorb a burst of datagrams (e.g. a full congestion window of a moderately fast connection)
+     * while the connection thread is busy. Servers handling few connections with high bandwidth can use a larger queue,
+     * see {@link net.luminis.quic.server.ServerConnector.Builder#withConnectionReceiveQueue(int, WaitStrategy)}.
+     */
+    public static final int DEFAULT_QUEUE_CAPACITY = 128;
+
     private final ServerConnectionImpl serverConnection;
-    private final BlockingQueue<ReceivedDatagram> queue;
+    private final ReceiveQueue<ReceivedDatagram> queue;
+    private final AggregatedReceiveQueueMetrics aggregatedMetrics;
     private final Thread connectionReceiverThread;
     private final InitialPacket firstInitialPacket;
     private final ByteBuffer data;
     private final PacketMetaData firstInitialPacketMetaData;
+    private volatile boolean disposed;
 
 
     public ServerConnectionThread(ServerConnectionImpl serverConnection, InitialPacket firstInitialPacket, ByteBuffer remainingDatagramData, PacketMetaData initialPacketMetaData) {
+        this(serverConnection, firstInitialPacket, remainingDatagramData, initialPacketMetaData,
+                new ReceiveQueueConfig(DEFAULT_QUEUE_CAPACITY, WaitStrategy.BLOCKING), null);
+    }
+
+    /**
+     * Creates a connection thread with a receive queue with the given configuration, whose metrics are added to the
+     * given aggregated metrics (when not null) until the thread is disposed.
+     */
+    public ServerConnectionThread(ServerConnectionImpl serverConnection, InitialPacket firstInitialPacket, ByteBuffer remainingDatagramData,
+                                  PacketMetaData initialPacketMetaData, ReceiveQueueConfig queueConfig, AggregatedReceiveQueueMetrics aggregatedMetrics) {
         this.serverConnection = serverConnection;
         this.firstInitialPacket = firstInitialPacket;
         this.data = remainingDatagramData;
         this.firstInitialPacketMetaData = initialPacketMetaData;
 
-        queue = new LinkedBlockingQueue<>();
+        queue = new ReceiveQueue<>(queueConfig, datagram -> isLongHeaderPacket(datagram.data), datagram -> datagram.metaData.releaseDatagram());
+        this.aggregatedMetrics = aggregatedMetrics;
+        if (aggregatedMetrics != null) {
+            aggregatedMetrics.register(queue.getMetrics());
+        }
         String threadId = "receiver-" + Bytes.bytesToHex(serverConnection.getOriginalDestinationConnectionId());
-        connectionReceiverThread = new Thread(this::process, threadId);
+        ThreadFactory threadFactory = Objects.requireNonNullElse(serverConnection.getThreadFactory(), Thread::new);
+        connectionReceiverThread = threadFactory.newThread(this::process);
+        connectionReceiverThread.setName(threadId);
         connectionReceiverThread.start();
     }
 
@@ -63,7 +97,12 @@ public class ServerConnectionThread implements ServerConnectionProxy {
 
     @Override
     public void parsePackets(int datagramNumber, Instant timeReceived, ByteBuffer data, InetSocketAddress sourceAddress) {
-        queue.add(new ReceivedDatagram(datagramNumber, timeReceived, data, sourceAddress));
+        parsePackets(data, new PacketMetaData(timeReceived, sourceAddress, datagramNumber));
+    }
+
+    @Override
+    public void parsePackets(ByteBuffer data, PacketMetaData metaData) {
+        queue.offer(new ReceivedDatagram(data, metaData));
     }
 
     @Override
@@ -73,7 +112,21 @@ public class ServerConnectionThread implements ServerConnectionProxy {
 
     @Override
     public void dispose() {
-        connectionReceiverThread.interrupt();
+        // Do not interrupt the thread: when it happens to write to the (shared) channel-backed server socket, e.g. a
+        // send from the packet processing, interrupting it would close that socket. Closing the queue wakes it up instead.
+        disposed = true;
+        queue.close();
+        if (aggregatedMetrics != null) {
+            aggregatedMetrics.unregister(queue.getMetrics());
+        }
+    }
+
+    public ReceiveQueueMetrics getQueueMetrics() {
+        return queue.getMetrics();
+    }
+
+    static boolean isLongHeaderPacket(ByteBuffer data) {
+        return data.hasRemaining() && (data.get(data.position()) & 0x80) != 0;
     }
 
     private void process() {
@@ -88,19 +141,36 @@ public class ServerConnectionThread implements ServerConnectionProxy {
                 datagramProcessingChain.processDatagram(data.slice(), firstInitialPacketMetaData);
             }
 
-            while (! connectionReceiverThread.isInterrupted()) {
+            while (! disposed) {
                 ReceivedDatagram datagram = queue.take();
-                PacketMetaData metaData = new PacketMetaData(datagram.timeReceived, datagram.sourceAddress, datagram.datagramNumber);
-                datagramProcessingChain.processDatagram(datagram.data, metaData);
+                if (datagram == null) {
+                    break;
+                }
+                datagramProcessingChain.processDatagram(datagram.data, datagram.metaData);
+                // Parsing copies whatever must be retained, so datagram buffer can be reused now.
+                datagram.metaData.releaseDatagram();
             }
         }
         catch (InterruptedException e) {
-            // Terminate process and thread, see terminate() method
+            // Terminate process and thread
         }
         catch (Throwable error) {
             // Of course, this should never happen. But if it does, there is no point in going on with this connection.
             serverConnection.abortConnection(error);
         }
+        releaseQueuedDatagrams();
+    }
+
+    private void releaseQueuedDatagrams() {
+        try {
+            ReceivedDatagram datagram;
+            while ((datagram = queue.poll(0, TimeUnit.MILLISECONDS)) != null) {
+                datagram.metaData.releaseDatagram();
+            }
+        }
+        catch (InterruptedException e) {
+            // Remaining buffers will be garbage collected
+        }
     }
 
     @Override
@@ -110,16 +180,12 @@ public class ServerConnectionThread implements ServerConnectionProxy {
 
     static class ReceivedDatagram {
 
-        final int datagramNumber;
-        final Instant timeReceived;
         final ByteBuffer data;
-        final InetSocketAddress sourceAddress;
+        final PacketMetaData metaData;
 
-        public ReceivedDatagram(int datagramNumber, Instant timeReceived, ByteBuffer data, InetSocketAddress sourceAddress) {
-            this.datagramNumber = datagramNumber;
-            this.timeReceived = timeReceived;
+        public ReceivedDatagram(ByteBuffer data, PacketMetaData metaData) {
             this.data = data;
-            this.sourceAddress = sourceAddress;
+            this.metaData = metaData;
         }
     }
 }
@@ -48,6 +48,11 @@ public class ServerConnectionWrapper implements ServerConnectionProxy {
         filter.processDatagram(data, new PacketMetaData(timeReceived, sourceAddress, datagramNumber));
     }
 
+    @Override
+    public void parsePackets(ByteBuffer data, PacketMetaData metaData) {
+        filter.processDatagram(data, metaData);
+    }
+
     @Override
     public boolean isClosed() {
         return connection.isClosed();
@@ -18,19 +18,30 @@
  */
 package net.luminis.quic.server.impl;
 
+import net.luminis.quic.DropPolicy;
 import net.luminis.quic.QuicConnection;
+import net.luminis.quic.MemoryMetrics;
+import net.luminis.quic.ReceiveQueueMetrics;
 import net.luminis.quic.common.EncryptionLevel;
+import net.luminis.quic.concurrent.DaemonThreadFactory;
+import net.luminis.quic.concurrent.EventLoopGroup;
+import net.luminis.quic.concurrent.TimingWheel;
+import net.luminis.quic.concurrent.WaitStrategy;
+import net.luminis.quic.impl.MemoryAccountant;
 import net.luminis.quic.impl.Version;
 import net.luminis.quic.log.Logger;
 import net.luminis.quic.packet.InitialPacket;
+import net.luminis.quic.packet.PacketMetaData;
 import net.luminis.quic.packet.VersionNegotiationPacket;
 import net.luminis.quic.receive.RawPacket;
+import net.luminis.quic.receive.ReceiveQueueConfig;
 import net.luminis.quic.receive.Receiver;
 import net.luminis.quic.server.ApplicationProtocolConnectionFactory;
 import net.luminis.quic.server.ServerConnectionConfig;
 import net.luminis.quic.server.ServerConnectionFactory;
 import net.luminis.quic.server.ServerConnector;
 import net.luminis.quic.util.Bytes;
+import net.luminis.quic.util.MonotonicClock;
 import net.luminis.tls.engine.TlsServerEngineFactory;
 
 import java.io.IOException;
@@ -38,18 +49,20 @@ import java.io.InputStream;
 import java.net.DatagramPacket;
 import java.net.DatagramSocket;
 import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
 import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
 import java.security.KeyStore;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
-import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
 import java.util.stream.Collectors;
 
 /**
@@ -59,16 +72,23 @@ public class ServerConnectorImpl implements ServerConnector {
 
     private static final int MINIMUM_LONG_HEADER_LENGTH = 1 + 4 + 1 + 0 + 1 + 0;
 
-    private final Receiver receiver;
+    private final List<DatagramSocket> sockets;
+    private final List<Receiver> receivers;
     private final Logger log;
     private final List<QuicConnection.QuicVersion> supportedVersions;
     private final List<Integer> supportedVersionIds;
     private final DatagramSocket serverSocket;
     private TlsServerEngineFactory tlsEngineFactory;
     private final ServerConnectionFactory serverConnectionFactory;
+    private final EventLoopGroup eventLoopGroup;
+    private final ThreadFactory threadFactory;
     private ApplicationProtocolRegistry applicationProtocolRegistry;
     private final ExecutorService sharedExecutor = Executors.newSingleThreadExecutor();
-    private final ScheduledExecutorService sharedScheduledExecutor = Executors.newSingleThreadScheduledExecutor();
+    // One timer thread for all connections (when not using event loops) and connection candidates.
+    private final TimingWheel sharedScheduledExecutor = new TimingWheel(new DaemonThreadFactory("timer"));
+    // Runs the timer tasks of connections (when not using event loops), each connection's tasks one at a time, so the
+    // timer thread only keeps track of the timers and a slow timer task of one connection does not delay the others.
+    private final ExecutorService timerCallbackExecutor = Executors.newCachedThreadPool(new DaemonThreadFactory("timer-callback"));
     private Context context;
     private ServerConnectionRegistryImpl connectionRegistry;
     private int connectionIdLength;
@@ -100,19 +120,32 @@ public class ServerConnectorImpl implements ServerConnector {
      */
     @Deprecated
     public ServerConnectorImpl(DatagramSocket socket, InputStream certificateFile, InputStream certificateKeyFile, List<QuicConnection.QuicVersion> supportedVersions, boolean requireRetry, Logger log) throws Exception {
-        this(socket, certificateFile, certificateKeyFile, supportedVersions, getDefaultConfiguration(requireRetry), log);
+        this(List.of(socket), certificateFile, certificateKeyFile, supportedVersions, getDefaultConfiguration(requireRetry), 0, null, null, null, 0, log);
     }
 
-    private ServerConnectorImpl(DatagramSocket socket, InputStream certificateFile, InputStream certificateKeyFile, List<QuicConnection.QuicVersion> supportedVersions, ServerConnectionConfig configuration, Logger log) throws Exception {
-        this(socket, new TlsServerEngineFactory(certificateFile, certificateKeyFile), supportedVersions, configuration, log);
+    private ServerConnectorImpl(List<DatagramSocket> sockets, InputStream certificateFile, InputStream certificateKeyFile, List<QuicConnection.QuicVersion> supportedVersions, ServerConnectionConfig configuration, int eventLoops, ThreadFactory threadFactory,
+                                ReceiveQueueConfig receiveQueueConfig, ReceiveQueueConfig connectionQueueConfig, long memoryBudget, Logger log) throws Exception {
+        this(sockets, new TlsServerEngineFactory(certificateFile, certificateKeyFile), supportedVersions, configuration, eventLoops, threadFactory, receiveQueueConfig, connectionQueueConfig, memoryBudget, log);
     }
 
-    private ServerConnectorImpl(DatagramSocket socket, KeyStore keyStore, String alias, char[] keyPassword, String ecCurve, List<QuicConnection.QuicVersion> supportedVersions, ServerConnectionConfig configuration, Logger log) throws Exception {
-        this(socket, new TlsServerEngineFactory(keyStore, alias, keyPassword, ecCurve), supportedVersions, configuration, log);
+    private ServerConnectorImpl(List<DatagramSocket> sockets, KeyStore keyStore, String alias, char[] keyPassword, String ecCurve, List<QuicConnection.QuicVersion> supportedVersions, ServerConnectionConfig configuration, int eventLoops, ThreadFactory threadFactory,
+                                ReceiveQueueConfig receiveQueueConfig, ReceiveQueueConfig connectionQueueConfig, long memoryBudget, Logger log) throws Exception {
+        this(sockets, new TlsServerEngineFactory(keyStore, alias, keyPassword, ecCurve), supportedVersions, configuration, eventLoops, threadFactory, receiveQueueConfig, connectionQueueConfig, memoryBudget, log);
     }
 
-    private ServerConnectorImpl(DatagramSocket socket, TlsServerEngineFactory tlsEngineFactory, List<QuicConnection.QuicVersion> supportedVersions, ServerConnectionConfig configuration, Logger log) throws Exception {
-        this.serverSocket = socket;
+    /**
+     * Creates a server connector that receives on all given sockets, which must all be bound to the same port (using
+     * SO_REUSEPORT when there are more than one). All sockets share the same connection registry, so a datagram is
+     * routed to the right connection regardless of the socket it is received on; datagrams are sent via the first.
+     * When the number of event loops is larger than zero, connections are executed on a shared group of event loops,
+     * otherwise each connection uses threads of its own, created with the given thread factory (when not null).
+     * Queue configurations that are null are replaced by defaults. The memory used by all connections is limited by
+     * the given memory budget; when not positive, the default budget (a quarter of the maximum heap size) is used.
+     */
+    private ServerConnectorImpl(List<DatagramSocket> sockets, TlsServerEngineFactory tlsEngineFactory, List<QuicConnection.QuicVersion> supportedVersions, ServerConnectionConfig configuration, int eventLoops, ThreadFactory threadFactory,
+                                ReceiveQueueConfig receiveQueueConfig, ReceiveQueueConfig connectionQueueConfig, long memoryBudget, Logger log) throws Exception {
+        this.sockets = List.copyOf(sockets);
+        this.serverSocket = sockets.get(0);
         this.tlsEngineFactory = tlsEngineFactory;
         this.supportedVersions = supportedVersions;
         this.log = Objects.requireNonNull(log);
@@ -120,14 +153,21 @@ public class ServerConnectorImpl implements ServerConnector {
 
         applicationProtocolRegistry = new ApplicationProtocolRegistry();
         connectionRegistry = new ServerConnectionRegistryImpl(log);
+        eventLoopGroup = eventLoops > 0? new EventLoopGroup(eventLoops): null;
         serverConnectionFactory = new ServerConnectionFactory(serverSocket, tlsEngineFactory,
-                configuration, applicationProtocolRegistry, connectionRegistry, this::closed, log);
+                configuration, applicationProtocolRegistry, connectionRegistry, this::closed, eventLoopGroup, sharedScheduledExecutor, timerCallbackExecutor, threadFactory, connectionQueueConfig,
+                new MemoryAccountant(memoryBudget > 0? memoryBudget: Runtime.getRuntime().maxMemory() / 4), log);
 
         supportedVersionIds = supportedVersions.stream()
                 .map(Version::of)
                 .map(Version::getId)
                 .collect(Collectors.toList());
-        receiver = new Receiver(serverSocket, log, exception -> System.exit(9));
+        this.threadFactory = threadFactory != null? threadFactory: Thread::new;
+        ReceiveQueueConfig queueConfig = receiveQueueConfig != null? receiveQueueConfig:
+                new ReceiveQueueConfig(Receiver.DEFAULT_QUEUE_CAPACITY, WaitStrategy.BLOCKING);
+        receivers = sockets.stream()
+                .map(socket -> new Receiver(socket, log, exception -> System.exit(9), d -> true, this.threadFactory, queueConfig, configuration.maxUdpPayloadSize()))
+                .collect(Collectors.toList());
         context = new ServerConnectorContext();
     }
 
@@ -154,17 +194,59 @@ public class ServerConnectorImpl implements ServerConnector {
     }
 
     public void start() {
-        receiver.start();
-
-        new Thread(this::receiveLoop, "server receive loop").start();
+        for (int i = 0; i < receivers.size(); i++) {
+            Receiver receiver = receivers.get(i);
+            receiver.start();
+            String threadName = receivers.size() == 1? "server receive loop": "server receive loop-" + i;
+            Thread receiveLoopThread = threadFactory.newThread(() -> receiveLoop(receiver));
+            receiveLoopThread.setName(threadName);
+            receiveLoopThread.start();
+        }
         log.info("Kwik server connector started on port " + serverSocket.getLocalPort()+ "; supported application protocols: "
                 + applicationProtocolRegistry.getRegisteredApplicationProtocols());
     }
 
-    protected void receiveLoop() {
+    @Override
+    public void close() {
+        log.info("Closing Kwik server connector on port " + serverSocket.getLocalPort());
+        // Shutting down the receivers ends the receive loops, closing the sockets ends the receiver threads.
+        receivers.forEach(Receiver::shutdown);
+        sockets.forEach(DatagramSocket::close);
+        if (eventLoopGroup != null) {
+            eventLoopGroup.shutdown();
+        }
+        sharedScheduledExecutor.shutdown();
+        timerCallbackExecutor.shutdown();
+        sharedExecutor.shutdown();
+    }
+
+    @Override
+    public List<ReceiveQueueMetrics> getReceiveQueueMetrics() {
+        return receivers.stream()
+                .map(Receiver::getQueueMetrics)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public ReceiveQueueMetrics getConnectionReceiveQueueMetrics() {
+        return serverConnectionFactory.getConnectionQueueMetrics();
+    }
+
+    @Override
+    public MemoryMetrics getMemoryMetrics() {
+        return serverConnectionFactory.getMemoryMetrics();
+    }
+
+    protected void receiveLoop(Receiver receiver) {
         while (true) {
             try {
                 RawPacket rawPacket = receiver.get((int) Duration.ofDays(10 * 365).toSeconds());
+                if (rawPacket == null) {
+                    if (receiver.isShutdown()) {
+                        break;
+                    }
+                    continue;
+                }
                 process(rawPacket);
             }
             catch (InterruptedException e) {
@@ -181,14 +263,15 @@ public class ServerConnectorImpl implements ServerConnector {
         ByteBuffer data = rawPacket.getData();
         int flags = data.get();
         data.rewind();
+        boolean dispatched = false;
         if ((flags & 0b1100_0000) == 0b1100_0000) {
             // https://tools.ietf.org/html/draft-ietf-quic-transport-32#section-17.2
             // "Header Form:  The most significant bit (0x80) of byte 0 (the first byte) is set to 1 for long headers."
-            processLongHeaderPacket(new InetSocketAddress(rawPacket.getAddress(), rawPacket.getPort()), data);
+            dispatched = processLongHeaderPacket(rawPacket.getSourceAddress(), rawPacket);
         } else if ((flags & 0b1100_0000) == 0b0100_0000) {
             // https://tools.ietf.org/html/draft-ietf-quic-transport-32#section-17.3
             // "Header Form:  The most significant bit (0x80) of byte 0 is set to 0 for the short header.
-            processShortHeaderPacket(new InetSocketAddress(rawPacket.getAddress(), rawPacket.getPort()), data);
+            dispatched = processShortHeaderPacket(rawPacket.getSourceAddress(), rawPacket);
         } else {
             // https://tools.ietf.org/html/draft-ietf-quic-transport-32#section-17.2
             // https://tools.ietf.org/html/draft-ietf-quic-transport-32#section-17.3
@@ -196,9 +279,14 @@ public class ServerConnectorImpl implements ServerConnector {
             //  packets in this version and MUST be discarded."
             log.warn(String.format("Invalid Quic packet (flags: %02x) is discarded", flags));
         }
+        if (!dispatched) {
+            // Datagram is not passed to any connection, so its buffer can be reused immediately.
+            rawPacket.release();
+        }
     }
 
-    private void processLongHeaderPacket(InetSocketAddress clientAddress, ByteBuffer data) {
+    private boolean processLongHeaderPacket(InetSocketAddress clientAddress, RawPacket rawPacket) {
+        ByteBuffer data = rawPacket.getData();
         if (data.remaining() >= MINIMUM_LONG_HEADER_LENGTH) {
             data.position(1);
             int version = data.getInt();
@@ -215,50 +303,88 @@ public class ServerConnectorImpl implements ServerConnector {
                     // "A server sends a Version Negotiation packet in response to each packet that might initiate a new connection;"
                     sendVersionNegotiationPacket(clientAddress, data, dcidLength);
                 }
-                return;
+                return false;
             }
             if (data.remaining() >= dcidLength + 1) {  // after dcid at least one byte scid length
-                byte[] dcid = new byte[dcidLength];
-                data.get(dcid);
+                int dcidOffset = data.position();
+                data.position(dcidOffset + dcidLength);
                 int scidLength = data.get() & 0xff;
                 if (data.remaining() >= scidLength) {
-                    byte[] scid = new byte[scidLength];
-                    data.get(scid);
+                    int scidOffset = data.position();
                     data.rewind();
 
-                    Optional<ServerConnectionProxy> connection = connectionRegistry.isExistingConnection(clientAddress, dcid);
-                    if (connection.isEmpty()) {
+                    // Lookup directly on datagram bytes (no copying, no allocation); connection ids are only copied
+                    // when a new connection is created.
+                    ServerConnectionProxy connection = connectionRegistry.getConnection(data, dcidOffset, dcidLength);
+                    if (connection == null) {
                         synchronized (this) {
-                            if (mightStartNewConnection(data, version, dcid) && connectionRegistry.isExistingConnection(clientAddress, dcid).isEmpty()) {
-                                connection = Optional.of(createNewConnection(version, clientAddress, scid, dcid));
+                            if (mightStartNewConnection(data, version, dcidLength) && connectionRegistry.getConnection(data, dcidOffset, dcidLength) == null) {
+                                if (serverConnectionFactory.acceptsNewConnections()) {
+                                    connection = createNewConnection(version, clientAddress,
+                                            copyBytes(data, scidOffset, scidLength), copyBytes(data, dcidOffset, dcidLength));
+                                }
+                                else {
+                                    // Dropping the packet is the cheapest way to refuse; the client will retry (or time out).
+                                    log.warn("Memory budget exhausted, dropping packet from " + clientAddress + " that might start a new connection");
+                                }
                             } else if (initialWithUnspportedVersion(data, version)) {
-                                log.received(Instant.now(), 0, EncryptionLevel.Initial, dcid, scid);
+                                log.received(MonotonicClock.instance().instant(), 0, EncryptionLevel.Initial,
+                                        copyBytes(data, dcidOffset, dcidLength), copyBytes(data, scidOffset, scidLength));
                                 // https://tools.ietf.org/html/draft-ietf-quic-transport-32#section-6
                                 // "A server sends a Version Negotiation packet in response to each packet that might initiate a new connection;"
                                 sendVersionNegotiationPacket(clientAddress, data, dcidLength);
                             }
                         }
                     }
-                    connection.ifPresent(c -> c.parsePackets(0, Instant.now(), data, clientAddress));
+                    if (connection != null) {
+                        connection.parsePackets(data, createMetaData(clientAddress, rawPacket));
+                        return true;
+                    }
                 }
             }
         }
+        return false;
     }
 
-    private void processShortHeaderPacket(InetSocketAddress clientAddress, ByteBuffer data) {
-        byte[] dcid = new byte[connectionIdLength];
-        data.position(1);
-        data.get(dcid);
-        data.rewind();
-        Optional<ServerConnectionProxy> connection = connectionRegistry.isExistingConnection(clientAddress, dcid);
-        connection.ifPresentOrElse(c -> c.parsePackets(0, Instant.now(), data, clientAddress),
-                () -> log.warn("Discarding short header packet addressing non existent connection " + Bytes.bytesToHex(dcid)));
+    private boolean processShortHeaderPacket(InetSocketAddress clientAddress, RawPacket rawPacket) {
+        ByteBuffer data = rawPacket.getData();
+        if (data.limit() < 1 + connectionIdLength) {
+            log.warn("Discarding short header packet that is too short to contain a connection id");
+            return false;
+        }
+        // Lookup directly on datagram bytes (no copying, no allocation)
+        ServerConnectionProxy connection = connectionRegistry.getConnection(data, 1, connectionIdLength);
+        if (connection != null) {
+            connection.parsePackets(data, createMetaData(clientAddress, rawPacket));
+            return true;
+        }
+        else {
+            byte[] dcid = new byte[connectionIdLength];
+            data.position(1);
+            data.get(dcid);
+            data.rewind();
+            log.warn("Discarding short header packet addressing non existent connection " + Bytes.bytesToHex(dcid));
+            return false;
+        }
+    }
+
+    private static byte[] copyBytes(ByteBuffer data, int offset, int length) {
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = data.get(offset + i);
+        }
+        return bytes;
     }
 
-    private boolean mightStartNewConnection(ByteBuffer packetBytes, int version, byte[] dcid) {
+    private PacketMetaData createMetaData(InetSocketAddress clientAddress, RawPacket rawPacket) {
+        // The source address and receive time are taken from the raw packet, so dispatching does not allocate them again.
+        return new PacketMetaData(rawPacket.getTimeReceived(), clientAddress, 0, rawPacket::release);
+    }
+
+    private boolean mightStartNewConnection(ByteBuffer packetBytes, int version, int dcidLength) {
         // https://tools.ietf.org/html/draft-ietf-quic-transport-32#section-7.2
         // "This Destination Connection ID MUST be at least 8 bytes in length."
-        if (dcid.length >= 8) {
+        if (dcidLength >= 8) {
             return supportedVersionIds.contains(version);
         } else {
             return false;
@@ -314,7 +440,7 @@ public class ServerConnectorImpl implements ServerConnector {
             DatagramPacket datagram = new DatagramPacket(packetBytes, packetBytes.length, clientAddress.getAddress(), clientAddress.getPort());
             try {
                 serverSocket.send(datagram);
-                log.sent(Instant.now(), versionNegotiationPacket);
+                log.sent(MonotonicClock.instance().instant(), versionNegotiationPacket);
             } catch (IOException e) {
                 log.error("Sending version negotiation packet failed", e);
             }
@@ -352,6 +478,12 @@ public class ServerConnectorImpl implements ServerConnector {
         private String certificateAlias;
         private char[] privateKeyPassword;
         private String ecCurve;
+        private int reusePortSockets = 1;
+        private int eventLoops = 0;
+        private ThreadFactory threadFactory;
+        private ReceiveQueueConfig receiveQueueConfig;
+        private ReceiveQueueConfig connectionQueueConfig;
+        private long memoryBudget;
 
         @Override
         public ServerConnector.Builder withPort(int port) {
@@ -423,6 +555,61 @@ public class ServerConnectorImpl implements ServerConnector {
             return this;
         }
 
+        @Override
+        public ServerConnector.Builder withReusePortSockets(int count) {
+            if (count < 1) {
+                throw new IllegalArgumentException("number of sockets must be at least 1");
+            }
+            this.reusePortSockets = count;
+            return this;
+        }
+
+        @Override
+        public ServerConnector.Builder withEventLoops(int count) {
+            if (count < 0) {
+                throw new IllegalArgumentException("number of event loops cannot be negative");
+            }
+            this.eventLoops = count;
+            return this;
+        }
+
+        @Override
+        public ServerConnector.Builder withThreadFactory(ThreadFactory threadFactory) {
+            this.threadFactory = threadFactory;
+            return this;
+        }
+
+        @Override
+        public ServerConnector.Builder withReceiveQueue(int capacity, WaitStrategy waitStrategy) {
+            return withReceiveQueue(capacity, waitStrategy, DropPolicy.DROP_NEWEST);
+        }
+
+        @Override
+        public ServerConnector.Builder withReceiveQueue(int capacity, WaitStrategy waitStrategy, DropPolicy dropPolicy) {
+            this.receiveQueueConfig = new ReceiveQueueConfig(capacity, waitStrategy, dropPolicy);
+            return this;
+        }
+
+        @Override
+        public ServerConnector.Builder withConnectionReceiveQueue(int capacity, WaitStrategy waitStrategy) {
+            return withConnectionReceiveQueue(capacity, waitStrategy, DropPolicy.DROP_NEWEST);
+        }
+
+        @Override
+        public ServerConnector.Builder withConnectionReceiveQueue(int capacity, WaitStrategy waitStrategy, DropPolicy dropPolicy) {
+            this.connectionQueueConfig = new ReceiveQueueConfig(capacity, waitStrategy, dropPolicy);
+            return this;
+        }
+
+        @Override
+        public ServerConnector.Builder withMemoryBudget(long bytes) {
+            if (bytes <= 0) {
+                throw new IllegalArgumentException("memory budget must be positive");
+            }
+            this.memoryBudget = bytes;
+            return this;
+        }
+
         @Override
         public ServerConnector build() throws Exception {
             if (port == 0) {
@@ -432,14 +619,31 @@ public class ServerConnectorImpl implements ServerConnector {
                 throw new IllegalStateException("server certificate not set");
             }
 
-            if (socket == null) {
-                socket = new DatagramSocket(port);
+            if (socket != null && reusePortSockets > 1) {
+                throw new IllegalStateException("multiple sockets cannot be combined with a given socket");
+            }
+
+            List<DatagramSocket> sockets = new ArrayList<>();
+            if (socket != null) {
+                sockets.add(socket);
+            }
+            else if (reusePortSockets == 1) {
+                // A socket backed by a channel lets the receiver use pooled (direct) buffers for receiving datagrams.
+                sockets.add(DatagramChannel.open().bind(new InetSocketAddress(port)).socket());
+            }
+            else {
+                for (int i = 0; i < reusePortSockets; i++) {
+                    DatagramChannel channel = DatagramChannel.open();
+                    // Throws UnsupportedOperationException when the platform does not support SO_REUSEPORT
+                    channel.setOption(StandardSocketOptions.SO_REUSEPORT, true);
+                    sockets.add(channel.bind(new InetSocketAddress(port)).socket());
+                }
             }
             if (keyStore != null) {
-                return new ServerConnectorImpl(socket, keyStore, certificateAlias, privateKeyPassword, ecCurve, supportedVersions, configuration, log);
+                return new ServerConnectorImpl(sockets, keyStore, certificateAlias, privateKeyPassword, ecCurve, supportedVersions, configuration, eventLoops, threadFactory, receiveQueueConfig, connectionQueueConfig, memoryBudget, log);
             }
             else {
-                return new ServerConnectorImpl(socket, certificateFile, certificateKeyFile, supportedVersions, configuration, log);
+                return new ServerConnectorImpl(sockets, certificateFile, certificateKeyFile, supportedVersions, configuration, eventLoops, threadFactory, receiveQueueConfig, connectionQueueConfig, memoryBudget, log);
             }
         }
     }
@@ -0,0 +1,69 @@
+/*
+ * Copyright © 2024 Peter Doornbosch
+ *
+ * This file is part of Kwik, an implementation of the QUIC protocol in Java.
+ *
+ * Kwik is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * Kwik is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.luminis.quic.stream;
+
+import net.luminis.quic.frame.AcknowledgeableFrame;
+import net.luminis.quic.frame.StreamFrame;
+import net.luminis.quic.impl.Version;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Stream frame that refers to the data in the send buffer of the stream, instead of holding a copy of the data. When
+ * the frame is acknowledged, the range it covers is acknowledged in the send buffer.
+ */
+class BufferedStreamFrame extends StreamFrame implements AcknowledgeableFrame {
+
+    private final SendBuffer sendBuffer;
+    private final ByteBuffer[] data;
+    private volatile boolean acknowledged;
+
+    BufferedStreamFrame(Version quicVersion, int streamId, long streamOffset, SendBuffer sendBuffer, int dataLength, boolean fin) {
+        super(quicVersion, streamId, streamOffset, dataLength, fin);
+        this.sendBuffer = sendBuffer;
+        data = sendBuffer.slice(streamOffset, dataLength);
+    }
+
+    @Override
+    protected void serializeData(ByteBuffer buffer) {
+        for (ByteBuffer slice : data) {
+            buffer.put(slice.duplicate());
+        }
+    }
+
+    @Override
+    public byte[] getStreamData() {
+        byte[] streamData = new byte[getLength()];
+        ByteBuffer buffer = ByteBuffer.wrap(streamData);
+        for (ByteBuffer slice : data) {
+            buffer.put(slice.duplicate());
+        }
+        return streamData;
+    }
+
+    @Override
+    public void acknowledged() {
+        acknowledged = true;
+        sendBuffer.acknowledged(getOffset(), getLength());
+    }
+
+    boolean isAcknowledged() {
+        return acknowledged;
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright © 2024 Peter Doornbosch
+ *
+ * This file is part of Kwik, an implementation of the QUIC protocol in Java.
+ *
+ * Kwik is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * Kwik is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.luminis.quic.stream;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Pool of fixed size byte arrays that receive buffers use to store stream data, to avoid allocating new arrays for
+ * each stream (frame) received. Chunks are allocated on demand; when released, a chunk is kept for reuse as long as the
+ * pool has not reached its maximum size. Chunks are not cleared when released, so users must only read the bytes they
+ * wrote themselves. Chunks that are not released are simply garbage collected; releasing a chunk that is still in use
+ * however, is not harmless.
+ */
+class ChunkPool {
+
+    private final int chunkSize;
+    private final BlockingQueue<byte[]> freeChunks;
+
+    ChunkPool(int chunkSize, int maxPooledChunks) {
+        if (chunkSize <= 0 || maxPooledChunks <= 0) {
+            throw new IllegalArgumentException();
+        }
+        this.chunkSize = chunkSize;
+        freeChunks = new ArrayBlockingQueue<>(maxPooledChunks);
+    }
+
+    byte[] acquire() {
+        byte[] chunk = freeChunks.poll();
+        if (chunk == null) {
+            chunk = new byte[chunkSize];
+        }
+        return chunk;
+    }
+
+    /**
+     * Returns the given chunk to the pool. The caller must not use the chunk anymore.
+     * @param chunk
+     */
+    void release(byte[] chunk) {
+        if (chunk.length == chunkSize) {
+            freeChunks.offer(chunk);
+        }
+    }
+
+    int getChunkSize() {
+        return chunkSize;
+    }
+
+    int pooledChunks() {
+        return freeChunks.size();
+    }
+}
@@ -0,0 +1,285 @@
+/*
+ * Copyright © 2024 Peter Doornbosch
+ *
+ * This file is part of Kwik, an implementation of the QUIC protocol in Java.
+ *
+ * Kwik is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * Kwik is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.luminis.quic.stream;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A receive buffer that stores stream data in fixed size chunks that are addressed by stream offset, so frames can be
+ * received in any order without the need to combine (i.e. copy) frames. Received ranges that are not yet contiguous
+ * with the data that can be read, are registered in an interval set; data that was already received (duplicate or
+ * overlapping frames) is detected by range arithmetic and is not buffered again. Chunks are taken from a pool that is
+ * shared by all streams and are returned to the pool as soon as all data in the chunk is read. Data can also be read
+ * without copying, by borrowing views on the chunks, in which case the data is consumed when it is released; chunks
+ * that have been handed out as views are left to the garbage collector instead of being returned to the pool.
+ * The add, read, borrow, release and discardAllData methods modify the buffer and must not be called concurrently (the stream input
+ * stream calls them while holding its lock); the other methods can be called by any thread.
+ */
+public class ChunkedReceiveBuffer implements ReceiveBuffer {
+
+    private static final ChunkPool DEFAULT_POOL = new ChunkPool(4096, 1024);
+
+    private final ChunkPool pool;
+    private final int chunkSize;
+    // Ring of chunks, indexed by chunk number (stream offset divided by chunk size); length is always a power of two.
+    private byte[][] chunks = new byte[4][];
+    // Number of the first chunk that can contain unread data.
+    private long firstChunk;
+    // Ranges received beyond the contiguous offset.
+    private final IntervalSet outOfOrderRanges = new IntervalSet();
+    private volatile long readOffset;
+    private volatile long contiguousOffset;
+    private volatile long streamEndOffset = -1;
+    private volatile long bufferedOutOfOrderData;
+    private volatile boolean discarded;
+    // End of the data that has been handed out as views; chunks containing such data might still be referenced by the
+    // application (even after the data is released), so they are never returned to the pool.
+    private long borrowedEndOffset;
+
+    public ChunkedReceiveBuffer() {
+        this(DEFAULT_POOL);
+    }
+
+    ChunkedReceiveBuffer(ChunkPool pool) {
+        this.pool = pool;
+        chunkSize = pool.getChunkSize();
+    }
+
+    @Override
+    public boolean add(StreamElement frame) {
+        if (discarded) {
+            return false;
+        }
+        if (frame.isFinal()) {
+            streamEndOffset = frame.getUpToOffset();
+        }
+        long previousContiguousOffset = contiguousOffset;
+        // Data before the contiguous offset is already received, so can be ignored.
+        long start = Long.max(frame.getOffset(), contiguousOffset);
+        long end = frame.getUpToOffset();
+        if (end > start && !outOfOrderRanges.contains(start, end)) {
+            store(frame.getStreamData(), (int) (start - frame.getOffset()), start, end);
+            if (start == contiguousOffset) {
+                long newContiguousOffset = end;
+                while (!outOfOrderRanges.isEmpty() && outOfOrderRanges.firstStart() <= newContiguousOffset) {
+                    newContiguousOffset = Long.max(newContiguousOffset, outOfOrderRanges.firstEnd());
+                    outOfOrderRanges.removeFirst();
+                }
+                contiguousOffset = newContiguousOffset;
+            }
+            else {
+                outOfOrderRanges.add(start, end);
+            }
+            bufferedOutOfOrderData = outOfOrderRanges.coveredBytes();
+        }
+        return contiguousOffset > previousContiguousOffset;
+    }
+
+    @Override
+    public long bytesAvailable() {
+        return contiguousOffset - readOffset;
+    }
+
+    @Override
+    public long bufferedOutOfOrderData() {
+        return bufferedOutOfOrderData;
+    }
+
+    @Override
+    public boolean allRead() {
+        return streamEndOffset >= 0 && readOffset == streamEndOffset;
+    }
+
+    @Override
+    public int read(ByteBuffer buffer) {
+        if (allRead()) {
+            return -1;
+        }
+        if (discarded) {
+            return 0;
+        }
+
+        int totalBytesRead = 0;
+        long offset = readOffset;
+        while (buffer.hasRemaining() && offset < contiguousOffset) {
+            int positionInChunk = (int) (offset % chunkSize);
+            int count = (int) Long.min(Long.min(buffer.remaining(), chunkSize - positionInChunk), contiguousOffset - offset);
+            buffer.put(chunks[index(offset / chunkSize)], positionInChunk, count);
+            offset += count;
+            totalBytesRead += count;
+        }
+        consume(totalBytesRead);
+        return totalBytesRead;
+    }
+
+    /**
+     * Reads a single byte.
+     * @return  the byte (as value in the range 0 to 255), -1 if the end of the stream has been reached or -2 if no data
+     * is available.
+     */
+    public int read() {
+        if (allRead()) {
+            return -1;
+        }
+        if (discarded || readOffset == contiguousOffset) {
+            return -2;
+        }
+        int value = chunks[index(readOffset / chunkSize)][(int) (readOffset % chunkSize)] & 0xff;
+        consume(1);
+        return value;
+    }
+
+    /**
+     * Returns read-only views on the data that is available for reading, without copying and without consuming it:
+     * the data stays in the buffer (and is returned again by a next borrow or read) until it is released with
+     * {@link #release(int)}. The views must not be used after the data they refer to is released.
+     * @param maxBytes  the maximum number of bytes to return
+     * @return  the views on the data, one for each chunk the data is stored in; an empty array if no data is available.
+     */
+    public ByteBuffer[] borrow(int maxBytes) {
+        long end = Long.min(contiguousOffset, readOffset + maxBytes);
+        if (discarded || end <= readOffset) {
+            return new ByteBuffer[0];
+        }
+        long firstChunkNumber = readOffset / chunkSize;
+        ByteBuffer[] slices = new ByteBuffer[(int) ((end - 1) / chunkSize - firstChunkNumber + 1)];
+        long offset = readOffset;
+        for (int i = 0; i < slices.length; i++) {
+            int positionInChunk = (int) (offset % chunkSize);
+            int count = (int) Long.min(chunkSize - positionInChunk, end - offset);
+            slices[i] = ByteBuffer.wrap(chunks[index(firstChunkNumber + i)], positionInChunk, count).slice().asReadOnlyBuffer();
+            offset += count;
+        }
+        borrowedEndOffset = Long.max(borrowedEndOffset, end);
+        return slices;
+    }
+
+    /**
+     * Releases (i.e. consumes) the given number of bytes from the start of the data available for reading.
+     * @param count
+     */
+    public void release(int count) {
+        if (count < 0 || count > bytesAvailable()) {
+            throw new IllegalArgumentException("cannot release more bytes than available");
+        }
+        consume(count);
+    }
+
+    /**
+     * @return  whether data has been borrowed that is not yet released.
+     */
+    boolean isBorrowed() {
+        return readOffset < borrowedEndOffset && !discarded;
+    }
+
+    @Override
+    public boolean allDataReceived() {
+        return streamEndOffset >= 0 && contiguousOffset == streamEndOffset;
+    }
+
+    @Override
+    public long readOffset() {
+        return readOffset;
+    }
+
+    @Override
+    public void discardAllData() {
+        discarded = true;
+        outOfOrderRanges.clear();
+        bufferedOutOfOrderData = 0;
+        releaseAllChunks();
+    }
+
+    /**
+     * @return  the number of chunks currently held by this buffer.
+     */
+    int allocatedChunks() {
+        int count = 0;
+        for (byte[] chunk : chunks) {
+            if (chunk != null) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private void consume(long count) {
+        long newReadOffset = readOffset + count;
+        long newFirstChunk = newReadOffset / chunkSize;
+        for (long chunkNumber = firstChunk; chunkNumber < newFirstChunk; chunkNumber++) {
+            releaseChunk(chunkNumber);
+        }
+        firstChunk = newFirstChunk;
+        readOffset = newReadOffset;
+        if (allRead()) {
+            releaseAllChunks();
+        }
+    }
+
+    private void store(byte[] data, int dataOffset, long start, long end) {
+        ensureCapacity((end - 1) / chunkSize);
+        while (start < end) {
+            long chunkNumber = start / chunkSize;
+            int positionInChunk = (int) (start % chunkSize);
+            int count = (int) Long.min(chunkSize - positionInChunk, end - start);
+            int index = index(chunkNumber);
+            if (chunks[index] == null) {
+                chunks[index] = pool.acquire();
+            }
+            System.arraycopy(data, dataOffset, chunks[index], positionInChunk, count);
+            dataOffset += count;
+            start += count;
+        }
+    }
+
+    private void ensureCapacity(long lastChunk) {
+        if (lastChunk - firstChunk >= chunks.length) {
+            int newLength = chunks.length;
+            while (lastChunk - firstChunk >= newLength) {
+                newLength *= 2;
+            }
+            byte[][] newChunks = new byte[newLength][];
+            for (long chunkNumber = firstChunk; chunkNumber < firstChunk + chunks.length; chunkNumber++) {
+                newChunks[(int) (chunkNumber & (newLength - 1))] = chunks[index(chunkNumber)];
+            }
+            chunks = newChunks;
+        }
+    }
+
+    private int index(long chunkNumber) {
+        return (int) (chunkNumber & (chunks.length - 1));
+    }
+
+    private void releaseChunk(long chunkNumber) {
+        int index = index(chunkNumber);
+        if (chunks[index] != null) {
+            if (chunkNumber * chunkSize >= borrowedEndOffset) {
+                pool.release(chunks[index]);
+            }
+            // else: views on the chunk might still be in use, so it must not be reused.
+            chunks[index] = null;
+        }
+    }
+
+    private void releaseAllChunks() {
+        for (long chunkNumber = firstChunk; chunkNumber < firstChunk + chunks.length; chunkNumber++) {
+            releaseChunk(chunkNumber);
+        }
+    }
+}
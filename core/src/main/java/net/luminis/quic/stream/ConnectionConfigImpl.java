@@ -30,6 +30,8 @@ public class ConnectionConfigImpl implements ConnectionConfig {
     private final long maxConnectionBufferSize;
     private final long maxUnidirectionalStreamBufferSize;
     private final long maxBidirectionalStreamBufferSize;
+    private final long maxConnectionReceiveWindow;
+    private final long maxStreamReceiveWindow;
 
     public static ConnectionConfig cloneWithMaxUnidirectionalStreamReceiveBufferSize(ConnectionConfig config, long maxUnidirectionalStreamBufferSize) {
         return new ConnectionConfigImpl(
@@ -40,7 +42,9 @@ public class ConnectionConfigImpl implements ConnectionConfig {
                 config.maxTotalPeerInitiatedBidirectionalStreams(),
                 config.maxConnectionBufferSize(),
                 maxUnidirectionalStreamBufferSize,
-                config.maxBidirectionalStreamBufferSize());
+                config.maxBidirectionalStreamBufferSize(),
+                config.maxConnectionReceiveWindow(),
+                config.maxStreamReceiveWindow());
     }
 
     public static ConnectionConfig cloneWithMaxBidirectionalStreamReceiveBufferSize(ConnectionConfig config, long maxBidirectionalStreamBufferSize) {
@@ -52,14 +56,17 @@ public class ConnectionConfigImpl implements ConnectionConfig {
                 config.maxTotalPeerInitiatedBidirectionalStreams(),
                 config.maxConnectionBufferSize(),
                 config.maxUnidirectionalStreamBufferSize(),
-                maxBidirectionalStreamBufferSize);
+                maxBidirectionalStreamBufferSize,
+                config.maxConnectionReceiveWindow(),
+                config.maxStreamReceiveWindow());
     }
 
     private ConnectionConfigImpl(int maxIdleTimeout,
                                  int maxOpenUnidirectionalStreams, long maxTotalUnidirectionalStreams,
                                  int maxOpenBidirectionalStreams, long maxTotalBidirectionalStreams,
                                  long maxConnectionBufferSize,
-                                 long maxUnidirectionalStreamBufferSize, long maxBidirectionalStreamBufferSize) {
+                                 long maxUnidirectionalStreamBufferSize, long maxBidirectionalStreamBufferSize,
+                                 long maxConnectionReceiveWindow, long maxStreamReceiveWindow) {
         this.maxIdleTimeout = maxIdleTimeout;
         this.maxOpenUnidirectionalStreams = maxOpenUnidirectionalStreams;
         this.maxTotalUnidirectionalStreams = maxTotalUnidirectionalStreams;
@@ -68,6 +75,8 @@ public class ConnectionConfigImpl implements ConnectionConfig {
         this.maxConnectionBufferSize = maxConnectionBufferSize;
         this.maxUnidirectionalStreamBufferSize = maxUnidirectionalStreamBufferSize;
         this.maxBidirectionalStreamBufferSize = maxBidirectionalStreamBufferSize;
+        this.maxConnectionReceiveWindow = maxConnectionReceiveWindow;
+        this.maxStreamReceiveWindow = maxStreamReceiveWindow;
     }
 
     @Override
@@ -109,4 +118,14 @@ public class ConnectionConfigImpl implements ConnectionConfig {
     public long maxBidirectionalStreamBufferSize() {
         return maxBidirectionalStreamBufferSize;
     }
+
+    @Override
+    public long maxConnectionReceiveWindow() {
+        return maxConnectionReceiveWindow;
+    }
+
+    @Override
+    public long maxStreamReceiveWindow() {
+        return maxStreamReceiveWindow;
+    }
 }
@@ -0,0 +1,170 @@
+/*
+ * Copyright © 2024 Peter Doornbosch
+ *
+ * This file is part of Kwik, an implementation of the QUIC protocol in Java.
+ *
+ * Kwik is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * Kwik is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.luminis.quic.stream;
+
+import java.util.Arrays;
+
+/**
+ * Set of non-overlapping ranges of (stream) offsets, stored compactly as a sorted array of start and end offsets.
+ * Adjacent or overlapping ranges are merged when added, so the number of ranges is the number of gaps (plus one);
+ * lookups are binary searches and adding a range only moves array elements when ranges are inserted or merged.
+ * Ranges are half-open: the start offset is included, the end offset is not.
+ * Not thread-safe.
+ */
+class IntervalSet {
+
+    // Start and end offsets of the ranges: bounds[2*i] is the start and bounds[2*i+1] the end of range i.
+    private long[] bounds = new long[8];
+    private int count;
+    private long coveredBytes;
+
+    /**
+     * Adds the given range to the set.
+     * @param start
+     * @param end
+     * @return  the number of offsets that were not yet covered by the set
+     */
+    long add(long start, long end) {
+        if (end <= start) {
+            return 0;
+        }
+        // Ranges first..last-1 overlap with or are adjacent to the new range
+        int first = firstEndingAtOrAfter(start);
+        int last = firstStartingAfter(end);
+        long alreadyCovered = 0;
+        for (int i = first; i < last; i++) {
+            alreadyCovered += bounds[2 * i + 1] - bounds[2 * i];
+        }
+        if (first < last) {
+            start = Long.min(start, bounds[2 * first]);
+            end = Long.max(end, bounds[2 * (last - 1) + 1]);
+        }
+        int removed = last - first;
+        if (removed == 0) {
+            if (2 * (count + 1) > bounds.length) {
+                bounds = Arrays.copyOf(bounds, bounds.length * 2);
+            }
+            System.arraycopy(bounds, 2 * first, bounds, 2 * (first + 1), 2 * (count - first));
+            count++;
+        }
+        else if (removed > 1) {
+            System.arraycopy(bounds, 2 * last, bounds, 2 * (first + 1), 2 * (count - last));
+            count -= removed - 1;
+        }
+        bounds[2 * first] = start;
+        bounds[2 * first + 1] = end;
+        long added = (end - start) - alreadyCovered;
+        coveredBytes += added;
+        return added;
+    }
+
+    /**
+     * @return  whether the given range is completely covered by the set.
+     */
+    boolean contains(long start, long end) {
+        int index = firstEndingAtOrAfter(end);
+        return index < count && bounds[2 * index] <= start;
+    }
+
+    boolean isEmpty() {
+        return count == 0;
+    }
+
+    /**
+     * @return  the number of (non-adjacent) ranges in the set
+     */
+    int size() {
+        return count;
+    }
+
+    /**
+     * @return  the total number of offsets covered by the ranges in the set
+     */
+    long coveredBytes() {
+        return coveredBytes;
+    }
+
+    /**
+     * Returns the start of the first range; only valid when the set is not empty.
+     */
+    long firstStart() {
+        return bounds[0];
+    }
+
+    /**
+     * Returns the end of the first range; only valid when the set is not empty.
+     */
+    long firstEnd() {
+        return bounds[1];
+    }
+
+    void removeFirst() {
+        if (count > 0) {
+            coveredBytes -= bounds[1] - bounds[0];
+            System.arraycopy(bounds, 2, bounds, 0, 2 * (count - 1));
+            count--;
+        }
+    }
+
+    void clear() {
+        count = 0;
+        coveredBytes = 0;
+    }
+
+    // Returns the index of the first range that ends at or after the given offset, or count if there is none.
+    private int firstEndingAtOrAfter(long offset) {
+        int low = 0;
+        int high = count;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (bounds[2 * mid + 1] < offset) {
+                low = mid + 1;
+            }
+            else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    // Returns the index of the first range that starts after the given offset, or count if there is none.
+    private int firstStartingAfter(long offset) {
+        int low = 0;
+        int high = count;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (bounds[2 * mid] <= offset) {
+                low = mid + 1;
+            }
+            else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            builder.append(i > 0? " ": "").append(bounds[2 * i]).append("..").append(bounds[2 * i + 1] - 1);
+        }
+        return builder.toString();
+    }
+}
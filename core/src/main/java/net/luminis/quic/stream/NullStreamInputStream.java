@@ -22,6 +22,8 @@ import net.luminis.quic.frame.StreamFrame;
 import net.luminis.quic.impl.TransportError;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.CompletableFuture;
 
 public class NullStreamInputStream extends StreamInputStream {
 
@@ -52,4 +54,26 @@ public class NullStreamInputStream extends StreamInputStream {
     public int read() throws IOException {
         return -1;
     }
+
+    @Override
+    public ByteBuffer[] borrow(int maxBytes) {
+        return new ByteBuffer[0];
+    }
+
+    @Override
+    public void release(int bytes) {
+        if (bytes != 0) {
+            throw new IllegalArgumentException("cannot release more bytes than available");
+        }
+    }
+
+    @Override
+    public int readNonBlocking(ByteBuffer buffer) {
+        return -1;
+    }
+
+    @Override
+    public CompletableFuture<Void> whenReadable() {
+        return CompletableFuture.completedFuture(null);
+    }
 }
@@ -19,6 +19,8 @@
 package net.luminis.quic.stream;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.CompletableFuture;
 
 public class NullStreamOutputStream extends StreamOutputStream {
 
@@ -42,4 +44,14 @@ public class NullStreamOutputStream extends StreamOutputStream {
     public void write(int b) throws IOException {
         throw new IOException("Stream is not writable");
     }
+
+    @Override
+    public int writeNonBlocking(ByteBuffer data) throws IOException {
+        throw new IOException("Stream is not writable");
+    }
+
+    @Override
+    public CompletableFuture<Void> whenWritable() {
+        return CompletableFuture.completedFuture(null);
+    }
 }
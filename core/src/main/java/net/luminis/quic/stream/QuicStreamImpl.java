@@ -21,15 +21,23 @@ package net.luminis.quic.stream;
 import net.luminis.quic.QuicConstants;
 import net.luminis.quic.QuicStream;
 import net.luminis.quic.frame.StreamFrame;
+import net.luminis.quic.impl.ConnectionMemory;
 import net.luminis.quic.impl.QuicConnectionImpl;
 import net.luminis.quic.impl.Role;
 import net.luminis.quic.impl.TransportError;
 import net.luminis.quic.impl.Version;
 import net.luminis.quic.log.Logger;
 import net.luminis.quic.log.NullLogger;
+import net.luminis.quic.util.MonotonicClock;
 
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
 import java.util.concurrent.locks.ReentrantLock;
 
 
@@ -40,9 +48,13 @@ public class QuicStreamImpl implements QuicStream {
     protected final Role role;
     protected final QuicConnectionImpl connection;
     private final StreamManager streamManager;
+    private final ConnectionMemory connectionMemory;
     protected final Logger log;
     private final StreamInputStream inputStream;
     private final StreamOutputStream outputStream;
+    private final ReadableByteChannel readableChannel;
+    private final WritableByteChannel writableChannel;
+    private final StreamPublisher publisher;
     private volatile boolean outputClosed;
     private volatile boolean inputClosed;
     private final ReentrantLock stateLock;
@@ -67,9 +79,12 @@ public class QuicStreamImpl implements QuicStream {
         this.connection = connection;
         this.streamManager = streamManager;
         this.log = log;
+        ConnectionMemory memory = streamManager.getConnectionMemory();
+        connectionMemory = memory != null? memory: ConnectionMemory.unlimited();
 
         if (isBidirectional() || isUnidirectional() && isPeerInitiated()) {
-            inputStream = new StreamInputStreamImpl(this, determineInitialReceiveBufferSize());
+            ReceiveWindow receiveWindow = new ReceiveWindow(determineInitialReceiveBufferSize(), streamManager.getMaxStreamReceiveWindow(), MonotonicClock.instance(), connectionMemory);
+            inputStream = new StreamInputStreamImpl(this, receiveWindow, connectionMemory);
         }
         else {
             inputStream = new NullStreamInputStream();
@@ -81,6 +96,9 @@ public class QuicStreamImpl implements QuicStream {
         else {
             outputStream = new NullStreamOutputStream();
         }
+        readableChannel = new StreamReadableChannel(inputStream);
+        writableChannel = new StreamWritableChannel(outputStream);
+        publisher = new StreamPublisher(inputStream);
 
         stateLock = new ReentrantLock();
     }
@@ -99,11 +117,46 @@ public class QuicStreamImpl implements QuicStream {
         return inputStream;
     }
 
+    @Override
+    public ByteBuffer[] borrowData(int maxBytes) throws IOException {
+        return inputStream.borrow(maxBytes);
+    }
+
+    @Override
+    public void releaseData(int bytes) {
+        inputStream.release(bytes);
+    }
+
     @Override
     public OutputStream getOutputStream() {
         return outputStream;
     }
 
+    @Override
+    public ReadableByteChannel getReadableChannel() {
+        return readableChannel;
+    }
+
+    @Override
+    public WritableByteChannel getWritableChannel() {
+        return writableChannel;
+    }
+
+    @Override
+    public CompletableFuture<Void> whenReadable() {
+        return inputStream.whenReadable();
+    }
+
+    @Override
+    public CompletableFuture<Void> whenWritable() {
+        return outputStream.whenWritable();
+    }
+
+    @Override
+    public Flow.Publisher<ByteBuffer> getPublisher() {
+        return publisher;
+    }
+
     /**
      * Adds data from a newly received frame to the stream.
      *
@@ -220,6 +273,17 @@ public class QuicStreamImpl implements QuicStream {
         streamManager.updateConnectionFlowControl(bytesRead);
     }
 
+    ConnectionMemory getConnectionMemory() {
+        return connectionMemory;
+    }
+
+    /**
+     * @return  the smoothed RTT of the connection in microseconds, or 0 when not known
+     */
+    long getSmoothedRttMicros() {
+        return streamManager.getSmoothedRttMicros();
+    }
+
     void outputClosed() {
         try {
             stateLock.lock();
@@ -42,6 +42,12 @@ public interface ReceiveBuffer {
      */
     long bytesAvailable();
 
+    /**
+     * Returns the number of bytes that are buffered but cannot be read yet, because of gaps in the received data.
+     * @return
+     */
+    long bufferedOutOfOrderData();
+
     /**
      * Returns whether all bytes of the stream have been read.
      * As long as the end of the stream is not yet known, this method will return false.
@@ -152,6 +152,7 @@ public class ReceiveBufferImpl implements ReceiveBuffer {
         }
     }
 
+    @Override
     public long bufferedOutOfOrderData() {
         return bufferedOutOfOrderData;
     }
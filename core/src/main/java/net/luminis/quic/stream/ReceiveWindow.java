@@ -0,0 +1,139 @@
+/*
+ * Copyright © 2024 Peter Doornbosch
+ *
+ * This file is part of Kwik, an implementation of the QUIC protocol in Java.
+ *
+ * Kwik is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * Kwik is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.luminis.quic.stream;
+
+import net.luminis.quic.impl.ConnectionMemory;
+import net.luminis.quic.util.MonotonicClock;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Receive (flow control) window that is auto-tuned to the rate at which the application consumes data: when a whole
+ * window is read within two round trips, the peer is (most likely) blocked by flow control, so the window is doubled
+ * (up to the configured maximum). When no data is read for a while, the window shrinks back to its initial size, to
+ * avoid idle connections and streams keeping large windows they do not use.
+ * Similar to the window auto-tuning in quiche and msquic.
+ * When memory is tight (see {@link ConnectionMemory#allowedWindow(long, long)}), the window that is granted is reduced.
+ * Note that the flow control limit itself never decreases, as credit that has been given to the peer cannot be taken
+ * back; a smaller window only means that the limit increases less when data is read.
+ */
+class ReceiveWindow {
+
+    // Minimum period without reads after which the window is reset to its initial size.
+    static final Duration MIN_IDLE_PERIOD = Duration.ofSeconds(1);
+    // Number of round trips without reads after which the window is reset to its initial size (if that is longer than the minimum).
+    static final int IDLE_RTT_COUNT = 8;
+
+    private final Clock clock;
+    private final long initialSize;
+    private final long maxSize;
+    private final ConnectionMemory memory;
+    private long size;
+    private long limit;
+    private Instant epochStart;
+    private long epochStartOffset;
+    private Instant lastRead;
+
+    /**
+     * Creates a receive window with a fixed size.
+     * @param size
+     */
+    ReceiveWindow(long size) {
+        this(size, size, MonotonicClock.instance(), ConnectionMemory.unlimited());
+    }
+
+    ReceiveWindow(long initialSize, long maxSize, Clock clock) {
+        this(initialSize, maxSize, clock, ConnectionMemory.unlimited());
+    }
+
+    /**
+     * @param initialSize  initial window size, i.e. the size of the initial flow control credit
+     * @param maxSize  the size to which the window can be grown at most; if not larger than the initial size, the
+     *                 window is not auto-tuned
+     * @param clock
+     * @param memory  the memory account that determines how much of the window can be granted
+     */
+    ReceiveWindow(long initialSize, long maxSize, Clock clock, ConnectionMemory memory) {
+        this.clock = clock;
+        this.memory = memory;
+        this.initialSize = initialSize;
+        this.maxSize = Long.max(initialSize, maxSize);
+        size = initialSize;
+        limit = initialSize;
+        epochStart = clock.instant();
+        lastRead = epochStart;
+    }
+
+    /**
+     * Registers that data has been read (consumed) by the application and determines the new flow control limit.
+     * @param readOffset  offset up to which data has been read
+     * @param smoothedRtt  smoothed RTT in microseconds, or 0 when not known
+     * @return  the new flow control limit
+     */
+    long dataRead(long readOffset, long smoothedRtt) {
+        return dataRead(readOffset, smoothedRtt, 0);
+    }
+
+    /**
+     * Like {@link #dataRead(long, long)}, with the number of bytes that are buffered but not yet read, which determines
+     * whether credit can be withheld when memory is tight.
+     * @param readOffset
+     * @param smoothedRtt
+     * @param bufferedBytes
+     * @return  the new flow control limit
+     */
+    long dataRead(long readOffset, long smoothedRtt, long bufferedBytes) {
+        if (maxSize > initialSize) {
+            Instant now = clock.instant();
+            if (Duration.between(lastRead, now).compareTo(idlePeriod(smoothedRtt)) > 0) {
+                size = initialSize;
+                startEpoch(now, readOffset);
+            }
+            lastRead = now;
+            if (readOffset - epochStartOffset >= size) {
+                if (smoothedRtt > 0 && Duration.between(epochStart, now).toNanos() / 1000 < 2 * smoothedRtt) {
+                    size = Long.min(2 * size, maxSize);
+                }
+                startEpoch(now, readOffset);
+            }
+        }
+        limit = Long.max(limit, readOffset + memory.allowedWindow(size, bufferedBytes));
+        return limit;
+    }
+
+    long getSize() {
+        return size;
+    }
+
+    long getLimit() {
+        return limit;
+    }
+
+    private void startEpoch(Instant now, long readOffset) {
+        epochStart = now;
+        epochStartOffset = readOffset;
+    }
+
+    private Duration idlePeriod(long smoothedRtt) {
+        Duration rttBasedPeriod = Duration.ofNanos(smoothedRtt * 1000 * IDLE_RTT_COUNT);
+        return rttBasedPeriod.compareTo(MIN_IDLE_PERIOD) > 0? rttBasedPeriod: MIN_IDLE_PERIOD;
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright © 2024 Peter Doornbosch
+ *
+ * This file is part of Kwik, an implementation of the QUIC protocol in Java.
+ *
+ * Kwik is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * Kwik is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.luminis.quic.stream;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Buffer for the data of a send stream, addressed by stream offset. Data is stored in fixed size chunks; it is copied
+ * into the buffer once (when written) and stream frames refer to (read-only) slices of the chunks, so the data does not
+ * need to be copied again for sending or retransmitting a frame. Chunks are released as soon as all data they contain
+ * has been acknowledged by the peer. Frames that are still in flight (e.g. a copy sent in a probe) keep a reference to
+ * the chunks they refer to, so releasing a chunk never invalidates a frame.
+ * Thread-safe: data is written by the application, read by the sender and acknowledged by the receiver thread.
+ */
+class SendBuffer {
+
+    static final int CHUNK_SIZE = 16 * 1024;
+
+    private final List<byte[]> chunks = new ArrayList<>();
+    // Stream offset of the first byte of the first chunk; always a multiple of the chunk size.
+    private long startOffset;
+    // Stream offset of the next byte that will be written.
+    private long writeOffset;
+    // All data below this offset is acknowledged.
+    private long ackedOffset;
+    // Acknowledged ranges above the acked offset.
+    private final IntervalSet ackedRanges = new IntervalSet();
+
+    void write(byte[] data, int offset, int length) {
+        write(ByteBuffer.wrap(data, offset, length));
+    }
+
+    /**
+     * Copies the remaining bytes of the given buffer into this buffer; the position of the given buffer is advanced
+     * accordingly.
+     * @param data
+     */
+    synchronized void write(ByteBuffer data) {
+        while (data.hasRemaining()) {
+            int positionInChunk = (int) ((writeOffset - startOffset) % CHUNK_SIZE);
+            if (positionInChunk == 0 && writeOffset - startOffset == (long) chunks.size() * CHUNK_SIZE) {
+                chunks.add(new byte[CHUNK_SIZE]);
+            }
+            byte[] chunk = chunks.get(chunks.size() - 1);
+            int count = Integer.min(data.remaining(), CHUNK_SIZE - positionInChunk);
+            data.get(chunk, positionInChunk, count);
+            writeOffset += count;
+        }
+    }
+
+    /**
+     * Returns read-only views on the buffered data in the given range; one for each chunk the range overlaps with.
+     * @param offset  the stream offset of the first byte
+     * @param length  the number of bytes
+     * @return
+     */
+    synchronized ByteBuffer[] slice(long offset, int length) {
+        if (offset < ackedOffset || offset + length > writeOffset) {
+            throw new IllegalArgumentException("range not (or no longer) present in buffer");
+        }
+        if (length == 0) {
+            return new ByteBuffer[0];
+        }
+        int firstChunk = (int) ((offset - startOffset) / CHUNK_SIZE);
+        int lastChunk = (int) ((offset + length - 1 - startOffset) / CHUNK_SIZE);
+        ByteBuffer[] slices = new ByteBuffer[lastChunk - firstChunk + 1];
+        int positionInChunk = (int) ((offset - startOffset) % CHUNK_SIZE);
+        for (int i = 0; i < slices.length; i++) {
+            int count = Integer.min(length, CHUNK_SIZE - positionInChunk);
+            slices[i] = ByteBuffer.wrap(chunks.get(firstChunk + i), positionInChunk, count).slice().asReadOnlyBuffer();
+            length -= count;
+            positionInChunk = 0;
+        }
+        return slices;
+    }
+
+    /**
+     * Registers that the given range is acknowledged by the peer; chunks that only contain acknowledged data are released.
+     * @param offset
+     * @param length
+     */
+    synchronized void acknowledged(long offset, long length) {
+        long start = offset;
+        long end = offset + length;
+        if (end <= ackedOffset || length == 0) {
+            return;
+        }
+        if (start <= ackedOffset) {
+            ackedOffset = end;
+            while (!ackedRanges.isEmpty() && ackedRanges.firstStart() <= ackedOffset) {
+                ackedOffset = Long.max(ackedOffset, ackedRanges.firstEnd());
+                ackedRanges.removeFirst();
+            }
+            releaseAcknowledgedChunks();
+        }
+        else {
+            ackedRanges.add(start, end);
+        }
+    }
+
+    private void releaseAcknowledgedChunks() {
+        int releasable = (int) ((ackedOffset - startOffset) / CHUNK_SIZE);
+        if (releasable > 0) {
+            chunks.subList(0, releasable).clear();
+            startOffset += (long) releasable * CHUNK_SIZE;
+        }
+    }
+
+    synchronized long writeOffset() {
+        return writeOffset;
+    }
+
+    synchronized long acknowledgedOffset() {
+        return ackedOffset;
+    }
+
+    /**
+     * @return  the number of bytes held by the buffer (which is the number of chunks times the chunk size).
+     */
+    synchronized long retained() {
+        return (long) chunks.size() * CHUNK_SIZE;
+    }
+}
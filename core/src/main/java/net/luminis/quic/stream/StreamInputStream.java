@@ -21,10 +21,48 @@ package net.luminis.quic.stream;
 import net.luminis.quic.frame.StreamFrame;
 import net.luminis.quic.impl.TransportError;
 
+import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.CompletableFuture;
 
 public abstract class StreamInputStream extends InputStream {
 
+    /**
+     * Borrows received stream data, without copying it: returns read-only views on the data that is available for
+     * reading. Like the read methods, this method blocks until data is available or the end of the stream is reached.
+     * The data is not consumed until it is released with {@link #release(int)}: until then, a next call to borrow (or
+     * read) will return the same data again and no flow control credit is given to the peer for it.
+     * The views must not be used anymore after the data they refer to has been released (or read).
+     * @param maxBytes  the maximum number of bytes to borrow
+     * @return  views on the data, or an empty array if the end of the stream has been reached.
+     * @throws IOException
+     */
+    public abstract ByteBuffer[] borrow(int maxBytes) throws IOException;
+
+    /**
+     * Releases (i.e. consumes) the given number of bytes from the start of the borrowed data, which gives the peer
+     * flow control credit for sending more data.
+     * @param bytes  the number of bytes to release, must not be more than the number of bytes available for reading.
+     */
+    public abstract void release(int bytes);
+
+    /**
+     * Reads as many bytes as are available (and fit in the given buffer), without blocking.
+     * @param buffer  the buffer to write the bytes to
+     * @return  the number of bytes read (can be 0), or -1 if the end of the stream has been reached.
+     * @throws IOException  if the stream is closed, reset or aborted
+     */
+    public abstract int readNonBlocking(ByteBuffer buffer) throws IOException;
+
+    /**
+     * Returns a future that completes when this stream becomes readable, i.e. when data is available, the end of the
+     * stream is reached or the stream is closed, reset or aborted (in which case a read will fail). The future is
+     * completed by the thread that processes the received data, so dependent actions must not block.
+     * @return
+     */
+    public abstract CompletableFuture<Void> whenReadable();
+
     abstract long addDataFrom(StreamFrame frame) throws TransportError;
 
     abstract long getCurrentReceiveOffset();
@@ -22,6 +22,7 @@ import net.luminis.quic.frame.MaxStreamDataFrame;
 import net.luminis.quic.frame.QuicFrame;
 import net.luminis.quic.frame.StopSendingFrame;
 import net.luminis.quic.frame.StreamFrame;
+import net.luminis.quic.impl.ConnectionMemory;
 import net.luminis.quic.impl.TransportError;
 
 import java.io.IOException;
@@ -29,6 +30,10 @@ import java.net.SocketTimeoutException;
 import java.nio.ByteBuffer;
 import java.time.Duration;
 import java.time.Instant;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 
 import static net.luminis.quic.QuicConstants.TransportErrorCode.FINAL_SIZE_ERROR;
 import static net.luminis.quic.QuicConstants.TransportErrorCode.FLOW_CONTROL_ERROR;
@@ -46,22 +51,36 @@ class StreamInputStreamImpl extends StreamInputStream {
     private volatile boolean closed;
     private volatile boolean reset;
     private volatile Thread blockingReaderThread;
-    private final ReceiveBuffer receiveBuffer;
-    private final Object addMonitor = new Object();
+    private final ChunkedReceiveBuffer receiveBuffer;
+    private final ReentrantLock bufferLock = new ReentrantLock();
+    private final Condition dataAdded = bufferLock.newCondition();
     private long lastCommunicatedMaxData;
-    private final long receiverMaxDataIncrement;
     private long largestOffsetReceived;
+    private final ReceiveWindow receiveWindow;
+    private final ConnectionMemory memory;
+    private long chargedMemory;
     private long receiverFlowControlLimit;
     private volatile boolean aborted;
     private volatile long finalSize = -1;
+    // Completed when the stream becomes readable; guarded by bufferLock.
+    private CompletableFuture<Void> readableFuture;
 
     public StreamInputStreamImpl(QuicStreamImpl quicStream, long receiveBufferSize) {
+        this(quicStream, new ReceiveWindow(receiveBufferSize), ConnectionMemory.unlimited());
+    }
+
+    StreamInputStreamImpl(QuicStreamImpl quicStream, ReceiveWindow receiveWindow) {
+        this(quicStream, receiveWindow, ConnectionMemory.unlimited());
+    }
+
+    StreamInputStreamImpl(QuicStreamImpl quicStream, ReceiveWindow receiveWindow, ConnectionMemory memory) {
         this.quicStream = quicStream;
-        receiveBuffer = new ReceiveBufferImpl();
+        this.receiveWindow = receiveWindow;
+        this.memory = memory;
+        receiveBuffer = new ChunkedReceiveBuffer();
 
-        receiverFlowControlLimit = receiveBufferSize;
+        receiverFlowControlLimit = receiveWindow.getLimit();
         lastCommunicatedMaxData = receiverFlowControlLimit;
-        receiverMaxDataIncrement = (long) (receiverFlowControlLimit * receiverMaxDataIncrementFactor);
     }
 
     /**
@@ -90,16 +109,23 @@ class StreamInputStreamImpl extends StreamInputStream {
         }
 
         if (!aborted && !closed && !reset) {
-            synchronized (addMonitor) {
+            long largestOffsetIncrease;
+            bufferLock.lock();
+            try {
                 if (frame.getUpToOffset() > receiverFlowControlLimit) {
                     throw new TransportError(FLOW_CONTROL_ERROR);
                 }
                 receiveBuffer.add(frame);
-                long largestOffsetIncrease = Long.max(0, frame.getUpToOffset() - largestOffsetReceived);
+                updateChargedMemory();
+                largestOffsetIncrease = Long.max(0, frame.getUpToOffset() - largestOffsetReceived);
                 largestOffsetReceived = Long.max(largestOffsetReceived, frame.getUpToOffset());
-                addMonitor.notifyAll();
-                return largestOffsetIncrease;
+                dataAdded.signalAll();
+            }
+            finally {
+                bufferLock.unlock();
             }
+            notifyReadable();
+            return largestOffsetIncrease;
         }
         else {
             return 0;
@@ -126,16 +152,23 @@ class StreamInputStreamImpl extends StreamInputStream {
     // - This method blocks until input data is available, the end of the stream is detected, or an exception is thrown.
     @Override
     public int read() throws IOException {
-        byte[] data = new byte[1];
-        int bytesRead = read(data, 0, 1);
-        if (bytesRead == 1) {
-            return data[0] & 0xff;
-        } else if (bytesRead < 0) {
-            // End of stream
-            return -1;
-        } else {
-            // Impossible
-            throw new RuntimeException();
+        bufferLock.lock();
+        try {
+            waitUntilReadable();
+            int value = receiveBuffer.read();
+            if (value >= 0) {
+                updateChargedMemory();
+                updateAllowedFlowControl(1);
+                return value;
+            }
+            else {
+                // End of stream
+                allDataRead();
+                return -1;
+            }
+        }
+        finally {
+            bufferLock.unlock();
         }
     }
 
@@ -150,47 +183,160 @@ class StreamInputStreamImpl extends StreamInputStream {
         if (len == 0) {
             return 0;
         }
+        bufferLock.lock();
+        try {
+            waitUntilReadable();
+            int bytesRead = receiveBuffer.read(ByteBuffer.wrap(buffer, offset, len));
+            if (bytesRead > 0) {
+                updateChargedMemory();
+                updateAllowedFlowControl(bytesRead);
+                return bytesRead;
+            }
+            else {
+                // End of stream
+                allDataRead();
+                return -1;
+            }
+        }
+        finally {
+            bufferLock.unlock();
+        }
+    }
+
+    @Override
+    public ByteBuffer[] borrow(int maxBytes) throws IOException {
+        if (maxBytes <= 0) {
+            throw new IllegalArgumentException("number of bytes must be positive");
+        }
+        bufferLock.lock();
+        try {
+            waitUntilReadable();
+            ByteBuffer[] data = receiveBuffer.borrow(maxBytes);
+            if (data.length == 0) {
+                // End of stream
+                allDataRead();
+            }
+            return data;
+        }
+        finally {
+            bufferLock.unlock();
+        }
+    }
+
+    @Override
+    public void release(int bytes) {
+        bufferLock.lock();
+        try {
+            receiveBuffer.release(bytes);
+            if (bytes > 0) {
+                updateChargedMemory();
+                updateAllowedFlowControl(bytes);
+            }
+        }
+        finally {
+            bufferLock.unlock();
+        }
+    }
+
+    @Override
+    public int readNonBlocking(ByteBuffer buffer) throws IOException {
+        bufferLock.lock();
+        try {
+            checkState();
+            int bytesRead = receiveBuffer.read(buffer);
+            if (bytesRead > 0) {
+                updateChargedMemory();
+                updateAllowedFlowControl(bytesRead);
+            }
+            else if (bytesRead < 0) {
+                // End of stream
+                allDataRead();
+            }
+            return bytesRead;
+        }
+        finally {
+            bufferLock.unlock();
+        }
+    }
+
+    @Override
+    public CompletableFuture<Void> whenReadable() {
+        bufferLock.lock();
+        try {
+            if (isReadable()) {
+                return CompletableFuture.completedFuture(null);
+            }
+            if (readableFuture == null) {
+                readableFuture = new CompletableFuture<>();
+            }
+            return readableFuture;
+        }
+        finally {
+            bufferLock.unlock();
+        }
+    }
+
+    private boolean isReadable() {
+        return receiveBuffer.bytesAvailable() > 0 || receiveBuffer.allRead() || aborted || closed || reset;
+    }
+
+    private void notifyReadable() {
+        CompletableFuture<Void> future;
+        bufferLock.lock();
+        try {
+            if (readableFuture == null || !isReadable()) {
+                return;
+            }
+            future = readableFuture;
+            readableFuture = null;
+        }
+        finally {
+            bufferLock.unlock();
+        }
+        // Complete outside the lock, as dependent actions are executed by this thread.
+        future.complete(null);
+    }
+
+    private void checkState() throws IOException {
+        if (aborted || closed || reset) {
+            throw new IOException(aborted ? "Connection closed" : closed ? "Stream closed" : "Stream reset by peer");
+        }
+    }
+
+    // Blocks until data can be read or the end of the stream has been reached; must be called while holding bufferLock.
+    private void waitUntilReadable() throws IOException {
         Instant readAttemptStarted = Instant.now();
         long waitPeriod = waitForNextFrameTimeout;
-        while (true) {
-            if (aborted || closed || reset) {
-                throw new IOException(aborted ? "Connection closed" : closed ? "Stream closed" : "Stream reset by peer");
-            }
+        // Set before checking the state, so an abort either is noticed by the check or interrupts the wait.
+        blockingReaderThread = Thread.currentThread();
+        try {
+            while (true) {
+                checkState();
+                if (receiveBuffer.bytesAvailable() > 0 || receiveBuffer.allRead()) {
+                    return;
+                }
 
-            synchronized (addMonitor) {
+                // Nothing to read: block until bytes can be read, read timeout or abort
                 try {
-                    blockingReaderThread = Thread.currentThread();
-
-                    int bytesRead = receiveBuffer.read(ByteBuffer.wrap(buffer, offset, len));
-                    if (bytesRead > 0) {
-                        updateAllowedFlowControl(bytesRead);
-                        return bytesRead;
-                    } else if (bytesRead < 0) {
-                        // End of stream
-                        allDataRead();
-                        return -1;
-                    }
-
-                    // Nothing read: block until bytes can be read, read timeout or abort
-                    try {
-                        addMonitor.wait(waitPeriod);
-                    } catch (InterruptedException e) {
-                        // Nothing to do here: read will be abort in next loop iteration with IOException
-                    }
-                } finally {
-                    blockingReaderThread = null;
+                    dataAdded.await(waitPeriod, TimeUnit.MILLISECONDS);
+                }
+                catch (InterruptedException e) {
+                    // Nothing to do here: read will be abort in next loop iteration with IOException
                 }
-            }
 
-            if (receiveBuffer.bytesAvailable() == 0) {
-                long waited = Duration.between(readAttemptStarted, Instant.now()).toMillis();
-                if (waited > waitForNextFrameTimeout) {
-                    throw new SocketTimeoutException("Read timeout on stream " + quicStream.streamId + "; read up to " + receiveBuffer.readOffset());
-                } else {
-                    waitPeriod = Long.max(1, waitForNextFrameTimeout - waited);
+                if (receiveBuffer.bytesAvailable() == 0) {
+                    long waited = Duration.between(readAttemptStarted, Instant.now()).toMillis();
+                    if (waited > waitForNextFrameTimeout) {
+                        throw new SocketTimeoutException("Read timeout on stream " + quicStream.streamId + "; read up to " + receiveBuffer.readOffset());
+                    } else {
+                        waitPeriod = Long.max(1, waitForNextFrameTimeout - waited);
+                    }
                 }
             }
         }
+        finally {
+            blockingReaderThread = null;
+        }
     }
 
     private void allDataRead() {
@@ -218,8 +364,9 @@ class StreamInputStreamImpl extends StreamInputStream {
             quicStream.connection.send(new StopSendingFrame(quicStream.quicVersion, quicStream.streamId, errorCode), this::retransmitStopInput, true);
         }
         closed = true;
-        receiveBuffer.discardAllData();
+        discardAllData();
         interruptBlockingReader();
+        notifyReadable();
         quicStream.inputClosed();
     }
 
@@ -232,10 +379,12 @@ class StreamInputStreamImpl extends StreamInputStream {
     }
 
     private void updateAllowedFlowControl(int bytesRead) {
-        // Slide flow control window forward (with as many bytes as are read)
-        receiverFlowControlLimit += bytesRead;
+        // Slide flow control window forward (with as many bytes as are read), the window itself might be auto-tuned
+        // and is reduced when memory is tight.
+        receiverFlowControlLimit = receiveWindow.dataRead(receiveBuffer.readOffset(), quicStream.getSmoothedRttMicros(), chargedMemory);
         quicStream.updateConnectionFlowControl(bytesRead);
         // Avoid sending flow control updates with every single read; check diff with last send max data
+        long receiverMaxDataIncrement = (long) (receiveWindow.getSize() * receiverMaxDataIncrementFactor);
         if (receiverFlowControlLimit - lastCommunicatedMaxData > receiverMaxDataIncrement) {
             quicStream.connection.send(new MaxStreamDataFrame(quicStream.streamId, receiverFlowControlLimit), this::retransmitMaxData, true);
             lastCommunicatedMaxData = receiverFlowControlLimit;
@@ -276,8 +425,9 @@ class StreamInputStreamImpl extends StreamInputStream {
             reset = true;
             int unusedFlowControlCredits = (int) (finalSize - receiveBuffer.readOffset());
             quicStream.updateConnectionFlowControl(unusedFlowControlCredits);
-            receiveBuffer.discardAllData();
+            discardAllData();
             interruptBlockingReader();
+            notifyReadable();
             quicStream.inputClosed();
         }
         return increment;
@@ -286,6 +436,25 @@ class StreamInputStreamImpl extends StreamInputStream {
     void abort() {
         aborted = true;
         interruptBlockingReader();
+        notifyReadable();
+    }
+
+    private void discardAllData() {
+        bufferLock.lock();
+        try {
+            receiveBuffer.discardAllData();
+            updateChargedMemory();
+        }
+        finally {
+            bufferLock.unlock();
+        }
+    }
+
+    // Must be called while holding bufferLock
+    private void updateChargedMemory() {
+        long buffered = receiveBuffer.bytesAvailable() + receiveBuffer.bufferedOutOfOrderData();
+        memory.allocate(buffered - chargedMemory);
+        chargedMemory = buffered;
     }
 
     private void interruptBlockingReader() {
@@ -25,6 +25,7 @@ import net.luminis.quic.common.EncryptionLevel;
 import net.luminis.quic.frame.*;
 import net.luminis.quic.impl.*;
 import net.luminis.quic.log.Logger;
+import net.luminis.quic.util.MonotonicClock;
 
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
@@ -51,6 +52,7 @@ public class StreamManager {
     private volatile FlowControl flowController;
     private final Role role;
     private final Logger log;
+    private final ConnectionMemory connectionMemory;
     private volatile ConnectionConfig config;
     private volatile int currentUnidirectionalStreamIdLimit;
     private volatile int currentBidirectionalStreamIdLimit;
@@ -64,6 +66,11 @@ public class StreamManager {
     private volatile long flowControlMax;
     private long flowControlLastAdvertised;
     private long flowControlIncrement;
+    private ReceiveWindow connectionReceiveWindow;
+    private long connectionBytesRead;
+    private volatile long initialMaxData;
+    private volatile long initialBidirectionalStreamCredit;
+    private volatile long initialUnidirectionalStreamCredit;
     private final ReentrantLock maxOpenStreamsUpdateLock;
     private final ReentrantLock updateFlowControlLock;
     private final AtomicInteger nextStreamIdBidirectional;
@@ -84,14 +91,33 @@ public class StreamManager {
      * @param config
      */
     public StreamManager(QuicConnectionImpl quicConnection, Role role, Logger log, ConnectionConfig config) {
-        this(quicConnection, role, log);
+        this(quicConnection, role, log, config, ConnectionMemory.unlimited());
+    }
+
+    /**
+     * Creates a stream manager for a given connection, that charges the memory used for buffering stream data to the
+     * given memory account.
+     *
+     * @param quicConnection
+     * @param role
+     * @param log
+     * @param config
+     * @param connectionMemory
+     */
+    public StreamManager(QuicConnectionImpl quicConnection, Role role, Logger log, ConnectionConfig config, ConnectionMemory connectionMemory) {
+        this(quicConnection, role, log, connectionMemory);
         initialize(config);
     }
 
     public StreamManager(QuicConnectionImpl quicConnection, Role role, Logger log) {
+        this(quicConnection, role, log, ConnectionMemory.unlimited());
+    }
+
+    private StreamManager(QuicConnectionImpl quicConnection, Role role, Logger log, ConnectionMemory connectionMemory) {
         this.connection = quicConnection;
         this.role = role;
         this.log = log;
+        this.connectionMemory = connectionMemory;
 
         quicVersion = Version.getDefault();
         streams = new ConcurrentHashMap<>();
@@ -114,7 +140,8 @@ public class StreamManager {
         absoluteBidirectionalStreamIdLimit = computeMaxStreamIdLimit((int) Long.min(Integer.MAX_VALUE, config.maxTotalPeerInitiatedBidirectionalStreams()), role.other(), true);
 
         initConnectionFlowControl(config.maxConnectionBufferSize());
-
+        initialBidirectionalStreamCredit = connectionMemory.allowedWindow(config.maxBidirectionalStreamBufferSize(), 0);
+        initialUnidirectionalStreamCredit = connectionMemory.allowedWindow(config.maxUnidirectionalStreamBufferSize(), 0);
     }
 
     /**
@@ -163,10 +190,22 @@ public class StreamManager {
         nextPeerInitiatedBidirectionalStreamId = role == Role.Client? 0x01 : 0x00;
     }
 
+    /**
+     * Initializes connection level flow control. When memory is tight, the initial credit is reduced (but the window can
+     * grow back to the given size when memory becomes available again); the initial credit is reserved in the memory
+     * account, as the peer can send that much data right away.
+     * @param initialMaxData
+     */
     protected void initConnectionFlowControl(long initialMaxData) {
-        flowControlMax = initialMaxData;
+        connectionMemory.reserve(0);
+        long initialCredit = connectionMemory.allowedWindow(initialMaxData, 0);
+        connectionMemory.reserve(initialCredit);
+        this.initialMaxData = initialCredit;
+        connectionReceiveWindow = new ReceiveWindow(initialCredit, Long.max(initialMaxData, config.maxConnectionReceiveWindow()), MonotonicClock.instance(), connectionMemory);
+        flowControlMax = connectionReceiveWindow.getLimit();
         flowControlLastAdvertised = flowControlMax;
         flowControlIncrement = flowControlMax / 10;
+        connectionBytesRead = 0;
     }
 
     public QuicStream createStream(boolean bidirectional) {
@@ -241,13 +280,13 @@ public class StreamManager {
         QuicStreamImpl stream = streams.get(streamId);
         checkConnectionFlowControl(stream, frame);
         if (stream != null) {
-            cumulativeReceiveOffset += stream.addStreamData(frame);
+            addReceivedData(stream.addStreamData(frame));
         }
         else {
             if (isPeerInitiated(streamId)) {
                 QuicStreamImpl peerInitiatedStream = createPeerInitiatedStream(streamId);
                 if (peerInitiatedStream != null) {
-                    cumulativeReceiveOffset += peerInitiatedStream.addStreamData(frame);
+                    addReceivedData(peerInitiatedStream.addStreamData(frame));
                 }
             }
             else {
@@ -256,6 +295,11 @@ public class StreamManager {
         }
     }
 
+    private void addReceivedData(long increment) {
+        cumulativeReceiveOffset += increment;
+        connectionMemory.useReservation(increment);
+    }
+
     private QuicStreamImpl createPeerInitiatedStream(int requestedStreamId) throws TransportError {
         if (isUni(requestedStreamId) && requestedStreamId < currentUnidirectionalStreamIdLimit || isBidi(requestedStreamId) && requestedStreamId < currentBidirectionalStreamIdLimit) {
             if (isUni(requestedStreamId)) {
@@ -308,7 +352,7 @@ public class StreamManager {
         if (stream != null) {
             // https://www.rfc-editor.org/rfc/rfc9000.html#name-reset_stream-frames
             // "A receiver of RESET_STREAM can discard any data that it already received on that stream."
-            cumulativeReceiveOffset += stream.terminateStream(resetStreamFrame.getErrorCode(), resetStreamFrame.getFinalSize());
+            addReceivedData(stream.terminateStream(resetStreamFrame.getErrorCode(), resetStreamFrame.getFinalSize()));
         }
     }
 
@@ -316,7 +360,9 @@ public class StreamManager {
         try {
             updateFlowControlLock.lock();
 
-            flowControlMax += size;
+            connectionBytesRead += size;
+            flowControlMax = connectionReceiveWindow.dataRead(connectionBytesRead, getSmoothedRttMicros());
+            flowControlIncrement = connectionReceiveWindow.getSize() / 10;
             if (flowControlMax - flowControlLastAdvertised > flowControlIncrement) {
                 connection.send(new MaxDataFrame(flowControlMax), f -> {}, true);
                 flowControlLastAdvertised = flowControlMax;
@@ -516,20 +562,61 @@ public class StreamManager {
         return maxStreamsAcceptedByPeerUni;
     }
 
+    /**
+     * @return  the initial flow control credit for unidirectional streams, i.e. the configured buffer size, reduced when
+     * memory was tight when the connection was initialized.
+     */
     public long getMaxUnidirectionalStreamBufferSize() {
-        return config.maxUnidirectionalStreamBufferSize();
+        return initialUnidirectionalStreamCredit;
     }
 
+    /**
+     * @return  the initial flow control credit for bidirectional streams, i.e. the configured buffer size, reduced when
+     * memory was tight when the connection was initialized.
+     */
     public long getMaxBidirectionalStreamBufferSize() {
-        return config.maxBidirectionalStreamBufferSize();
+        return initialBidirectionalStreamCredit;
+    }
+
+    /**
+     * @return  the initial flow control credit for the connection, which might be less than the configured buffer size
+     * when memory was tight when the connection was initialized.
+     */
+    public long getInitialMaxData() {
+        return initialMaxData;
+    }
+
+    /**
+     * @return  the size to which stream receive windows can be auto-tuned at most; never less than the configured
+     * stream buffer sizes, so windows with reduced initial credit can grow back.
+     */
+    public long getMaxStreamReceiveWindow() {
+        return Long.max(config.maxStreamReceiveWindow(),
+                Long.max(config.maxBidirectionalStreamBufferSize(), config.maxUnidirectionalStreamBufferSize()));
+    }
+
+    /**
+     * @return  the memory account to which the memory used for buffering stream data is charged.
+     */
+    public ConnectionMemory getConnectionMemory() {
+        return connectionMemory;
+    }
+
+    /**
+     * @return  the smoothed RTT of the connection in microseconds, or 0 when not known
+     */
+    long getSmoothedRttMicros() {
+        return connection.getSmoothedRttMicros();
     }
 
     public void setDefaultUnidirectionalStreamReceiveBufferSize(long newSize) {
         config = ConnectionConfigImpl.cloneWithMaxUnidirectionalStreamReceiveBufferSize(config, newSize);
+        initialUnidirectionalStreamCredit = connectionMemory.allowedWindow(newSize, 0);
     }
 
     public void setDefaultBidirectionalStreamReceiveBufferSize(long newSize) {
         config = ConnectionConfigImpl.cloneWithMaxBidirectionalStreamReceiveBufferSize(config, newSize);
+        initialBidirectionalStreamCredit = connectionMemory.allowedWindow(newSize, 0);
     }
 
     interface QuicStreamSupplier {
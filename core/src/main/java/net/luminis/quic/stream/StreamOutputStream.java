@@ -18,10 +18,30 @@
  */
 package net.luminis.quic.stream;
 
+import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.CompletableFuture;
 
 public abstract class StreamOutputStream extends OutputStream {
-    
+
+    /**
+     * Writes as many bytes as fit in the send buffer, without blocking.
+     * @param data  the data to write; its position is advanced with the number of bytes written
+     * @return  the number of bytes written (can be 0)
+     * @throws IOException  if the stream is closed, reset or aborted
+     */
+    public abstract int writeNonBlocking(ByteBuffer data) throws IOException;
+
+    /**
+     * Returns a future that completes when this stream becomes writable, i.e. when there is space in the send buffer
+     * or when the stream is closed, reset or aborted (in which case a write will fail). Space in the send buffer is
+     * freed when data is sent, which depends on the flow control credit given by the peer. The future is completed by
+     * the sender thread, so dependent actions must not block.
+     * @return
+     */
+    public abstract CompletableFuture<Void> whenWritable();
+
     abstract void reset(long errorCode);
 
     protected abstract void resetOutputStream();
@@ -24,13 +24,12 @@ import net.luminis.quic.frame.ResetStreamFrame;
 import net.luminis.quic.frame.StreamDataBlockedFrame;
 import net.luminis.quic.frame.StreamFrame;
 import net.luminis.quic.common.EncryptionLevel;
+import net.luminis.quic.impl.ConnectionMemory;
 
 import java.io.IOException;
 import java.io.InterruptedIOException;
 import java.nio.ByteBuffer;
-import java.util.Arrays;
-import java.util.Queue;
-import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.ReentrantLock;
@@ -44,15 +43,22 @@ class StreamOutputStreamImpl extends StreamOutputStream implements FlowControlUp
     private static final int MIN_FRAME_SIZE = 1 + 8 + 8 + 2 + 1;
 
     private final QuicStreamImpl quicStream;
-    private final ByteBuffer END_OF_STREAM_MARKER = ByteBuffer.allocate(0);
     private final Object lock = new Object();
 
-    // Send queue contains stream bytes to send in order. The position of the first byte buffer in the queue determines the next byte(s) to send.
-    private Queue<ByteBuffer> sendQueue = new ConcurrentLinkedDeque<>();
+    // Send buffer contains the stream bytes that are not yet sent or not yet acknowledged, addressed by stream offset.
+    private volatile SendBuffer sendBuffer = new SendBuffer();
+    // Indicates whether the end of the stream (i.e. the final size) is known; is set after all data is written.
+    private volatile boolean finQueued;
+    // Thread safety: only used by sender thread
+    private boolean finSent;
+    // Max buffer size limits the number of bytes that are written, but not yet sent.
     private final int maxBufferSize;
     private final AtomicInteger bufferedBytes;
+    private final ConnectionMemory memory;
     private final ReentrantLock bufferLock;
     private final Condition notFull;
+    // Completed when buffer space becomes available; guarded by bufferLock.
+    private CompletableFuture<Void> writableFuture;
     // Current offset is the offset of the next byte in the stream that will be sent.
     // Thread safety: only used by sender thread, so no synchronization needed.
     private long currentOffset;
@@ -75,6 +81,7 @@ class StreamOutputStreamImpl extends StreamOutputStream implements FlowControlUp
     StreamOutputStreamImpl(QuicStreamImpl quicStream, Integer sendBufferSize, FlowControl flowControl) {
         this.quicStream = quicStream;
         flowController = flowControl;
+        memory = quicStream.getConnectionMemory();
         bufferedBytes = new AtomicInteger();
         bufferLock = new ReentrantLock();
         notFull = bufferLock.newCondition();
@@ -138,8 +145,63 @@ class StreamOutputStreamImpl extends StreamOutputStream implements FlowControlUp
             }
         }
 
-        sendQueue.add(ByteBuffer.wrap(Arrays.copyOfRange(data, off, off + len)));
+        sendBuffer.write(data, off, len);
         bufferedBytes.getAndAdd(len);
+        memory.allocate(len);
+        requestSend();
+    }
+
+    @Override
+    public int writeNonBlocking(ByteBuffer data) throws IOException {
+        checkState();
+        int count = Integer.min(data.remaining(), maxBufferSize - bufferedBytes.get());
+        if (count <= 0) {
+            return 0;
+        }
+        ByteBuffer part = data.slice();
+        part.limit(count);
+        sendBuffer.write(part);
+        data.position(data.position() + count);
+        bufferedBytes.getAndAdd(count);
+        memory.allocate(count);
+        requestSend();
+        return count;
+    }
+
+    @Override
+    public CompletableFuture<Void> whenWritable() {
+        bufferLock.lock();
+        try {
+            if (bufferedBytes.get() < maxBufferSize || closed || reset || aborted) {
+                return CompletableFuture.completedFuture(null);
+            }
+            if (writableFuture == null) {
+                writableFuture = new CompletableFuture<>();
+            }
+            return writableFuture;
+        }
+        finally {
+            bufferLock.unlock();
+        }
+    }
+
+    private void notifyWritable() {
+        CompletableFuture<Void> future;
+        bufferLock.lock();
+        try {
+            future = writableFuture;
+            writableFuture = null;
+        }
+        finally {
+            bufferLock.unlock();
+        }
+        // Complete outside the lock, as dependent actions are executed by this thread.
+        if (future != null) {
+            future.complete(null);
+        }
+    }
+
+    private void requestSend() {
         synchronized (lock) {
             if (!sendRequestQueued) {
                 sendRequestQueued = true;
@@ -164,14 +226,10 @@ class StreamOutputStreamImpl extends StreamOutputStream implements FlowControlUp
     @Override
     public void close() throws IOException {
         if (!closed && !aborted && !reset) {
-            sendQueue.add(END_OF_STREAM_MARKER);
+            finQueued = true;
             closed = true;
-            synchronized (lock) {
-                if (!sendRequestQueued) {
-                    sendRequestQueued = true;
-                    quicStream.connection.send(this::sendFrame, MIN_FRAME_SIZE, getEncryptionLevel(), this::retransmitStreamFrame, true);
-                }
-            }
+            requestSend();
+            notifyWritable();
         }
     }
 
@@ -192,59 +250,42 @@ class StreamOutputStreamImpl extends StreamOutputStream implements FlowControlUp
             sendRequestQueued = false;
         }
 
-        if (!sendQueue.isEmpty()) {
+        // Read fin before the write offset: as fin is set after all data is written, the write offset is then final.
+        boolean fin = finQueued;
+        SendBuffer buffer = sendBuffer;
+        long endOffset = buffer.writeOffset();
+        if (endOffset > currentOffset || fin && !finSent) {
             long flowControlLimit = flowController.getFlowControlLimit(quicStream);
             assert (flowControlLimit >= currentOffset);
 
-            int maxBytesToSend = bufferedBytes.get();
+            int maxBytesToSend = (int) (endOffset - currentOffset);
             if (flowControlLimit > currentOffset || maxBytesToSend == 0) {
-                int nrOfBytes = 0;
                 StreamFrame dummy = new StreamFrame(quicStream.quicVersion, quicStream.streamId, currentOffset, new byte[0], false);
                 maxBytesToSend = Integer.min(maxBytesToSend, maxFrameSize - dummy.getFrameLength() - 1);  // Take one byte extra for length field var int
                 int maxAllowedByFlowControl = (int) (flowController.increaseFlowControlLimit(quicStream, currentOffset + maxBytesToSend) - currentOffset);
-                maxBytesToSend = Integer.min(maxAllowedByFlowControl, maxBytesToSend);
-
-                byte[] dataToSend = new byte[maxBytesToSend];
-                boolean finalFrame = false;
-                while (nrOfBytes < maxBytesToSend && !sendQueue.isEmpty()) {
-                    ByteBuffer buffer = sendQueue.peek();
-                    int position = nrOfBytes;
-                    if (buffer.remaining() <= maxBytesToSend - nrOfBytes) {
-                        // All bytes remaining in buffer will fit in stream frame
-                        nrOfBytes += buffer.remaining();
-                        buffer.get(dataToSend, position, buffer.remaining());
-                        sendQueue.poll();
-                    } else {
-                        // Just part of the buffer will fit in (and will fill up) the stream frame
-                        buffer.get(dataToSend, position, maxBytesToSend - nrOfBytes);
-                        nrOfBytes = maxBytesToSend;  // Short form of: nrOfBytes += (maxBytesToSend - nrOfBytes)
-                    }
-                }
-                if (!sendQueue.isEmpty() && sendQueue.peek() == END_OF_STREAM_MARKER) {
-                    finalFrame = true;
-                    sendQueue.poll();
-                }
+                int nrOfBytes = Integer.max(0, Integer.min(maxAllowedByFlowControl, maxBytesToSend));
+                boolean finalFrame = fin && currentOffset + nrOfBytes == endOffset;
                 if (nrOfBytes == 0 && !finalFrame) {
                     // Nothing to send really
                     return null;
                 }
 
                 bufferedBytes.getAndAdd(-1 * nrOfBytes);
+                memory.release(nrOfBytes);
                 bufferLock.lock();
                 try {
                     notFull.signal();
                 } finally {
                     bufferLock.unlock();
                 }
+                notifyWritable();
 
-                if (nrOfBytes < maxBytesToSend) {
-                    // This can happen when not enough data is buffer to fill a stream frame, or length field is 1 byte (instead of 2 that was counted for)
-                    dataToSend = Arrays.copyOfRange(dataToSend, 0, nrOfBytes);
-                }
-                StreamFrame streamFrame = new StreamFrame(quicStream.quicVersion, quicStream.streamId, currentOffset, dataToSend, finalFrame);
+                // The frame refers to the data in the send buffer, so no copy is needed.
+                StreamFrame streamFrame = new BufferedStreamFrame(quicStream.quicVersion, quicStream.streamId, currentOffset, buffer, nrOfBytes, finalFrame);
                 currentOffset += nrOfBytes;
+                finSent = finalFrame;
 
-                if (!sendQueue.isEmpty()) {
+                if (currentOffset < endOffset || fin && !finSent) {
                     synchronized (lock) {
                         sendRequestQueued = true;
                     }
@@ -319,7 +360,8 @@ class StreamOutputStreamImpl extends StreamOutputStream implements FlowControlUp
 
     private void retransmitStreamFrame(QuicFrame frame) {
         assert (frame instanceof StreamFrame);
-        if (!reset) {
+        // When the frame was sent more than once (e.g. in a probe), one of the other packets might have been acknowledged.
+        if (!reset && !(frame instanceof BufferedStreamFrame && ((BufferedStreamFrame) frame).isAcknowledged())) {
             quicStream.connection.send(frame, this::retransmitStreamFrame);
             quicStream.log.recovery("Retransmitted lost stream frame " + frame);
         }
@@ -337,7 +379,11 @@ class StreamOutputStreamImpl extends StreamOutputStream implements FlowControlUp
 
     private void restart() {
         currentOffset = 0;
-        sendQueue.clear();
+        // A new buffer, so that acknowledgements of frames sent before the restart do not interfere.
+        sendBuffer = new SendBuffer();
+        memory.release(bufferedBytes.getAndSet(0));
+        finQueued = false;
+        finSent = false;
         sendRequestQueued = false;
     }
 
@@ -356,13 +402,14 @@ class StreamOutputStreamImpl extends StreamOutputStream implements FlowControlUp
             // Use sender callback to ensure current offset used in reset frame is accessed by sender thread.
             quicStream.connection.send(this::createResetFrame, ResetStreamFrame.getMaximumFrameSize(quicStream.streamId, errorCode), App, this::retransmitResetFrame, true);
             interruptBlockingThread();
+            notifyWritable();
             quicStream.outputClosed();
         }
     }
 
     private void discardAllData() {
-        sendQueue.clear();
-        bufferedBytes.set(0);
+        sendBuffer = new SendBuffer();
+        memory.release(bufferedBytes.getAndSet(0));
     }
 
     private QuicFrame createResetFrame(int maxFrameSize) {
@@ -384,5 +431,6 @@ class StreamOutputStreamImpl extends StreamOutputStream implements FlowControlUp
     void abort() {
         aborted = true;
         interruptBlockingThread();
+        notifyWritable();
     }
 }
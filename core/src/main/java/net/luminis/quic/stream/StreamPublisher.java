@@ -0,0 +1,160 @@
+/*
+ * Copyright © 2024 Peter Doornbosch
+ *
+ * This file is part of Kwik, an implementation of the QUIC protocol in Java.
+ *
+ * Kwik is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * Kwik is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.luminis.quic.stream;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Objects;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Publishes the data received on a stream to a (single) subscriber. Data is only read from the stream when the
+ * subscriber has requested it, and as the peer only gets flow control credit (MAX_STREAM_DATA) for data that is read,
+ * the subscriber's demand determines how much data the peer can send. Each item is at most {@link #MAX_ITEM_SIZE} bytes.
+ * Items are delivered by the thread that requests them or, when no data was available, by the thread that processes
+ * the received data; so subscribers should not block in onNext.
+ */
+class StreamPublisher implements Flow.Publisher<ByteBuffer> {
+
+    static final int MAX_ITEM_SIZE = 16 * 1024;
+
+    private final StreamInputStream inputStream;
+    private final AtomicBoolean subscribed = new AtomicBoolean();
+
+    StreamPublisher(StreamInputStream inputStream) {
+        this.inputStream = inputStream;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super ByteBuffer> subscriber) {
+        Objects.requireNonNull(subscriber);
+        if (subscribed.compareAndSet(false, true)) {
+            StreamSubscription subscription = new StreamSubscription(subscriber);
+            subscriber.onSubscribe(subscription);
+        }
+        else {
+            subscriber.onSubscribe(new Flow.Subscription() {
+                @Override
+                public void request(long n) {}
+
+                @Override
+                public void cancel() {}
+            });
+            subscriber.onError(new IllegalStateException("stream data can only be published to one subscriber"));
+        }
+    }
+
+    private class StreamSubscription implements Flow.Subscription {
+
+        private final Flow.Subscriber<? super ByteBuffer> subscriber;
+        private final AtomicLong demand = new AtomicLong();
+        // Serializes delivery: only the thread that increments from 0 delivers, others just signal there is more work.
+        private final AtomicInteger pendingDeliveries = new AtomicInteger();
+        private final AtomicBoolean awaitingData = new AtomicBoolean();
+        private volatile Throwable invalidRequest;
+        private volatile boolean done;
+
+        StreamSubscription(Flow.Subscriber<? super ByteBuffer> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                invalidRequest = new IllegalArgumentException("number of requested items must be positive");
+            }
+            else {
+                demand.getAndUpdate(current -> current + n < 0? Long.MAX_VALUE: current + n);
+            }
+            deliver();
+        }
+
+        @Override
+        public void cancel() {
+            if (!done) {
+                done = true;
+                abortReading();
+            }
+        }
+
+        private void deliver() {
+            if (pendingDeliveries.getAndIncrement() != 0) {
+                return;
+            }
+            do {
+                deliverAvailable();
+            }
+            while (pendingDeliveries.decrementAndGet() != 0);
+        }
+
+        private void deliverAvailable() {
+            while (!done) {
+                if (invalidRequest != null) {
+                    done = true;
+                    abortReading();
+                    subscriber.onError(invalidRequest);
+                    return;
+                }
+                if (demand.get() == 0) {
+                    return;
+                }
+                ByteBuffer data;
+                int bytesRead;
+                try {
+                    data = ByteBuffer.allocate(Integer.min(inputStream.available(), MAX_ITEM_SIZE));
+                    bytesRead = inputStream.readNonBlocking(data);
+                }
+                catch (IOException e) {
+                    done = true;
+                    subscriber.onError(e);
+                    return;
+                }
+                if (bytesRead < 0) {
+                    done = true;
+                    subscriber.onComplete();
+                    return;
+                }
+                if (bytesRead == 0) {
+                    if (awaitingData.compareAndSet(false, true)) {
+                        inputStream.whenReadable().thenRun(() -> {
+                            awaitingData.set(false);
+                            deliver();
+                        });
+                    }
+                    return;
+                }
+                demand.decrementAndGet();
+                data.flip();
+                subscriber.onNext(data);
+            }
+        }
+
+        private void abortReading() {
+            try {
+                inputStream.close();
+            }
+            catch (IOException e) {
+                // Nothing to do, the stream is not read anymore anyway.
+            }
+        }
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright © 2024 Peter Doornbosch
+ *
+ * This file is part of Kwik, an implementation of the QUIC protocol in Java.
+ *
+ * Kwik is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * Kwik is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.luminis.quic.stream;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * Non-blocking channel view on the receiving part of a stream: a read returns 0 when no data is available. Use
+ * {@link StreamInputStream#whenReadable()} to be notified when a read will return data (or end of stream).
+ * Closing the channel aborts reading, just like closing the stream's input stream.
+ */
+class StreamReadableChannel implements ReadableByteChannel {
+
+    private final StreamInputStream inputStream;
+    private volatile boolean open = true;
+
+    StreamReadableChannel(StreamInputStream inputStream) {
+        this.inputStream = inputStream;
+    }
+
+    @Override
+    public int read(ByteBuffer buffer) throws IOException {
+        if (!open) {
+            throw new ClosedChannelException();
+        }
+        return inputStream.readNonBlocking(buffer);
+    }
+
+    @Override
+    public boolean isOpen() {
+        return open;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (open) {
+            open = false;
+            inputStream.close();
+        }
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright © 2024 Peter Doornbosch
+ *
+ * This file is part of Kwik, an implementation of the QUIC protocol in Java.
+ *
+ * Kwik is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * Kwik is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.luminis.quic.stream;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Non-blocking channel view on the sending part of a stream: a write only writes as many bytes as fit in the send
+ * buffer (which can be none). Use {@link StreamOutputStream#whenWritable()} to be notified when there is space again.
+ * Closing the channel closes the stream's output stream, which ends the stream (i.e. sends the final size).
+ */
+class StreamWritableChannel implements WritableByteChannel {
+
+    private final StreamOutputStream outputStream;
+    private volatile boolean open = true;
+
+    StreamWritableChannel(StreamOutputStream outputStream) {
+        this.outputStream = outputStream;
+    }
+
+    @Override
+    public int write(ByteBuffer data) throws IOException {
+        if (!open) {
+            throw new ClosedChannelException();
+        }
+        return outputStream.writeNonBlocking(data);
+    }
+
+    @Override
+    public boolean isOpen() {
+        return open;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (open) {
+            open = false;
+            outputStream.close();
+        }
+    }
+}
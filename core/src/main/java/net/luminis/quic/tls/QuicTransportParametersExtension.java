@@ -170,6 +170,12 @@ public class QuicTransportParametersExtension extends Extension {
         //  by which the endpoint will delay sending acknowledgments."
         addTransportParameter(buffer, max_ack_delay, params.getMaxAckDelay());
 
+        // https://datatracker.ietf.org/doc/draft-ietf-quic-ack-frequency/
+        // The minimum ack delay (in microseconds) signals support for the ack frequency extension.
+        if (params.getMinAckDelay() > 0) {
+            addTransportParameter(buffer, min_ack_delay, params.getMinAckDelay());
+        }
+
         // "The disable active migration transport parameter is included if the endpoint does not support active
         //  connection migration (Section 9) on the address being used during the handshake. "
         if (params.getDisableMigration()) {
@@ -314,6 +320,11 @@ public class QuicTransportParametersExtension extends Extension {
             log.debug("- max ack delay: " + maxAckDelay);
             params.setMaxAckDelay(maxAckDelay);
         }
+        else if (parameterId == min_ack_delay.value) {
+            long minAckDelay = VariableLengthInteger.parseLong(buffer);
+            log.debug("- min ack delay: " + minAckDelay);
+            params.setMinAckDelay(minAckDelay);
+        }
         else if (parameterId == disable_active_migration.value) {
             log.debug("- disable migration");
             params.setDisableMigration(true);
@@ -424,7 +435,7 @@ public class QuicTransportParametersExtension extends Extension {
         VariableLengthInteger.encode(valueLength, buffer);
     }
 
-    private void addTransportParameter(ByteBuffer buffer, int id, long value) {
+    private void addTransportParameter(ByteBuffer buffer, long id, long value) {
         VariableLengthInteger.encode(id, buffer);
         buffer.mark();
         int encodedValueLength = VariableLengthInteger.encode(value, buffer);
@@ -437,7 +448,7 @@ public class QuicTransportParametersExtension extends Extension {
         addTransportParameter(buffer, id.value, value);
     }
 
-    private void addTransportParameter(ByteBuffer buffer, int id, byte[] value) {
+    private void addTransportParameter(ByteBuffer buffer, long id, byte[] value) {
         VariableLengthInteger.encode(id, buffer);
         VariableLengthInteger.encode(value.length, buffer);
         buffer.put(value);
@@ -0,0 +1,73 @@
+/*
+ * Copyright © 2024 Peter Doornbosch
+ *
+ * This file is part of Kwik, an implementation of the QUIC protocol in Java.
+ *
+ * Kwik is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * Kwik is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.luminis.quic.util;
+
+import java.io.IOException;
+import java.net.DatagramSocket;
+import java.net.SocketOption;
+
+/**
+ * Sets the IP "Don't Fragment" (DF) bit on datagram sockets, which path MTU discovery requires: without it, an
+ * oversized probe is fragmented (instead of dropped) and would be acknowledged, so the discovered size would be wrong.
+ * The socket option (jdk.net.ExtendedSocketOptions.IP_DONTFRAGMENT) only exists as of JDK 19, so it is looked up by
+ * reflection; on older runtimes (or platforms that do not support it), the DF bit cannot be set.
+ */
+public final class DontFragment {
+
+    private static final SocketOption<Boolean> IP_DONTFRAGMENT = lookupOption();
+
+    private DontFragment() {
+    }
+
+    /**
+     * Tries to set the DF bit on the given socket.
+     * @param socket
+     * @return  true if the DF bit is set, false if it could not be set.
+     */
+    public static boolean enable(DatagramSocket socket) {
+        if (IP_DONTFRAGMENT == null || socket == null) {
+            return false;
+        }
+        try {
+            socket.setOption(IP_DONTFRAGMENT, true);
+            return true;
+        }
+        catch (IOException | UnsupportedOperationException e) {
+            return false;
+        }
+    }
+
+    /**
+     * @return  whether the runtime provides the socket option for setting the DF bit.
+     */
+    public static boolean isSupported() {
+        return IP_DONTFRAGMENT != null;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static SocketOption<Boolean> lookupOption() {
+        try {
+            Class<?> extendedOptions = Class.forName("jdk.net.ExtendedSocketOptions");
+            return (SocketOption<Boolean>) extendedOptions.getField("IP_DONTFRAGMENT").get(null);
+        }
+        catch (ReflectiveOperationException | LinkageError | ClassCastException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright © 2024 Peter Doornbosch
+ *
+ * This file is part of Kwik, an implementation of the QUIC protocol in Java.
+ *
+ * Kwik is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * Kwik is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.luminis.quic.util;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+/**
+ * Clock that is based on the monotonic {@link System#nanoTime()} instead of the wall clock, so time never jumps (e.g.
+ * when the system clock is adjusted) and instants have nanosecond resolution. The instants returned are anchored at
+ * the wall clock time of the moment this class was initialized, so they are still meaningful in log output.
+ * Durations between instants of this clock are only meaningful when both instants are obtained from this clock;
+ * all timing related code (sending, receiving and recovery) must therefore use the same (shared) instance.
+ */
+public final class MonotonicClock extends Clock {
+
+    private static final MonotonicClock INSTANCE = new MonotonicClock();
+
+    private final long originNanos;
+    private final long originEpochSecond;
+    private final long originNanoAdjustment;
+
+    public static MonotonicClock instance() {
+        return INSTANCE;
+    }
+
+    private MonotonicClock() {
+        Instant wallClockOrigin = Instant.now();
+        originNanos = System.nanoTime();
+        originEpochSecond = wallClockOrigin.getEpochSecond();
+        originNanoAdjustment = wallClockOrigin.getNano();
+    }
+
+    @Override
+    public Instant instant() {
+        return Instant.ofEpochSecond(originEpochSecond, originNanoAdjustment + (System.nanoTime() - originNanos));
+    }
+
+    @Override
+    public long millis() {
+        return instant().toEpochMilli();
+    }
+
+    @Override
+    public ZoneId getZone() {
+        return ZoneOffset.UTC;
+    }
+
+    @Override
+    public Clock withZone(ZoneId zone) {
+        if (zone.equals(ZoneOffset.UTC)) {
+            return this;
+        }
+        throw new UnsupportedOperationException("monotonic clock only supports UTC");
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright © 2024 Peter Doornbosch
+ *
+ * This file is part of Kwik, an implementation of the QUIC protocol in Java.
+ *
+ * Kwik is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * Kwik is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.luminis.quic;
+
+import net.luminis.quic.cc.BbrCongestionController;
+import net.luminis.quic.cc.CongestionControlEventListener;
+import net.luminis.quic.cc.CongestionController;
+import net.luminis.quic.cc.CubicCongestionController;
+import net.luminis.quic.cc.NewRenoCongestionController;
+import net.luminis.quic.frame.Padding;
+import net.luminis.quic.impl.MockPacket;
+import net.luminis.quic.log.NullLogger;
+import net.luminis.quic.packet.PacketInfo;
+import net.luminis.quic.packet.QuicPacket;
+import net.luminis.quic.recovery.RttEstimator;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+
+class CongestionControllerFactoryTest {
+
+    @Test
+    void byDefaultNewRenoIsCreated() {
+        // When
+        CongestionController congestionController = create(CongestionControllerFactory.builder().build());
+
+        // Then
+        assertThat(congestionController).isInstanceOf(NewRenoCongestionController.class);
+        assertThat(congestionController.getWindowSize()).isEqualTo(12_000);
+    }
+
+    @Test
+    void createsCongestionControllerForGivenAlgorithm() {
+        assertThat(create(CongestionControllerFactory.of(CongestionControlAlgorithm.CUBIC))).isInstanceOf(CubicCongestionController.class);
+        assertThat(create(CongestionControllerFactory.of(CongestionControlAlgorithm.BBR))).isInstanceOf(BbrCongestionController.class);
+    }
+
+    @Test
+    void initialWindowCanBeSet() {
+        // Given
+        CongestionControllerFactory factory = CongestionControllerFactory.builder()
+                .algorithm(CongestionControlAlgorithm.CUBIC)
+                .initialWindow(32 * 1200)
+                .build();
+
+        // When
+        CongestionController congestionController = create(factory);
+
+        // Then
+        assertThat(congestionController.getWindowSize()).isEqualTo(32 * 1200);
+    }
+
+    @Test
+    void lossReductionFactorAndMinimumWindowAreApplied() {
+        // Given
+        CongestionControllerFactory factory = CongestionControllerFactory.builder()
+                .initialWindow(12_000)
+                .minimumWindow(8_000)
+                .lossReductionFactor(0.75)
+                .build();
+        CongestionController congestionController = create(factory);
+
+        // When
+        loseOnePacket(congestionController, Instant.now());
+
+        // Then
+        assertThat(congestionController.getWindowSize()).isEqualTo(9_000);
+
+        // When
+        loseOnePacket(congestionController, Instant.now().plusSeconds(1));
+
+        // Then
+        assertThat(congestionController.getWindowSize()).isEqualTo(8_000);
+    }
+
+    @Test
+    void lossReductionFactorMustBeBetweenZeroAndOne() {
+        assertThatThrownBy(() -> CongestionControllerFactory.builder().lossReductionFactor(1.0))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> CongestionControllerFactory.builder().lossReductionFactor(0.0))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void initialWindowCannotBeSmallerThanMinimumWindow() {
+        assertThatThrownBy(() -> CongestionControllerFactory.builder().initialWindow(10 * 1200).minimumWindow(20 * 1200).build())
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void windowCannotBeSmallerThanOnePacket() {
+        assertThatThrownBy(() -> CongestionControllerFactory.builder().minimumWindow(1000))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private CongestionController create(CongestionControllerFactory factory) {
+        return factory.createCongestionController(Clock.systemUTC(), new NullLogger(),
+                mock(CongestionControlEventListener.class), new RttEstimator(new NullLogger(), 100));
+    }
+
+    private void loseOnePacket(CongestionController congestionController, Instant timeSent) {
+        QuicPacket packet = new MockPacket(new Padding(800));
+        congestionController.registerInFlight(packet);
+        congestionController.registerLost(List.of(new PacketInfo(timeSent, packet, p -> {})));
+    }
+}
@@ -30,4 +30,17 @@ class StatisticsTest {
         // Then
         assertThat(statistics.efficiency()).isEqualTo(75.9f);
     }
-}
\ No newline at end of file
+
+    @Test
+    void subMillisecondMinRttShouldBeRoundedUp() {
+        // Given
+        SendStatistics sendStatistics = new SendStatistics(0, 0, 1000, 759, 0, 1, 1, 1, 0, 0, 0, 400);
+
+        // When
+        Statistics statistics = new Statistics(sendStatistics);
+
+        // Then
+        assertThat(statistics.minRtt()).isEqualTo(1);
+        assertThat(statistics.minRttMicros()).isEqualTo(400);
+    }
+}
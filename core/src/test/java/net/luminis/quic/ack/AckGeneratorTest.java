@@ -23,6 +23,7 @@ import net.luminis.quic.impl.MockPacket;
 import net.luminis.quic.common.PnSpace;
 import net.luminis.quic.impl.Version;
 import net.luminis.quic.frame.AckFrame;
+import net.luminis.quic.frame.AckFrequencyFrame;
 import net.luminis.quic.frame.Range;
 import net.luminis.quic.packet.RetryPacket;
 import net.luminis.quic.packet.VersionNegotiationPacket;
@@ -218,6 +219,95 @@ class AckGeneratorTest {
         verify(sender, timeout(1)).sendAck(PnSpace.App, 0);
     }
 
+    @Test
+    void whenPeerRequestsHigherAckElicitingThresholdAcksAreSentLessOften() {
+        // Given
+        ackGenerator.process(new AckFrequencyFrame(0, 3, 40_000, 0));
+
+        // When
+        for (int pn = 1; pn <= 3; pn++) {
+            ackGenerator.packetReceived(new MockPacket(pn, 83, EncryptionLevel.App));
+        }
+
+        // Then
+        verify(sender, times(3)).sendAck(PnSpace.App, 32);
+        verify(sender, never()).sendAck(PnSpace.App, 0);
+
+        // And When
+        ackGenerator.packetReceived(new MockPacket(4, 83, EncryptionLevel.App));
+        // Then
+        verify(sender, times(1)).sendAck(PnSpace.App, 0);
+    }
+
+    @Test
+    void ackFrequencyFrameWithOlderSequenceNumberIsIgnored() {
+        // Given
+        ackGenerator.process(new AckFrequencyFrame(1, 9, 40_000, 0));
+
+        // When
+        ackGenerator.process(new AckFrequencyFrame(0, 1, 25_000, 0));
+        ackGenerator.packetReceived(new MockPacket(1, 83, EncryptionLevel.App));
+
+        // Then
+        verify(sender, times(1)).sendAck(PnSpace.App, 32);
+    }
+
+    @Test
+    void ackElicitingThresholdZeroLeadsToImmediateAcks() {
+        // Given
+        ackGenerator.process(new AckFrequencyFrame(0, 0, 25_000, 0));
+
+        // When
+        ackGenerator.packetReceived(new MockPacket(1, 83, EncryptionLevel.App));
+
+        // Then
+        verify(sender, times(1)).sendAck(PnSpace.App, 0);
+    }
+
+    @Test
+    void immediateAckRequestLeadsToImmediateAck() {
+        // Given
+        ackGenerator.process(new AckFrequencyFrame(0, 10, 25_000, 0));
+        ackGenerator.packetReceived(new MockPacket(1, 83, EncryptionLevel.App));
+        clearInvocations(sender);
+
+        // When
+        ackGenerator.immediateAckRequested();
+        ackGenerator.packetReceived(new MockPacket(2, 83, EncryptionLevel.App));
+
+        // Then
+        verify(sender, times(1)).sendAck(PnSpace.App, 0);
+    }
+
+    @Test
+    void reorderingBeyondThresholdLeadsToImmediateAck() {
+        // Given
+        ackGenerator.process(new AckFrequencyFrame(0, 10, 25_000, 2));
+        ackGenerator.packetReceived(new MockPacket(1, 83, EncryptionLevel.App));
+        ackGenerator.packetReceived(new MockPacket(3, 83, EncryptionLevel.App));
+        verify(sender, never()).sendAck(PnSpace.App, 0);
+
+        // When
+        ackGenerator.packetReceived(new MockPacket(4, 83, EncryptionLevel.App));
+
+        // Then
+        verify(sender, times(1)).sendAck(PnSpace.App, 0);
+    }
+
+    @Test
+    void withoutReorderingThresholdReorderingDoesNotLeadToImmediateAck() {
+        // Given
+        ackGenerator.process(new AckFrequencyFrame(0, 10, 25_000, 0));
+
+        // When
+        ackGenerator.packetReceived(new MockPacket(1, 83, EncryptionLevel.App));
+        ackGenerator.packetReceived(new MockPacket(5, 83, EncryptionLevel.App));
+        ackGenerator.packetReceived(new MockPacket(6, 83, EncryptionLevel.App));
+
+        // Then
+        verify(sender, never()).sendAck(PnSpace.App, 0);
+    }
+
     @Test
     void removeOneExactlyMatchingAcknowlegdedRange() {
         // Given
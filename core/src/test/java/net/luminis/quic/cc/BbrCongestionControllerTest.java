@@ -0,0 +1,262 @@
+/*
+ * Copyright © 2024 Peter Doornbosch
+ *
+ * This file is part of Kwik, an implementation of the QUIC protocol in Java.
+ *
+ * Kwik is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * Kwik is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.luminis.quic.cc;
+
+import net.luminis.quic.common.EncryptionLevel;
+import net.luminis.quic.frame.AckFrame;
+import net.luminis.quic.frame.Padding;
+import net.luminis.quic.impl.MockPacket;
+import net.luminis.quic.log.NullLogger;
+import net.luminis.quic.log.NullQLog;
+import net.luminis.quic.packet.PacketInfo;
+import net.luminis.quic.packet.QuicPacket;
+import net.luminis.quic.recovery.DeliveryRateSampler;
+import net.luminis.quic.recovery.LossDetector;
+import net.luminis.quic.recovery.RecoveryManager;
+import net.luminis.quic.recovery.RttEstimator;
+import net.luminis.quic.test.FieldReader;
+import net.luminis.quic.test.TestClock;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+import static org.mockito.Mockito.mock;
+
+class BbrCongestionControllerTest {
+
+    private TestClock clock;
+    private BbrCongestionController congestionController;
+
+    @BeforeEach
+    void initObjectUnderTest() {
+        clock = new TestClock();
+        congestionController = new BbrCongestionController(clock, new NullLogger(), mock(CongestionControlEventListener.class), new RttEstimator(new NullLogger(), 100));
+    }
+
+    @Test
+    void initiallyInStartupWithPacingRate() {
+        assertThat(congestionController.getState()).isEqualTo(BbrCongestionController.State.Startup);
+        assertThat(congestionController.getWindowSize()).isEqualTo(12_000);
+        assertThat(congestionController.pacingRate()).isPresent();
+    }
+
+    @Test
+    void estimatesBottleneckBandwidthAndMinRtt() {
+        // Given
+        PathSimulation path = new PathSimulation(clock, congestionController, 1_200_000, 100, 0.0);
+
+        // When
+        path.runFor(Duration.ofSeconds(4));
+
+        // Then
+        assertThat((double) congestionController.getBottleneckBandwidth()).isCloseTo(1_200_000, within(120_000.0));
+        assertThat(congestionController.getMinRtt()).isBetween(Duration.ofMillis(100), Duration.ofMillis(110));
+        assertThat(congestionController.getState().name()).startsWith("ProbeBw");
+    }
+
+    @Test
+    void leavesStartupAfterBandwidthStopsGrowing() {
+        // Given
+        PathSimulation path = new PathSimulation(clock, congestionController, 1_200_000, 100, 0.0);
+
+        // When
+        path.runFor(Duration.ofSeconds(2));
+
+        // Then
+        assertThat(path.statesSeen).contains(BbrCongestionController.State.Startup, BbrCongestionController.State.Drain);
+        assertThat(congestionController.getState()).isNotIn(BbrCongestionController.State.Startup, BbrCongestionController.State.Drain);
+    }
+
+    @Test
+    void leavesStartupWhenLossRateIsTooHigh() {
+        // Given
+        // (bottleneck is so fast that bandwidth would not stop growing during the test)
+        PathSimulation path = new PathSimulation(clock, congestionController, 100_000_000, 100, 0.10);
+
+        // When
+        path.runFor(Duration.ofMillis(800));
+
+        // Then
+        assertThat(congestionController.getState()).isNotEqualTo(BbrCongestionController.State.Startup);
+    }
+
+    @Test
+    void lostPmtuProbeDoesNotChangeState() throws Exception {
+        // Given
+        long initialCwnd = congestionController.getWindowSize();
+        QuicPacket probe = new MockPacket(new Padding(1400));
+        probe.setIsPmtuProbe(true);
+        congestionController.registerInFlight(probe);
+
+        // When
+        congestionController.registerLost(List.of(new PacketInfo(clock.instant(), probe, p -> {})));
+
+        // Then
+        assertThat(congestionController.getState()).isEqualTo(BbrCongestionController.State.Startup);
+        assertThat(congestionController.getWindowSize()).isEqualTo(initialCwnd);
+        assertThat(congestionController.getBytesInFlight()).isEqualTo(0);
+        assertThat(new FieldReader(congestionController, BbrCongestionController.class.getDeclaredField("lossEventsInRound")).read()).isEqualTo(0);
+        assertThat(new FieldReader(congestionController, BbrCongestionController.class.getDeclaredField("lostInRound")).read()).isEqualTo(0L);
+    }
+
+    @Test
+    void periodicallyProbesForMinRtt() {
+        // Given
+        PathSimulation path = new PathSimulation(clock, congestionController, 1_200_000, 100, 0.0);
+
+        // When
+        path.runFor(Duration.ofSeconds(7));
+        Set<BbrCongestionController.State> statesSeen = path.statesSeen;
+
+        // Then
+        assertThat(statesSeen).contains(BbrCongestionController.State.ProbeRtt);
+        assertThat(congestionController.getState()).isNotEqualTo(BbrCongestionController.State.ProbeRtt);
+    }
+
+    @Test
+    void randomLossHasLittleImpactOnThroughput() {
+        // Given
+        CongestionController newReno = new NewRenoCongestionController(new NullLogger(), mock(CongestionControlEventListener.class));
+        PathSimulation bbrPath = new PathSimulation(clock, congestionController, 1_200_000, 100, 0.01);
+        PathSimulation renoPath = new PathSimulation(new TestClock(), newReno, 1_200_000, 100, 0.01);
+
+        // When
+        long bbrDelivered = bbrPath.runFor(Duration.ofSeconds(10));
+        long renoDelivered = renoPath.runFor(Duration.ofSeconds(10));
+
+        // Then
+        assertThat(bbrDelivered).isGreaterThan(12_000_000 * 70 / 100);
+        assertThat(bbrDelivered).isGreaterThan(renoDelivered * 3);
+    }
+
+    /**
+     * Simulates a path with a bottleneck link of a given rate (with an unbounded queue in front of it), a fixed
+     * propagation delay and random loss. Packets are acknowledged individually, and lost packets are detected by the
+     * loss detector when later packets are acknowledged.
+     */
+    static class PathSimulation {
+
+        private final TestClock clock;
+        private final CongestionController congestionController;
+        private final LossDetector lossDetector;
+        private final long bottleneckRate;
+        private final Duration rtt;
+        private final double lossRate;
+        private final Random random = new Random(2024);
+        private final PriorityQueue<Ack> acks = new PriorityQueue<>();
+        private final Set<BbrCongestionController.State> statesSeen = EnumSet.noneOf(BbrCongestionController.State.class);
+        private Instant linkFreeAt;
+        private Instant nextSendTime;
+        private int packetNumber;
+        private long bytesDelivered;
+
+        PathSimulation(TestClock clock, CongestionController congestionController, long bottleneckRate, int rttMillis, double lossRate) {
+            this.clock = clock;
+            this.congestionController = congestionController;
+            this.bottleneckRate = bottleneckRate;
+            this.rtt = Duration.ofMillis(rttMillis);
+            this.lossRate = lossRate;
+            lossDetector = new LossDetector(clock, mock(RecoveryManager.class), new RttEstimator(new NullLogger(), rttMillis), congestionController, () -> {}, new NullQLog());
+            if (congestionController instanceof BbrCongestionController) {
+                lossDetector.setDeliveryRateSampler(new DeliveryRateSampler(((BbrCongestionController) congestionController)::rateSample));
+            }
+            linkFreeAt = clock.instant();
+            nextSendTime = clock.instant();
+        }
+
+        /**
+         * Runs the simulation for the given duration and returns the number of bytes delivered in that period.
+         */
+        long runFor(Duration duration) {
+            long deliveredAtStart = bytesDelivered;
+            Instant end = clock.instant().plus(duration);
+            while (clock.instant().isBefore(end)) {
+                Instant sendTime = congestionController.remainingCwnd() > 0? max(nextSendTime, clock.instant()): null;
+                Instant ackTime = acks.isEmpty()? null: acks.peek().arrival;
+                if (sendTime == null && ackTime == null) {
+                    break;
+                }
+                if (ackTime == null || (sendTime != null && sendTime.isBefore(ackTime))) {
+                    advanceTo(sendTime);
+                    send();
+                }
+                else {
+                    advanceTo(ackTime);
+                    Ack ack = acks.poll();
+                    bytesDelivered += ack.size;
+                    lossDetector.onAckReceived(new AckFrame(ack.packetNumber), clock.instant());
+                }
+                if (congestionController instanceof BbrCongestionController) {
+                    statesSeen.add(((BbrCongestionController) congestionController).getState());
+                }
+            }
+            return bytesDelivered - deliveredAtStart;
+        }
+
+        private void send() {
+            int size = 1200;
+            MockPacket packet = new MockPacket(packetNumber++, size, EncryptionLevel.App);
+            lossDetector.packetSent(packet, clock.instant(), p -> {});
+
+            Duration transmissionTime = Duration.ofNanos(size * 1_000_000_000L / bottleneckRate);
+            linkFreeAt = max(linkFreeAt, clock.instant()).plus(transmissionTime);
+            if (random.nextDouble() >= lossRate) {
+                acks.add(new Ack(packet.getPacketNumber(), size, linkFreeAt.plus(rtt)));
+            }
+            congestionController.pacingRate().ifPresent(rate ->
+                    nextSendTime = clock.instant().plusNanos(size * 1_000_000_000L / rate));
+        }
+
+        private void advanceTo(Instant time) {
+            if (time.isAfter(clock.instant())) {
+                clock.fastForward(Duration.between(clock.instant(), time));
+            }
+        }
+
+        private static Instant max(Instant a, Instant b) {
+            return a.isAfter(b)? a: b;
+        }
+    }
+
+    static class Ack implements Comparable<Ack> {
+        final long packetNumber;
+        final int size;
+        final Instant arrival;
+
+        Ack(long packetNumber, int size, Instant arrival) {
+            this.packetNumber = packetNumber;
+            this.size = size;
+            this.arrival = arrival;
+        }
+
+        @Override
+        public int compareTo(Ack other) {
+            return arrival.compareTo(other.arrival);
+        }
+    }
+}
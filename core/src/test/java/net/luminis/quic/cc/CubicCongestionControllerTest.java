@@ -0,0 +1,296 @@
+/*
+ * Copyright © 2024 Peter Doornbosch
+ *
+ * This file is part of Kwik, an implementation of the QUIC protocol in Java.
+ *
+ * Kwik is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * Kwik is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.luminis.quic.cc;
+
+import net.luminis.quic.common.EncryptionLevel;
+import net.luminis.quic.impl.MockPacket;
+import net.luminis.quic.frame.Padding;
+import net.luminis.quic.log.NullLogger;
+import net.luminis.quic.packet.PacketInfo;
+import net.luminis.quic.packet.QuicPacket;
+import net.luminis.quic.recovery.RttEstimator;
+import net.luminis.quic.test.TestClock;
+import org.assertj.core.data.Offset;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+class CubicCongestionControllerTest {
+
+    private TestClock clock;
+    private CubicCongestionController congestionController;
+
+    @BeforeEach
+    void initObjectUnderTest() {
+        clock = new TestClock();
+        congestionController = createCubic(clock, 100);
+    }
+
+    @Test
+    void initialValueForCwnd() {
+        assertThat(congestionController.getWindowSize()).isEqualTo(12_000);
+    }
+
+    @Test
+    void whenInSlowStartCwndIncreasesByNumberOfBytesAcked() {
+        // Given (cwnd is fully utilized)
+        long initialCwnd = congestionController.getWindowSize();
+        congestionController.registerInFlight(new MockPacket(new Padding((int) initialCwnd)));
+
+        // When
+        MockPacket normalPacket = new MockPacket(new Padding(1100));
+        congestionController.registerInFlight(normalPacket);
+        congestionController.registerAcked(List.of(new PacketInfo(clock.instant(), normalPacket, this::noOp)));
+
+        // Then
+        assertThat(congestionController.getWindowSize()).isEqualTo(initialCwnd + normalPacket.getSize());
+        assertThat(congestionController.getMode()).isEqualTo(NewRenoCongestionController.Mode.SlowStart);
+    }
+
+    @Test
+    void whenPacketLostCongestionWindowIsReducedWithBetaCubic() {
+        // Given
+        long initialCwnd = congestionController.getWindowSize();
+        QuicPacket packet = new MockPacket(new Padding(800));
+        congestionController.registerInFlight(packet);
+
+        // When
+        congestionController.registerLost(List.of(new PacketInfo(clock.instant(), packet, this::noOp)));
+
+        // Then
+        assertThat(congestionController.getWindowSize()).isEqualTo((long) (initialCwnd * 0.7));
+        assertThat(congestionController.getMaxWindow()).isEqualTo(initialCwnd);
+        assertThat(congestionController.getMode()).isEqualTo(NewRenoCongestionController.Mode.CongestionAvoidance);
+    }
+
+    @Test
+    void lossOfPacketSentBeforeCongestionRecoveryDoesNotChangeCongestionWindow() {
+        // Given
+        long initialCwnd = congestionController.getWindowSize();
+        QuicPacket packet1 = new MockPacket(new Padding(800));
+        QuicPacket packet2 = new MockPacket(new Padding(800));
+        Instant timeSent = clock.instant();
+        congestionController.registerInFlight(packet1);
+        congestionController.registerInFlight(packet2);
+        clock.fastForward(10);
+        congestionController.registerLost(List.of(new PacketInfo(timeSent, packet1, this::noOp)));
+
+        // When
+        clock.fastForward(10);
+        congestionController.registerLost(List.of(new PacketInfo(timeSent, packet2, this::noOp)));
+
+        // Then
+        assertThat(congestionController.getWindowSize()).isEqualTo((long) (initialCwnd * 0.7));
+    }
+
+    @Test
+    void lostPmtuProbeDoesNotReduceCongestionWindow() {
+        // Given
+        long initialCwnd = congestionController.getWindowSize();
+        QuicPacket probe = new MockPacket(new Padding(1400));
+        probe.setIsPmtuProbe(true);
+        congestionController.registerInFlight(probe);
+
+        // When
+        congestionController.registerLost(List.of(new PacketInfo(clock.instant(), probe, this::noOp)));
+
+        // Then
+        assertThat(congestionController.getWindowSize()).isEqualTo(initialCwnd);
+        assertThat(congestionController.getBytesInFlight()).isEqualTo(0);
+    }
+
+    @Test
+    void withFastConvergenceMaxWindowIsReducedWhenLossOccursBeforeMaxWindowIsReached() {
+        // Given
+        BottleneckSimulation simulation = new BottleneckSimulation(congestionController, clock, 100);
+        simulation.runUntilWindowIs(100 * 1200);
+        long windowAtFirstLoss = congestionController.getWindowSize();
+        simulation.loseOnePacket();
+        simulation.runRounds(3);
+        long windowAtSecondLoss = congestionController.getWindowSize();
+        assertThat(windowAtSecondLoss).isLessThan(windowAtFirstLoss);
+
+        // When
+        simulation.loseOnePacket();
+
+        // Then
+        assertThat(congestionController.getMaxWindow()).isCloseTo((long) (windowAtSecondLoss * (1 + 0.7) / 2), Offset.offset(1200L));
+    }
+
+    @Test
+    void withoutFastConvergenceMaxWindowIsWindowAtLoss() {
+        // Given
+        congestionController.setFastConvergence(false);
+        BottleneckSimulation simulation = new BottleneckSimulation(congestionController, clock, 100);
+        simulation.runUntilWindowIs(100 * 1200);
+        simulation.loseOnePacket();
+        simulation.runRounds(3);
+        long windowAtSecondLoss = congestionController.getWindowSize();
+
+        // When
+        simulation.loseOnePacket();
+
+        // Then
+        assertThat(congestionController.getMaxWindow()).isCloseTo(windowAtSecondLoss, Offset.offset(1200L));
+    }
+
+    @Test
+    void inCongestionAvoidanceWindowApproachesMaxWindowAndThenProbesBeyond() {
+        // Given
+        BottleneckSimulation simulation = new BottleneckSimulation(congestionController, clock, 100);
+        simulation.runUntilWindowIs(200 * 1200);
+        simulation.loseOnePacket();
+        long maxWindow = congestionController.getMaxWindow();
+        // K = cubic_root(200 * (1 - 0.7) / 0.4) = 5.3 seconds
+
+        // When
+        simulation.runRounds(40);
+
+        // Then
+        assertThat(congestionController.getWindowSize()).isBetween((long) (maxWindow * 0.95), maxWindow);
+
+        // When
+        simulation.runRounds(40);
+
+        // Then
+        assertThat(congestionController.getWindowSize()).isGreaterThan(maxWindow);
+    }
+
+    @Test
+    void withSmallWindowAndShortRttWindowGrowsAtLeastAsFastAsReno() {
+        // Given
+        clock = new TestClock();
+        congestionController = createCubic(clock, 10);
+        BottleneckSimulation simulation = new BottleneckSimulation(congestionController, clock, 10);
+        simulation.runUntilWindowIs(12_000);
+        simulation.loseOnePacket();
+        long maxWindow = congestionController.getMaxWindow();
+
+        // When (after 0.5 seconds, where K = cubic_root(10 * (1 - 0.7) / 0.4) = 1.96 seconds)
+        simulation.runRounds(50);
+
+        // Then (the cubic function would still be below W_max, but the Reno-friendly estimate has grown beyond it)
+        assertThat(congestionController.getWindowSize()).isGreaterThan(maxWindow);
+    }
+
+    @Test
+    void afterLossOnHighBandwidthDelayPathCubicRecoversMuchFasterThanNewReno() {
+        // Given
+        TestClock renoClock = new TestClock();
+        NewRenoCongestionController newReno = new NewRenoCongestionController(new NullLogger(), mock(CongestionControlEventListener.class));
+        BottleneckSimulation renoSimulation = new BottleneckSimulation(newReno, renoClock, 100);
+        BottleneckSimulation cubicSimulation = new BottleneckSimulation(congestionController, clock, 100);
+
+        // When
+        Duration renoRecoveryTime = renoSimulation.recoveryTimeAfterLoss(500 * 1200);
+        Duration cubicRecoveryTime = cubicSimulation.recoveryTimeAfterLoss(500 * 1200);
+
+        // Then
+        assertThat(cubicRecoveryTime).isLessThan(renoRecoveryTime.dividedBy(4));
+    }
+
+    private CubicCongestionController createCubic(TestClock clock, int rtt) {
+        return new CubicCongestionController(clock, new NullLogger(), mock(CongestionControlEventListener.class),
+                new RttEstimator(new NullLogger(), rtt));
+    }
+
+    private void noOp(QuicPacket packet) {}
+
+    /**
+     * Simulates a sender that always fills the congestion window, on a path with a fixed RTT and a bottleneck that
+     * is large enough to never drop packets; losses are only caused on request.
+     */
+    static class BottleneckSimulation {
+
+        private final CongestionController congestionController;
+        private final TestClock clock;
+        private final Duration rtt;
+        private final Deque<PacketInfo> inFlight = new ArrayDeque<>();
+        private int packetNumber;
+
+        BottleneckSimulation(CongestionController congestionController, TestClock clock, int rttMillis) {
+            this.congestionController = congestionController;
+            this.clock = clock;
+            this.rtt = Duration.ofMillis(rttMillis);
+            fillWindow();
+        }
+
+        void runRounds(int count) {
+            for (int i = 0; i < count; i++) {
+                runRound();
+            }
+        }
+
+        void runUntilWindowIs(long window) {
+            while (congestionController.getWindowSize() < window) {
+                runRound();
+            }
+        }
+
+        void loseOnePacket() {
+            congestionController.registerLost(List.of(inFlight.poll()));
+            fillWindow();
+        }
+
+        /**
+         * Lets the window grow to the given size, loses a packet and returns the time it takes for the window to
+         * grow back to 90% of the given size.
+         */
+        Duration recoveryTimeAfterLoss(long window) {
+            runUntilWindowIs(window);
+            long windowBeforeLoss = congestionController.getWindowSize();
+            loseOnePacket();
+            Instant lossTime = clock.instant();
+            while (congestionController.getWindowSize() < windowBeforeLoss * 0.9) {
+                runRound();
+            }
+            return Duration.between(lossTime, clock.instant());
+        }
+
+        // Acknowledges all packets in flight, evenly spread over one RTT; each ack is immediately followed by
+        // sending new packets to fill the congestion window again.
+        private void runRound() {
+            int count = inFlight.size();
+            Duration interval = rtt.dividedBy(count);
+            for (int i = 0; i < count; i++) {
+                clock.fastForward(interval);
+                congestionController.registerAcked(List.of(inFlight.poll()));
+                fillWindow();
+            }
+        }
+
+        // Sends full-size packets only (like a real sender would do with plenty of data to send), so the last packet
+        // may exceed the congestion window a little.
+        private void fillWindow() {
+            while (congestionController.remainingCwnd() > 0) {
+                QuicPacket packet = new MockPacket(packetNumber++, 1200, EncryptionLevel.App);
+                congestionController.registerInFlight(packet);
+                inFlight.add(new PacketInfo(clock.instant(), packet, p -> {}));
+            }
+        }
+    }
+}
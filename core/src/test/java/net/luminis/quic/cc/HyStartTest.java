@@ -0,0 +1,158 @@
+/*
+ * Copyright © 2024 Peter Doornbosch
+ *
+ * This file is part of Kwik, an implementation of the QUIC protocol in Java.
+ *
+ * Kwik is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * Kwik is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.luminis.quic.cc;
+
+import net.luminis.quic.common.EncryptionLevel;
+import net.luminis.quic.impl.MockPacket;
+import net.luminis.quic.packet.PacketInfo;
+import net.luminis.quic.test.TestClock;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HyStartTest {
+
+    private TestClock clock;
+    private HyStart hyStart;
+    private int packetNumber;
+
+    @BeforeEach
+    void initObjectUnderTest() {
+        clock = new TestClock();
+        hyStart = new HyStart(clock);
+    }
+
+    @Test
+    void remainsInSlowStartWhenRttIsStable() {
+        // When
+        for (int i = 0; i < 10; i++) {
+            runRound(10, 100);
+        }
+
+        // Then
+        assertThat(hyStart.getPhase()).isEqualTo(HyStart.Phase.SlowStart);
+        assertThat(hyStart.windowIncrease(1200)).isEqualTo(1200);
+    }
+
+    @Test
+    void whenRttIncreasesConservativeSlowStartIsEntered() {
+        // Given
+        runRound(10, 100);
+
+        // When
+        runRound(10, 113);
+
+        // Then
+        assertThat(hyStart.getPhase()).isEqualTo(HyStart.Phase.ConservativeSlowStart);
+        assertThat(hyStart.windowIncrease(1200)).isEqualTo(300);
+    }
+
+    @Test
+    void rttIncreaseBelowThresholdIsIgnored() {
+        // Given
+        runRound(10, 100);
+
+        // When (threshold is 100 / 8 = 12.5 ms)
+        runRound(10, 112);
+
+        // Then
+        assertThat(hyStart.getPhase()).isEqualTo(HyStart.Phase.SlowStart);
+    }
+
+    @Test
+    void thresholdIsAtLeastMinimumRttThreshold() {
+        // Given
+        runRound(10, 10);
+
+        // When (10 / 8 is below the minimum of 4 ms)
+        runRound(10, 13);
+
+        // Then
+        assertThat(hyStart.getPhase()).isEqualTo(HyStart.Phase.SlowStart);
+    }
+
+    @Test
+    void rttIncreaseIsOnlyDetectedAfterEnoughSamples() {
+        // Given
+        runRound(10, 100);
+
+        // When
+        runRound(HyStart.N_RTT_SAMPLE - 1, 150);
+
+        // Then
+        assertThat(hyStart.getPhase()).isEqualTo(HyStart.Phase.SlowStart);
+    }
+
+    @Test
+    void whenRttDecreasesDuringConservativeSlowStartSlowStartIsResumed() {
+        // Given
+        runRound(10, 100);
+        runRound(10, 120);
+
+        // When
+        runRound(10, 101);
+
+        // Then
+        assertThat(hyStart.getPhase()).isEqualTo(HyStart.Phase.SlowStart);
+    }
+
+    @Test
+    void slowStartEndsWhenRttIncreasePersistsDuringConservativeSlowStart() {
+        // Given
+        runRound(10, 100);
+        runRound(10, 120);
+
+        // When
+        for (int i = 0; i < HyStart.CSS_ROUNDS - 1; i++) {
+            runRound(10, 120);
+            assertThat(hyStart.slowStartEnded()).isFalse();
+        }
+        runRound(10, 120);
+
+        // Then
+        assertThat(hyStart.slowStartEnded()).isTrue();
+    }
+
+    @Test
+    void congestionEventEndsSlowStart() {
+        // Given
+        runRound(10, 100);
+
+        // When
+        hyStart.congestionEvent();
+
+        // Then
+        assertThat(hyStart.slowStartEnded()).isTrue();
+    }
+
+    // Sends the given number of packets at once and acknowledges them one by one, after the given RTT.
+    private void runRound(int packets, int rttMillis) {
+        List<PacketInfo> sent = new ArrayList<>();
+        for (int i = 0; i < packets; i++) {
+            hyStart.packetSent();
+            sent.add(new PacketInfo(clock.instant(), new MockPacket(packetNumber++, 1200, EncryptionLevel.App), p -> {}));
+        }
+        clock.fastForward(rttMillis);
+        sent.forEach(packet -> hyStart.ackReceived(List.of(packet)));
+    }
+}
@@ -24,10 +24,12 @@ import net.luminis.quic.frame.Padding;
 import net.luminis.quic.log.NullLogger;
 import net.luminis.quic.packet.PacketInfo;
 import net.luminis.quic.packet.QuicPacket;
+import net.luminis.quic.test.TestClock;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.List;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -99,6 +101,22 @@ class NewRenoCongestionControllerTest {
         assertThat(((NewRenoCongestionController) congestionController).getMode()).isNotEqualTo(NewRenoCongestionController.Mode.SlowStart);
     }
 
+    @Test
+    void lostPmtuProbeDoesNotReduceCongestionWindow() {
+        // Given
+        long initialCwnd = congestionController.getWindowSize();
+        QuicPacket probe = new MockPacket(new Padding(1400));
+        probe.setIsPmtuProbe(true);
+        congestionController.registerInFlight(probe);
+
+        // When
+        congestionController.registerLost(List.of(new PacketInfo(whenever, probe, this::noOp)));
+
+        // Then
+        assertThat(congestionController.getWindowSize()).isEqualTo(initialCwnd);
+        assertThat(congestionController.getBytesInFlight()).isEqualTo(0);
+    }
+
     @Test
     void whenPacketLostCongestionWindowHalves() {
         long initialCwnd = congestionController.getWindowSize();
@@ -242,5 +260,77 @@ class NewRenoCongestionControllerTest {
         assertThat(((NewRenoCongestionController) congestionController).getMode()).isEqualTo(NewRenoCongestionController.Mode.CongestionAvoidance);
     }
 
+    @Test
+    void withHyStartSlowStartEndsWhenRttIncreases() {
+        // Given
+        TestClock clock = new TestClock();
+        NewRenoCongestionController newReno = new NewRenoCongestionController(clock, new NullLogger(), mock(CongestionControlEventListener.class));
+        newReno.setHyStart(true);
+        List<PacketInfo> inFlight = fillWindow(newReno, clock);
+        inFlight = runRound(newReno, clock, inFlight, 100);
+
+        // When
+        for (int i = 0; i < 10 && newReno.getMode() == NewRenoCongestionController.Mode.SlowStart; i++) {
+            inFlight = runRound(newReno, clock, inFlight, 130);
+        }
+
+        // Then
+        assertThat(newReno.getMode()).isEqualTo(NewRenoCongestionController.Mode.CongestionAvoidance);
+    }
+
+    @Test
+    void withoutHyStartRttIncreaseDoesNotEndSlowStart() {
+        // Given
+        TestClock clock = new TestClock();
+        NewRenoCongestionController newReno = new NewRenoCongestionController(clock, new NullLogger(), mock(CongestionControlEventListener.class));
+        List<PacketInfo> inFlight = fillWindow(newReno, clock);
+        inFlight = runRound(newReno, clock, inFlight, 100);
+
+        // When
+        for (int i = 0; i < 10; i++) {
+            inFlight = runRound(newReno, clock, inFlight, 130);
+        }
+
+        // Then
+        assertThat(newReno.getMode()).isEqualTo(NewRenoCongestionController.Mode.SlowStart);
+    }
+
+    @Test
+    void lossReductionFactorCanBeChanged() {
+        // Given
+        ((NewRenoCongestionController) congestionController).setLossReductionFactor(0.8);
+        long initialCwnd = congestionController.getWindowSize();
+        QuicPacket packet = new MockPacket(new Padding(800));
+        congestionController.registerInFlight(packet);
+
+        // When
+        congestionController.registerLost(List.of(new PacketInfo(whenever, packet, this::noOp)));
+
+        // Then
+        assertThat(congestionController.getWindowSize()).isEqualTo(initialCwnd * 8 / 10);
+    }
+
+    // Acknowledges all packets in flight after the given RTT; each ack is immediately followed by sending new packets
+    // to fill the congestion window again, which are returned.
+    private List<PacketInfo> runRound(CongestionController congestionController, TestClock clock, List<PacketInfo> inFlight, int rtt) {
+        clock.fastForward(rtt);
+        List<PacketInfo> sent = new ArrayList<>();
+        for (PacketInfo packet : inFlight) {
+            congestionController.registerAcked(List.of(packet));
+            sent.addAll(fillWindow(congestionController, clock));
+        }
+        return sent;
+    }
+
+    private List<PacketInfo> fillWindow(CongestionController congestionController, TestClock clock) {
+        List<PacketInfo> sent = new ArrayList<>();
+        while (congestionController.remainingCwnd() > 0) {
+            QuicPacket packet = new MockPacket(0, 1200, EncryptionLevel.App);
+            congestionController.registerInFlight(packet);
+            sent.add(new PacketInfo(clock.instant(), packet, this::noOp));
+        }
+        return sent;
+    }
+
     private void noOp(QuicPacket packet) {}
 }
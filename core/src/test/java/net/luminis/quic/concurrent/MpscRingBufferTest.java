@@ -0,0 +1,210 @@
+/*
+ * Copyright © 2024 Peter Doornbosch
+ *
+ * This file is part of Kwik, an implementation of the QUIC protocol in Java.
+ *
+ * Kwik is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * Kwik is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.luminis.quic.concurrent;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class MpscRingBufferTest {
+
+    @Test
+    void elementsShouldBeRetrievedInOrderOfInsertion() {
+        MpscRingBuffer<Integer> ringBuffer = new MpscRingBuffer<>(8, WaitStrategy.BLOCKING);
+
+        ringBuffer.offer(1);
+        ringBuffer.offer(2);
+        ringBuffer.offer(3);
+
+        assertThat(ringBuffer.size()).isEqualTo(3);
+        assertThat(ringBuffer.poll()).isEqualTo(1);
+        assertThat(ringBuffer.poll()).isEqualTo(2);
+        assertThat(ringBuffer.poll()).isEqualTo(3);
+        assertThat(ringBuffer.poll()).isNull();
+        assertThat(ringBuffer.isEmpty()).isTrue();
+    }
+
+    @Test
+    void capacityShouldBeRoundedUpToPowerOfTwo() {
+        assertThat(new MpscRingBuffer<>(100, WaitStrategy.BLOCKING).capacity()).isEqualTo(128);
+        assertThat(new MpscRingBuffer<>(64, WaitStrategy.BLOCKING).capacity()).isEqualTo(64);
+    }
+
+    @Test
+    void invalidCapacityShouldBeRejected() {
+        assertThatThrownBy(() -> new MpscRingBuffer<>(0, WaitStrategy.BLOCKING)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void offerShouldFailWhenBufferIsFull() {
+        MpscRingBuffer<Integer> ringBuffer = new MpscRingBuffer<>(4, WaitStrategy.BLOCKING);
+        for (int i = 0; i < 4; i++) {
+            assertThat(ringBuffer.offer(i)).isTrue();
+        }
+
+        assertThat(ringBuffer.offer(4)).isFalse();
+        assertThat(ringBuffer.size()).isEqualTo(4);
+    }
+
+    @Test
+    void slotsShouldBeReusedAfterElementIsRetrieved() {
+        MpscRingBuffer<Integer> ringBuffer = new MpscRingBuffer<>(4, WaitStrategy.BLOCKING);
+        for (int i = 0; i < 100; i++) {
+            assertThat(ringBuffer.offer(i)).isTrue();
+            assertThat(ringBuffer.offer(i + 1000)).isTrue();
+            assertThat(ringBuffer.poll()).isEqualTo(i);
+            assertThat(ringBuffer.poll()).isEqualTo(i + 1000);
+        }
+        assertThat(ringBuffer.isEmpty()).isTrue();
+    }
+
+    @ParameterizedTest
+    @EnumSource(WaitStrategy.class)
+    void pollWithTimeoutShouldReturnNullWhenNothingIsAdded(WaitStrategy waitStrategy) throws Exception {
+        MpscRingBuffer<Integer> ringBuffer = new MpscRingBuffer<>(4, waitStrategy);
+        long start = System.nanoTime();
+
+        Integer element = ringBuffer.poll(20, TimeUnit.MILLISECONDS);
+
+        assertThat(element).isNull();
+        assertThat(System.nanoTime() - start).isGreaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(20));
+    }
+
+    @ParameterizedTest
+    @EnumSource(WaitStrategy.class)
+    void waitingConsumerShouldBeWokenUpWhenElementIsAdded(WaitStrategy waitStrategy) throws Exception {
+        MpscRingBuffer<Integer> ringBuffer = new MpscRingBuffer<>(4, waitStrategy);
+        AtomicReference<Integer> received = new AtomicReference<>();
+        CountDownLatch done = new CountDownLatch(1);
+        Thread consumer = new Thread(() -> {
+            try {
+                received.set(ringBuffer.take());
+                done.countDown();
+            }
+            catch (InterruptedException e) {}
+        });
+        consumer.start();
+        Thread.sleep(20);
+
+        ringBuffer.offer(42);
+
+        assertThat(done.await(1, TimeUnit.SECONDS)).isTrue();
+        assertThat(received.get()).isEqualTo(42);
+    }
+
+    @ParameterizedTest
+    @EnumSource(WaitStrategy.class)
+    void waitingConsumerShouldBeWokenUpWhenBufferIsClosed(WaitStrategy waitStrategy) throws Exception {
+        MpscRingBuffer<Integer> ringBuffer = new MpscRingBuffer<>(4, waitStrategy);
+        AtomicReference<Integer> received = new AtomicReference<>(-1);
+        CountDownLatch done = new CountDownLatch(1);
+        Thread consumer = new Thread(() -> {
+            try {
+                received.set(ringBuffer.take());
+                done.countDown();
+            }
+            catch (InterruptedException e) {}
+        });
+        consumer.start();
+        Thread.sleep(20);
+
+        ringBuffer.close();
+
+        assertThat(done.await(1, TimeUnit.SECONDS)).isTrue();
+        assertThat(received.get()).isNull();
+        assertThat(consumer.isInterrupted()).isFalse();
+    }
+
+    @Test
+    void elementsAddedBeforeCloseShouldStillBeRetrieved() throws Exception {
+        MpscRingBuffer<Integer> ringBuffer = new MpscRingBuffer<>(4, WaitStrategy.BLOCKING);
+        ringBuffer.offer(1);
+
+        ringBuffer.close();
+
+        assertThat(ringBuffer.take()).isEqualTo(1);
+        assertThat(ringBuffer.take()).isNull();
+        assertThat(ringBuffer.poll(1, TimeUnit.SECONDS)).isNull();
+    }
+
+    @Test
+    void takeShouldThrowWhenConsumerIsInterrupted() throws Exception {
+        MpscRingBuffer<Integer> ringBuffer = new MpscRingBuffer<>(4, WaitStrategy.BLOCKING);
+        AtomicReference<Throwable> thrown = new AtomicReference<>();
+        Thread consumer = new Thread(() -> {
+            try {
+                ringBuffer.take();
+            }
+            catch (Throwable e) {
+                thrown.set(e);
+            }
+        });
+        consumer.start();
+        Thread.sleep(20);
+
+        consumer.interrupt();
+        consumer.join(1000);
+
+        assertThat(thrown.get()).isInstanceOf(InterruptedException.class);
+    }
+
+    @ParameterizedTest
+    @EnumSource(WaitStrategy.class)
+    void allElementsOfConcurrentProducersShouldBeDeliveredInProducerOrder(WaitStrategy waitStrategy) throws Exception {
+        int producers = 4;
+        int elementsPerProducer = 20_000;
+        // Small buffer, so producers regularly find it full.
+        MpscRingBuffer<int[]> ringBuffer = new MpscRingBuffer<>(16, waitStrategy);
+        List<Thread> producerThreads = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            int producer = p;
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < elementsPerProducer; i++) {
+                    while (!ringBuffer.offer(new int[] { producer, i })) {
+                        Thread.yield();
+                    }
+                }
+            });
+            producerThreads.add(thread);
+            thread.start();
+        }
+
+        int[] nextExpected = new int[producers];
+        for (int count = 0; count < producers * elementsPerProducer; count++) {
+            int[] element = ringBuffer.poll(5, TimeUnit.SECONDS);
+            assertThat(element).isNotNull();
+            assertThat(element[1]).isEqualTo(nextExpected[element[0]]);
+            nextExpected[element[0]]++;
+        }
+
+        for (Thread thread : producerThreads) {
+            thread.join(1000);
+        }
+        assertThat(ringBuffer.isEmpty()).isTrue();
+    }
+}
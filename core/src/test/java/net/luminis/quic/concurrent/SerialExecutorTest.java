@@ -0,0 +1,118 @@
+/*
+ * Copyright © 2024 Peter Doornbosch
+ *
+ * This file is part of Kwik, an implementation of the QUIC protocol in Java.
+ *
+ * Kwik is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * Kwik is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.luminis.quic.concurrent;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SerialExecutorTest {
+
+    private final ExecutorService sharedExecutor = Executors.newFixedThreadPool(4, new DaemonThreadFactory("test-shared"));
+
+    @AfterEach
+    void shutdownSharedExecutor() {
+        sharedExecutor.shutdown();
+    }
+
+    @Test
+    void tasksShouldRunOneAtATimeInOrderOfSubmission() throws Exception {
+        // Given
+        SerialExecutor serialExecutor = new SerialExecutor(sharedExecutor);
+        List<Integer> executionOrder = new CopyOnWriteArrayList<>();
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        CountDownLatch executed = new CountDownLatch(100);
+
+        // When
+        for (int i = 0; i < 100; i++) {
+            int taskNumber = i;
+            serialExecutor.execute(() -> {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                executionOrder.add(taskNumber);
+                running.decrementAndGet();
+                executed.countDown();
+            });
+        }
+
+        // Then
+        assertThat(executed.await(1, TimeUnit.SECONDS)).isTrue();
+        assertThat(maxRunning.get()).isEqualTo(1);
+        assertThat(executionOrder).isSorted().hasSize(100);
+    }
+
+    @Test
+    void tasksOfDifferentSerialExecutorsCanRunInParallel() throws Exception {
+        // Given
+        SerialExecutor serialExecutor1 = new SerialExecutor(sharedExecutor);
+        SerialExecutor serialExecutor2 = new SerialExecutor(sharedExecutor);
+        CountDownLatch bothRunning = new CountDownLatch(2);
+
+        // When
+        Runnable task = () -> {
+            bothRunning.countDown();
+            try {
+                bothRunning.await(1, TimeUnit.SECONDS);
+            }
+            catch (InterruptedException e) {}
+        };
+        serialExecutor1.execute(task);
+        serialExecutor2.execute(task);
+
+        // Then
+        assertThat(bothRunning.await(1, TimeUnit.SECONDS)).isTrue();
+    }
+
+    @Test
+    void failingTaskShouldNotStopNextTasks() throws Exception {
+        // Given
+        SerialExecutor serialExecutor = new SerialExecutor(sharedExecutor);
+        CountDownLatch executed = new CountDownLatch(1);
+
+        // When
+        serialExecutor.execute(() -> { throw new RuntimeException("test"); });
+        serialExecutor.execute(executed::countDown);
+
+        // Then
+        assertThat(executed.await(1, TimeUnit.SECONDS)).isTrue();
+    }
+
+    @Test
+    void whenSharedExecutorIsShutDownTasksShouldBeRejected() {
+        // Given
+        SerialExecutor serialExecutor = new SerialExecutor(sharedExecutor);
+
+        // When
+        sharedExecutor.shutdown();
+
+        // Then
+        assertThatThrownBy(() -> serialExecutor.execute(() -> {})).isInstanceOf(RejectedExecutionException.class);
+    }
+}
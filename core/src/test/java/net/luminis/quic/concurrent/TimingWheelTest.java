@@ -0,0 +1,264 @@
+/*
+ * Copyright © 2024 Peter Doornbosch
+ *
+ * This file is part of Kwik, an implementation of the QUIC protocol in Java.
+ *
+ * Kwik is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * Kwik is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.luminis.quic.concurrent;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class TimingWheelTest {
+
+    private TimingWheel timingWheel;
+
+    @BeforeEach
+    void initObjectUnderTest() {
+        // Small wheel, so tests also cover timers that need more than one round.
+        timingWheel = new TimingWheel(new DaemonThreadFactory("test-wheel"), 1, TimeUnit.MILLISECONDS, 8);
+    }
+
+    @AfterEach
+    void shutdownTimingWheel() {
+        timingWheel.shutdown();
+    }
+
+    @Test
+    void scheduledTaskShouldNotRunBeforeDeadline() throws Exception {
+        // Given
+        CountDownLatch executed = new CountDownLatch(1);
+        long start = System.nanoTime();
+        AtomicInteger elapsedMillis = new AtomicInteger();
+
+        // When
+        timingWheel.schedule(() -> {
+            elapsedMillis.set((int) ((System.nanoTime() - start) / 1_000_000));
+            executed.countDown();
+        }, 30, TimeUnit.MILLISECONDS);
+
+        // Then
+        assertThat(executed.await(1, TimeUnit.SECONDS)).isTrue();
+        assertThat(elapsedMillis.get()).isGreaterThanOrEqualTo(30);
+    }
+
+    @Test
+    void timersShouldExpireInOrderOfDeadline() throws Exception {
+        // Given
+        List<Integer> executionOrder = new CopyOnWriteArrayList<>();
+        CountDownLatch executed = new CountDownLatch(3);
+
+        // When
+        for (int delay: List.of(25, 5, 13)) {
+            timingWheel.schedule(() -> {
+                executionOrder.add(delay);
+                executed.countDown();
+            }, delay, TimeUnit.MILLISECONDS);
+        }
+
+        // Then
+        assertThat(executed.await(1, TimeUnit.SECONDS)).isTrue();
+        assertThat(executionOrder).containsExactly(5, 13, 25);
+    }
+
+    @Test
+    void cancelledTimerShouldNotRun() throws Exception {
+        // Given
+        AtomicInteger cancelledRuns = new AtomicInteger();
+        CountDownLatch otherExecuted = new CountDownLatch(1);
+        // Deadlines are large enough to cancel in time, even on a busy machine.
+        ScheduledFuture<?> timer = timingWheel.schedule(() -> cancelledRuns.incrementAndGet(), 200, TimeUnit.MILLISECONDS);
+        timingWheel.schedule(otherExecuted::countDown, 250, TimeUnit.MILLISECONDS);
+
+        // When
+        boolean cancelled = timer.cancel(false);
+
+        // Then
+        assertThat(cancelled).isTrue();
+        assertThat(otherExecuted.await(1, TimeUnit.SECONDS)).isTrue();
+        assertThat(cancelledRuns.get()).isEqualTo(0);
+    }
+
+    @Test
+    void timerCancelledByTaskInSameTickShouldNotRun() throws Exception {
+        // Given
+        AtomicInteger cancelledRuns = new AtomicInteger();
+        CountDownLatch executed = new CountDownLatch(1);
+        ScheduledFuture<?>[] timers = new ScheduledFuture<?>[1];
+        CountDownLatch scheduled = new CountDownLatch(1);
+        timingWheel.execute(() -> {
+            // Scheduling on the worker thread with same delay, so both end up in the same bucket.
+            timingWheel.schedule(() -> {
+                timers[0].cancel(false);
+                executed.countDown();
+            }, 10, TimeUnit.MILLISECONDS);
+            timers[0] = timingWheel.schedule(() -> cancelledRuns.incrementAndGet(), 10, TimeUnit.MILLISECONDS);
+            scheduled.countDown();
+        });
+        assertThat(scheduled.await(1, TimeUnit.SECONDS)).isTrue();
+
+        // When
+        assertThat(executed.await(1, TimeUnit.SECONDS)).isTrue();
+        Thread.sleep(20);
+
+        // Then
+        assertThat(cancelledRuns.get()).isEqualTo(0);
+    }
+
+    @Test
+    void executedTasksShouldRunInOrderOfSubmission() throws Exception {
+        // Given
+        List<Integer> executionOrder = new CopyOnWriteArrayList<>();
+        CountDownLatch executed = new CountDownLatch(100);
+
+        // When
+        for (int i = 0; i < 100; i++) {
+            int taskNumber = i;
+            timingWheel.execute(() -> {
+                executionOrder.add(taskNumber);
+                executed.countDown();
+            });
+        }
+
+        // Then
+        assertThat(executed.await(1, TimeUnit.SECONDS)).isTrue();
+        for (int i = 0; i < 100; i++) {
+            assertThat(executionOrder.get(i)).isEqualTo(i);
+        }
+    }
+
+    @Test
+    void callableResultShouldBeAvailableFromFuture() throws Exception {
+        ScheduledFuture<String> future = timingWheel.schedule(() -> "done", 5, TimeUnit.MILLISECONDS);
+
+        assertThat(future.get(1, TimeUnit.SECONDS)).isEqualTo("done");
+        assertThat(future.isDone()).isTrue();
+    }
+
+    @Test
+    void periodicTaskShouldRunRepeatedlyUntilCancelled() throws Exception {
+        // Given
+        AtomicInteger runs = new AtomicInteger();
+        CountDownLatch executedThreeTimes = new CountDownLatch(3);
+
+        // When
+        ScheduledFuture<?> timer = timingWheel.scheduleAtFixedRate(() -> {
+            runs.incrementAndGet();
+            executedThreeTimes.countDown();
+        }, 5, 5, TimeUnit.MILLISECONDS);
+
+        // Then
+        assertThat(executedThreeTimes.await(1, TimeUnit.SECONDS)).isTrue();
+        timer.cancel(false);
+        Thread.sleep(10);  // Let cancel take effect
+        int runsAfterCancel = runs.get();
+        Thread.sleep(30);
+        assertThat(runs.get()).isEqualTo(runsAfterCancel);
+    }
+
+    @Test
+    void failingTaskShouldNotStopWorkerThread() throws Exception {
+        // Given
+        CountDownLatch executed = new CountDownLatch(1);
+
+        // When
+        timingWheel.execute(() -> { throw new RuntimeException("test"); });
+        timingWheel.execute(executed::countDown);
+
+        // Then
+        assertThat(executed.await(1, TimeUnit.SECONDS)).isTrue();
+    }
+
+    @Test
+    void afterShutdownNewTasksShouldBeRejected() throws Exception {
+        timingWheel.shutdown();
+
+        assertThat(timingWheel.awaitTermination(1, TimeUnit.SECONDS)).isTrue();
+        assertThat(timingWheel.isTerminated()).isTrue();
+        assertThatThrownBy(() -> timingWheel.execute(() -> {})).isInstanceOf(RejectedExecutionException.class);
+        assertThatThrownBy(() -> timingWheel.schedule(() -> {}, 1, TimeUnit.MILLISECONDS)).isInstanceOf(RejectedExecutionException.class);
+    }
+
+    @Test
+    void slowTimerTaskOfOneViewShouldNotDelayTimersOfOtherView() throws Exception {
+        // Given
+        ExecutorService callbackExecutor = Executors.newCachedThreadPool(new DaemonThreadFactory("test-callback"));
+        try {
+            ScheduledExecutorService slowView = timingWheel.dispatchingTo(new SerialExecutor(callbackExecutor));
+            ScheduledExecutorService otherView = timingWheel.dispatchingTo(new SerialExecutor(callbackExecutor));
+            CountDownLatch slowTaskStarted = new CountDownLatch(1);
+            CountDownLatch releaseSlowTask = new CountDownLatch(1);
+            CountDownLatch otherExecuted = new CountDownLatch(1);
+            slowView.schedule(() -> {
+                slowTaskStarted.countDown();
+                try {
+                    releaseSlowTask.await();
+                }
+                catch (InterruptedException e) {}
+            }, 1, TimeUnit.MILLISECONDS);
+            assertThat(slowTaskStarted.await(1, TimeUnit.SECONDS)).isTrue();
+
+            // When
+            otherView.schedule(otherExecuted::countDown, 5, TimeUnit.MILLISECONDS);
+
+            // Then
+            assertThat(otherExecuted.await(1, TimeUnit.SECONDS)).isTrue();
+            releaseSlowTask.countDown();
+        }
+        finally {
+            callbackExecutor.shutdown();
+        }
+    }
+
+    @Test
+    void periodicTaskOfViewShouldRunOnGivenExecutorRepeatedly() throws Exception {
+        // Given
+        ExecutorService callbackExecutor = Executors.newSingleThreadExecutor(new DaemonThreadFactory("test-callback"));
+        try {
+            ScheduledExecutorService view = timingWheel.dispatchingTo(callbackExecutor);
+            CountDownLatch executed = new CountDownLatch(3);
+            List<String> threadNames = new CopyOnWriteArrayList<>();
+
+            // When
+            ScheduledFuture<?> timer = view.scheduleAtFixedRate(() -> {
+                threadNames.add(Thread.currentThread().getName());
+                executed.countDown();
+            }, 5, 20, TimeUnit.MILLISECONDS);
+
+            // Then
+            assertThat(executed.await(1, TimeUnit.SECONDS)).isTrue();
+            timer.cancel(false);
+            assertThat(threadNames).allMatch(name -> name.startsWith("test-callback"));
+        }
+        finally {
+            callbackExecutor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright © 2024 Peter Doornbosch
+ *
+ * This file is part of Kwik, an implementation of the QUIC protocol in Java.
+ *
+ * Kwik is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * Kwik is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.luminis.quic.concurrent;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledForJreRange;
+import org.junit.jupiter.api.condition.JRE;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class VirtualThreadsTest {
+
+    @Test
+    @EnabledForJreRange(max = JRE.JAVA_20)
+    void whenNotSupportedCreatingFactoryShouldFail() {
+        assertThat(VirtualThreads.isSupported()).isFalse();
+        assertThatThrownBy(() -> VirtualThreads.threadFactory("test")).isInstanceOf(UnsupportedOperationException.class);
+    }
+
+    @Test
+    @EnabledForJreRange(min = JRE.JAVA_21)
+    void factoryShouldCreateNamedVirtualThreads() throws Exception {
+        assertThat(VirtualThreads.isSupported()).isTrue();
+        ThreadFactory threadFactory = VirtualThreads.threadFactory("test");
+        AtomicBoolean executed = new AtomicBoolean();
+
+        Thread thread = threadFactory.newThread(() -> executed.set(true));
+        thread.start();
+        thread.join(1000);
+
+        assertThat(executed.get()).isTrue();
+        assertThat(thread.getName()).isEqualTo("test-1");
+        assertThat(thread.isDaemon()).isTrue();  // Virtual threads are always daemon threads
+        assertThat(Thread.class.getMethod("isVirtual").invoke(thread)).isEqualTo(true);
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright © 2024 Peter Doornbosch
+ *
+ * This file is part of Kwik, an implementation of the QUIC protocol in Java.
+ *
+ * Kwik is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * Kwik is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.luminis.quic.crypto;
+
+import net.luminis.quic.impl.DecryptionException;
+import net.luminis.quic.impl.Role;
+import net.luminis.quic.impl.Version;
+import net.luminis.quic.log.Logger;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+
+class Aes128GcmTest {
+
+    private final byte[] header = new byte[] { 0x40, 0x11, 0x22, 0x33 };
+    private final byte[] message = "This is the message that is to be encrypted in place".getBytes();
+
+    @Test
+    void encryptingInPlaceShouldGiveSameResultAsEncryptingArray() throws Exception {
+        // Given
+        ByteBuffer buffer = ByteBuffer.allocateDirect(100);
+        buffer.position(7);
+        buffer.put(header);
+        buffer.put(message);
+
+        // When
+        createAead().aeadEncrypt(buffer, 7, 7 + header.length, message.length, 0x1234);
+
+        // Then
+        byte[] encrypted = new byte[message.length + 16];
+        buffer.position(7 + header.length);
+        buffer.get(encrypted);
+        assertThat(encrypted).isEqualTo(createAead().aeadEncrypt(header, message, nonce(0x1234)));
+        assertThat(buffer.get(7)).isEqualTo(header[0]);
+    }
+
+    @Test
+    void decryptingInPlaceShouldRestorePlaintext() throws Exception {
+        // Given
+        byte[] encrypted = createAead().aeadEncrypt(header, message, nonce(0x1234));
+        ByteBuffer buffer = ByteBuffer.allocate(100);
+        buffer.put(header);
+        buffer.put(encrypted);
+
+        // When
+        int length = createAead().aeadDecrypt(buffer, 0, header.length, encrypted.length, 0x1234);
+
+        // Then
+        assertThat(length).isEqualTo(message.length);
+        assertThat(Arrays.copyOfRange(buffer.array(), header.length, header.length + length)).isEqualTo(message);
+    }
+
+    @Test
+    void whenDecryptingInPlaceFailsBufferContentShouldNotChange() throws Exception {
+        // Given
+        byte[] encrypted = createAead().aeadEncrypt(header, message, nonce(0x1234));
+        encrypted[3] ^= 0x01;
+        ByteBuffer buffer = ByteBuffer.allocateDirect(100);
+        buffer.put(header);
+        buffer.put(encrypted);
+        ByteBuffer original = buffer.duplicate().flip();
+
+        // When
+        assertThatThrownBy(() -> createAead().aeadDecrypt(buffer, 0, header.length, encrypted.length, 0x1234))
+                .isInstanceOf(DecryptionException.class);
+
+        // Then
+        buffer.flip();
+        assertThat(buffer).isEqualTo(original);
+        buffer.position(header.length);
+        byte[] content = new byte[encrypted.length];
+        buffer.get(content);
+        assertThat(content).isEqualTo(encrypted);
+    }
+
+    @Test
+    void headerProtectionMaskForSampleInBufferShouldBeSameAsForSampleArray() {
+        // Given
+        byte[] sample = new byte[] { 0x5c, 0x1a, 0x02, 0x7e, 0x33, 0x11, 0x09, 0x6f, 0x0d, 0x22, 0x47, 0x03, 0x71, 0x2b, 0x00, 0x6a };
+        ByteBuffer buffer = ByteBuffer.allocateDirect(50);
+        buffer.position(21);
+        buffer.put(sample);
+
+        // When
+        byte[] mask = createAead().createHeaderProtectionMask(buffer, 21);
+
+        // Then
+        assertThat(Arrays.copyOfRange(mask, 0, 5)).isEqualTo(Arrays.copyOfRange(createAead().createHeaderProtectionMask(sample), 0, 5));
+    }
+
+    private byte[] nonce(long packetNumber) {
+        byte[] nonce = createAead().getWriteIV().clone();
+        for (int i = 0; i < 8; i++) {
+            nonce[nonce.length - 1 - i] ^= (byte) (packetNumber >> (i * 8));
+        }
+        return nonce;
+    }
+
+    private Aead createAead() {
+        Aes128Gcm aead = new Aes128Gcm(Version.getDefault(), Role.Client, mock(Logger.class));
+        aead.computeKeys(new byte[32]);
+        return aead;
+    }
+}
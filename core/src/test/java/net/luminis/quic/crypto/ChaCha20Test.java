@@ -24,6 +24,8 @@ import net.luminis.quic.log.Logger;
 import org.junit.jupiter.api.Test;
 
 import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Mockito.mock;
@@ -43,4 +45,45 @@ class ChaCha20Test {
         // Then
         assertThat(chaCha20.getWriteKeySpec()).isNotSameAs(originalWriteKeySpec);
     }
-}
\ No newline at end of file
+
+    @Test
+    void encryptingAndDecryptingInPlaceShouldRestorePlaintext() throws Exception {
+        // Given
+        byte[] message = "This is the message that is to be encrypted in place".getBytes();
+        ByteBuffer buffer = ByteBuffer.allocateDirect(100);
+        buffer.put(new byte[] { 0x40, 0x11, 0x22 });
+        buffer.put(message);
+        ChaCha20 sender = new ChaCha20(Version.getDefault(), Role.Client, mock(Logger.class));
+        sender.computeKeys(new byte[32]);
+        ChaCha20 receiver = new ChaCha20(Version.getDefault(), Role.Server, mock(Logger.class));
+        receiver.computeKeys(new byte[32]);
+
+        // When
+        sender.aeadEncrypt(buffer, 0, 3, message.length, 9);
+        int length = receiver.aeadDecrypt(buffer, 0, 3, message.length + 16, 9);
+
+        // Then
+        assertThat(length).isEqualTo(message.length);
+        byte[] decrypted = new byte[length];
+        buffer.position(3);
+        buffer.get(decrypted);
+        assertThat(decrypted).isEqualTo(message);
+    }
+
+    @Test
+    void headerProtectionMaskShouldBeSameWhenSameSampleIsUsedTwice() {
+        // Given
+        byte[] sample = new byte[] { 0x5c, 0x1a, 0x02, 0x7e, 0x33, 0x11, 0x09, 0x6f, 0x0d, 0x22, 0x47, 0x03, 0x71, 0x2b, 0x00, 0x6a };
+        ChaCha20 chaCha20 = new ChaCha20(Version.getDefault(), Role.Client, mock(Logger.class));
+        chaCha20.computeKeys(new byte[32]);
+        byte[] expectedMask = Arrays.copyOfRange(chaCha20.createHeaderProtectionMask(sample), 0, 5);
+
+        // When
+        byte[] firstMask = Arrays.copyOfRange(chaCha20.createHeaderProtectionMask(ByteBuffer.wrap(sample), 0), 0, 5);
+        byte[] secondMask = Arrays.copyOfRange(chaCha20.createHeaderProtectionMask(ByteBuffer.wrap(sample), 0), 0, 5);
+
+        // Then
+        assertThat(firstMask).isEqualTo(expectedMask);
+        assertThat(secondMask).isEqualTo(expectedMask);
+    }
+}
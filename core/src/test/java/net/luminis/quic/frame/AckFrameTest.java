@@ -24,10 +24,13 @@ import net.luminis.quic.log.Logger;
 import org.junit.jupiter.api.Test;
 
 import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.List;
 
 import static net.luminis.quic.frame.AckFrame.FIXED_SENDER_ACK_DELAY_EXPONENT;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.Mockito.mock;
 
 class AckFrameTest extends FrameTest {
@@ -159,6 +162,88 @@ class AckFrameTest extends FrameTest {
     }
     //endregion
 
+    //region range iteration
+    @Test
+    void rangeCursorVisitsParsedRangesInDescendingOrder() throws Exception {
+        //                         ackframe   largest  delay ack-block-count #acked-below largest gap (size) #acked-below gap (size) #acked-below
+        byte[] data = new byte[] { 0x02,      0x0a,    0x00, 0x02,           0x02,                0x01,      0x01,        0x00,      0x02 };
+        AckFrame ack = new AckFrame().parse(ByteBuffer.wrap(data), mock(Logger.class));
+
+        // When
+        List<Long> bounds = new ArrayList<>();
+        AckRangeCursor cursor = ack.rangeCursor();
+        while (cursor.next()) {
+            bounds.add(cursor.largest());
+            bounds.add(cursor.smallest());
+        }
+
+        // Then
+        assertThat(bounds).containsExactly(10L, 8L, 5L, 4L, 2L, 0L);
+        assertThat(ack.getRangeCount()).isEqualTo(3);
+    }
+
+    @Test
+    void rangeCursorCanBeReusedForOtherFrame() {
+        // Given
+        AckRangeCursor cursor = new AckFrame(List.of(new Range(8L, 9L), new Range(2L, 3L))).rangeCursor();
+        cursor.next();
+
+        // When
+        cursor.reset(new AckFrame(new Range(20L, 25L)));
+
+        // Then
+        assertThat(cursor.next()).isTrue();
+        assertThat(cursor.largest()).isEqualTo(25);
+        assertThat(cursor.smallest()).isEqualTo(20);
+        assertThat(cursor.contains(22)).isTrue();
+        assertThat(cursor.next()).isFalse();
+    }
+
+    @Test
+    void rangeCursorMustBePositionedOnRange() {
+        AckRangeCursor cursor = new AckFrame(3).rangeCursor();
+
+        assertThatThrownBy(() -> cursor.largest()).isInstanceOf(IllegalStateException.class);
+        cursor.next();
+        cursor.next();
+        assertThatThrownBy(() -> cursor.smallest()).isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    void parsedFrameWithManyRangesHasAllRanges() throws Exception {
+        // Given
+        List<Range> ranges = new ArrayList<>();
+        for (int i = 100; i > 0; i--) {
+            ranges.add(new Range(i * 10L, i * 10L + 4));
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(1000);
+        new AckFrame(ranges).serialize(buffer);
+        buffer.flip();
+
+        // When
+        AckFrame ack = new AckFrame().parse(buffer, mock(Logger.class));
+
+        // Then
+        assertThat(ack.getAcknowledgedRanges()).isEqualTo(ranges);
+        assertThat(ack.ackedPacketNumbers().count()).isEqualTo(500);
+    }
+
+    @Test
+    void parsedAckDelayHonoursAckDelayExponent() throws Exception {
+        //                         ackframe   largest  delay (200)        ack-block-count first-block
+        byte[] data = new byte[] { 0x02,      0x0a,    0x40, (byte) 0xc8, 0x00,           0x00 };
+        AckFrame ack = new AckFrame().parse(ByteBuffer.wrap(data), mock(Logger.class));
+
+        ack.setDelayExponent(0);
+        assertThat(ack.getAckDelayMicros()).isEqualTo(200);
+        assertThat(ack.getAckDelay()).isEqualTo(0);
+
+        ack.setDelayExponent(3);
+        assertThat(ack.getAckDelayMicros()).isEqualTo(1600);
+        assertThat(ack.getAckDelay()).isEqualTo(1);
+    }
+    //endregion
+
     //region serialize frame
     @Test
     void checkAckDelayInEncodedFrameIsInMicroSecondsAndTakesAckDelayExponentIntoAccount() throws Exception {
@@ -179,5 +264,21 @@ class AckFrameTest extends FrameTest {
         long expectedEncodedAckDelayValue = ackDelayInMillis * 1000 / senderAckDelayFactor;
         assertThat(ackDelay).isEqualTo(expectedEncodedAckDelayValue);
     }
+
+    @Test
+    void ackDelayIsEncodedWithMicrosecondPrecision() throws Exception {
+        // Given
+        AckFrame ackFrame = new AckFrame(Version.getDefault(), List.of(new Range(5, 5)), Duration.ofNanos(412_345));
+        ByteBuffer buffer = ByteBuffer.allocate(8);
+
+        // When
+        ackFrame.serialize(buffer);
+        buffer.flip();
+        AckFrame parsed = new AckFrame().parse(buffer, mock(Logger.class));
+        parsed.setDelayExponent(FIXED_SENDER_ACK_DELAY_EXPONENT);
+
+        // Then
+        assertThat(parsed.getAckDelayMicros()).isEqualTo(408);  // 412 rounded down to a multiple of 2^exponent
+    }
     //endregion
 }
\ No newline at end of file
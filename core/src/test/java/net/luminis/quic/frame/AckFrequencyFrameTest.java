@@ -0,0 +1,74 @@
+/*
+ * Copyright © 2019, 2020, 2021, 2022, 2023, 2024 Peter Doornbosch
+ *
+ * This file is part of Kwik, an implementation of the QUIC protocol in Java.
+ *
+ * Kwik is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * Kwik is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.luminis.quic.frame;
+
+import net.luminis.quic.log.Logger;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+
+class AckFrequencyFrameTest extends FrameTest {
+
+    @Test
+    void frameTypeIsEncodedAsTwoByteVariableLengthInteger() {
+        byte[] bytes = getBytes(new AckFrequencyFrame(1, 10, 25_000, 0));
+
+        assertThat(bytes).startsWith(0x40, (byte) 0xaf);
+    }
+
+    @Test
+    void serializedFrameCanBeParsed() throws Exception {
+        // Given
+        byte[] bytes = getBytes(new AckFrequencyFrame(3, 10, 25_000, 2));
+
+        // When
+        AckFrequencyFrame frame = new AckFrequencyFrame().parse(ByteBuffer.wrap(bytes), mock(Logger.class));
+
+        // Then
+        assertThat(frame.getSequenceNumber()).isEqualTo(3);
+        assertThat(frame.getAckElicitingThreshold()).isEqualTo(10);
+        assertThat(frame.getRequestMaxAckDelay()).isEqualTo(25_000);
+        assertThat(frame.getReorderingThreshold()).isEqualTo(2);
+    }
+
+    @Test
+    void testGetFrameLength() {
+        // Given
+        AckFrequencyFrame ackFrequencyFrame = new AckFrequencyFrame(70_000, 10, 25_000, 1);
+
+        // When
+        ByteBuffer buffer = ByteBuffer.allocate(100);
+        ackFrequencyFrame.serialize(buffer);
+        buffer.flip();
+
+        // Then
+        assertThat(ackFrequencyFrame.getFrameLength()).isEqualTo(buffer.remaining());
+    }
+
+    @Test
+    void immediateAckFrameIsSingleByte() {
+        byte[] bytes = getBytes(new ImmediateAckFrame());
+
+        assertThat(bytes).isEqualTo(new byte[] { 0x1f });
+    }
+}
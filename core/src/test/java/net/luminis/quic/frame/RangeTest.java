@@ -50,6 +50,13 @@ class RangeTest {
          assertThat(range.stream().toArray()).isEqualTo(new Long[] { 7L, 6L, 5L, 4L, 3L });
     }
 
+    @Test
+    void longStreamShouldListAllNumbersInRangeInDescendingOrder() {
+         var range = new Range(3L, 7L);
+
+         assertThat(range.longStream().toArray()).isEqualTo(new long[] { 7L, 6L, 5L, 4L, 3L });
+    }
+
     @Test
     void extendEmptyRangeList() {
         var rangeList = createRangeList();
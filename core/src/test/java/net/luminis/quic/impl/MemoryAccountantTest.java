@@ -0,0 +1,163 @@
+/*
+ * Copyright © 2024 Peter Doornbosch
+ *
+ * This file is part of Kwik, an implementation of the QUIC protocol in Java.
+ *
+ * Kwik is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * Kwik is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.luminis.quic.impl;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class MemoryAccountantTest {
+
+    private MemoryAccountant accountant;
+
+    @BeforeEach
+    void initObjectUnderTest() {
+        accountant = new MemoryAccountant(1_000_000);
+    }
+
+    @Test
+    void budgetMustBePositive() {
+        assertThatThrownBy(() -> new MemoryAccountant(0))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void allocationsOfAllAccountsAreChargedToAccountant() {
+        // Given
+        ConnectionMemory account1 = accountant.openAccount("c1");
+        ConnectionMemory account2 = accountant.openAccount("c2");
+
+        // When
+        account1.allocate(1000);
+        account2.allocate(3000);
+        account1.release(400);
+
+        // Then
+        assertThat(accountant.getUsage()).isEqualTo(3600);
+        assertThat(accountant.getHighWaterMark()).isEqualTo(4000);
+        assertThat(accountant.getUsagePerConnection()).containsEntry("c1", 600L).containsEntry("c2", 3000L);
+    }
+
+    @Test
+    void closingAccountReleasesAllItsMemory() {
+        // Given
+        ConnectionMemory account = accountant.openAccount("c1");
+        account.allocate(5000);
+
+        // When
+        account.close();
+        account.release(1000);
+
+        // Then
+        assertThat(accountant.getUsage()).isEqualTo(0);
+        assertThat(account.getUsage()).isEqualTo(0);
+        assertThat(accountant.getUsagePerConnection()).isEmpty();
+    }
+
+    @Test
+    void belowLowWatermarkWindowIsNotReduced() {
+        // Given
+        ConnectionMemory account = accountant.openAccount("c1");
+
+        // When
+        account.allocate(500_000);
+
+        // Then
+        assertThat(account.allowedWindow(100_000, 0)).isEqualTo(100_000);
+    }
+
+    @Test
+    void betweenWatermarksWindowIsReducedProportionally() {
+        // Given
+        ConnectionMemory account = accountant.openAccount("c1");
+
+        // When
+        account.allocate(700_000);
+
+        // Then
+        assertThat(account.allowedWindow(100_000, 0)).isBetween(49_000L, 51_000L);
+    }
+
+    @Test
+    void aboveHighWatermarkCreditIsWithheldWhenReceiverHasBufferedData() {
+        // Given
+        ConnectionMemory account = accountant.openAccount("c1");
+
+        // When
+        account.allocate(950_000);
+
+        // Then
+        assertThat(account.allowedWindow(100_000, 10)).isEqualTo(0);
+    }
+
+    @Test
+    void aboveHighWatermarkMinimalWindowIsGivenWhenReceiverHasNoBufferedData() {
+        // Given
+        ConnectionMemory account = accountant.openAccount("c1");
+
+        // When
+        account.allocate(950_000);
+
+        // Then
+        assertThat(account.allowedWindow(100_000, 0)).isEqualTo(ConnectionMemory.MIN_WINDOW);
+    }
+
+    @Test
+    void reservationIsChargedUntilUsed() {
+        // Given
+        ConnectionMemory account = accountant.openAccount("c1");
+        account.reserve(10_000);
+
+        // When
+        account.useReservation(4_000);
+        account.useReservation(8_000);
+
+        // Then
+        assertThat(accountant.getUsage()).isEqualTo(0);
+        assertThat(accountant.getHighWaterMark()).isEqualTo(10_000);
+    }
+
+    @Test
+    void aboveHighWatermarkNewConnectionsAreNotAccepted() {
+        // Given
+        ConnectionMemory account = accountant.openAccount("c1");
+        assertThat(accountant.acceptsNewConnections()).isTrue();
+
+        // When
+        account.reserve(900_000);
+
+        // Then
+        assertThat(accountant.acceptsNewConnections()).isFalse();
+    }
+
+    @Test
+    void unlimitedAccountNeverReducesWindow() {
+        // Given
+        ConnectionMemory account = ConnectionMemory.unlimited();
+
+        // When
+        account.allocate(Long.MAX_VALUE / 2);
+
+        // Then
+        assertThat(account.allowedWindow(100_000, 10)).isEqualTo(100_000);
+        assertThat(account.getUsage()).isEqualTo(Long.MAX_VALUE / 2);
+    }
+}
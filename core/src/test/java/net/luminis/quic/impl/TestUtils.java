@@ -30,8 +30,12 @@ import javax.crypto.Cipher;
 import static net.luminis.quic.impl.Version.IETF_draft_29;
 import static net.luminis.quic.impl.Version.QUIC_version_1;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.doCallRealMethod;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
 
 public class TestUtils {
 
@@ -41,7 +45,7 @@ public class TestUtils {
      * @throws Exception
      */
     public static Aead createKeys() throws Exception {
-        Aes128Gcm keys = mock(Aes128Gcm.class);
+        Aes128Gcm keys = mock(Aes128Gcm.class, withSettings().useConstructor(Version.getDefault(), Role.Client, mock(Logger.class)));
         when(keys.getHp()).thenReturn(new byte[16]);
         when(keys.getWriteIV()).thenReturn(new byte[12]);
         Aes128Gcm dummyKeys = new Aes128Gcm(Version.getDefault(), new byte[16], null, mock(Logger.class));
@@ -58,7 +62,10 @@ public class TestUtils {
 
         when(keys.aeadEncrypt(any(), any(), any())).thenCallRealMethod();
         when(keys.aeadDecrypt(any(), any(), any())).thenCallRealMethod();
+        doCallRealMethod().when(keys).aeadEncrypt(any(), anyInt(), anyInt(), anyInt(), anyLong());
+        when(keys.aeadDecrypt(any(), anyInt(), anyInt(), anyInt(), anyLong())).thenCallRealMethod();
         when(keys.createHeaderProtectionMask(any())).thenCallRealMethod();
+        when(keys.createHeaderProtectionMask(any(), anyInt())).thenCallRealMethod();
 
         return keys;
     }
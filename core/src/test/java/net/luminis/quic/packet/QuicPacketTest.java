@@ -18,9 +18,18 @@
  */
 package net.luminis.quic.packet;
 
+import net.luminis.quic.frame.AckFrequencyFrame;
+import net.luminis.quic.frame.ImmediateAckFrame;
+import net.luminis.quic.impl.ProtocolError;
+import net.luminis.quic.impl.Version;
+import net.luminis.quic.log.Logger;
 import org.junit.jupiter.api.Test;
 
+import java.nio.ByteBuffer;
+
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
 
 class QuicPacketTest {
 
@@ -198,4 +207,33 @@ class QuicPacketTest {
         // Then
         assertThat(candidatePacketNumber).isEqualTo(0x00000000ffffffffL);
     }
+
+    @Test
+    void parseFramesShouldRecognizeAckFrequencyFrames() throws Exception {
+        // Given
+        ByteBuffer buffer = ByteBuffer.allocate(100);
+        new AckFrequencyFrame(0, 4, 10_000, 0).serialize(buffer);
+        new ImmediateAckFrame().serialize(buffer);
+        buffer.flip();
+        QuicPacket packet = new ShortHeaderPacket(Version.getDefault());
+
+        // When
+        packet.parseFrames(buffer, mock(Logger.class));
+
+        // Then
+        assertThat(packet.getFrames()).hasSize(2);
+        assertThat(packet.getFrames().get(0)).isInstanceOf(AckFrequencyFrame.class);
+        assertThat(packet.getFrames().get(1)).isInstanceOf(ImmediateAckFrame.class);
+    }
+
+    @Test
+    void parseFramesShouldRejectUnknownTwoByteFrameType() {
+        // Given
+        ByteBuffer buffer = ByteBuffer.wrap(new byte[] { 0x40, (byte) 0xa0, 0x00 });
+        QuicPacket packet = new ShortHeaderPacket(Version.getDefault());
+
+        // Then
+        assertThatThrownBy(() -> packet.parseFrames(buffer, mock(Logger.class)))
+                .isInstanceOf(ProtocolError.class);
+    }
 }
@@ -23,8 +23,11 @@ import net.luminis.quic.impl.Version;
 import net.luminis.quic.crypto.Aead;
 import net.luminis.quic.frame.PingFrame;
 import net.luminis.quic.frame.StreamFrame;
+import net.luminis.quic.log.NullLogger;
 import org.junit.jupiter.api.Test;
 
+import java.nio.ByteBuffer;
+
 import static org.assertj.core.api.Assertions.assertThat;
 
 class ShortHeaderPacketTest {
@@ -86,4 +89,29 @@ class ShortHeaderPacketTest {
         assertThat(actualLength).isEqualTo(estimatedLength);            // In practice
     }
 
-}
\ No newline at end of file
+    @Test
+    void packetGeneratedInPlaceAfterOtherDataShouldBeParsedInPlace() throws Exception {
+        // Given
+        byte[] destinationConnectionId = { 0x0e, 0x0b, 0x02, 0x0f, 0x0a, 0x04, 0x02, 0x0d };
+        ShortHeaderPacket shortHeaderPacket = new ShortHeaderPacket(Version.getDefault(), destinationConnectionId, new StreamFrame(1, new byte[40], true));
+        shortHeaderPacket.setPacketNumber(300);
+        Aead aead = TestUtils.createKeys();
+        ByteBuffer datagram = ByteBuffer.allocateDirect(1500);
+        datagram.put(new byte[19]);
+
+        // When
+        shortHeaderPacket.generatePacketBytes(aead, datagram);
+        int packetLength = datagram.position() - 19;
+        datagram.flip();
+        datagram.position(19);
+        ShortHeaderPacket parsedPacket = new ShortHeaderPacket(Version.getDefault());
+        parsedPacket.parse(datagram.slice(), aead, 299, new NullLogger(), destinationConnectionId.length);
+
+        // Then
+        assertThat(packetLength).isEqualTo(shortHeaderPacket.getSize());
+        assertThat(parsedPacket.getPacketNumber()).isEqualTo(300);
+        assertThat(parsedPacket.getSize()).isEqualTo(packetLength);
+        assertThat(parsedPacket.getFrames()).hasOnlyElementsOfType(StreamFrame.class);
+        assertThat(((StreamFrame) parsedPacket.getFrames().get(0)).getStreamData()).hasSize(40);
+    }
+}
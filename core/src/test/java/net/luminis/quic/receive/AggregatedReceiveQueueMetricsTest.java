@@ -0,0 +1,64 @@
+/*
+ * Copyright © 2024 Peter Doornbosch
+ *
+ * This file is part of Kwik, an implementation of the QUIC protocol in Java.
+ *
+ * Kwik is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * Kwik is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.luminis.quic.receive;
+
+import net.luminis.quic.DropPolicy;
+import net.luminis.quic.ReceiveQueueMetrics.DropReason;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AggregatedReceiveQueueMetricsTest {
+
+    @Test
+    void metricsShouldBeCombinedOverAllQueues() {
+        AggregatedReceiveQueueMetrics aggregated = new AggregatedReceiveQueueMetrics(4);
+        ReceiveQueueLimiter queue1 = new ReceiveQueueLimiter(4, DropPolicy.DROP_NEWEST);
+        ReceiveQueueLimiter queue2 = new ReceiveQueueLimiter(4, DropPolicy.DROP_NEWEST);
+        aggregated.register(queue1);
+        aggregated.register(queue2);
+
+        queue1.tryAdd(false);
+        queue2.tryAdd(false);
+        queue2.tryAdd(false);
+        queue2.tryAdd(false);
+        queue2.tryAdd(false);
+        queue2.tryAdd(false);
+
+        assertThat(aggregated.getDepth()).isEqualTo(5);
+        assertThat(aggregated.getHighWaterMark()).isEqualTo(4);
+        assertThat(aggregated.getDropCount(DropReason.QUEUE_FULL)).isEqualTo(1);
+    }
+
+    @Test
+    void unregisteredQueueShouldStillCountForHighWaterMarkAndDrops() {
+        AggregatedReceiveQueueMetrics aggregated = new AggregatedReceiveQueueMetrics(2);
+        ReceiveQueueLimiter queue = new ReceiveQueueLimiter(2, DropPolicy.DROP_NEWEST);
+        aggregated.register(queue);
+        queue.tryAdd(false);
+        queue.tryAdd(false);
+        queue.tryAdd(false);
+
+        aggregated.unregister(queue);
+
+        assertThat(aggregated.getDepth()).isEqualTo(0);
+        assertThat(aggregated.getHighWaterMark()).isEqualTo(2);
+        assertThat(aggregated.getTotalDropCount()).isEqualTo(1);
+    }
+}
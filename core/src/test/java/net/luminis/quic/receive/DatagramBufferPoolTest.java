@@ -0,0 +1,89 @@
+/*
+ * Copyright © 2024 Peter Doornbosch
+ *
+ * This file is part of Kwik, an implementation of the QUIC protocol in Java.
+ *
+ * Kwik is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * Kwik is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.luminis.quic.receive;
+
+import org.junit.jupiter.api.Test;
+
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.time.Instant;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DatagramBufferPoolTest {
+
+    @Test
+    void acquiredBufferShouldBeClearedDirectBuffer() {
+        DatagramBufferPool pool = new DatagramBufferPool(1500, 4);
+
+        ByteBuffer buffer = pool.acquire();
+
+        assertThat(buffer.isDirect()).isTrue();
+        assertThat(buffer.position()).isEqualTo(0);
+        assertThat(buffer.remaining()).isEqualTo(1500);
+    }
+
+    @Test
+    void releasedBufferShouldBeReused() {
+        DatagramBufferPool pool = new DatagramBufferPool(1500, 4);
+        ByteBuffer buffer = pool.acquire();
+        buffer.put(new byte[100]).flip();
+
+        pool.release(buffer);
+
+        ByteBuffer reused = pool.acquire();
+        assertThat(reused).isSameAs(buffer);
+        assertThat(reused.remaining()).isEqualTo(1500);
+    }
+
+    @Test
+    void poolShouldNotRetainMoreThanMaximumNumberOfBuffers() {
+        DatagramBufferPool pool = new DatagramBufferPool(1500, 2);
+        ByteBuffer buffer1 = pool.acquire();
+        ByteBuffer buffer2 = pool.acquire();
+        ByteBuffer buffer3 = pool.acquire();
+
+        pool.release(buffer1);
+        pool.release(buffer2);
+        pool.release(buffer3);
+
+        assertThat(pool.pooledBuffers()).isEqualTo(2);
+    }
+
+    @Test
+    void bufferWithOtherSizeShouldNotBeAccepted() {
+        DatagramBufferPool pool = new DatagramBufferPool(1500, 2);
+
+        pool.release(ByteBuffer.allocate(1200));
+
+        assertThat(pool.pooledBuffers()).isEqualTo(0);
+    }
+
+    @Test
+    void releasingRawPacketTwiceShouldReturnBufferOnlyOnce() {
+        DatagramBufferPool pool = new DatagramBufferPool(1500, 4);
+        ByteBuffer buffer = pool.acquire();
+        RawPacket rawPacket = new RawPacket(buffer, new InetSocketAddress("localhost", 443), Instant.now(), 0, pool);
+
+        rawPacket.release();
+        rawPacket.release();
+
+        assertThat(pool.pooledBuffers()).isEqualTo(1);
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright © 2024 Peter Doornbosch
+ *
+ * This file is part of Kwik, an implementation of the QUIC protocol in Java.
+ *
+ * Kwik is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * Kwik is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.luminis.quic.receive;
+
+import net.luminis.quic.DropPolicy;
+import net.luminis.quic.ReceiveQueueMetrics.DropReason;
+import net.luminis.quic.concurrent.WaitStrategy;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ReceiveQueueTest {
+
+    private final List<Integer> dropped = new ArrayList<>();
+
+    @Test
+    void withDropNewestPolicyDatagramsArrivingWhenQueueIsFullShouldBeDropped() throws Exception {
+        ReceiveQueue<Integer> queue = createQueue(3, DropPolicy.DROP_NEWEST);
+
+        for (int i = 1; i <= 5; i++) {
+            queue.offer(i);
+        }
+
+        assertThat(dropped).containsExactly(4, 5);
+        assertThat(queue.getMetrics().getDropCount(DropReason.QUEUE_FULL)).isEqualTo(2);
+        assertThat(queue.take()).isEqualTo(1);
+        assertThat(queue.take()).isEqualTo(2);
+        assertThat(queue.take()).isEqualTo(3);
+    }
+
+    @Test
+    void withDropOldestPolicyOldestDatagramsShouldBeDropped() throws Exception {
+        ReceiveQueue<Integer> queue = createQueue(3, DropPolicy.DROP_OLDEST);
+
+        for (int i = 1; i <= 5; i++) {
+            queue.offer(i);
+        }
+
+        assertThat(queue.take()).isEqualTo(3);
+        assertThat(dropped).containsExactly(1, 2);
+        assertThat(queue.getMetrics().getDropCount(DropReason.EVICTED)).isEqualTo(2);
+        assertThat(queue.take()).isEqualTo(4);
+        assertThat(queue.take()).isEqualTo(5);
+    }
+
+    @Test
+    void withDropOldestPolicyDatagramsShouldBeDroppedWhenProcessingIsStalled() {
+        ReceiveQueue<Integer> queue = createQueue(3, DropPolicy.DROP_OLDEST);
+
+        for (int i = 1; i <= 10; i++) {
+            queue.offer(i);
+        }
+
+        assertThat(dropped).containsExactly(7, 8, 9, 10);
+        assertThat(queue.getMetrics().getDropCount(DropReason.QUEUE_FULL)).isEqualTo(4);
+    }
+
+    @Test
+    void withPreferHandshakePolicyRemainingRoomShouldBeReservedForHandshakePackets() throws Exception {
+        // Negative numbers represent handshake packets
+        ReceiveQueue<Integer> queue = createQueue(4, DropPolicy.PREFER_HANDSHAKE);
+
+        for (int i = 1; i <= 4; i++) {
+            queue.offer(i);
+        }
+        queue.offer(-1);
+        queue.offer(-2);
+
+        assertThat(dropped).containsExactly(4, -2);
+        assertThat(queue.getMetrics().getDropCount(DropReason.NOT_HANDSHAKE)).isEqualTo(1);
+        assertThat(queue.getMetrics().getDropCount(DropReason.QUEUE_FULL)).isEqualTo(1);
+        assertThat(List.of(queue.take(), queue.take(), queue.take(), queue.take())).containsExactly(1, 2, 3, -1);
+    }
+
+    @Test
+    void metricsShouldReflectDepthAndHighWaterMark() throws Exception {
+        ReceiveQueue<Integer> queue = createQueue(8, DropPolicy.DROP_NEWEST);
+
+        for (int i = 1; i <= 5; i++) {
+            queue.offer(i);
+        }
+        queue.take();
+        queue.take();
+        queue.offer(6);
+
+        assertThat(queue.getMetrics().getDepth()).isEqualTo(4);
+        assertThat(queue.getMetrics().getHighWaterMark()).isEqualTo(5);
+        assertThat(queue.getMetrics().getTotalDropCount()).isEqualTo(0);
+        assertThat(queue.getMetrics().getCapacity()).isEqualTo(8);
+    }
+
+    @Test
+    void pollShouldReturnNullWhenOnlyEvictedDatagramsRemain() throws Exception {
+        ReceiveQueue<Integer> queue = createQueue(1, DropPolicy.DROP_OLDEST);
+        queue.offer(1);
+        queue.offer(2);
+
+        assertThat(queue.poll(10, TimeUnit.MILLISECONDS)).isEqualTo(2);
+        assertThat(queue.poll(10, TimeUnit.MILLISECONDS)).isNull();
+        assertThat(dropped).containsExactly(1);
+    }
+
+    private ReceiveQueue<Integer> createQueue(int capacity, DropPolicy dropPolicy) {
+        return new ReceiveQueue<>(new ReceiveQueueConfig(capacity, WaitStrategy.BLOCKING, dropPolicy), i -> i < 0, dropped::add);
+    }
+}
@@ -26,7 +26,13 @@ import org.junit.jupiter.api.Test;
 import java.net.DatagramPacket;
 import java.net.DatagramSocket;
 import java.net.InetAddress;
+import java.net.InetSocketAddress;
 import java.net.SocketException;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadFactory;
 import java.util.function.Predicate;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -77,6 +83,110 @@ class ReceiverTest {
         assertThat(rawPacket).isNull();
     }
 
+    @Test
+    void whenSocketHasNoChannelEachPacketShouldBeCopiedToPooledBuffer() throws Exception {
+        // Given
+        Receiver receiver = createReceiver(null);
+
+        // When
+        sendFromPort(new byte[] { 0x73, 0x15, 0x20 }, 1234);
+        sendFromPort(new byte[] { 0x74 }, 1234);
+
+        // Then
+        RawPacket firstPacket = receiver.get(GET_TIMEOUT);
+        RawPacket secondPacket = receiver.get(GET_TIMEOUT);
+        assertThat(firstPacket.getData().isDirect()).isTrue();
+        assertThat(firstPacket.getLength()).isEqualTo(3);
+        assertThat(firstPacket.getData().get(0)).isEqualTo((byte) 0x73);
+        assertThat(secondPacket.getLength()).isEqualTo(1);
+        assertThat(secondPacket.getData().get(0)).isEqualTo((byte) 0x74);
+        assertThat(secondPacket.getPort()).isEqualTo(1234);
+    }
+
+    @Test
+    void whenSocketHasChannelPacketShouldBeReceivedInDirectBuffer() throws Exception {
+        // Given
+        useChannelSocket();
+        Receiver receiver = createReceiver(null);
+
+        // When
+        sendFromPort(new byte[] { 0x73, 0x15 }, 1234);
+
+        // Then
+        RawPacket rawPacket = receiver.get(GET_TIMEOUT);
+        assertThat(rawPacket).isNotNull();
+        assertThat(rawPacket.getLength()).isEqualTo(2);
+        assertThat(rawPacket.getData().isDirect()).isTrue();
+        assertThat(rawPacket.getData().get()).isEqualTo((byte) 0x73);
+        assertThat(rawPacket.getPort()).isEqualTo(1234);
+    }
+
+    @Test
+    void whenSocketHasChannelPacketNotPassingFilterShouldBeDropped() throws Exception {
+        // Given
+        useChannelSocket();
+        Predicate<DatagramPacket> filter = packet -> packet.getPort() == 9999;
+        Receiver receiver = createReceiver(filter);
+
+        // When
+        sendFromPort(new byte[] { 0x73 }, 1234);
+
+        // Then
+        RawPacket rawPacket = receiver.get(GET_TIMEOUT);
+        assertThat(rawPacket).isNull();
+    }
+
+    @Test
+    void releasedBufferShouldBeReusedForNextDatagram() throws Exception {
+        // Given
+        useChannelSocket();
+        Receiver receiver = createReceiver(null);
+        sendFromPort(new byte[] { 0x73 }, 1234);
+        RawPacket firstPacket = receiver.get(GET_TIMEOUT);
+        ByteBuffer firstBuffer = firstPacket.getData();
+
+        // When
+        firstPacket.release();
+        // Note that the receiver usually already took a buffer from the pool for the second datagram, before the first
+        // was released, so the released buffer is either used for the second or for the third datagram.
+        sendFromPort(new byte[] { 0x74, 0x75 }, 1234);
+        RawPacket secondPacket = receiver.get(GET_TIMEOUT);
+        sendFromPort(new byte[] { 0x75, 0x76 }, 1234);
+        RawPacket thirdPacket = receiver.get(GET_TIMEOUT);
+
+        // Then
+        RawPacket reusingPacket = secondPacket.getData() == firstBuffer? secondPacket: thirdPacket;
+        assertThat(reusingPacket.getData()).isSameAs(firstBuffer);
+        assertThat(reusingPacket.getLength()).isEqualTo(2);
+        assertThat(thirdPacket.getData().get()).isEqualTo((byte) 0x75);
+    }
+
+    @Test
+    void receiverThreadShouldBeCreatedWithGivenThreadFactory() throws Exception {
+        // Given
+        List<Thread> createdThreads = new ArrayList<>();
+        ThreadFactory threadFactory = runnable -> {
+            Thread thread = new Thread(runnable);
+            createdThreads.add(thread);
+            return thread;
+        };
+        Receiver receiver = new Receiver(socket, mock(Logger.class), t -> {}, d -> true, threadFactory);
+        receiver.start();
+
+        // When
+        sendFromPort(new byte[] { 0x73 }, 1234);
+
+        // Then
+        assertThat(receiver.get(GET_TIMEOUT)).isNotNull();
+        assertThat(createdThreads).hasSize(1);
+        assertThat(createdThreads.get(0).getName()).isEqualTo("receiver");
+    }
+
+    private void useChannelSocket() throws Exception {
+        socket.close();
+        socket = DatagramChannel.open().bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0)).socket();
+    }
+
     private Receiver createReceiver(Predicate<DatagramPacket> filter) {
         Receiver receiver;
         if (filter == null) {
@@ -0,0 +1,171 @@
+/*
+ * Copyright © 2024 Peter Doornbosch
+ *
+ * This file is part of Kwik, an implementation of the QUIC protocol in Java.
+ *
+ * Kwik is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * Kwik is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.luminis.quic.recovery;
+
+import net.luminis.quic.common.EncryptionLevel;
+import net.luminis.quic.impl.MockPacket;
+import net.luminis.quic.test.TestClock;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DeliveryRateSamplerTest {
+
+    private TestClock clock;
+    private List<RateSample> samples;
+    private DeliveryRateSampler sampler;
+    private long bytesInFlight;
+    private int packetNumber;
+
+    @BeforeEach
+    void initObjectUnderTest() {
+        clock = new TestClock();
+        samples = new ArrayList<>();
+        sampler = new DeliveryRateSampler(samples::add);
+    }
+
+    @Test
+    void whenPacketsAreSentAndAckedAtSameRateDeliveryRateMatchesThatRate() {
+        // Given (one packet of 1000 bytes per ms, RTT 50 ms)
+        List<PacketStatus> sent = new ArrayList<>();
+
+        // When
+        for (int t = 0; t < 200; t++) {
+            sent.add(send(1000));
+            if (t >= 50) {
+                ack(sent.get(t - 50));
+            }
+            clock.fastForward(1);
+        }
+
+        // Then
+        RateSample lastSample = samples.get(samples.size() - 1);
+        assertThat(lastSample.deliveryRate()).isBetween(990_000L, 1_010_000L);
+        assertThat(lastSample.rtt()).isEqualTo(Duration.ofMillis(50));
+        assertThat(lastSample.isAppLimited()).isFalse();
+    }
+
+    @Test
+    void compressedAcksDoNotIncreaseDeliveryRate() {
+        // Given (one packet of 1000 bytes per ms)
+        List<PacketStatus> sent = new ArrayList<>();
+
+        // When (acks arrive in bursts of 10 packets)
+        for (int t = 0; t < 300; t++) {
+            sent.add(send(1000));
+            if (t >= 60 && t % 10 == 0) {
+                List<PacketStatus> acked = sent.subList(t - 60, t - 50);
+                sampler.packetsAcked(acked, clock.instant());
+                bytesInFlight -= 10 * 1000;
+            }
+            clock.fastForward(1);
+        }
+
+        // Then
+        assertThat(samples).allMatch(sample -> sample.deliveryRate() <= 1_000_000L);
+        assertThat(samples.get(samples.size() - 1).deliveryRate()).isGreaterThan(900_000L);
+    }
+
+    @Test
+    void samplesForPacketsSentWhileApplicationLimitedAreMarkedAsSuch() {
+        // Given
+        PacketStatus first = send(1000);
+        sampler.applicationLimited(bytesInFlight);
+        clock.fastForward(1);
+        PacketStatus second = send(1000);
+        clock.fastForward(50);
+
+        // When
+        ack(first);
+        clock.fastForward(1);
+        ack(second);
+
+        // Then
+        assertThat(samples.get(samples.size() - 1).isAppLimited()).isTrue();
+    }
+
+    @Test
+    void applicationLimitedEndsWhenAllDataInFlightAtThatTimeIsDelivered() {
+        // Given
+        PacketStatus first = send(1000);
+        sampler.applicationLimited(bytesInFlight);
+        clock.fastForward(50);
+        ack(first);
+
+        // When (the app-limited marker is passed when data sent after it is delivered)
+        PacketStatus second = send(1000);
+        clock.fastForward(50);
+        ack(second);
+        PacketStatus third = send(1000);
+        clock.fastForward(50);
+        ack(third);
+
+        // Then
+        assertThat(samples.get(samples.size() - 1).isAppLimited()).isFalse();
+    }
+
+    @Test
+    void lostBytesAreReportedInSample() {
+        // Given
+        PacketStatus first = send(1000);
+        PacketStatus second = send(1000);
+        clock.fastForward(1);
+        PacketStatus third = send(1000);
+        clock.fastForward(50);
+        sampler.packetsLost(List.of(second));
+
+        // When
+        ack(first);
+        ack(third);
+
+        // Then
+        RateSample lastSample = samples.get(samples.size() - 1);
+        assertThat(lastSample.lost()).isEqualTo(1000);
+        assertThat(lastSample.txInFlight()).isEqualTo(3000);
+    }
+
+    @Test
+    void packetsWithoutDeliveryStateAreIgnored() {
+        // When
+        sampler.packetsAcked(List.of(new PacketStatus(clock.instant(), new MockPacket(0, 1000, EncryptionLevel.App), p -> {})), clock.instant());
+
+        // Then
+        assertThat(samples).isEmpty();
+        assertThat(sampler.getDelivered()).isEqualTo(0);
+    }
+
+    private PacketStatus send(int size) {
+        Instant now = clock.instant();
+        PacketStatus packetStatus = new PacketStatus(now, new MockPacket(packetNumber++, size, EncryptionLevel.App), p -> {});
+        packetStatus.setDeliveryState(sampler.packetSent(size, now, bytesInFlight));
+        bytesInFlight += size;
+        return packetStatus;
+    }
+
+    private void ack(PacketStatus packetStatus) {
+        sampler.packetsAcked(List.of(packetStatus), clock.instant());
+        bytesInFlight -= packetStatus.packet().getSize();
+    }
+}
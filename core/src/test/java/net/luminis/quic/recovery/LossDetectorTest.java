@@ -27,10 +27,12 @@ import net.luminis.quic.impl.MoreArgumentMatchers;
 import net.luminis.quic.impl.PacketMatcherByPacketNumber;
 import net.luminis.quic.impl.Version;
 import net.luminis.quic.frame.AckFrame;
+import net.luminis.quic.frame.AcknowledgeableFrame;
 import net.luminis.quic.frame.ConnectionCloseFrame;
 import net.luminis.quic.frame.Padding;
 import net.luminis.quic.frame.PingFrame;
 import net.luminis.quic.frame.Range;
+import net.luminis.quic.frame.StreamFrame;
 import net.luminis.quic.log.NullLogger;
 import net.luminis.quic.log.NullQLog;
 import net.luminis.quic.packet.PacketInfo;
@@ -64,6 +66,8 @@ class LossDetectorTest extends RecoveryTests {
         rttEstimator = mock(RttEstimator.class);
         when(rttEstimator.getSmoothedRtt()).thenReturn(defaultRtt);
         when(rttEstimator.getLatestRtt()).thenReturn(defaultRtt);
+        when(rttEstimator.getSmoothedRttMicros()).thenReturn(defaultRtt * 1000L);
+        when(rttEstimator.getLatestRttMicros()).thenReturn(defaultRtt * 1000L);
         congestionController = mock(CongestionController.class);
         lossDetector = new LossDetector(mock(RecoveryManager.class), rttEstimator, congestionController, () -> {}, new NullQLog());
         FieldSetter.setField(lossDetector, lossDetector.getClass().getDeclaredField("clock"), clock);
@@ -87,6 +91,17 @@ class LossDetectorTest extends RecoveryTests {
         verify(congestionController, times(2)).registerAcked(any(List.class));
     }
 
+    @Test
+    void acknowledgeableFramesAreNotifiedWhenPacketIsAcked() {
+        StreamFrame frame = mock(StreamFrame.class, withSettings().extraInterfaces(AcknowledgeableFrame.class));
+        lossDetector.packetSent(createPacket(1, frame), Instant.now(), lostPacket -> lostPacketHandler.process(lostPacket));
+        lossDetector.packetSent(createPacket(2), Instant.now(), lostPacket -> lostPacketHandler.process(lostPacket));
+
+        lossDetector.onAckReceived(new AckFrame(new Range(1L, 2L)), Instant.now());
+
+        verify((AcknowledgeableFrame) frame, times(1)).acknowledged();
+    }
+
     @Test
     void congestionControllerRegisterAckedNotCalledWithAckOnlyPacket() {
         QuicPacket packet = createPacket(1, new AckFrame(10));
@@ -255,6 +270,36 @@ class LossDetectorTest extends RecoveryTests {
         assertThat(lossDetector.getLossTime()).isNull();
     }
 
+    @Test
+    void packetInGapBelowEarlierAcknowledgedPacketsIsAckedByLaterAck() {
+        StreamFrame frame = mock(StreamFrame.class, withSettings().extraInterfaces(AcknowledgeableFrame.class));
+        lossDetector.packetSent(createPacket(1), Instant.now(), p -> {});
+        lossDetector.packetSent(createPacket(2, frame), Instant.now(), p -> {});
+        lossDetector.packetSent(createPacket(3), Instant.now(), p -> {});
+        lossDetector.packetSent(createPacket(4), Instant.now(), p -> {});
+        lossDetector.onAckReceived(new AckFrame(List.of(new Range(3L, 4L), new Range(1L))), Instant.now());
+        lossDetector.packetSent(createPacket(5), Instant.now(), p -> {});
+
+        lossDetector.onAckReceived(new AckFrame(new Range(1L, 5L)), Instant.now());
+
+        verify((AcknowledgeableFrame) frame, times(1)).acknowledged();
+        assertThat(lossDetector.unAcked()).isEmpty();
+    }
+
+    @Test
+    void repeatedAckRangesDoNotAckPacketsAgain() {
+        StreamFrame frame = mock(StreamFrame.class, withSettings().extraInterfaces(AcknowledgeableFrame.class));
+        lossDetector.packetSent(createPacket(1, frame), Instant.now(), p -> {});
+        lossDetector.packetSent(createPacket(2), Instant.now(), p -> {});
+        lossDetector.packetSent(createPacket(3), Instant.now(), p -> {});
+        lossDetector.onAckReceived(new AckFrame(new Range(1L, 2L)), Instant.now());
+
+        lossDetector.onAckReceived(new AckFrame(new Range(1L, 3L)), Instant.now());
+
+        verify((AcknowledgeableFrame) frame, times(1)).acknowledged();
+        verify(congestionController).registerAcked(argThat(list -> list.size() == 1 && list.get(0).packet().getPacketNumber() == 3));
+    }
+
     @Test
     void ackOnlyPacketShouldNotSetLossTime() {
         lossDetector.packetSent(createPacket(1, new AckFrame(1)), Instant.now(), p -> {});
@@ -65,6 +65,9 @@ class RecoveryManagerTest extends RecoveryTests {
         when(rttEstimator.getSmoothedRtt()).thenReturn(defaultRtt);
         when(rttEstimator.getLatestRtt()).thenReturn(defaultRtt);
         when(rttEstimator.getRttVar()).thenReturn(defaultRttVar);
+        when(rttEstimator.getSmoothedRttMicros()).thenReturn(defaultRtt * 1000L);
+        when(rttEstimator.getLatestRttMicros()).thenReturn(defaultRtt * 1000L);
+        when(rttEstimator.getRttVarMicros()).thenReturn(defaultRttVar * 1000L);
         probeSender = mock(Sender.class);
         Logger logger = mock(Logger.class);
         when(logger.getQLog()).thenReturn(mock(QLog.class));
@@ -21,12 +21,15 @@ package net.luminis.quic.recovery;
 import net.luminis.quic.common.EncryptionLevel;
 import net.luminis.quic.impl.MockPacket;
 import net.luminis.quic.frame.AckFrame;
+import net.luminis.quic.frame.Range;
+import net.luminis.quic.impl.Version;
 import net.luminis.quic.log.Logger;
 import net.luminis.quic.test.FieldSetter;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.time.Duration;
 import java.time.Instant;
 import java.util.Collections;
 import java.util.List;
@@ -225,4 +228,33 @@ class RttEstimatorTest {
 
         assertThat(rttEstimator.getSmoothedRtt()).isGreaterThan(1000);
     }
-}
\ No newline at end of file
+
+    @Test
+    void subMillisecondSamplesAreNotRoundedToZero() {
+        Instant start = Instant.now();
+        Instant end = start.plusNanos(250_400);
+        rttEstimator.addSample(end, start, 0);
+
+        assertThat(rttEstimator.getSmoothedRttMicros()).isEqualTo(250);
+        assertThat(rttEstimator.getLatestRttMicros()).isEqualTo(250);
+        assertThat(rttEstimator.getMinRttMicros()).isEqualTo(250);
+        assertThat(rttEstimator.getRttVarMicros()).isEqualTo(125);
+    }
+
+    @Test
+    void ackDelayIsSubtractedWithMicrosecondPrecision() {
+        // Given
+        Instant t0 = Instant.now();
+        rttEstimator.addSample(t0.plusNanos(300_000), t0, 0);
+
+        // When
+        Instant t1 = t0.plusMillis(1);
+        Instant t2 = t1.plusNanos(700_000);
+        AckFrame ack = new AckFrame(Version.getDefault(), List.of(new Range(9, 9)), Duration.ofNanos(200_000));
+        rttEstimator.ackReceived(ack, t2, List.of(new PacketStatus(t1, new MockPacket(9, 120, ""), null)));
+
+        // Then
+        assertThat(rttEstimator.getLatestRttMicros()).isEqualTo(500);
+        assertThat(rttEstimator.getLatestRtt()).isEqualTo(1);
+    }
+}
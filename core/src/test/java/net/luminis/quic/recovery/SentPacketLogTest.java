@@ -0,0 +1,210 @@
+/*
+ * Copyright © 2024 Peter Doornbosch
+ *
+ * This file is part of Kwik, an implementation of the QUIC protocol in Java.
+ *
+ * Kwik is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * Kwik is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.luminis.quic.recovery;
+
+import net.luminis.quic.common.EncryptionLevel;
+import net.luminis.quic.impl.ConnectionMemory;
+import net.luminis.quic.impl.MockPacket;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SentPacketLogTest {
+
+    private SentPacketLog log;
+
+    @BeforeEach
+    void initObjectUnderTest() {
+        log = new SentPacketLog();
+    }
+
+    @Test
+    void addedPacketCanBeRetrievedByPacketNumber() {
+        // When
+        log.add(packetStatus(0));
+        log.add(packetStatus(1));
+
+        // Then
+        assertThat(log.get(1).packet().getPacketNumber()).isEqualTo(1);
+        assertThat(log.get(0).packet().getPacketNumber()).isEqualTo(0);
+        assertThat(log.get(2)).isNull();
+        assertThat(log.size()).isEqualTo(2);
+    }
+
+    @Test
+    void removingOldestPacketMovesStartToNextPresentPacket() {
+        // Given
+        for (int pn = 0; pn < 5; pn++) {
+            log.add(packetStatus(pn));
+        }
+        log.remove(1);
+        log.remove(2);
+
+        // When
+        log.remove(0);
+
+        // Then
+        assertThat(log.firstPacketNumber()).isEqualTo(3);
+        assertThat(log.size()).isEqualTo(2);
+    }
+
+    @Test
+    void removingNonOldestPacketDoesNotMoveStart() {
+        // Given
+        for (int pn = 0; pn < 5; pn++) {
+            log.add(packetStatus(pn));
+        }
+
+        // When
+        log.remove(3);
+
+        // Then
+        assertThat(log.firstPacketNumber()).isEqualTo(0);
+        assertThat(log.get(3)).isNull();
+        assertThat(log.get(4)).isNotNull();
+    }
+
+    @Test
+    void removingPacketNotPresentReturnsNull() {
+        // Given
+        log.add(packetStatus(10));
+
+        // Then
+        assertThat(log.remove(9)).isNull();
+        assertThat(log.remove(11)).isNull();
+        assertThat(log.size()).isEqualTo(1);
+    }
+
+    @Test
+    void logGrowsWhenRangeOfPacketNumbersDoesNotFit() {
+        // When
+        for (int pn = 0; pn < 1000; pn++) {
+            log.add(packetStatus(pn));
+        }
+
+        // Then
+        assertThat(log.size()).isEqualTo(1000);
+        for (int pn = 0; pn < 1000; pn++) {
+            assertThat(log.get(pn).packet().getPacketNumber()).isEqualTo(pn);
+        }
+    }
+
+    @Test
+    void logDoesNotGrowWhenOldPacketsAreRemoved() {
+        // When
+        for (int pn = 0; pn < 10_000; pn++) {
+            log.add(packetStatus(pn));
+            if (pn >= 10) {
+                log.remove(pn - 10);
+            }
+        }
+
+        // Then
+        assertThat(log.size()).isEqualTo(10);
+        assertThat(log.firstPacketNumber()).isEqualTo(9_990);
+        assertThat(log.get(9_995).packet().getPacketNumber()).isEqualTo(9_995);
+    }
+
+    @Test
+    void packetWithLowerPacketNumberThanOldestCanBeAdded() {
+        // Given
+        log.add(packetStatus(5));
+
+        // When
+        log.add(packetStatus(3));
+
+        // Then
+        assertThat(log.firstPacketNumber()).isEqualTo(3);
+        assertThat(log.get(3)).isNotNull();
+        assertThat(log.get(5)).isNotNull();
+    }
+
+    @Test
+    void filterReturnsMatchingPacketsInPacketNumberOrder() {
+        // Given
+        for (int pn = 0; pn < 100; pn++) {
+            log.add(packetStatus(pn));
+        }
+
+        // When
+        List<PacketStatus> even = log.filter(p -> p.packet().getPacketNumber() % 2 == 0);
+
+        // Then
+        assertThat(even).hasSize(50);
+        assertThat(even.stream().map(p -> p.packet().getPacketNumber()).collect(Collectors.toList())).isSorted();
+    }
+
+    @Test
+    void clearRemovesAllPackets() {
+        // Given
+        for (int pn = 0; pn < 10; pn++) {
+            log.add(packetStatus(pn));
+        }
+
+        // When
+        log.clear();
+
+        // Then
+        assertThat(log.isEmpty()).isTrue();
+        assertThat(log.get(5)).isNull();
+        log.add(packetStatus(10));
+        assertThat(log.firstPacketNumber()).isEqualTo(10);
+    }
+
+    @Test
+    void retainedPacketsAreChargedToMemoryAccount() {
+        // Given
+        ConnectionMemory memory = ConnectionMemory.unlimited();
+        log.setMemory(memory);
+
+        // When
+        for (int pn = 0; pn < 5; pn++) {
+            log.add(packetStatus(pn));
+        }
+        log.remove(2);
+
+        // Then
+        assertThat(memory.getUsage()).isEqualTo(4 * 1200);
+    }
+
+    @Test
+    void clearingLogReleasesAllMemory() {
+        // Given
+        ConnectionMemory memory = ConnectionMemory.unlimited();
+        log.setMemory(memory);
+        for (int pn = 0; pn < 5; pn++) {
+            log.add(packetStatus(pn));
+        }
+
+        // When
+        log.clear();
+
+        // Then
+        assertThat(memory.getUsage()).isEqualTo(0);
+    }
+
+    private PacketStatus packetStatus(int packetNumber) {
+        return new PacketStatus(Instant.now(), new MockPacket(packetNumber, 1200, EncryptionLevel.App), p -> {});
+    }
+}
@@ -307,4 +307,13 @@ class GlobalPacketAssemblerTest extends AbstractSenderTest {
         PacketAssembler packetAssember = (PacketAssembler) ((Object[]) packetAssemblers)[level.ordinal()];
         FieldSetter.setField(packetAssember, packetAssember.getClass().getDeclaredField("nextPacketNumber"), pn);
     }
+
+    @Test
+    void pmtuProbeIsOnlyAssembledWhenAppLevelIsEnabled() {
+        assertThat(globalPacketAssembler.assemblePmtuProbe(1400, new byte[0], new byte[0])).isEmpty();
+
+        globalPacketAssembler.enableAppLevel();
+
+        assertThat(globalPacketAssembler.assemblePmtuProbe(1400, new byte[0], new byte[0])).isPresent();
+    }
 }
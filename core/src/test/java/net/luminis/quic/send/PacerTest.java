@@ -0,0 +1,142 @@
+/*
+ * Copyright © 2024 Peter Doornbosch
+ *
+ * This file is part of Kwik, an implementation of the QUIC protocol in Java.
+ *
+ * Kwik is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * Kwik is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.luminis.quic.send;
+
+import net.luminis.quic.test.TestClock;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PacerTest {
+
+    private TestClock clock;
+    private Pacer pacer;
+
+    @BeforeEach
+    void initObjectUnderTest() {
+        clock = new TestClock();
+        pacer = new Pacer(clock, 4);
+    }
+
+    @Test
+    void withoutRateNothingIsPaced() {
+        for (int i = 0; i < 100; i++) {
+            assertThat(pacer.timeUntilSend(1200)).isEqualTo(0);
+            pacer.packetSent(1200);
+        }
+    }
+
+    @Test
+    void initialBurstIsAllowed() {
+        // Given
+        pacer.updateRate(12000, 100_000);
+
+        // When
+        for (int i = 0; i < 4; i++) {
+            assertThat(pacer.timeUntilSend(1200)).isEqualTo(0);
+            pacer.packetSent(1200);
+        }
+
+        // Then
+        assertThat(pacer.timeUntilSend(1200)).isGreaterThan(0);
+    }
+
+    @Test
+    void rateIsDerivedFromCongestionWindowAndSmoothedRtt() {
+        // When
+        pacer.updateRate(12000, 100_000);
+
+        // Then
+        // 1.25 * 12000 bytes / 0.1 second
+        assertThat(pacer.getRate()).isEqualTo(150_000);
+    }
+
+    @Test
+    void whenBucketIsEmptyDelayIsTimeToRefill() {
+        // Given
+        pacer.updateRate(12000, 100_000);   // 150 bytes per ms
+        for (int i = 0; i < 4; i++) {
+            pacer.packetSent(1200);
+        }
+
+        // When
+        long delay = pacer.timeUntilSend(1200);
+
+        // Then
+        assertThat(delay).isEqualTo(8);
+        assertThat(pacer.getDelayCount()).isEqualTo(1);
+    }
+
+    @Test
+    void afterDelayPacketCanBeSent() {
+        // Given
+        pacer.updateRate(12000, 100_000);
+        for (int i = 0; i < 4; i++) {
+            pacer.packetSent(1200);
+        }
+
+        // When
+        clock.fastForward((int) pacer.timeUntilSend(1200));
+
+        // Then
+        assertThat(pacer.timeUntilSend(1200)).isEqualTo(0);
+    }
+
+    @Test
+    void afterIdlePeriodBurstIsLimited() {
+        // Given
+        pacer.updateRate(12000, 100_000);
+        pacer.packetSent(1200);
+
+        // When
+        clock.fastForward(10_000);
+
+        // Then
+        int sent = 0;
+        while (pacer.timeUntilSend(1200) == 0) {
+            pacer.packetSent(1200);
+            sent++;
+        }
+        assertThat(sent).isEqualTo(4);
+    }
+
+    @Test
+    void atHighRateBucketCoversTimerGranularity() {
+        // Given
+        pacer.updateRate(10_000_000, 10_000);   // 1.25 MB per ms
+        clock.fastForward(1000);
+
+        // When
+        int sent = 0;
+        while (pacer.timeUntilSend(1200) == 0) {
+            pacer.packetSent(1200);
+            sent++;
+        }
+
+        // Then
+        assertThat(sent).isGreaterThan(1000);
+    }
+
+    @Test
+    void burstShouldBeAtLeastOnePacket() {
+        assertThatThrownBy(() -> pacer.setMaxBurstPackets(0)).isInstanceOf(IllegalArgumentException.class);
+    }
+}
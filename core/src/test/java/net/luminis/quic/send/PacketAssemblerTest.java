@@ -740,4 +740,19 @@ class PacketAssemblerTest extends AbstractSenderTest {
         Optional<SendItem> item = oneRttPacketAssembler.assemble(6000, maxAvailablePacketSize, new byte[0], new byte[0]);
         assertThat(item).isNotPresent();
     }
+
+    @Test
+    void pmtuProbeShouldHaveExactlyTheProbeSize() throws Exception {
+        // Given
+        byte[] destCid = new byte[] { 0x0c, 0x0a, 0x0f, 0x0e, 0x0c, 0x0a, 0x0f, 0x0e };
+
+        // When
+        Optional<SendItem> item = oneRttPacketAssembler.assemblePmtuProbe(1452, null, destCid);
+
+        // Then
+        QuicPacket packet = item.get().getPacket();
+        assertThat(packet.isPmtuProbe()).isTrue();
+        assertThat(packet.isAckEliciting()).isTrue();
+        assertThat(packet.generatePacketBytes(TestUtils.createKeys()).length).isEqualTo(1452);
+    }
 }
@@ -0,0 +1,276 @@
+/*
+ * Copyright © 2024 Peter Doornbosch
+ *
+ * This file is part of Kwik, an implementation of the QUIC protocol in Java.
+ *
+ * Kwik is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * Kwik is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.luminis.quic.send;
+
+import net.luminis.quic.common.EncryptionLevel;
+import net.luminis.quic.impl.MockPacket;
+import net.luminis.quic.log.Logger;
+import net.luminis.quic.packet.PacketInfo;
+import net.luminis.quic.packet.QuicPacket;
+import net.luminis.quic.test.TestClock;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+class PmtuDiscoveryTest {
+
+    private TestClock clock;
+    private PmtuDiscovery pmtuDiscovery;
+    private int packetSize;
+    private int nextPacketNumber;
+
+    @BeforeEach
+    void initObjectUnderTest() {
+        clock = new TestClock();
+        packetSize = 1232;
+        pmtuDiscovery = new PmtuDiscovery(1232, clock, size -> packetSize = size, mock(Logger.class));
+    }
+
+    @Test
+    void whenNotStartedNoProbeIsSent() {
+        // Given
+        pmtuDiscovery.setLocalMaxPacketSize(1500);
+
+        // Then
+        assertThat(pmtuDiscovery.nextProbeSize()).isEqualTo(0);
+    }
+
+    @Test
+    void whenLocalMaxEqualsBaseNoProbeIsSent() {
+        // When
+        pmtuDiscovery.start();
+
+        // Then
+        assertThat(pmtuDiscovery.nextProbeSize()).isEqualTo(0);
+        assertThat(pmtuDiscovery.getState()).isEqualTo(PmtuDiscovery.State.SearchComplete);
+    }
+
+    @Test
+    void firstProbeHasMaximumSize() {
+        // Given
+        pmtuDiscovery.setLocalMaxPacketSize(9000);
+        pmtuDiscovery.setPeerMaxUdpPayloadSize(8000);
+
+        // When
+        pmtuDiscovery.start();
+
+        // Then
+        assertThat(pmtuDiscovery.nextProbeSize()).isEqualTo(8000);
+    }
+
+    @Test
+    void acknowledgedProbeIncreasesPacketSize() {
+        // Given
+        pmtuDiscovery.setLocalMaxPacketSize(9000);
+        pmtuDiscovery.start();
+        QuicPacket probe = sendProbe();
+
+        // When
+        pmtuDiscovery.packetsAcked(List.of(packetInfo(probe)));
+
+        // Then
+        assertThat(packetSize).isEqualTo(9000);
+        assertThat(pmtuDiscovery.getPlpmtu()).isEqualTo(9000);
+        assertThat(pmtuDiscovery.getState()).isEqualTo(PmtuDiscovery.State.SearchComplete);
+    }
+
+    @Test
+    void loweringLocalMaxLowersPacketSize() {
+        // Given
+        pmtuDiscovery.setLocalMaxPacketSize(9000);
+        pmtuDiscovery.start();
+        pmtuDiscovery.packetsAcked(List.of(packetInfo(sendProbe())));
+
+        // When
+        pmtuDiscovery.setLocalMaxPacketSize(0);
+
+        // Then
+        assertThat(packetSize).isEqualTo(1232);
+        assertThat(pmtuDiscovery.nextProbeSize()).isEqualTo(0);
+    }
+
+    @Test
+    void noNewProbeIsSentWhileProbeIsInFlight() {
+        // Given
+        pmtuDiscovery.setLocalMaxPacketSize(9000);
+        pmtuDiscovery.start();
+
+        // When
+        sendProbe();
+
+        // Then
+        assertThat(pmtuDiscovery.nextProbeSize()).isEqualTo(0);
+    }
+
+    @Test
+    void lostProbeIsRetriedWithSameSize() {
+        // Given
+        pmtuDiscovery.setLocalMaxPacketSize(9000);
+        pmtuDiscovery.start();
+        QuicPacket probe = sendProbe();
+
+        // When
+        pmtuDiscovery.packetsLost(List.of(packetInfo(probe)));
+
+        // Then
+        assertThat(pmtuDiscovery.nextProbeSize()).isEqualTo(9000);
+        assertThat(packetSize).isEqualTo(1232);
+    }
+
+    @Test
+    void whenMaxProbesAreLostSearchContinuesWithSmallerSize() {
+        // Given
+        pmtuDiscovery.setLocalMaxPacketSize(9000);
+        pmtuDiscovery.start();
+
+        // When
+        for (int i = 0; i < PmtuDiscovery.MAX_PROBES; i++) {
+            pmtuDiscovery.packetsLost(List.of(packetInfo(sendProbe())));
+        }
+
+        // Then
+        int nextProbeSize = pmtuDiscovery.nextProbeSize();
+        assertThat(nextProbeSize).isBetween(1232, 8999);
+        assertThat(nextProbeSize).isEqualTo((1232 + 8999 + 1) / 2);
+    }
+
+    @Test
+    void binarySearchConvergesToPathMtu() {
+        // Given
+        int pathMtu = 1472;
+        pmtuDiscovery.setLocalMaxPacketSize(9000);
+        pmtuDiscovery.start();
+
+        // When
+        int probeSize;
+        int probes = 0;
+        while ((probeSize = pmtuDiscovery.nextProbeSize()) > 0) {
+            QuicPacket probe = sendProbe();
+            if (probeSize <= pathMtu) {
+                pmtuDiscovery.packetsAcked(List.of(packetInfo(probe)));
+            }
+            else {
+                pmtuDiscovery.packetsLost(List.of(packetInfo(probe)));
+            }
+            probes++;
+        }
+
+        // Then
+        assertThat(pmtuDiscovery.getState()).isEqualTo(PmtuDiscovery.State.SearchComplete);
+        assertThat(packetSize).isLessThanOrEqualTo(pathMtu);
+        assertThat(packetSize).isGreaterThan(pathMtu - PmtuDiscovery.SEARCH_GRANULARITY);
+        assertThat(probes).isLessThan(50);
+    }
+
+    @Test
+    void peerMaxUdpPayloadSizeLimitsPacketSize() {
+        // Given
+        pmtuDiscovery.setLocalMaxPacketSize(9000);
+        pmtuDiscovery.start();
+        pmtuDiscovery.packetsAcked(List.of(packetInfo(sendProbe())));
+
+        // When
+        pmtuDiscovery.setPeerMaxUdpPayloadSize(1400);
+
+        // Then
+        assertThat(packetSize).isEqualTo(1400);
+    }
+
+    @Test
+    void peerMaxUdpPayloadSizeSmallerThanBaseLowersPacketSize() {
+        // When
+        pmtuDiscovery.setPeerMaxUdpPayloadSize(1200);
+
+        // Then
+        assertThat(packetSize).isEqualTo(1200);
+    }
+
+    @Test
+    void repeatedLossOfLargePacketsIsDetectedAsBlackHole() {
+        // Given
+        pmtuDiscovery.setLocalMaxPacketSize(9000);
+        pmtuDiscovery.start();
+        pmtuDiscovery.packetsAcked(List.of(packetInfo(sendProbe())));
+        assertThat(packetSize).isEqualTo(9000);
+
+        // When
+        for (int i = 0; i < PmtuDiscovery.BLACK_HOLE_THRESHOLD; i++) {
+            pmtuDiscovery.packetsLost(List.of(packetInfo(new MockPacket(nextPacketNumber++, 9000, EncryptionLevel.App))));
+        }
+
+        // Then
+        assertThat(packetSize).isEqualTo(1232);
+        assertThat(pmtuDiscovery.getState()).isEqualTo(PmtuDiscovery.State.Searching);
+        assertThat(pmtuDiscovery.nextProbeSize()).isLessThan(9000);
+    }
+
+    @Test
+    void ackOfLargePacketResetsBlackHoleDetection() {
+        // Given
+        pmtuDiscovery.setLocalMaxPacketSize(9000);
+        pmtuDiscovery.start();
+        pmtuDiscovery.packetsAcked(List.of(packetInfo(sendProbe())));
+
+        // When
+        for (int i = 0; i < PmtuDiscovery.BLACK_HOLE_THRESHOLD * 2; i++) {
+            pmtuDiscovery.packetsLost(List.of(packetInfo(new MockPacket(nextPacketNumber++, 9000, EncryptionLevel.App))));
+            pmtuDiscovery.packetsAcked(List.of(packetInfo(new MockPacket(nextPacketNumber++, 9000, EncryptionLevel.App))));
+        }
+
+        // Then
+        assertThat(packetSize).isEqualTo(9000);
+    }
+
+    @Test
+    void searchIsResumedAfterRaiseTimer() {
+        // Given
+        pmtuDiscovery.setLocalMaxPacketSize(9000);
+        pmtuDiscovery.start();
+        for (int i = 0; i < PmtuDiscovery.MAX_PROBES; i++) {
+            pmtuDiscovery.packetsLost(List.of(packetInfo(sendProbe())));
+        }
+        while (pmtuDiscovery.nextProbeSize() > 0) {
+            pmtuDiscovery.packetsLost(List.of(packetInfo(sendProbe())));
+        }
+        assertThat(pmtuDiscovery.getState()).isEqualTo(PmtuDiscovery.State.SearchComplete);
+
+        // When
+        clock.fastForward(PmtuDiscovery.PMTU_RAISE_TIMER);
+
+        // Then
+        assertThat(pmtuDiscovery.nextProbeSize()).isEqualTo(9000);
+    }
+
+    private QuicPacket sendProbe() {
+        int probeSize = pmtuDiscovery.nextProbeSize();
+        MockPacket probe = new MockPacket(nextPacketNumber++, probeSize, EncryptionLevel.App);
+        probe.setIsPmtuProbe(true);
+        pmtuDiscovery.probeSent(probe);
+        return probe;
+    }
+
+    private PacketInfo packetInfo(QuicPacket packet) {
+        return new PacketInfo(Instant.now(), packet, p -> {});
+    }
+}
@@ -34,6 +34,7 @@ import net.luminis.quic.packet.ShortHeaderPacket;
 import net.luminis.quic.test.FieldReader;
 import net.luminis.quic.test.FieldSetter;
 import net.luminis.quic.test.TestClock;
+import net.luminis.quic.test.TestScheduledExecutor;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.Timeout;
@@ -41,7 +42,11 @@ import org.mockito.ArgumentCaptor;
 
 import java.net.DatagramPacket;
 import java.net.DatagramSocket;
+import java.net.InetAddress;
 import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
@@ -90,6 +95,51 @@ class SenderImplTest extends AbstractSenderTest {
         assertThat(delay).isBetween(49L, 51L);
     }
 
+    @Test
+    void whenBurstIsSentFurtherPacketsArePaced() throws Exception {
+        // Given
+        sender.enableAllLevels();
+        sender.setPacingBurst(2);
+        for (int i = 0; i < 5; i++) {
+            sender.send(new StreamFrame(0, i * 1000, new byte[1000], false), EncryptionLevel.App);
+        }
+
+        // When
+        sender.sendIfAny();
+
+        // Then
+        verify(socket, times(2)).send(any(DatagramPacket.class));
+        long delay = sender.determineMaximumWaitTime();
+        assertThat(delay).isBetween(1L, 100L);
+
+        // When
+        clock.fastForward((int) delay);
+        sender.sendIfAny();
+
+        // Then
+        verify(socket, times(3)).send(any(DatagramPacket.class));
+        assertThat(sender.getStatistics().pacingRate()).isGreaterThan(0);
+        assertThat(sender.getStatistics().pacingDelays()).isGreaterThan(0);
+    }
+
+    @Test
+    void waitTimeForPacedPacketsIsRoundedUpToWholeMilliseconds() throws Exception {
+        // Given
+        sender.enableAllLevels();
+        sender.setPacingBurst(2);
+        for (int i = 0; i < 5; i++) {
+            sender.send(new StreamFrame(0, i * 1000, new byte[1000], false), EncryptionLevel.App);
+        }
+        sender.sendIfAny();
+        long delay = sender.determineMaximumWaitTime();
+
+        // When
+        clock.fastForward(Duration.ofMillis(delay).minusNanos(500_000));
+
+        // Then
+        assertThat(sender.determineMaximumWaitTime()).isEqualTo(1);
+    }
+
     @Test
     void senderStatisticsShouldWork() throws Exception {
         ShortHeaderPacket packet1 = new ShortHeaderPacket(Version.getDefault(), new byte[4], new StreamFrame(0, new byte[1100], false));
@@ -233,4 +283,79 @@ class SenderImplTest extends AbstractSenderTest {
         list.add(item);
         return list;
     }
+
+    @Test
+    void inEventLoopModeFlushShouldSendQueuedFramesWhenEventLoopRuns() throws Exception {
+        // Given
+        TestScheduledExecutor eventLoop = new TestScheduledExecutor(clock);
+        QuicConnectionImpl connection = mock(QuicConnectionImpl.class);
+        when(connection.getDestinationConnectionId()).thenReturn(new byte[4]);
+        when(connection.getSourceConnectionId()).thenReturn(new byte[4]);
+        when(connection.getIdleTimer()).thenReturn(new IdleTimer(connection, new NullLogger()));
+        sender = new SenderImpl(clock, new VersionHolder(Version.getDefault()), 1200, socket, new InetSocketAddress("example.com", 443),
+                connection, "", 100, null, eventLoop, new NullLogger());
+        sender.start(connectionSecrets);
+        sender.enableAllLevels();
+        eventLoop.check();
+
+        // When
+        sender.send(new PingFrame(), EncryptionLevel.App);
+        sender.flush();
+
+        // Then
+        verify(socket, never()).send(any(DatagramPacket.class));
+        eventLoop.check();
+        verify(socket).send(any(DatagramPacket.class));
+    }
+
+    @Test
+    void whenDontFragmentCannotBeSetPathMtuDiscoveryIsNotEnabled() throws Exception {
+        // Given
+        doThrow(new UnsupportedOperationException()).when(socket).setOption(any(), any());
+
+        // When
+        boolean enabled = sender.enablePathMtuDiscovery(1500);
+
+        // Then
+        assertThat(enabled).isFalse();
+    }
+
+    @Test
+    void whenSocketHasChannelDatagramsShouldBeSentFromReusedDirectBuffer() throws Exception {
+        // Given
+        DatagramChannel senderChannel = DatagramChannel.open().bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        DatagramChannel peerChannel = DatagramChannel.open().bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        try {
+            QuicConnectionImpl connection = mock(QuicConnectionImpl.class);
+            when(connection.getIdleTimer()).thenReturn(new IdleTimer(connection, new NullLogger()));
+            sender = new SenderImpl(clock, new VersionHolder(Version.getDefault()), 1200, senderChannel.socket(),
+                    (InetSocketAddress) peerChannel.getLocalAddress(), connection, "", 100, new NullLogger());
+            FieldSetter.setField(sender, sender.getClass().getDeclaredField("connectionSecrets"), connectionSecrets);
+            ShortHeaderPacket packet = new ShortHeaderPacket(Version.getDefault(), new byte[4], new StreamFrame(0, new byte[1100], false));
+
+            // When
+            packet.setPacketNumber(10);
+            sender.send(List.of(new SendItem(packet)));
+            ByteBuffer firstSendBuffer = (ByteBuffer) new FieldReader(sender, sender.getClass().getDeclaredField("sendBuffer")).read();
+            packet.setPacketNumber(11);
+            sender.send(List.of(new SendItem(packet)));
+            ByteBuffer secondSendBuffer = (ByteBuffer) new FieldReader(sender, sender.getClass().getDeclaredField("sendBuffer")).read();
+
+            // Then
+            assertThat(secondSendBuffer).isSameAs(firstSendBuffer);
+            assertThat(firstSendBuffer.isDirect()).isTrue();
+            ByteBuffer received = ByteBuffer.allocate(1500);
+            peerChannel.receive(received);
+            int firstLength = received.position();
+            received.clear();
+            peerChannel.receive(received);
+            assertThat(firstLength).isGreaterThan(1100);
+            assertThat(received.position()).isEqualTo(firstLength);
+            assertThat(sender.getStatistics().bytesSent()).isEqualTo(2 * firstLength);
+        }
+        finally {
+            senderChannel.close();
+            peerChannel.close();
+        }
+    }
 }
@@ -18,6 +18,7 @@
  */
 package net.luminis.quic.server;
 
+import net.luminis.quic.concurrent.EventLoopGroup;
 import net.luminis.quic.impl.Version;
 import net.luminis.quic.log.Logger;
 import net.luminis.quic.server.impl.ServerConnectionImpl;
@@ -81,6 +82,32 @@ class ServerConnectionFactoryTest {
         ).isInstanceOf(IllegalArgumentException.class);
     }
 
+    @Test
+    void connectionsShouldBeAssignedToEventLoopsOfGroup() {
+        EventLoopGroup eventLoopGroup = new EventLoopGroup(2);
+        try {
+            ServerConnectionFactory connectionFactory = new ServerConnectionFactory(null, tlsServerEngineFactory, getConfig(8), null, null, cid -> {}, eventLoopGroup, null, null, null, null, null, mock(Logger.class));
+            ServerConnectionImpl conn1 = connectionFactory.createNewConnection(Version.getDefault(), someClient, new byte[8], new byte[8]);
+            ServerConnectionImpl conn2 = connectionFactory.createNewConnection(Version.getDefault(), someClient, new byte[8], new byte[8]);
+            ServerConnectionImpl conn3 = connectionFactory.createNewConnection(Version.getDefault(), someClient, new byte[8], new byte[8]);
+
+            assertThat(conn1.getEventLoop()).isNotNull();
+            assertThat(conn2.getEventLoop()).isNotSameAs(conn1.getEventLoop());
+            assertThat(conn3.getEventLoop()).isSameAs(conn1.getEventLoop());
+        }
+        finally {
+            eventLoopGroup.shutdown();
+        }
+    }
+
+    @Test
+    void withoutEventLoopGroupConnectionsShouldNotHaveEventLoop() {
+        ServerConnectionFactory connectionFactory = new ServerConnectionFactory(null, tlsServerEngineFactory, getConfig(8), null, null, cid -> {}, mock(Logger.class));
+        ServerConnectionImpl connection = connectionFactory.createNewConnection(Version.getDefault(), someClient, new byte[8], new byte[8]);
+
+        assertThat(connection.getEventLoop()).isNull();
+    }
+
     ServerConnectionConfig getConfig(int connectionIdLength) {
         ServerConnectionConfig config = mock(ServerConnectionConfig.class);
         when(config.connectionIdLength()).thenReturn(connectionIdLength);
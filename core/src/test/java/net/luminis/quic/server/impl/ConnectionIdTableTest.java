@@ -0,0 +1,134 @@
+/*
+ * Copyright © 2024 Peter Doornbosch
+ *
+ * This file is part of Kwik, an implementation of the QUIC protocol in Java.
+ *
+ * Kwik is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * Kwik is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.luminis.quic.server.impl;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ConnectionIdTableTest {
+
+    private ConnectionIdTable<String> table;
+
+    @BeforeEach
+    void initObjectUnderTest() {
+        table = new ConnectionIdTable<>();
+    }
+
+    @Test
+    void registeredConnectionIdShouldBeFound() {
+        table.put(new byte[] { 1, 2, 3, 4, 5, 6, 7, 8 }, "conn1");
+        table.put(new byte[] { 1, 2, 3, 4 }, "conn2");
+
+        assertThat(table.get(new byte[] { 1, 2, 3, 4, 5, 6, 7, 8 })).isEqualTo("conn1");
+        assertThat(table.get(new byte[] { 1, 2, 3, 4 })).isEqualTo("conn2");
+        assertThat(table.get(new byte[] { 1, 2, 3, 4, 5, 6, 7, 9 })).isNull();
+        assertThat(table.get(new byte[] { 1, 2, 3 })).isNull();
+    }
+
+    @Test
+    void connectionIdInBufferShouldBeFoundWithoutChangingBuffer() {
+        table.put(new byte[] { 1, 2, 3, 4, 5, 6, 7, 8 }, "conn1");
+        table.put(new byte[] { 9, 8, 7, 6, 5 }, "conn2");
+        ByteBuffer datagram = ByteBuffer.wrap(new byte[] { 0x40, 1, 2, 3, 4, 5, 6, 7, 8, 9, 8, 7, 6, 5, 0 });
+        datagram.position(3);
+
+        assertThat(table.get(datagram, 1, 8)).isEqualTo("conn1");
+        assertThat(table.get(datagram, 9, 5)).isEqualTo("conn2");
+        assertThat(table.get(datagram, 2, 8)).isNull();
+        assertThat(datagram.position()).isEqualTo(3);
+    }
+
+    @Test
+    void connectionIdInDirectBufferShouldBeFound() {
+        table.put(new byte[] { 1, 2, 3, 4, 5, 6, 7, 8 }, "conn1");
+        ByteBuffer datagram = ByteBuffer.allocateDirect(1500);
+        datagram.put(new byte[] { 0x40, 1, 2, 3, 4, 5, 6, 7, 8 });
+        datagram.flip();
+
+        assertThat(table.get(datagram, 1, 8)).isEqualTo("conn1");
+    }
+
+    @Test
+    void registeringSameConnectionIdAgainShouldReplaceValue() {
+        assertThat(table.put(new byte[] { 1, 2, 3 }, "conn1")).isNull();
+        assertThat(table.put(new byte[] { 1, 2, 3 }, "conn2")).isEqualTo("conn1");
+
+        assertThat(table.get(new byte[] { 1, 2, 3 })).isEqualTo("conn2");
+        assertThat(table.size()).isEqualTo(1);
+    }
+
+    @Test
+    void removedConnectionIdShouldNotBeFound() {
+        table.put(new byte[] { 1, 2, 3 }, "conn1");
+
+        assertThat(table.remove(new byte[] { 1, 2, 3 })).isEqualTo("conn1");
+
+        assertThat(table.get(new byte[] { 1, 2, 3 })).isNull();
+        assertThat(table.isEmpty()).isTrue();
+    }
+
+    @Test
+    void changingRegisteredArrayShouldNotAffectTable() {
+        byte[] connectionId = new byte[] { 1, 2, 3 };
+        table.put(connectionId, "conn1");
+
+        connectionId[0] = 9;
+
+        assertThat(table.get(new byte[] { 1, 2, 3 })).isEqualTo("conn1");
+    }
+
+    @Test
+    void tableShouldGrowAndKeepAllEntriesAfterManyAdditionsAndRemovals() {
+        Random random = new Random(3);
+        byte[][] connectionIds = new byte[1000][];
+        for (int i = 0; i < connectionIds.length; i++) {
+            connectionIds[i] = new byte[i % 3 == 0? 4: 8];
+            random.nextBytes(connectionIds[i]);
+            table.put(connectionIds[i], "conn" + i);
+        }
+        // Remove half of them, leaving tombstones
+        for (int i = 0; i < connectionIds.length; i += 2) {
+            table.remove(connectionIds[i]);
+        }
+
+        for (int i = 0; i < connectionIds.length; i++) {
+            assertThat(table.get(connectionIds[i])).isEqualTo(i % 2 == 0? null: "conn" + i);
+        }
+        assertThat(table.size()).isEqualTo(500);
+        assertThat(table.entries()).hasSize(500);
+        assertThat(table.capacity()).isGreaterThanOrEqualTo(1000);
+    }
+
+    @Test
+    void repeatedAdditionsAndRemovalsShouldNotGrowTable() {
+        for (int i = 0; i < 10_000; i++) {
+            byte[] connectionId = ByteBuffer.allocate(8).putLong(i).array();
+            table.put(connectionId, "conn");
+            table.remove(connectionId);
+        }
+
+        assertThat(table.isEmpty()).isTrue();
+        assertThat(table.capacity()).isEqualTo(16);
+    }
+}
@@ -0,0 +1,191 @@
+/*
+ * Copyright © 2024 Peter Doornbosch
+ *
+ * This file is part of Kwik, an implementation of the QUIC protocol in Java.
+ *
+ * Kwik is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * Kwik is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.luminis.quic.server.impl;
+
+import net.luminis.quic.DropPolicy;
+import net.luminis.quic.ReceiveQueueMetrics;
+import net.luminis.quic.concurrent.WaitStrategy;
+import net.luminis.quic.packet.InitialPacket;
+import net.luminis.quic.packet.PacketFilter;
+import net.luminis.quic.packet.PacketMetaData;
+import net.luminis.quic.packet.ServerRolePacketParser;
+import net.luminis.quic.receive.ReceiveQueueConfig;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ServerConnectionEventLoopProxyTest {
+
+    private ServerConnectionImpl serverConnection;
+    private ServerRolePacketParser parser;
+    private Executor eventLoop;
+
+    @BeforeEach
+    void setUp() {
+        serverConnection = mock(ServerConnectionImpl.class);
+        when(serverConnection.getOriginalDestinationConnectionId()).thenReturn(new byte[0]);
+        when(serverConnection.getPacketProcessorChain()).thenReturn(mock(PacketFilter.class));
+        parser = mock(ServerRolePacketParser.class);
+        when(serverConnection.createParser()).thenReturn(parser);
+        // Executes tasks directly, which is equivalent to a single threaded event loop, but deterministic.
+        eventLoop = Runnable::run;
+    }
+
+    @Test
+    void testIncomingPacketsShouldBeParsed() {
+        // Given
+        ServerConnectionProxy proxy = new ServerConnectionEventLoopProxy(serverConnection, mock(InitialPacket.class), ByteBuffer.allocate(0), mock(PacketMetaData.class), eventLoop);
+
+        // When
+        proxy.parsePackets(10, Instant.now(), ByteBuffer.allocate(71), null);
+
+        // Then
+        verify(parser).parseAndProcessPackets(argThat(buffer -> buffer.remaining() == 71), any(PacketMetaData.class));
+    }
+
+    @Test
+    void testRemainingDatagramDataShouldBeParsed() {
+        // Given
+        ByteBuffer remainingData = ByteBuffer.allocate(1173);
+        remainingData.position(1100);
+
+        // When
+        new ServerConnectionEventLoopProxy(serverConnection, mock(InitialPacket.class), remainingData, mock(PacketMetaData.class), eventLoop);
+
+        // Then
+        verify(parser).parseAndProcessPackets(argThat(buffer -> buffer.remaining() == 73), any(PacketMetaData.class));
+    }
+
+    @Test
+    void datagramShouldBeReleasedAfterProcessing() {
+        // Given
+        ServerConnectionProxy proxy = new ServerConnectionEventLoopProxy(serverConnection, mock(InitialPacket.class), ByteBuffer.allocate(0), mock(PacketMetaData.class), eventLoop);
+        PacketMetaData metaData = mock(PacketMetaData.class);
+
+        // When
+        proxy.parsePackets(ByteBuffer.allocate(71), metaData);
+
+        // Then
+        verify(metaData).releaseDatagram();
+    }
+
+    @Test
+    void whenDisposedDatagramsShouldNotBeProcessedButReleased() {
+        // Given
+        ServerConnectionProxy proxy = new ServerConnectionEventLoopProxy(serverConnection, mock(InitialPacket.class), ByteBuffer.allocate(0), mock(PacketMetaData.class), eventLoop);
+        proxy.dispose();
+        PacketMetaData metaData = mock(PacketMetaData.class);
+
+        // When
+        proxy.parsePackets(ByteBuffer.allocate(71), metaData);
+
+        // Then
+        verify(parser, never()).parseAndProcessPackets(any(ByteBuffer.class), any(PacketMetaData.class));
+        verify(metaData).releaseDatagram();
+    }
+
+    @Test
+    void whenEventLoopIsShutDownDatagramShouldBeReleased() {
+        // Given
+        eventLoop = task -> { throw new RejectedExecutionException(); };
+        ServerConnectionProxy proxy = new ServerConnectionEventLoopProxy(serverConnection, mock(InitialPacket.class), ByteBuffer.allocate(0), mock(PacketMetaData.class), eventLoop);
+        PacketMetaData metaData = mock(PacketMetaData.class);
+
+        // When
+        proxy.parsePackets(ByteBuffer.allocate(71), metaData);
+
+        // Then
+        verify(metaData).releaseDatagram();
+    }
+
+    @Test
+    void whenProcessingFailsConnectionShouldBeAborted() {
+        // Given
+        ServerConnectionProxy proxy = new ServerConnectionEventLoopProxy(serverConnection, mock(InitialPacket.class), ByteBuffer.allocate(0), mock(PacketMetaData.class), eventLoop);
+        RuntimeException error = new IllegalStateException();
+        doThrow(error).when(parser).parseAndProcessPackets(any(ByteBuffer.class), any(PacketMetaData.class));
+
+        // When
+        proxy.parsePackets(ByteBuffer.allocate(71), mock(PacketMetaData.class));
+
+        // Then
+        verify(serverConnection).abortConnection(error);
+    }
+
+    @Test
+    void whenTooManyDatagramsAreWaitingNewDatagramsShouldBeDropped() {
+        // Given
+        List<Runnable> pendingTasks = new ArrayList<>();
+        eventLoop = pendingTasks::add;
+        ServerConnectionEventLoopProxy proxy = new ServerConnectionEventLoopProxy(serverConnection, mock(InitialPacket.class), ByteBuffer.allocate(0),
+                mock(PacketMetaData.class), eventLoop, new ReceiveQueueConfig(2, WaitStrategy.BLOCKING, DropPolicy.DROP_NEWEST), null);
+        PacketMetaData dropped = mock(PacketMetaData.class);
+
+        // When
+        proxy.parsePackets(ByteBuffer.allocate(71), mock(PacketMetaData.class));
+        proxy.parsePackets(ByteBuffer.allocate(72), mock(PacketMetaData.class));
+        proxy.parsePackets(ByteBuffer.allocate(73), dropped);
+        pendingTasks.forEach(Runnable::run);
+
+        // Then
+        verify(dropped).releaseDatagram();
+        verify(parser, never()).parseAndProcessPackets(argThat(buffer -> buffer.remaining() == 73), any(PacketMetaData.class));
+        assertThat(proxy.getQueueMetrics().getDropCount(ReceiveQueueMetrics.DropReason.QUEUE_FULL)).isEqualTo(1);
+        assertThat(proxy.getQueueMetrics().getDepth()).isEqualTo(0);
+    }
+
+    @Test
+    void withDropOldestPolicyOldestWaitingDatagramsShouldBeSkipped() {
+        // Given
+        List<Runnable> pendingTasks = new ArrayList<>();
+        eventLoop = pendingTasks::add;
+        ServerConnectionEventLoopProxy proxy = new ServerConnectionEventLoopProxy(serverConnection, mock(InitialPacket.class), ByteBuffer.allocate(0),
+                mock(PacketMetaData.class), eventLoop, new ReceiveQueueConfig(2, WaitStrategy.BLOCKING, DropPolicy.DROP_OLDEST), null);
+        PacketMetaData oldest = mock(PacketMetaData.class);
+
+        // When
+        proxy.parsePackets(ByteBuffer.allocate(71), oldest);
+        proxy.parsePackets(ByteBuffer.allocate(72), mock(PacketMetaData.class));
+        proxy.parsePackets(ByteBuffer.allocate(73), mock(PacketMetaData.class));
+        pendingTasks.forEach(Runnable::run);
+
+        // Then
+        verify(oldest).releaseDatagram();
+        verify(parser, never()).parseAndProcessPackets(argThat(buffer -> buffer.remaining() == 71), any(PacketMetaData.class));
+        verify(parser, times(2)).parseAndProcessPackets(argThat(buffer -> buffer.remaining() > 71), any(PacketMetaData.class));
+        assertThat(proxy.getQueueMetrics().getDropCount(ReceiveQueueMetrics.DropReason.EVICTED)).isEqualTo(1);
+        assertThat(proxy.getQueueMetrics().getHighWaterMark()).isEqualTo(3);
+    }
+}
@@ -18,20 +18,33 @@
  */
 package net.luminis.quic.server.impl;
 
+import net.luminis.quic.ReceiveQueueMetrics;
+import net.luminis.quic.concurrent.WaitStrategy;
 import net.luminis.quic.packet.InitialPacket;
 import net.luminis.quic.packet.PacketFilter;
 import net.luminis.quic.packet.PacketMetaData;
 import net.luminis.quic.packet.ServerRolePacketParser;
+import net.luminis.quic.receive.ReceiveQueueConfig;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
 import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
 import java.time.Instant;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -83,4 +96,69 @@ class ServerConnectionThreadTest {
         // Then
         verify(parser).parseAndProcessPackets(argThat(buffer -> buffer.remaining() == 73), any(PacketMetaData.class));
     }
-}
\ No newline at end of file
+
+    @Test
+    void whenQueueIsFullDatagramShouldBeDroppedAndReleased() throws Exception {
+        // Given
+        CountDownLatch processingStarted = new CountDownLatch(1);
+        CountDownLatch blockProcessing = new CountDownLatch(1);
+        doAnswer(i -> {
+            processingStarted.countDown();
+            blockProcessing.await();
+            return null;
+        }).when(parser).parseAndProcessPackets(any(ByteBuffer.class), any(PacketMetaData.class));
+        serverConnectionThread = new ServerConnectionThread(serverConnection, mock(InitialPacket.class), ByteBuffer.allocate(0),
+                mock(PacketMetaData.class), new ReceiveQueueConfig(2, WaitStrategy.BLOCKING), null);
+        serverConnectionThread.parsePackets(ByteBuffer.allocate(50), mock(PacketMetaData.class));
+        processingStarted.await(1, TimeUnit.SECONDS);
+
+        // When
+        PacketMetaData queued1 = mock(PacketMetaData.class);
+        PacketMetaData queued2 = mock(PacketMetaData.class);
+        PacketMetaData dropped = mock(PacketMetaData.class);
+        serverConnectionThread.parsePackets(ByteBuffer.allocate(50), queued1);
+        serverConnectionThread.parsePackets(ByteBuffer.allocate(50), queued2);
+        serverConnectionThread.parsePackets(ByteBuffer.allocate(50), dropped);
+
+        // Then
+        verify(dropped).releaseDatagram();
+        verify(queued1, never()).releaseDatagram();
+        verify(queued2, never()).releaseDatagram();
+        assertThat(serverConnectionThread.getQueueMetrics().getDropCount(ReceiveQueueMetrics.DropReason.QUEUE_FULL)).isEqualTo(1);
+        assertThat(serverConnectionThread.getQueueMetrics().getHighWaterMark()).isEqualTo(2);
+        blockProcessing.countDown();
+    }
+
+    @Test
+    void disposingConnectionShouldLeaveSharedServerSocketOpen() throws Exception {
+        // Given
+        DatagramSocket serverSocket = DatagramChannel.open().bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0)).socket();
+        try {
+            CountDownLatch processingStarted = new CountDownLatch(1);
+            Semaphore blockProcessing = new Semaphore(0);
+            CountDownLatch sent = new CountDownLatch(1);
+            doAnswer(i -> {
+                processingStarted.countDown();
+                // Not interruptible, so processing continues with sending (like a connection responding to a datagram)
+                blockProcessing.acquireUninterruptibly();
+                serverSocket.getChannel().send(ByteBuffer.allocate(10), serverSocket.getLocalSocketAddress());
+                sent.countDown();
+                return null;
+            }).when(parser).parseAndProcessPackets(any(ByteBuffer.class), any(PacketMetaData.class));
+            serverConnectionThread = new ServerConnectionThread(serverConnection, mock(InitialPacket.class), ByteBuffer.allocate(0), mock(PacketMetaData.class));
+            serverConnectionThread.parsePackets(ByteBuffer.allocate(50), mock(PacketMetaData.class));
+            processingStarted.await(1, TimeUnit.SECONDS);
+
+            // When
+            serverConnectionThread.dispose();
+            blockProcessing.release();
+
+            // Then
+            assertThat(sent.await(1, TimeUnit.SECONDS)).isTrue();
+            assertThat(serverSocket.getChannel().isOpen()).isTrue();
+        }
+        finally {
+            serverSocket.close();
+        }
+    }
+}
@@ -29,6 +29,7 @@ import net.luminis.quic.packet.VersionNegotiationPacket;
 import net.luminis.quic.receive.RawPacket;
 import net.luminis.quic.server.ApplicationProtocolConnectionFactory;
 import net.luminis.quic.server.ServerConnectionFactory;
+import net.luminis.quic.server.ServerConnector;
 import net.luminis.quic.test.ByteUtils;
 import net.luminis.quic.test.FieldReader;
 import net.luminis.quic.test.FieldSetter;
@@ -49,6 +50,7 @@ import java.util.Arrays;
 import java.util.List;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.Mockito.*;
 
@@ -195,6 +197,7 @@ class ServerConnectorImplTest {
     void serverReceivingValidInitialShouldCreateNewConnection() throws Exception {
         // Given
         ServerConnectionFactory connectionFactory = mock(ServerConnectionFactory.class);
+        when(connectionFactory.acceptsNewConnections()).thenReturn(true);
         ServerConnectionImpl connection = mock(ServerConnectionImpl.class);
         when(connection.getSourceConnectionId()).thenReturn(new byte[8]);
         when(connection.getInitialConnectionId()).thenReturn(new byte[8]);
@@ -215,6 +218,21 @@ class ServerConnectorImplTest {
         verify(connection).processPacket(any(QuicPacket.class), any(PacketMetaData.class));
     }
 
+    @Test
+    void whenMemoryBudgetIsExhaustedValidInitialShouldNotCreateNewConnection() throws Exception {
+        // Given
+        ServerConnectionFactory connectionFactory = mock(ServerConnectionFactory.class);
+        when(connectionFactory.acceptsNewConnections()).thenReturn(false);
+        FieldSetter.setField(server, server.getClass().getDeclaredField("serverConnectionFactory"), connectionFactory);
+
+        // When
+        server.process(createPacket(ByteBuffer.wrap(ByteUtils.hexToBytes(validInitialAsHex()))));
+        testExecutor.check();
+
+        // Then
+        verify(connectionFactory, never()).createNewConnection(any(Version.class), any(InetSocketAddress.class), any(byte[].class), any(byte[].class));
+    }
+
     @Test
     void receivingDuplicateInitialShouldNotCreateNewConnection() throws Exception {
         // Given
@@ -225,6 +243,7 @@ class ServerConnectorImplTest {
         when(connection.getOriginalDestinationConnectionId()).thenReturn(orginalDcid);
 
         ServerConnectionFactory connectionFactory = mock(ServerConnectionFactory.class);
+        when(connectionFactory.acceptsNewConnections()).thenReturn(true);
         when(connectionFactory.createNewConnection(any(Version.class), any(InetSocketAddress.class), any(byte[].class), any(byte[].class)))
                 .thenReturn(connection);
         FieldSetter.setField(server, server.getClass().getDeclaredField("serverConnectionFactory"), connectionFactory);
@@ -274,6 +293,90 @@ class ServerConnectorImplTest {
         assertThat(connectionRegistry.isExistingConnection(null, ByteUtils.hexToBytes("8f609080b6d8a632"))).isPresent();
     }
 
+    @Test
+    void multipleReusePortSocketsCannotBeCombinedWithGivenSocket() {
+        ServerConnector.Builder builder = ServerConnector.builder()
+                .withPort(4433)
+                .withSocket(mock(DatagramSocket.class))
+                .withCertificate(getClass().getResourceAsStream("localhost.pem"), getClass().getResourceAsStream("localhost.key"))
+                .withLogger(mock(Logger.class))
+                .withReusePortSockets(2);
+
+        assertThatThrownBy(() -> builder.build()).isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    void numberOfEventLoopsCannotBeNegative() {
+        ServerConnector.Builder builder = ServerConnector.builder();
+
+        assertThatThrownBy(() -> builder.withEventLoops(-1)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void datagramsReceivedOnAnyReusePortSocketShouldBeRoutedToConnection() throws Exception {
+        // Given
+        int port;
+        try (DatagramSocket probe = new DatagramSocket(0, InetAddress.getLoopbackAddress())) {
+            port = probe.getLocalPort();
+        }
+        ServerConnectorImpl reusePortServer = (ServerConnectorImpl) ServerConnector.builder()
+                .withPort(port)
+                .withCertificate(getClass().getResourceAsStream("localhost.pem"), getClass().getResourceAsStream("localhost.key"))
+                .withLogger(mock(Logger.class))
+                .withReusePortSockets(4)
+                .build();
+        try {
+            byte[] connectionId = new byte[] { 1, 2, 3, 4, 5, 6, 7, 8 };
+            ServerConnectionProxy connection = mock(ServerConnectionProxy.class);
+            ServerConnectionRegistryImpl connectionRegistry = (ServerConnectionRegistryImpl) new FieldReader(reusePortServer, reusePortServer.getClass().getDeclaredField("connectionRegistry")).read();
+            connectionRegistry.registerConnection(connection, connectionId);
+            reusePortServer.start();
+
+            // When
+            byte[] datagram = new byte[] { 0x40, 1, 2, 3, 4, 5, 6, 7, 8, 0, 0, 0 };
+            for (int i = 0; i < 10; i++) {
+                // Each client socket has a different source port, which will make the kernel choose different sockets
+                try (DatagramSocket clientSocket = new DatagramSocket()) {
+                    clientSocket.send(new DatagramPacket(datagram, datagram.length, InetAddress.getLoopbackAddress(), port));
+                }
+            }
+
+            // Then
+            verify(connection, timeout(1000).times(10)).parsePackets(any(ByteBuffer.class), any(PacketMetaData.class));
+        }
+        finally {
+            // Closes the reuse port sockets too
+            reusePortServer.close();
+        }
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void closingServerShouldCloseSocketsAndEndReceiveLoops() throws Exception {
+        // Given
+        int port;
+        try (DatagramSocket probe = new DatagramSocket(0, InetAddress.getLoopbackAddress())) {
+            port = probe.getLocalPort();
+        }
+        ServerConnectorImpl server = (ServerConnectorImpl) ServerConnector.builder()
+                .withPort(port)
+                .withCertificate(getClass().getResourceAsStream("localhost.pem"), getClass().getResourceAsStream("localhost.key"))
+                .withLogger(mock(Logger.class))
+                .withReusePortSockets(2)
+                .build();
+        List<DatagramSocket> sockets = (List<DatagramSocket>) new FieldReader(server, server.getClass().getDeclaredField("sockets")).read();
+        server.start();
+
+        // When
+        server.close();
+
+        // Then
+        assertThat(sockets).hasSize(2).allMatch(DatagramSocket::isClosed);
+        Thread.sleep(100);
+        assertThat(Thread.getAllStackTraces().keySet())
+                .noneMatch(thread -> thread.getName().startsWith("server receive loop") && thread.isAlive());
+    }
+
     private RawPacket createPacket(ByteBuffer buffer) {
         DatagramPacket datagram = new DatagramPacket(buffer.array(), 0, buffer.limit(), new InetSocketAddress(InetAddress.getLoopbackAddress(), 38675));
         RawPacket packet = new RawPacket(datagram, Instant.now(), 0);
@@ -0,0 +1,393 @@
+/*
+ * Copyright © 2023, 2024 Peter Doornbosch
+ *
+ * This file is part of Kwik, an implementation of the QUIC protocol in Java.
+ *
+ * Kwik is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * Kwik is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.luminis.quic.stream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ChunkedReceiveBufferTest {
+
+    private ChunkPool chunkPool;
+    private ChunkedReceiveBuffer receiveBuffer;
+
+    @BeforeEach
+    void initObjectUnderTest() {
+        chunkPool = new ChunkPool(1000, 10);
+        receiveBuffer = new ChunkedReceiveBuffer(chunkPool);
+    }
+
+    @Test
+    void readFromEmptyStreamReturnsNothing() {
+        // When
+        int bytesRead = receiveBuffer.read(ByteBuffer.allocate(100));
+
+        // Then
+        assertThat(bytesRead).isEqualTo(0);
+        assertThat(receiveBuffer.bytesAvailable()).isEqualTo(0);
+    }
+
+    @Test
+    void whenFramesAreReceivedButNotTheStartOfTheStreamThenNoDataIsAvailable() {
+        // When
+        boolean readable = receiveBuffer.add(new DataFrame(100, 900));
+
+        // Then
+        assertThat(readable).isFalse();
+        assertThat(receiveBuffer.bytesAvailable()).isEqualTo(0);
+        assertThat(receiveBuffer.bufferedOutOfOrderData()).isEqualTo(900);
+        assertThat(receiveBuffer.read(ByteBuffer.allocate(4000))).isEqualTo(0);
+    }
+
+    @Test
+    void whenGapIsFilledAllDataIsAvailable() {
+        // Given
+        receiveBuffer.add(new DataFrame(1500, 1000));
+        receiveBuffer.add(new DataFrame(700, 500));
+
+        // When
+        boolean readable = receiveBuffer.add(new DataFrame(0, 1500));
+
+        // Then
+        assertThat(readable).isTrue();
+        assertThat(receiveBuffer.bytesAvailable()).isEqualTo(2500);
+        assertThat(receiveBuffer.bufferedOutOfOrderData()).isEqualTo(0);
+        ByteBuffer buffer = ByteBuffer.allocate(3000);
+        assertThat(receiveBuffer.read(buffer)).isEqualTo(2500);
+        checkData(buffer);
+    }
+
+    @Test
+    void duplicateAndOverlappingFramesDoNotDuplicateData() {
+        // Given
+        receiveBuffer.add(new DataFrame(100, 500));
+
+        // When
+        receiveBuffer.add(new DataFrame(100, 500));
+        receiveBuffer.add(new DataFrame(200, 100));
+        receiveBuffer.add(new DataFrame(50, 200));
+
+        // Then
+        assertThat(receiveBuffer.bufferedOutOfOrderData()).isEqualTo(550);
+
+        // When
+        receiveBuffer.add(new DataFrame(0, 70));
+
+        // Then
+        assertThat(receiveBuffer.bytesAvailable()).isEqualTo(600);
+        ByteBuffer buffer = ByteBuffer.allocate(1234);
+        assertThat(receiveBuffer.read(buffer)).isEqualTo(600);
+        checkData(buffer);
+    }
+
+    @Test
+    void receivingOldDataDoesNotChangeAvailableBytes() {
+        // Given
+        receiveBuffer.add(new DataFrame(0, 1200));
+        receiveBuffer.read(ByteBuffer.allocate(1000));
+
+        // When
+        boolean readable = receiveBuffer.add(new DataFrame(0, 1100));
+
+        // Then
+        assertThat(readable).isFalse();
+        assertThat(receiveBuffer.bytesAvailable()).isEqualTo(200);
+        ByteBuffer buffer = ByteBuffer.allocate(1000);
+        assertThat(receiveBuffer.read(buffer)).isEqualTo(200);
+        assertThat(buffer.get(0)).isEqualTo((byte) (1000 % 256));
+    }
+
+    @Test
+    void dataCanBeReadInSmallPortionsAcrossChunkBoundaries() {
+        // Given
+        receiveBuffer.add(new DataFrame(0, 3500));
+
+        // When
+        ByteBuffer all = ByteBuffer.allocate(3500);
+        ByteBuffer buffer = ByteBuffer.allocate(333);
+        int bytesRead;
+        while ((bytesRead = receiveBuffer.read(buffer)) > 0) {
+            buffer.flip();
+            all.put(buffer);
+            buffer.clear();
+        }
+
+        // Then
+        assertThat(all.position()).isEqualTo(3500);
+        checkData(all);
+    }
+
+    @Test
+    void chunksAreReturnedToPoolWhenRead() {
+        // Given
+        receiveBuffer.add(new DataFrame(0, 2500));
+        assertThat(receiveBuffer.allocatedChunks()).isEqualTo(3);
+
+        // When
+        receiveBuffer.read(ByteBuffer.allocate(2100));
+
+        // Then
+        assertThat(receiveBuffer.allocatedChunks()).isEqualTo(1);
+        assertThat(chunkPool.pooledChunks()).isEqualTo(2);
+    }
+
+    @Test
+    void allChunksAreReturnedWhenStreamIsReadCompletely() {
+        // Given
+        receiveBuffer.add(new DataFrame(0, 1500, true));
+
+        // When
+        int bytesRead = receiveBuffer.read(ByteBuffer.allocate(2000));
+
+        // Then
+        assertThat(bytesRead).isEqualTo(1500);
+        assertThat(receiveBuffer.allRead()).isTrue();
+        assertThat(receiveBuffer.allocatedChunks()).isEqualTo(0);
+        assertThat(chunkPool.pooledChunks()).isEqualTo(2);
+        assertThat(receiveBuffer.read(ByteBuffer.allocate(10))).isEqualTo(-1);
+    }
+
+    @Test
+    void bufferGrowsForDataFarBeyondReadOffset() {
+        // Given
+        receiveBuffer.add(new DataFrame(20_000, 1000));
+        receiveBuffer.add(new DataFrame(9_500, 1000));
+
+        // When
+        receiveBuffer.add(new DataFrame(0, 9_500));
+
+        // Then
+        assertThat(receiveBuffer.bytesAvailable()).isEqualTo(10_500);
+        assertThat(receiveBuffer.bufferedOutOfOrderData()).isEqualTo(1000);
+        ByteBuffer buffer = ByteBuffer.allocate(20_000);
+        assertThat(receiveBuffer.read(buffer)).isEqualTo(10_500);
+        checkData(buffer);
+    }
+
+    @Test
+    void finalFrameWithoutDataMarksEndOfStream() {
+        // Given
+        receiveBuffer.add(new DataFrame(0, 100));
+
+        // When
+        receiveBuffer.add(new DataFrame(100, 0, true));
+
+        // Then
+        assertThat(receiveBuffer.allDataReceived()).isTrue();
+        assertThat(receiveBuffer.read(ByteBuffer.allocate(200))).isEqualTo(100);
+        assertThat(receiveBuffer.allRead()).isTrue();
+    }
+
+    @Test
+    void discardingDataReleasesChunksAndIgnoresNewData() {
+        // Given
+        receiveBuffer.add(new DataFrame(0, 500));
+        receiveBuffer.add(new DataFrame(1500, 500));
+
+        // When
+        receiveBuffer.discardAllData();
+        receiveBuffer.add(new DataFrame(500, 1000));
+
+        // Then
+        assertThat(receiveBuffer.allocatedChunks()).isEqualTo(0);
+        assertThat(chunkPool.pooledChunks()).isEqualTo(2);
+        assertThat(receiveBuffer.bufferedOutOfOrderData()).isEqualTo(0);
+        assertThat(receiveBuffer.read(ByteBuffer.allocate(100))).isEqualTo(0);
+    }
+
+    @Test
+    void borrowedDataIsNotConsumedUntilReleased() {
+        // Given
+        receiveBuffer.add(new DataFrame(0, 2500));
+
+        // When
+        ByteBuffer[] borrowed = receiveBuffer.borrow(2200);
+
+        // Then
+        assertThat(borrowed).hasSize(3);
+        assertThat(borrowed[0].remaining()).isEqualTo(1000);
+        assertThat(borrowed[2].remaining()).isEqualTo(200);
+        assertThat(borrowed[1].get(0)).isEqualTo((byte) (1000 % 256));
+        assertThat(receiveBuffer.bytesAvailable()).isEqualTo(2500);
+        assertThat(receiveBuffer.readOffset()).isEqualTo(0);
+
+        // When
+        receiveBuffer.release(1500);
+
+        // Then
+        assertThat(receiveBuffer.readOffset()).isEqualTo(1500);
+        // The first chunk is no longer used, but as it was handed out as view, it must not be reused.
+        assertThat(receiveBuffer.allocatedChunks()).isEqualTo(2);
+        assertThat(chunkPool.pooledChunks()).isEqualTo(0);
+        ByteBuffer buffer = ByteBuffer.allocate(1000);
+        assertThat(receiveBuffer.read(buffer)).isEqualTo(1000);
+        assertThat(buffer.get(0)).isEqualTo((byte) (1500 % 256));
+    }
+
+    @Test
+    void releasingMoreThanAvailableIsNotAllowed() {
+        // Given
+        receiveBuffer.add(new DataFrame(0, 100));
+
+        // When
+        assertThatThrownBy(() -> receiveBuffer.release(101))
+                // Then
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void chunksOfBorrowedDataAreNotReusedAfterDiscard() {
+        // Given
+        receiveBuffer.add(new DataFrame(0, 500));
+        receiveBuffer.borrow(500);
+
+        // When
+        receiveBuffer.discardAllData();
+
+        // Then
+        assertThat(receiveBuffer.allocatedChunks()).isEqualTo(0);
+        assertThat(chunkPool.pooledChunks()).isEqualTo(0);
+    }
+
+    @Test
+    void afterPartialReleaseDataIsStillBorrowed() {
+        // Given
+        receiveBuffer.add(new DataFrame(0, 2500));
+        receiveBuffer.borrow(2200);
+
+        // When
+        receiveBuffer.release(1500);
+
+        // Then
+        assertThat(receiveBuffer.isBorrowed()).isTrue();
+
+        // When
+        receiveBuffer.release(700);
+
+        // Then
+        assertThat(receiveBuffer.isBorrowed()).isFalse();
+    }
+
+    @Test
+    void chunksOfBorrowedDataAreNotReusedWhenDiscardedAfterPartialRelease() {
+        // Given
+        receiveBuffer.add(new DataFrame(0, 2500));
+        ByteBuffer[] borrowed = receiveBuffer.borrow(2200);
+        receiveBuffer.release(500);
+
+        // When
+        receiveBuffer.discardAllData();
+        receiveBuffer.add(new DataFrame(0, 1000));
+        new ChunkedReceiveBuffer(chunkPool).add(new DataFrame(0, 3000));
+
+        // Then
+        assertThat(chunkPool.pooledChunks()).isEqualTo(0);
+        assertThat(borrowed[1].get(0)).isEqualTo((byte) (1000 % 256));
+        assertThat(borrowed[2].get(199)).isEqualTo((byte) (2199 % 256));
+    }
+
+    @Test
+    void chunksThatWereNotBorrowedAreReturnedToPool() {
+        // Given
+        receiveBuffer.add(new DataFrame(0, 3000));
+        receiveBuffer.borrow(800);
+        receiveBuffer.release(800);
+
+        // When
+        receiveBuffer.read(ByteBuffer.allocate(2200));
+
+        // Then
+        assertThat(receiveBuffer.allocatedChunks()).isEqualTo(0);
+        assertThat(chunkPool.pooledChunks()).isEqualTo(2);
+    }
+
+    @Test
+    void singleBytesCanBeRead() {
+        // Given
+        receiveBuffer.add(new DataFrame(998, 3, true));
+        receiveBuffer.add(new DataFrame(0, 998));
+        receiveBuffer.read(ByteBuffer.allocate(998));
+
+        // Then
+        assertThat(receiveBuffer.read()).isEqualTo(998 % 256);
+        assertThat(receiveBuffer.read()).isEqualTo(999 % 256);
+        assertThat(receiveBuffer.read()).isEqualTo(1000 % 256);
+        assertThat(receiveBuffer.read()).isEqualTo(-1);
+    }
+
+    private void checkData(ByteBuffer buffer) {
+        for (int i = 0; i < buffer.position(); i++) {
+            assertThat(buffer.get(i)).isEqualTo((byte) i);
+        }
+    }
+
+    private static class DataFrame implements StreamElement {
+
+        private final long offset;
+        private final byte[] data;
+        private final boolean isFinal;
+
+        public DataFrame(long offset, int length, boolean isFinal) {
+            this.offset = offset;
+            this.data = new byte[length];
+            for (int i = 0; i < length; i++) {
+                data[i] = (byte) ((offset + i) % 256);
+            }
+            this.isFinal = isFinal;
+        }
+
+        public DataFrame(long offset, int length) {
+            this(offset, length, false);
+        }
+
+        @Override
+        public long getOffset() {
+            return offset;
+        }
+
+        @Override
+        public int getLength() {
+            return data.length;
+        }
+
+        @Override
+        public byte[] getStreamData() {
+            return data;
+        }
+
+        @Override
+        public long getUpToOffset() {
+            return offset + data.length;
+        }
+
+        @Override
+        public boolean isFinal() {
+            return isFinal;
+        }
+
+        @Override
+        public int compareTo(StreamElement other) {
+            return Long.compare(this.offset, other.getOffset());
+        }
+    }
+}
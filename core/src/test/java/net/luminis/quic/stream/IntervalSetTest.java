@@ -0,0 +1,139 @@
+/*
+ * Copyright © 2023, 2024 Peter Doornbosch
+ *
+ * This file is part of Kwik, an implementation of the QUIC protocol in Java.
+ *
+ * Kwik is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * Kwik is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.luminis.quic.stream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class IntervalSetTest {
+
+    private IntervalSet intervalSet;
+
+    @BeforeEach
+    void initObjectUnderTest() {
+        intervalSet = new IntervalSet();
+    }
+
+    @Test
+    void addingDisjointRangesKeepsThemSeparate() {
+        // When
+        intervalSet.add(100, 200);
+        intervalSet.add(0, 50);
+        intervalSet.add(300, 400);
+
+        // Then
+        assertThat(intervalSet.size()).isEqualTo(3);
+        assertThat(intervalSet.coveredBytes()).isEqualTo(250);
+        assertThat(intervalSet.firstStart()).isEqualTo(0);
+        assertThat(intervalSet.firstEnd()).isEqualTo(50);
+    }
+
+    @Test
+    void adjacentRangesAreMerged() {
+        // Given
+        intervalSet.add(0, 100);
+        intervalSet.add(200, 300);
+
+        // When
+        long added = intervalSet.add(100, 200);
+
+        // Then
+        assertThat(added).isEqualTo(100);
+        assertThat(intervalSet.size()).isEqualTo(1);
+        assertThat(intervalSet.coveredBytes()).isEqualTo(300);
+    }
+
+    @Test
+    void addingRangeThatOverlapsMultipleRangesOnlyCountsNewOffsets() {
+        // Given
+        intervalSet.add(100, 200);
+        intervalSet.add(300, 400);
+        intervalSet.add(500, 600);
+        intervalSet.add(900, 1000);
+
+        // When
+        long added = intervalSet.add(150, 550);
+
+        // Then
+        assertThat(added).isEqualTo(200);
+        assertThat(intervalSet.size()).isEqualTo(2);
+        assertThat(intervalSet.firstStart()).isEqualTo(100);
+        assertThat(intervalSet.firstEnd()).isEqualTo(600);
+        assertThat(intervalSet.coveredBytes()).isEqualTo(600);
+    }
+
+    @Test
+    void addingRangeThatIsAlreadyCoveredAddsNothing() {
+        // Given
+        intervalSet.add(100, 200);
+
+        // When
+        long added = intervalSet.add(120, 180);
+
+        // Then
+        assertThat(added).isEqualTo(0);
+        assertThat(intervalSet.size()).isEqualTo(1);
+        assertThat(intervalSet.coveredBytes()).isEqualTo(100);
+    }
+
+    @Test
+    void containsOnlyReturnsTrueForCompletelyCoveredRange() {
+        // Given
+        intervalSet.add(100, 200);
+        intervalSet.add(300, 400);
+
+        // Then
+        assertThat(intervalSet.contains(100, 200)).isTrue();
+        assertThat(intervalSet.contains(310, 320)).isTrue();
+        assertThat(intervalSet.contains(90, 110)).isFalse();
+        assertThat(intervalSet.contains(150, 350)).isFalse();
+        assertThat(intervalSet.contains(200, 300)).isFalse();
+        assertThat(intervalSet.contains(500, 600)).isFalse();
+    }
+
+    @Test
+    void removingFirstRangeUpdatesCoveredBytes() {
+        // Given
+        intervalSet.add(100, 200);
+        intervalSet.add(300, 350);
+
+        // When
+        intervalSet.removeFirst();
+
+        // Then
+        assertThat(intervalSet.size()).isEqualTo(1);
+        assertThat(intervalSet.firstStart()).isEqualTo(300);
+        assertThat(intervalSet.coveredBytes()).isEqualTo(50);
+    }
+
+    @Test
+    void setGrowsWhenManyRangesAreAdded() {
+        // When
+        for (int i = 99; i >= 0; i--) {
+            intervalSet.add(i * 10, i * 10 + 5);
+        }
+
+        // Then
+        assertThat(intervalSet.size()).isEqualTo(100);
+        assertThat(intervalSet.coveredBytes()).isEqualTo(500);
+        assertThat(intervalSet.contains(990, 995)).isTrue();
+    }
+}
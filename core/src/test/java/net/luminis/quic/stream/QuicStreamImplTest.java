@@ -43,11 +43,15 @@ import java.io.InterruptedIOException;
 import java.io.OutputStream;
 import java.net.SocketTimeoutException;
 import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
 import java.time.Duration;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
 import java.util.Arrays;
 import java.util.Random;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.concurrent.locks.Condition;
@@ -589,7 +593,7 @@ class QuicStreamImplTest {
 
         // Then
         StreamInputStream streamInputStream = (StreamInputStream) quicStream.getInputStream();
-        ReceiveBufferImpl receiveBuffer = (ReceiveBufferImpl) new FieldReader(streamInputStream, "receiveBuffer").read();
+        ReceiveBuffer receiveBuffer = (ReceiveBuffer) new FieldReader(streamInputStream, "receiveBuffer").read();
         assertThat(receiveBuffer.bufferedOutOfOrderData()).isEqualTo(0);
     }
     //endregion
@@ -1370,6 +1374,98 @@ class QuicStreamImplTest {
     }
     //endregion
 
+    //region non-blocking channels
+    @Test
+    void readFromReadableChannelDoesNotBlockWhenNoDataIsAvailable() throws Exception {
+        // Given
+        ReadableByteChannel channel = quicStream.getReadableChannel();
+        ByteBuffer buffer = ByteBuffer.allocate(100);
+
+        // When
+        int bytesRead = channel.read(buffer);
+
+        // Then
+        assertThat(bytesRead).isEqualTo(0);
+
+        // When
+        quicStream.addStreamData(resurrect(new StreamFrame(0, new byte[] { 1, 2, 3 }, true)));
+
+        // Then
+        assertThat(channel.read(buffer)).isEqualTo(3);
+        assertThat(channel.read(buffer)).isEqualTo(-1);
+    }
+
+    @Test
+    void whenReadableCompletesWhenDataIsReceived() throws Exception {
+        // Given
+        CompletableFuture<Void> readable = quicStream.whenReadable();
+        assertThat(readable).isNotDone();
+
+        // When
+        quicStream.addStreamData(resurrect(new StreamFrame(0, new byte[10], false)));
+
+        // Then
+        assertThat(readable).isDone();
+        assertThat(quicStream.whenReadable()).isDone();
+    }
+
+    @Test
+    void whenReadableCompletesWhenStreamIsReset() throws Exception {
+        // Given
+        CompletableFuture<Void> readable = quicStream.whenReadable();
+
+        // When
+        quicStream.terminateStream(9, 0);
+
+        // Then
+        assertThat(readable).isDone();
+        assertThatThrownBy(() -> quicStream.getReadableChannel().read(ByteBuffer.allocate(10)))
+                .isInstanceOf(IOException.class);
+    }
+
+    @Test
+    void writeToWritableChannelOnlyWritesWhatFitsInSendBuffer() throws Exception {
+        // Given
+        WritableByteChannel channel = quicStream.getWritableChannel();
+        ByteBuffer data = ByteBuffer.allocate(60 * 1024);
+
+        // When
+        int written = channel.write(data);
+
+        // Then
+        assertThat(written).isEqualTo(50 * 1024);
+        assertThat(data.remaining()).isEqualTo(10 * 1024);
+        assertThat(channel.write(data)).isEqualTo(0);
+    }
+
+    @Test
+    void whenWritableCompletesWhenBufferedDataIsSent() throws Exception {
+        // Given
+        quicStream.getWritableChannel().write(ByteBuffer.allocate(50 * 1024));
+        CompletableFuture<Void> writable = quicStream.whenWritable();
+        assertThat(writable).isNotDone();
+
+        // When
+        captureSendFunction(connection).apply(1500);
+
+        // Then
+        assertThat(writable).isDone();
+        assertThat(quicStream.getWritableChannel().write(ByteBuffer.allocate(2000))).isBetween(1, 1500);
+    }
+
+    @Test
+    void closedWritableChannelCannotBeWritten() throws Exception {
+        // Given
+        WritableByteChannel channel = quicStream.getWritableChannel();
+        channel.close();
+
+        // Then
+        assertThat(channel.isOpen()).isFalse();
+        assertThatThrownBy(() -> channel.write(ByteBuffer.allocate(10)))
+                .isInstanceOf(ClosedChannelException.class);
+    }
+    //endregion
+
     // region test helper methods
     private byte[] generateByteArray(int size) {
         byte[] data = new byte[size];
@@ -0,0 +1,177 @@
+/*
+ * Copyright © 2023, 2024 Peter Doornbosch
+ *
+ * This file is part of Kwik, an implementation of the QUIC protocol in Java.
+ *
+ * Kwik is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * Kwik is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.luminis.quic.stream;
+
+import net.luminis.quic.impl.ConnectionMemory;
+import net.luminis.quic.impl.MemoryAccountant;
+import net.luminis.quic.test.TestClock;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ReceiveWindowTest {
+
+    private static final long RTT = 100_000;  // 100 ms in microseconds
+
+    private TestClock clock;
+    private ReceiveWindow receiveWindow;
+
+    @BeforeEach
+    void initObjectUnderTest() {
+        clock = new TestClock();
+        receiveWindow = new ReceiveWindow(10_000, 80_000, clock);
+    }
+
+    @Test
+    void initialLimitEqualsInitialWindowSize() {
+        assertThat(receiveWindow.getLimit()).isEqualTo(10_000);
+        assertThat(receiveWindow.getSize()).isEqualTo(10_000);
+    }
+
+    @Test
+    void whenDataIsReadSlowlyWindowSlidesWithoutGrowing() {
+        // When
+        clock.fastForward(150);
+        receiveWindow.dataRead(5_000, RTT);
+        clock.fastForward(150);
+        long limit = receiveWindow.dataRead(10_000, RTT);
+
+        // Then
+        assertThat(receiveWindow.getSize()).isEqualTo(10_000);
+        assertThat(limit).isEqualTo(20_000);
+    }
+
+    @Test
+    void whenWholeWindowIsReadWithinTwoRoundTripsWindowIsDoubled() {
+        // When
+        clock.fastForward(150);
+        long limit = receiveWindow.dataRead(10_000, RTT);
+
+        // Then
+        assertThat(receiveWindow.getSize()).isEqualTo(20_000);
+        assertThat(limit).isEqualTo(30_000);
+    }
+
+    @Test
+    void windowDoesNotGrowBeyondMaximum() {
+        // When
+        long readOffset = 0;
+        for (int i = 0; i < 10; i++) {
+            clock.fastForward(50);
+            readOffset += receiveWindow.getSize();
+            receiveWindow.dataRead(readOffset, RTT);
+        }
+
+        // Then
+        assertThat(receiveWindow.getSize()).isEqualTo(80_000);
+    }
+
+    @Test
+    void whenRttIsNotKnownWindowIsNotGrown() {
+        // When
+        clock.fastForward(1);
+        receiveWindow.dataRead(10_000, 0);
+
+        // Then
+        assertThat(receiveWindow.getSize()).isEqualTo(10_000);
+    }
+
+    @Test
+    void whenMaximumIsNotLargerThanInitialSizeWindowIsFixed() {
+        // Given
+        receiveWindow = new ReceiveWindow(10_000, 5_000, clock);
+
+        // When
+        clock.fastForward(1);
+        long limit = receiveWindow.dataRead(10_000, RTT);
+
+        // Then
+        assertThat(receiveWindow.getSize()).isEqualTo(10_000);
+        assertThat(limit).isEqualTo(20_000);
+    }
+
+    @Test
+    void afterIdlePeriodWindowShrinksToInitialSize() {
+        // Given
+        clock.fastForward(50);
+        receiveWindow.dataRead(10_000, RTT);
+        clock.fastForward(50);
+        receiveWindow.dataRead(30_000, RTT);
+        assertThat(receiveWindow.getSize()).isEqualTo(40_000);
+
+        // When
+        clock.fastForward(2000);
+        long limit = receiveWindow.dataRead(31_000, RTT);
+
+        // Then
+        assertThat(receiveWindow.getSize()).isEqualTo(10_000);
+        assertThat(limit).isEqualTo(70_000);
+    }
+
+    @Test
+    void limitNeverDecreases() {
+        // Given
+        clock.fastForward(50);
+        receiveWindow.dataRead(10_000, RTT);
+        long limitBeforeIdle = receiveWindow.getLimit();
+
+        // When
+        clock.fastForward(2000);
+        long limit = receiveWindow.dataRead(10_001, RTT);
+
+        // Then
+        assertThat(limit).isEqualTo(limitBeforeIdle);
+    }
+
+    @Test
+    void whenMemoryIsTightCreditIsWithheldWhileDataIsBuffered() {
+        // Given
+        MemoryAccountant accountant = new MemoryAccountant(100_000);
+        ConnectionMemory memory = accountant.openAccount("c1");
+        receiveWindow = new ReceiveWindow(10_000, 10_000, clock, memory);
+        memory.allocate(95_000);
+
+        // When
+        clock.fastForward(150);
+        long limit = receiveWindow.dataRead(5_000, RTT, 3_000);
+
+        // Then
+        assertThat(limit).isEqualTo(10_000);
+    }
+
+    @Test
+    void whenMemoryIsReleasedCreditIsGivenAgain() {
+        // Given
+        MemoryAccountant accountant = new MemoryAccountant(100_000);
+        ConnectionMemory memory = accountant.openAccount("c1");
+        receiveWindow = new ReceiveWindow(10_000, 10_000, clock, memory);
+        memory.allocate(95_000);
+        clock.fastForward(150);
+        receiveWindow.dataRead(5_000, RTT, 3_000);
+
+        // When
+        memory.release(95_000);
+        clock.fastForward(150);
+        long limit = receiveWindow.dataRead(8_000, RTT, 0);
+
+        // Then
+        assertThat(limit).isEqualTo(18_000);
+    }
+}
@@ -0,0 +1,189 @@
+/*
+ * Copyright © 2023, 2024 Peter Doornbosch
+ *
+ * This file is part of Kwik, an implementation of the QUIC protocol in Java.
+ *
+ * Kwik is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * Kwik is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.luminis.quic.stream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import static net.luminis.quic.stream.SendBuffer.CHUNK_SIZE;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SendBufferTest {
+
+    private SendBuffer sendBuffer;
+
+    @BeforeEach
+    void initObjectUnderTest() {
+        sendBuffer = new SendBuffer();
+    }
+
+    @Test
+    void writtenDataCanBeReadBySlice() {
+        // Given
+        sendBuffer.write(generateData(1000), 0, 1000);
+
+        // When
+        ByteBuffer[] slices = sendBuffer.slice(100, 200);
+
+        // Then
+        assertThat(slices).hasSize(1);
+        assertThat(toBytes(slices)).isEqualTo(range(100, 200));
+    }
+
+    @Test
+    void sliceThatSpansChunksConsistsOfMultipleBuffers() {
+        // Given
+        byte[] data = generateData(3 * CHUNK_SIZE);
+        sendBuffer.write(data, 0, data.length);
+
+        // When
+        ByteBuffer[] slices = sendBuffer.slice(CHUNK_SIZE - 10, CHUNK_SIZE + 20);
+
+        // Then
+        assertThat(slices).hasSize(3);
+        assertThat(toBytes(slices)).isEqualTo(range(CHUNK_SIZE - 10, CHUNK_SIZE + 20));
+    }
+
+    @Test
+    void sliceIsReadOnlyView() {
+        // Given
+        sendBuffer.write(generateData(100), 0, 100);
+
+        // When
+        ByteBuffer[] slices = sendBuffer.slice(0, 100);
+
+        // Then
+        assertThat(slices[0].isReadOnly()).isTrue();
+    }
+
+    @Test
+    void chunksAreReleasedWhenAllTheirDataIsAcknowledged() {
+        // Given
+        byte[] data = generateData(3 * CHUNK_SIZE);
+        sendBuffer.write(data, 0, data.length);
+
+        // When
+        sendBuffer.acknowledged(0, CHUNK_SIZE + 100);
+
+        // Then
+        assertThat(sendBuffer.retained()).isEqualTo(2 * CHUNK_SIZE);
+        assertThat(sendBuffer.acknowledgedOffset()).isEqualTo(CHUNK_SIZE + 100);
+    }
+
+    @Test
+    void outOfOrderAcknowledgementsAreCombined() {
+        // Given
+        byte[] data = generateData(3 * CHUNK_SIZE);
+        sendBuffer.write(data, 0, data.length);
+
+        // When
+        sendBuffer.acknowledged(2 * CHUNK_SIZE, 1000);
+        sendBuffer.acknowledged(CHUNK_SIZE, CHUNK_SIZE);
+        assertThat(sendBuffer.acknowledgedOffset()).isEqualTo(0);
+        sendBuffer.acknowledged(0, CHUNK_SIZE);
+
+        // Then
+        assertThat(sendBuffer.acknowledgedOffset()).isEqualTo(2 * CHUNK_SIZE + 1000);
+        assertThat(sendBuffer.retained()).isEqualTo(CHUNK_SIZE);
+    }
+
+    @Test
+    void duplicateAcknowledgementIsIgnored() {
+        // Given
+        sendBuffer.write(generateData(1000), 0, 1000);
+        sendBuffer.acknowledged(0, 500);
+
+        // When
+        sendBuffer.acknowledged(0, 500);
+
+        // Then
+        assertThat(sendBuffer.acknowledgedOffset()).isEqualTo(500);
+    }
+
+    @Test
+    void writingAfterAllDataIsReleasedContinuesAtSameOffset() {
+        // Given
+        byte[] data = generateData(2 * CHUNK_SIZE + 10);
+        sendBuffer.write(data, 0, 2 * CHUNK_SIZE);
+        sendBuffer.acknowledged(0, 2 * CHUNK_SIZE);
+        assertThat(sendBuffer.retained()).isEqualTo(0);
+
+        // When
+        sendBuffer.write(data, 2 * CHUNK_SIZE, 10);
+
+        // Then
+        assertThat(sendBuffer.writeOffset()).isEqualTo(2 * CHUNK_SIZE + 10);
+        assertThat(toBytes(sendBuffer.slice(2 * CHUNK_SIZE, 10))).isEqualTo(range(2 * CHUNK_SIZE, 10));
+    }
+
+    @Test
+    void acknowledgedDataCannotBeSliced() {
+        // Given
+        sendBuffer.write(generateData(1000), 0, 1000);
+
+        // When
+        sendBuffer.acknowledged(0, 500);
+
+        // Then
+        assertThatThrownBy(() -> sendBuffer.slice(100, 100))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void sliceRemainsValidAfterChunkIsReleased() {
+        // Given
+        byte[] data = generateData(2 * CHUNK_SIZE);
+        sendBuffer.write(data, 0, data.length);
+        ByteBuffer[] slices = sendBuffer.slice(0, 100);
+
+        // When
+        sendBuffer.acknowledged(0, CHUNK_SIZE);
+
+        // Then
+        assertThat(toBytes(slices)).isEqualTo(range(0, 100));
+    }
+
+    private static byte[] generateData(int length) {
+        byte[] data = new byte[length];
+        for (int i = 0; i < length; i++) {
+            data[i] = (byte) (i % 251);
+        }
+        return data;
+    }
+
+    private static byte[] range(int offset, int length) {
+        byte[] data = new byte[length];
+        for (int i = 0; i < length; i++) {
+            data[i] = (byte) ((offset + i) % 251);
+        }
+        return data;
+    }
+
+    private static byte[] toBytes(ByteBuffer[] slices) {
+        ByteBuffer result = ByteBuffer.allocate(Arrays.stream(slices).mapToInt(ByteBuffer::remaining).sum());
+        for (ByteBuffer slice : slices) {
+            result.put(slice.duplicate());
+        }
+        return result.array();
+    }
+}
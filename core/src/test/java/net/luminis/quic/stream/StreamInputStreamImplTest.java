@@ -20,12 +20,23 @@ package net.luminis.quic.stream;
 
 import net.luminis.quic.impl.QuicConnectionImpl;
 import net.luminis.quic.impl.Role;
+import net.luminis.quic.frame.MaxStreamDataFrame;
 import net.luminis.quic.frame.StreamFrame;
+import net.luminis.quic.test.TestClock;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 class StreamInputStreamImplTest {
 
@@ -71,4 +82,62 @@ class StreamInputStreamImplTest {
         // Then
         assertThat(incr).isEqualTo(550);
     }
+
+    @Test
+    void whenWindowIsReadFastReceiveWindowIsAutoTuned() throws Exception {
+        // Given
+        StreamManager streamManager = mock(StreamManager.class);
+        when(streamManager.getSmoothedRttMicros()).thenReturn(100_000L);
+        QuicConnectionImpl connection = mock(QuicConnectionImpl.class);
+        QuicStreamImpl quicStream = new QuicStreamImpl(0, Role.Client, connection, streamManager, mock(FlowControl.class));
+        TestClock clock = new TestClock();
+        streamInputStream = new StreamInputStreamImpl(quicStream, new ReceiveWindow(10_000, 100_000, clock));
+        streamInputStream.addDataFrom(new StreamFrame(0, 0, new byte[10_000], false));
+
+        // When
+        clock.fastForward(20);
+        streamInputStream.read(new byte[10_000]);
+
+        // Then
+        verify(connection).send(argThat(f -> f instanceof MaxStreamDataFrame && ((MaxStreamDataFrame) f).getMaxData() == 30_000), any(), anyBoolean());
+    }
+
+    @Test
+    void borrowedDataIsOnlyConsumedWhenReleased() throws Exception {
+        // Given
+        QuicConnectionImpl connection = mock(QuicConnectionImpl.class);
+        QuicStreamImpl quicStream = new QuicStreamImpl(0, Role.Client, connection, mock(StreamManager.class), mock(FlowControl.class));
+        streamInputStream = new StreamInputStreamImpl(quicStream, 10_000L);
+        streamInputStream.addDataFrom(new StreamFrame(0, 0, new byte[10_000], false));
+
+        // When
+        ByteBuffer[] data = streamInputStream.borrow(10_000);
+
+        // Then
+        assertThat(Arrays.stream(data).mapToInt(ByteBuffer::remaining).sum()).isEqualTo(10_000);
+        assertThat(data[0].isReadOnly()).isTrue();
+        assertThat(streamInputStream.available()).isEqualTo(10_000);
+        verify(connection, never()).send(argThat(f -> f instanceof MaxStreamDataFrame), any(), anyBoolean());
+
+        // When
+        streamInputStream.release(10_000);
+
+        // Then
+        assertThat(streamInputStream.available()).isEqualTo(0);
+        verify(connection).send(argThat(f -> f instanceof MaxStreamDataFrame && ((MaxStreamDataFrame) f).getMaxData() >= 20_000), any(), anyBoolean());
+    }
+
+    @Test
+    void borrowAtEndOfStreamReturnsNoData() throws Exception {
+        // Given
+        streamInputStream.addDataFrom(new StreamFrame(0, 0, new byte[] { 42 }, true));
+
+        // When
+        int value = streamInputStream.read();
+        ByteBuffer[] data = streamInputStream.borrow(100);
+
+        // Then
+        assertThat(value).isEqualTo(42);
+        assertThat(data).isEmpty();
+    }
 }
@@ -21,6 +21,7 @@ package net.luminis.quic.stream;
 import net.luminis.quic.ConnectionConfig;
 import net.luminis.quic.QuicStream;
 import net.luminis.quic.common.EncryptionLevel;
+import net.luminis.quic.impl.MemoryAccountant;
 import net.luminis.quic.impl.QuicConnectionImpl;
 import net.luminis.quic.impl.Role;
 import net.luminis.quic.impl.TransportError;
@@ -875,6 +876,84 @@ class StreamManagerTest {
     }
     //endregion
 
+    //region memory budget
+    @Test
+    void initialCreditOfManyConnectionsTogetherCannotExceedMemoryBudget() {
+        // Given
+        MemoryAccountant accountant = new MemoryAccountant(1_000_000);
+        ConnectionConfig config = ServerConnectionConfig.builder()
+                .maxOpenPeerInitiatedBidirectionalStreams(10)
+                .maxConnectionBufferSize(100_000)
+                .maxBidirectionalStreamBufferSize(100_000)
+                .build();
+
+        // When
+        long totalCredit = 0;
+        int connections = 0;
+        while (accountant.acceptsNewConnections()) {
+            StreamManager manager = new StreamManager(mock(QuicConnectionImpl.class), Role.Server, mock(Logger.class), config,
+                    accountant.openAccount("c" + connections));
+            totalCredit += manager.getInitialMaxData();
+            connections++;
+            assertThat(connections).isLessThan(1000);
+        }
+
+        // Then
+        assertThat(connections).isGreaterThan(10);
+        assertThat(totalCredit).isLessThanOrEqualTo(accountant.getBudget());
+        assertThat(accountant.getUsage()).isEqualTo(totalCredit);
+    }
+
+    @Test
+    void whenMemoryIsTightInitialCreditIsReduced() {
+        // Given
+        MemoryAccountant accountant = new MemoryAccountant(1_000_000);
+        accountant.openAccount("other").allocate(700_000);
+
+        // When
+        streamManager = new StreamManager(quicConnection, Role.Server, mock(Logger.class), defaultConfig, accountant.openAccount("c1"));
+
+        // Then
+        assertThat(streamManager.getInitialMaxData()).isLessThan(10_000);
+        assertThat(streamManager.getMaxBidirectionalStreamBufferSize()).isLessThan(10_000);
+        assertThat(streamManager.getMaxUnidirectionalStreamBufferSize()).isLessThan(10_000);
+    }
+
+    @Test
+    void whenMemoryIsTightReceivingMoreThanInitialCreditLeadsToFlowControlError() throws Exception {
+        // Given
+        MemoryAccountant accountant = new MemoryAccountant(1_000_000);
+        accountant.openAccount("other").allocate(700_000);
+        streamManager = new StreamManager(quicConnection, Role.Client, mock(Logger.class), defaultConfig, accountant.openAccount("c1"));
+        streamManager.setFlowController(mock(FlowControl.class));
+        long initialMaxData = streamManager.getInitialMaxData();
+
+        // When
+        assertThatThrownBy(() ->
+                streamManager.process(new StreamFrame(1, new byte[(int) initialMaxData + 1], false))
+        )
+                // Then
+                .isInstanceOf(TransportError.class)
+                .extracting("errorCode").isEqualTo(FLOW_CONTROL_ERROR);
+    }
+
+    @Test
+    void reservedInitialCreditIsReleasedWhenDataIsReceived() throws Exception {
+        // Given
+        MemoryAccountant accountant = new MemoryAccountant(1_000_000);
+        streamManager = new StreamManager(quicConnection, Role.Client, mock(Logger.class), defaultConfig, accountant.openAccount("c1"));
+        streamManager.setFlowController(mock(FlowControl.class));
+        assertThat(accountant.getUsage()).isEqualTo(10_000);
+
+        // When
+        streamManager.process(new StreamFrame(1, new byte[3000], false));
+
+        // Then
+        // The received data is charged when buffered, so it must no longer be charged as reservation as well.
+        assertThat(accountant.getUsage()).isLessThan(10_000 + 3000);
+    }
+    //endregion
+
     //region test helper methods
     void verifyMaxStreamsFrameIsToBeSent(int expectedMaxStreams) {
         ArgumentCaptor<Function<Integer, QuicFrame>> captor = ArgumentCaptor.forClass(Function.class);
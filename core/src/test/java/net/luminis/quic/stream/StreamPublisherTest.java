@@ -0,0 +1,207 @@
+/*
+ * Copyright © 2023, 2024 Peter Doornbosch
+ *
+ * This file is part of Kwik, an implementation of the QUIC protocol in Java.
+ *
+ * Kwik is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * Kwik is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.luminis.quic.stream;
+
+import net.luminis.quic.frame.MaxStreamDataFrame;
+import net.luminis.quic.frame.StreamFrame;
+import net.luminis.quic.impl.QuicConnectionImpl;
+import net.luminis.quic.impl.Role;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Flow;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+class StreamPublisherTest {
+
+    private QuicConnectionImpl connection;
+    private StreamInputStreamImpl inputStream;
+    private StreamPublisher publisher;
+    private RecordingSubscriber subscriber;
+
+    @BeforeEach
+    void initObjectUnderTest() {
+        connection = mock(QuicConnectionImpl.class);
+        QuicStreamImpl quicStream = new QuicStreamImpl(0, Role.Client, connection, mock(StreamManager.class), mock(FlowControl.class));
+        inputStream = new StreamInputStreamImpl(quicStream, 10_000L);
+        publisher = new StreamPublisher(inputStream);
+        subscriber = new RecordingSubscriber();
+    }
+
+    @Test
+    void dataIsOnlyDeliveredWhenRequested() throws Exception {
+        // Given
+        inputStream.addDataFrom(new StreamFrame(0, 0, new byte[100], false));
+
+        // When
+        publisher.subscribe(subscriber);
+
+        // Then
+        assertThat(subscriber.items).isEmpty();
+        assertThat(inputStream.available()).isEqualTo(100);
+
+        // When
+        subscriber.subscription.request(1);
+
+        // Then
+        assertThat(subscriber.items).hasSize(1);
+        assertThat(subscriber.items.get(0).remaining()).isEqualTo(100);
+        assertThat(inputStream.available()).isEqualTo(0);
+    }
+
+    @Test
+    void dataReceivedAfterRequestIsDelivered() throws Exception {
+        // Given
+        publisher.subscribe(subscriber);
+        subscriber.subscription.request(5);
+
+        // When
+        inputStream.addDataFrom(new StreamFrame(0, 0, new byte[] { 1, 2, 3 }, false));
+        inputStream.addDataFrom(new StreamFrame(0, 3, new byte[] { 4, 5 }, false));
+
+        // Then
+        assertThat(subscriber.items).hasSize(2);
+        assertThat(subscriber.items.get(1).get(1)).isEqualTo((byte) 5);
+    }
+
+    @Test
+    void itemSizeIsLimited() throws Exception {
+        // Given
+        QuicStreamImpl quicStream = new QuicStreamImpl(0, Role.Client, connection, mock(StreamManager.class), mock(FlowControl.class));
+        inputStream = new StreamInputStreamImpl(quicStream, 100_000L);
+        publisher = new StreamPublisher(inputStream);
+        inputStream.addDataFrom(new StreamFrame(0, 0, new byte[StreamPublisher.MAX_ITEM_SIZE + 10], false));
+        publisher.subscribe(subscriber);
+
+        // When
+        subscriber.subscription.request(1);
+
+        // Then
+        assertThat(subscriber.items).hasSize(1);
+        assertThat(subscriber.items.get(0).remaining()).isEqualTo(StreamPublisher.MAX_ITEM_SIZE);
+        assertThat(inputStream.available()).isEqualTo(10);
+    }
+
+    @Test
+    void endOfStreamCompletesSubscription() throws Exception {
+        // Given
+        publisher.subscribe(subscriber);
+        subscriber.subscription.request(Long.MAX_VALUE);
+
+        // When
+        inputStream.addDataFrom(new StreamFrame(0, 0, new byte[10], true));
+
+        // Then
+        assertThat(subscriber.items).hasSize(1);
+        assertThat(subscriber.completed).isTrue();
+    }
+
+    @Test
+    void flowControlCreditIsOnlyGivenForRequestedData() throws Exception {
+        // Given
+        inputStream.addDataFrom(new StreamFrame(0, 0, new byte[10_000], false));
+        publisher.subscribe(subscriber);
+
+        // Then
+        verify(connection, never()).send(argThat(f -> f instanceof MaxStreamDataFrame), any(), anyBoolean());
+
+        // When
+        subscriber.subscription.request(1);
+
+        // Then
+        verify(connection).send(argThat(f -> f instanceof MaxStreamDataFrame && ((MaxStreamDataFrame) f).getMaxData() >= 20_000), any(), anyBoolean());
+    }
+
+    @Test
+    void whenStreamIsResetSubscriberReceivesError() throws Exception {
+        // Given
+        publisher.subscribe(subscriber);
+        subscriber.subscription.request(1);
+
+        // When
+        inputStream.terminate(9, 0);
+
+        // Then
+        assertThat(subscriber.error).isNotNull();
+    }
+
+    @Test
+    void requestingNonPositiveNumberOfItemsLeadsToError() {
+        // Given
+        publisher.subscribe(subscriber);
+
+        // When
+        subscriber.subscription.request(0);
+
+        // Then
+        assertThat(subscriber.error).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void onlyOneSubscriberIsAccepted() {
+        // Given
+        publisher.subscribe(subscriber);
+
+        // When
+        RecordingSubscriber secondSubscriber = new RecordingSubscriber();
+        publisher.subscribe(secondSubscriber);
+
+        // Then
+        assertThat(secondSubscriber.error).isInstanceOf(IllegalStateException.class);
+        assertThat(subscriber.error).isNull();
+    }
+
+    private static class RecordingSubscriber implements Flow.Subscriber<ByteBuffer> {
+
+        Flow.Subscription subscription;
+        final List<ByteBuffer> items = new ArrayList<>();
+        volatile boolean completed;
+        volatile Throwable error;
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+        }
+
+        @Override
+        public void onNext(ByteBuffer item) {
+            items.add(item);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            error = throwable;
+        }
+
+        @Override
+        public void onComplete() {
+            completed = true;
+        }
+    }
+}
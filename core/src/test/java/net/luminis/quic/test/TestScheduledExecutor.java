@@ -134,7 +134,8 @@ public class TestScheduledExecutor implements ScheduledExecutorService, TestCloc
 
     @Override
     public void execute(Runnable command) {
-        throw new NotYetImplementedException();
+        // Like a real (single threaded) executor, commands are not executed synchronously, but when the executor "runs" (i.e. check() is called).
+        schedule(command, 0, TimeUnit.MILLISECONDS);
     }
 
     @Override
@@ -195,7 +196,7 @@ public class TestScheduledExecutor implements ScheduledExecutorService, TestCloc
 
         @Override
         public boolean isDone() {
-            throw new NotYetImplementedException();
+            return !scheduledActions.contains(action);
         }
 
         @Override
@@ -173,6 +173,31 @@ class QuicTransportParametersExtensionTest {
         assertThat(transportParametersExtension.getTransportParameters().getInitialMaxStreamsUni()).isEqualTo(256);
     }
 
+    @Test
+    void minAckDelayIsSerializedAndParsed() throws Exception {
+        TransportParameters tp = new TransportParameters(10, 1_048_576, 1024, 256);
+        tp.setInitialSourceConnectionId(new byte[] { 0x01, 0x02, 0x03, 0x04 });
+        tp.setMinAckDelay(1000);
+        byte[] serializedForm = new QuicTransportParametersExtension(Version.getDefault(), tp, Role.Client).getBytes();
+
+        QuicTransportParametersExtension transportParametersExtension = new QuicTransportParametersExtension(Version.getDefault());
+        transportParametersExtension.parse(ByteBuffer.wrap(serializedForm), Role.Server, mock(Logger.class));
+
+        assertThat(transportParametersExtension.getTransportParameters().getMinAckDelay()).isEqualTo(1000);
+    }
+
+    @Test
+    void whenMinAckDelayIsNotPresentItIsZero() throws Exception {
+        TransportParameters tp = new TransportParameters(10, 1_048_576, 1024, 256);
+        tp.setInitialSourceConnectionId(new byte[] { 0x01, 0x02, 0x03, 0x04 });
+        byte[] serializedForm = new QuicTransportParametersExtension(Version.getDefault(), tp, Role.Client).getBytes();
+
+        QuicTransportParametersExtension transportParametersExtension = new QuicTransportParametersExtension(Version.getDefault());
+        transportParametersExtension.parse(ByteBuffer.wrap(serializedForm), Role.Server, mock(Logger.class));
+
+        assertThat(transportParametersExtension.getTransportParameters().getMinAckDelay()).isEqualTo(0);
+    }
+
     @Test
     void parseInitialSourceCconnectionId() throws Exception {
         //                                                 id sz
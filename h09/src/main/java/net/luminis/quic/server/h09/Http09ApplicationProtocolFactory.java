@@ -23,16 +23,27 @@ import net.luminis.quic.server.ApplicationProtocolConnection;
 import net.luminis.quic.server.ApplicationProtocolConnectionFactory;
 
 import java.io.File;
+import java.util.concurrent.ThreadFactory;
 
 public class Http09ApplicationProtocolFactory implements ApplicationProtocolConnectionFactory {
 
     private File wwwDir;
+    private ThreadFactory threadFactory;
 
     public Http09ApplicationProtocolFactory(File wwwDir) {
-        if (wwwDir == null) {
+        this(wwwDir, Thread::new);
+    }
+
+    /**
+     * @param wwwDir
+     * @param threadFactory  the factory for creating the threads that handle requests
+     */
+    public Http09ApplicationProtocolFactory(File wwwDir, ThreadFactory threadFactory) {
+        if (wwwDir == null || threadFactory == null) {
             throw new IllegalArgumentException();
         }
         this.wwwDir = wwwDir;
+        this.threadFactory = threadFactory;
     }
 
     @Override
@@ -47,6 +58,6 @@ public class Http09ApplicationProtocolFactory implements ApplicationProtocolConn
 
     @Override
     public ApplicationProtocolConnection createConnection(String protocol, QuicConnection quicConnection) {
-        return new Http09Connection(quicConnection, wwwDir);
+        return new Http09Connection(quicConnection, wwwDir, threadFactory);
     }
 }
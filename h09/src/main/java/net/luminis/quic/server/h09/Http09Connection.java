@@ -27,6 +27,8 @@ import net.luminis.quic.io.LimitedInputStream;
 import net.luminis.quic.server.ApplicationProtocolConnection;
 
 import java.io.*;
+import java.util.Objects;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -40,15 +42,28 @@ public class Http09Connection implements ApplicationProtocolConnection {
 
     private final QuicConnection connection;
     private final File wwwDir;
+    private final ThreadFactory threadFactory;
 
     public Http09Connection(QuicConnection quicConnection, File wwwDir) {
+        this(quicConnection, wwwDir, Thread::new);
+    }
+
+    /**
+     * Creates a connection that handles each request on a thread created by the given factory; e.g. with a factory that
+     * creates virtual threads, the number of concurrent requests is not limited by the number of platform threads.
+     * @param quicConnection
+     * @param wwwDir
+     * @param threadFactory
+     */
+    public Http09Connection(QuicConnection quicConnection, File wwwDir, ThreadFactory threadFactory) {
         this.wwwDir = wwwDir;
         this.connection = quicConnection;
+        this.threadFactory = Objects.requireNonNull(threadFactory);
     }
 
     @Override
     public void acceptPeerInitiatedStream(QuicStream quicStream) {
-        Thread thread = new Thread(() -> handleRequest(quicStream));
+        Thread thread = threadFactory.newThread(() -> handleRequest(quicStream));
         thread.setName("http-" + threadCount.getAndIncrement());
         thread.start();
     }
@@ -31,6 +31,9 @@ import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadFactory;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Mockito.mock;
@@ -110,4 +113,26 @@ class Http09ConnectionTest {
         assertThat(arrayOutputStream.toString()).startsWith("404");
     }
 
+    @Test
+    void requestShouldBeHandledOnThreadCreatedByGivenFactory() throws Exception {
+        Path wwwDir = Files.createTempDirectory("kwikh09");
+        Files.write(Paths.get(wwwDir.toString(), "test.txt"), "This is a test (obviously)\n".getBytes());
+        List<Thread> createdThreads = new ArrayList<>();
+        ThreadFactory threadFactory = runnable -> {
+            Thread thread = new Thread(runnable);
+            createdThreads.add(thread);
+            return thread;
+        };
+        Http09Connection http09Connection = new Http09Connection(mock(QuicConnection.class), wwwDir.toFile(), threadFactory);
+
+        QuicStream quicStream = mock(QuicStream.class);
+        when(quicStream.getInputStream()).thenReturn(new ByteArrayInputStream("GET test.txt".getBytes()));
+        ByteArrayOutputStream arrayOutputStream = new ByteArrayOutputStream(1024);
+        when(quicStream.getOutputStream()).thenReturn(arrayOutputStream);
+        http09Connection.acceptPeerInitiatedStream(quicStream);
+
+        assertThat(createdThreads).hasSize(1);
+        createdThreads.get(0).join(1000);
+        assertThat(arrayOutputStream.toString()).startsWith("This is a test");
+    }
 }
\ No newline at end of file
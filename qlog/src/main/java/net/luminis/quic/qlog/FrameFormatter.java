@@ -60,6 +60,17 @@ public class FrameFormatter implements FrameProcessor {
                 .writeEnd();
     }
 
+    @Override
+    public void process(AckFrequencyFrame ackFrequencyFrame, QuicPacket packet, Instant timeReceived) {
+        jsonGenerator.writeStartObject()
+                .write("frame_type", "ack_frequency")
+                .write("sequence_number", ackFrequencyFrame.getSequenceNumber())
+                .write("ack_eliciting_threshold", ackFrequencyFrame.getAckElicitingThreshold())
+                .write("request_max_ack_delay", ackFrequencyFrame.getRequestMaxAckDelay())
+                .write("reordering_threshold", ackFrequencyFrame.getReorderingThreshold())
+                .writeEnd();
+    }
+
     @Override
     public void process(CryptoFrame cryptoFrame, QuicPacket packet, Instant timeReceived) {
         jsonGenerator.writeStartObject()
@@ -79,6 +90,11 @@ public class FrameFormatter implements FrameProcessor {
         jsonGenerator.writeStartObject().write("frame_type", "handshake_done").writeEnd();
     }
 
+    @Override
+    public void process(ImmediateAckFrame immediateAckFrame, QuicPacket packet, Instant timeReceived) {
+        jsonGenerator.writeStartObject().write("frame_type", "immediate_ack").writeEnd();
+    }
+
     @Override
     public void process(MaxDataFrame maxDataFrame, QuicPacket packet, Instant timeReceived) {
         jsonGenerator.writeStartObject()